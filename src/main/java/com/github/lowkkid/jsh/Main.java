@@ -6,34 +6,62 @@ import static com.github.lowkkid.jsh.config.env.EnvConfigReader.HOME;
 import com.github.lowkkid.jsh.command.utils.CommandRegistry;
 import com.github.lowkkid.jsh.command.utils.HistoryUtils;
 import com.github.lowkkid.jsh.config.RcFileReader;
+import com.github.lowkkid.jsh.daemon.DaemonClient;
+import com.github.lowkkid.jsh.daemon.DaemonProtocol;
+import com.github.lowkkid.jsh.daemon.DaemonServer;
 import com.github.lowkkid.jsh.executor.CommandExecutor;
+import com.github.lowkkid.jsh.executor.CommandListExecutor;
+import com.github.lowkkid.jsh.executor.JobSupervisor;
+import com.github.lowkkid.jsh.executor.ScriptRunner;
 import com.github.lowkkid.jsh.executor.SegmentedExecutor;
+import com.github.lowkkid.jsh.history.HistorySearch;
+import com.github.lowkkid.jsh.history.HistorySuggestions;
 import com.github.lowkkid.jsh.parser.InputParser;
+import com.github.lowkkid.jsh.parser.SyntaxException;
+import com.github.lowkkid.jsh.ui.AutosuggestionHighlighter;
 import com.github.lowkkid.jsh.ui.CommandHighlighter;
+import com.github.lowkkid.jsh.ui.HistorySearchWidget;
 import com.github.lowkkid.jsh.ui.PromptBuilder;
+import com.github.lowkkid.jsh.ui.ShellCompleter;
+import com.github.lowkkid.jsh.utils.PathIndex;
+import java.io.Console;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import org.jline.builtins.Completers.FilesCompleter;
+import java.time.Duration;
+import java.util.List;
 import org.jline.reader.LineReaderBuilder;
 import org.jline.reader.UserInterruptException;
-import org.jline.reader.impl.completer.ArgumentCompleter;
-import org.jline.reader.impl.completer.StringsCompleter;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
 
 public class Main {
 
-    private static final InputParser PARSER = InputParser.getInstance();
-    private static final CommandRegistry COMMANDS_REGISTRY = CommandRegistry.getInstance();
-    private static final PromptBuilder PROMPT_BUILDER = new PromptBuilder();
-    private static final SegmentedExecutor PIPELINE_EXECUTOR =
-            new SegmentedExecutor(COMMANDS_REGISTRY);
+    private static final String DAEMON_OPTION = "--daemon";
 
     public static Path currentDir = Paths.get(HOME);
     public static Terminal terminal;
 
+    /**
+     * The components every mode executes commands with, created on first use, so that
+     * forwarding an invocation to a daemon does not pay for loading them. What only the
+     * interactive shell needs (terminal, prompt, completion, history) is created in {@link #main}.
+     */
+    private static final class Shell {
+        private static final InputParser PARSER = InputParser.getInstance();
+        private static final CommandRegistry COMMANDS_REGISTRY = CommandRegistry.getInstance();
+        private static final SegmentedExecutor PIPELINE_EXECUTOR =
+                new SegmentedExecutor(COMMANDS_REGISTRY);
+        private static final CommandListExecutor LIST_EXECUTOR = new CommandListExecutor(PIPELINE_EXECUTOR);
+    }
+
+
+    static void main(String[] args) throws Exception {
+        // jsh -c ..., jsh script and cmd | jsh never touch the terminal
+        if (args.length > 0 || !isInteractive()) {
+            System.exit(runWithArguments(List.of(args)));
+        }
 
-    static void main() throws Exception {
         RcFileReader.executeRcFileCommands();
 
         var terminal = TerminalBuilder
@@ -42,27 +70,40 @@ public class Main {
                 .build();
         Main.terminal = terminal;
 
-        var commandCompleter = new ArgumentCompleter(
-                new StringsCompleter(COMMANDS_REGISTRY.getAllCommands()),
-                new FilesCompleter(() -> currentDir)
-        );
+        var completer = new ShellCompleter(Shell.COMMANDS_REGISTRY, PathIndex.getInstance());
+        completer.warmUp();
+        var highlighter = new AutosuggestionHighlighter(new CommandHighlighter(Shell.COMMANDS_REGISTRY),
+                new HistorySuggestions(HistoryUtils.HISTORY), () -> currentDir);
         var readerBuilder = LineReaderBuilder.builder()
                 .terminal(terminal)
-                .highlighter(new CommandHighlighter(COMMANDS_REGISTRY))
-                .completer(commandCompleter);
+                .highlighter(highlighter)
+                .completer(completer);
 
         configureHistory(readerBuilder);
 
         var reader = readerBuilder.build();
 
-        HistoryUtils.afterInitialization();
+        HistoryUtils.afterInitialization(reader);
+        var historySearch = new HistorySearch(HistoryUtils.HISTORY);
+        HistorySearchWidget.install(reader, historySearch);
+        highlighter.install(reader);
+        historySearch.warmUp();
 
+        var promptBuilder = new PromptBuilder();
+        var jobSupervisor = JobSupervisor.getInstance();
         while (true) {
             try {
-                String prompt = PROMPT_BUILDER.build(currentDir);
+                jobSupervisor.drainFinished().forEach(System.out::println);
+                completer.prefetch();
+                // take in the commands other sessions ran meanwhile
+                HistoryUtils.HISTORY.load();
+                String prompt = promptBuilder.build(currentDir);
                 String userInput = reader.readLine(prompt);
 
+                Path startDir = currentDir;
+                long started = System.nanoTime();
                 var res = parseAndExecute(userInput);
+                HistoryUtils.HISTORY.record(Duration.ofNanos(System.nanoTime() - started), res.exitStatus(), startDir);
                 if (res.shouldBreak()) {
                     break;
                 }
@@ -76,13 +117,63 @@ public class Main {
 
     }
 
-    public static CommandExecutor.ExecutionResult parseAndExecute(String input) {
-        var commandsAndArgs = PARSER.getCommandAndArgs(input);
+    /**
+     * Returns whether jsh talks to a user: stdin and stdout are a terminal.
+     */
+    private static boolean isInteractive() {
+        Console console = System.console();
+        return console != null && console.isTerminal();
+    }
+
+    /**
+     * Runs {@code jsh --daemon}, or commands without a terminal: {@code jsh -c command},
+     * {@code jsh script} or the lines piped into {@code jsh}. Commands are forwarded to a daemon
+     * if {@value DaemonProtocol#SOCKET_VARIABLE} names one that is running.
+     */
+    private static int runWithArguments(List<String> args) throws IOException {
+        if (!args.isEmpty() && DAEMON_OPTION.equals(args.getFirst())) {
+            runDaemon();
+            return 0;
+        }
+
+        Path workingDirectory = Path.of("").toAbsolutePath();
+        String socket = System.getenv(DaemonProtocol.SOCKET_VARIABLE);
+        var daemon = socket != null && !socket.isBlank() ? DaemonClient.connect(Path.of(socket)) : null;
+        if (daemon != null) {
+            return DaemonClient.forward(daemon, args, workingDirectory, System.getenv(),
+                    System.in, System.out, System.err);
+        }
 
-        if (commandsAndArgs.size() == 1) {
-            return PIPELINE_EXECUTOR.executeSingle(commandsAndArgs.getFirst());
-        } else {
-            return PIPELINE_EXECUTOR.executePipeline(commandsAndArgs);
+        currentDir = workingDirectory;
+        PathIndex.getInstance().deferIndexing();
+        RcFileReader.executeRcFileCommands();
+        return new ScriptRunner(Shell.PARSER, Shell.LIST_EXECUTOR, System.err)
+                .run(args, System.in, workingDirectory);
+    }
+
+    private static void runDaemon() throws IOException {
+        RcFileReader.executeRcFileCommands();
+        PathIndex.getInstance().commandNames();
+
+        var daemon = new DaemonServer(DaemonProtocol.socketPath(), Shell.PIPELINE_EXECUTOR);
+        daemon.bind();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException ignored) {
+                // the socket file is replaced by the next daemon anyway
+            }
+        }));
+        System.err.println("jsh: daemon listening on " + DaemonProtocol.socketPath());
+        daemon.serve();
+    }
+
+    public static CommandExecutor.ExecutionResult parseAndExecute(String input) {
+        try {
+            return Shell.LIST_EXECUTOR.execute(Shell.PARSER.parse(input));
+        } catch (SyntaxException e) {
+            System.err.println(e.getMessage());
+            return new CommandExecutor.ExecutionResult(false, CommandListExecutor.MISUSE);
         }
     }
 
@@ -1,6 +1,5 @@
 package com.github.lowkkid.jsh.command;
 
-import com.github.lowkkid.jsh.config.env.AliasStorage;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -18,37 +17,42 @@ import java.util.TreeMap;
 public class Alias extends Command {
 
     @Override
-    protected void executeWithException(List<String> args) throws Exception {
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
         if (args.isEmpty()) {
-            printAllAliases();
-            return;
+            printAllAliases(context);
+            return 0;
         }
 
+        int status = 0;
         for (String arg : args) {
             int eqIndex = arg.indexOf('=');
             if (eqIndex == -1) {
-                printAlias(arg);
+                if (!printAlias(context, arg)) {
+                    status = 1;
+                }
             } else {
                 String name = arg.substring(0, eqIndex);
                 String value = arg.substring(eqIndex + 1);
-                AliasStorage.put(name, value);
+                context.shell().aliases().put(name, value);
             }
         }
+        return status;
     }
 
-    private void printAllAliases() {
-        Map<String, String> sorted = new TreeMap<>(AliasStorage.getAll());
+    private void printAllAliases(ExecutionContext context) {
+        Map<String, String> sorted = new TreeMap<>(context.shell().aliases().getAll());
         for (var entry : sorted.entrySet()) {
-            stdOut.println("alias " + entry.getKey() + "='" + entry.getValue() + "'");
+            context.stdOut().println("alias " + entry.getKey() + "='" + entry.getValue() + "'");
         }
     }
 
-    private void printAlias(String name) {
-        String value = AliasStorage.get(name);
-        if (value != null) {
-            stdOut.println("alias " + name + "='" + value + "'");
-        } else {
-            stdErr.println("alias: " + name + ": not found");
+    private boolean printAlias(ExecutionContext context, String name) {
+        String value = context.shell().aliases().get(name);
+        if (value == null) {
+            context.stdErr().println("alias: " + name + ": not found");
+            return false;
         }
+        context.stdOut().println("alias " + name + "='" + value + "'");
+        return true;
     }
 }
@@ -0,0 +1,43 @@
+package com.github.lowkkid.jsh.command;
+
+import com.github.lowkkid.jsh.executor.Job;
+import com.github.lowkkid.jsh.executor.JobSupervisor;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Built-in {@code bg} command, resumes a stopped job in the background.
+ *
+ * <h3>Usage</h3>
+ * <ul>
+ *   <li>{@code bg} — continue the current job.</li>
+ *   <li>{@code bg %n ...} — continue the given jobs.</li>
+ * </ul>
+ */
+public class Bg extends Command {
+
+    @Override
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
+        List<String> specs = args.isEmpty() ? Collections.singletonList(null) : args;
+        JobSupervisor jobSupervisor = context.jobs().get();
+        int status = 0;
+
+        for (String spec : specs) {
+            var found = jobSupervisor.find(spec);
+            if (found.isEmpty()) {
+                context.stdErr().println("bg: " + (spec != null ? spec : "current") + ": no such job");
+                status = 1;
+                continue;
+            }
+            Job job = found.get();
+            if (job.state() != Job.State.STOPPED) {
+                context.stdErr().println("bg: job " + job.id() + " already in background");
+                status = 1;
+            } else if (jobSupervisor.signal(job, "CONT")) {
+                context.stdOut().println(
+                        "[" + job.id() + "]" + jobSupervisor.marker(job) + " " + job.commandLine() + " &");
+            }
+        }
+        return status;
+    }
+}
@@ -1,6 +1,5 @@
 package com.github.lowkkid.jsh.command;
 
-import com.github.lowkkid.jsh.Main;
 import com.github.lowkkid.jsh.utils.FileUtils;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -11,18 +10,16 @@ import java.util.List;
 public class Cd extends Command {
 
     @Override
-    public void executeWithException(List<String> args) {
+    public int executeWithException(ExecutionContext context, List<String> args) {
         String dirArg = args.getFirst();
         if (dirArg.startsWith("/")) {
-            updateCurrentDirectory(dirArg);
-            return;
+            return updateCurrentDirectory(context, dirArg);
         } else if (dirArg.startsWith("~")) {
-            updateCurrentDirectory(System.getenv("HOME"));
-            return;
+            return updateCurrentDirectory(context, System.getenv("HOME"));
         }
 
 
-        var currentDirectories = new LinkedList<>(Arrays.asList(Main.currentDir.toString().split("/")));
+        var currentDirectories = new LinkedList<>(Arrays.asList(context.workingDirectory().toString().split("/")));
         for (var dirMove : dirArg.split("/")) {
             switch (dirMove) {
                 case "." -> {  }
@@ -31,17 +28,17 @@ public class Cd extends Command {
             }
         }
         var newDir = FileUtils.reduceToPath(currentDirectories);
-        updateCurrentDirectory(newDir);
-
+        return updateCurrentDirectory(context, newDir);
     }
 
-    private void updateCurrentDirectory(String newDir) {
+    private int updateCurrentDirectory(ExecutionContext context, String newDir) {
         Path newPath = Path.of(newDir);
 
         if (!Files.isDirectory(newPath)) {
-            stdErr.println("cd: " + newPath + ": No such file or directory");
-        } else {
-            Main.currentDir = newPath;
+            context.stdErr().println("cd: " + newPath + ": No such file or directory");
+            return 1;
         }
+        context.shell().changeDirectory(newPath);
+        return 0;
     }
 }
@@ -36,30 +36,31 @@ public class Dc extends Command {
     }
 
     @Override
-    protected void executeWithException(List<String> args) throws Exception {
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
         Terminal terminal = Main.terminal;
         if (terminal == null) {
-            stdErr.println("dc: terminal not available");
-            return;
+            context.stdErr().println("dc: terminal not available");
+            return 1;
         }
 
         List<DockerClient.ContainerInfo> containers;
         try {
             containers = dockerClient.fetchContainers();
         } catch (IOException ex) {
-            stdErr.println("dc: " + ex.getMessage());
-            return;
+            context.stdErr().println("dc: " + ex.getMessage());
+            return 1;
         }
         if (containers.isEmpty()) {
-            stdOut.println("No running containers.");
-            return;
+            context.stdOut().println("No running containers.");
+            return 0;
         }
 
-        runTui(terminal, containers);
+        runTui(context, terminal, containers);
+        return 0;
     }
 
     @SuppressWarnings("checkstyle:CyclomaticComplexity")
-    private void runTui(Terminal terminal, List<DockerClient.ContainerInfo> containers)
+    private void runTui(ExecutionContext context, Terminal terminal, List<DockerClient.ContainerInfo> containers)
             throws IOException, InterruptedException {
         int selectedRow = 0;
         int selectedCol = 0;
@@ -98,7 +99,7 @@ public class Dc extends Command {
                         executeLogs(terminal, containers.get(selectedRow), savedAttributes);
                     } else {
                         containers = executeStop(
-                                terminal, containers, selectedRow, savedAttributes
+                                context, terminal, containers, selectedRow, savedAttributes
                         );
                         if (containers == null || containers.isEmpty()) {
                             break;
@@ -182,7 +183,7 @@ public class Dc extends Command {
     }
 
     private List<DockerClient.ContainerInfo> executeStop(
-            Terminal terminal, List<DockerClient.ContainerInfo> containers,
+            ExecutionContext context, Terminal terminal, List<DockerClient.ContainerInfo> containers,
             int selectedRow, Attributes savedAttributes)
             throws IOException, InterruptedException {
         DockerClient.ContainerInfo container = containers.get(selectedRow);
@@ -196,14 +197,14 @@ public class Dc extends Command {
         try {
             refreshed = dockerClient.fetchContainers();
         } catch (IOException ex) {
-            stdErr.println("dc: " + ex.getMessage());
+            context.stdErr().println("dc: " + ex.getMessage());
             return null;
         }
         if (refreshed.isEmpty()) {
             terminal.writer().print(CURSOR_SHOW + ALT_SCREEN_OFF);
             terminal.writer().flush();
             terminal.setAttributes(savedAttributes);
-            stdOut.println("No running containers.");
+            context.stdOut().println("No running containers.");
             return refreshed;
         }
         return refreshed;
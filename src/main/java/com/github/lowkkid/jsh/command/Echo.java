@@ -1,11 +1,21 @@
 package com.github.lowkkid.jsh.command;
 
+import java.io.PrintStream;
 import java.util.List;
 
 public class Echo extends Command {
 
     @Override
-    public void executeWithException(List<String> args) {
-        stdOut.println(String.join(" ", args));
+    public int executeWithException(ExecutionContext context, List<String> args) {
+        // printed one by one, so that arguments computed on demand are never joined into one string
+        PrintStream out = context.stdOut();
+        for (int i = 0; i < args.size(); i++) {
+            if (i > 0) {
+                out.print(' ');
+            }
+            out.print(args.get(i));
+        }
+        out.println();
+        return 0;
     }
 }
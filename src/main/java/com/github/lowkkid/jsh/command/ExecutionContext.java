@@ -0,0 +1,173 @@
+package com.github.lowkkid.jsh.command;
+
+import com.github.lowkkid.jsh.Main;
+import com.github.lowkkid.jsh.config.env.EnvStorage;
+import com.github.lowkkid.jsh.config.env.ShellState;
+import com.github.lowkkid.jsh.executor.BufferPool;
+import com.github.lowkkid.jsh.executor.JobSupervisor;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Everything a single command invocation works with: its streams, working directory,
+ * variables and the exit status of the previous command.
+ *
+ * <p>A new context is passed to every {@link Command#execute(ExecutionContext, java.util.List)} call
+ * instead of being stored in the command, so one command instance can run in several pipeline
+ * segments or background jobs at the same time. Redirects and pipes derive a new context with
+ * {@link #withStdOut(PrintStream)} and friends; the original is never modified.
+ *
+ * <p>Input and output are bytes. Commands that pass data through should use
+ * {@link #stdInChannel()} and {@link #stdOutChannel()} (see {@link BufferPool#transfer}),
+ * which never decode it, so binary data is not corrupted. Text access through
+ * {@link #stdInReader()} and the {@code print} methods of {@link #stdOut()} is an opt-in layer
+ * on top. Streams created for pipes do not flush per line; they are flushed once the command returns.
+ *
+ * @param stdIn            input of the command, or {@code null} if it is not reading from a pipe
+ * @param stdOut           standard output
+ * @param stdErr           standard error
+ * @param workingDirectory directory relative paths are resolved against
+ * @param variables        read-only view of the shell variables, returns {@code null} for unset ones
+ * @param lastExitStatus   exit status of the previous command ({@code $?})
+ * @param assignments      variables assigned in front of the command ({@code FOO=bar cmd}), which are
+ *                         part of {@code variables} and of the environment of the processes it starts
+ * @param shell            the shell the command runs in, whose working directory and variables
+ *                         {@code cd}, {@code set}, {@code export} and {@code unset} change
+ * @param jobs             supplies the supervisor of the shell's background jobs, which {@code jobs},
+ *                         {@code wait} and the other job control commands work with
+ */
+public record ExecutionContext(
+        InputStream stdIn,
+        PrintStream stdOut,
+        PrintStream stdErr,
+        Path workingDirectory,
+        UnaryOperator<String> variables,
+        int lastExitStatus,
+        Map<String, String> assignments,
+        ShellState shell,
+        Supplier<JobSupervisor> jobs) {
+
+    /**
+     * Creates a context of a command run by the interactive shell.
+     */
+    public ExecutionContext(InputStream stdIn, PrintStream stdOut, PrintStream stdErr, Path workingDirectory,
+                            UnaryOperator<String> variables, int lastExitStatus, Map<String, String> assignments) {
+        this(stdIn, stdOut, stdErr, workingDirectory, variables, lastExitStatus, assignments, ShellState.global(),
+                JobSupervisor::getInstance);
+    }
+
+    /**
+     * Creates a context of a command run by the interactive shell, without variable assignments.
+     */
+    public ExecutionContext(InputStream stdIn, PrintStream stdOut, PrintStream stdErr, Path workingDirectory,
+                            UnaryOperator<String> variables, int lastExitStatus) {
+        this(stdIn, stdOut, stdErr, workingDirectory, variables, lastExitStatus, Map.of());
+    }
+
+    /**
+     * Creates a context for a command run directly by the shell: the JVM's standard streams,
+     * the shell's current directory and variables.
+     *
+     * @return a new context
+     */
+    public static ExecutionContext ofShell() {
+        return ofShell(0);
+    }
+
+    /**
+     * Creates a context for a command run directly by the shell, see {@link #ofShell()}.
+     *
+     * @param lastExitStatus exit status of the previous command
+     * @return a new context
+     */
+    public static ExecutionContext ofShell(int lastExitStatus) {
+        return new ExecutionContext(null, System.out, System.err, Main.currentDir, EnvStorage::get, lastExitStatus);
+    }
+
+    public ExecutionContext withStdIn(InputStream stdIn) {
+        return new ExecutionContext(stdIn, stdOut, stdErr, workingDirectory, variables, lastExitStatus, assignments,
+                shell, jobs);
+    }
+
+    public ExecutionContext withStdOut(PrintStream stdOut) {
+        return new ExecutionContext(stdIn, stdOut, stdErr, workingDirectory, variables, lastExitStatus, assignments,
+                shell, jobs);
+    }
+
+    public ExecutionContext withStdErr(PrintStream stdErr) {
+        return new ExecutionContext(stdIn, stdOut, stdErr, workingDirectory, variables, lastExitStatus, assignments,
+                shell, jobs);
+    }
+
+    public ExecutionContext withWorkingDirectory(Path workingDirectory) {
+        return new ExecutionContext(stdIn, stdOut, stdErr, workingDirectory, variables, lastExitStatus, assignments,
+                shell, jobs);
+    }
+
+    /**
+     * Returns a context in which variables are set for this command only, as in {@code FOO=bar cmd}.
+     * The shell's variables are not changed, the assignments are layered over them.
+     *
+     * @param assignments variable names and values
+     * @return a new context, or this one if there are no assignments
+     */
+    public ExecutionContext withAssignments(Map<String, String> assignments) {
+        if (assignments.isEmpty()) {
+            return this;
+        }
+        Map<String, String> merged = new HashMap<>(this.assignments);
+        merged.putAll(assignments);
+        UnaryOperator<String> outer = variables;
+        UnaryOperator<String> layered = name -> merged.containsKey(name) ? merged.get(name) : outer.apply(name);
+        return new ExecutionContext(stdIn, stdOut, stdErr, workingDirectory, layered, lastExitStatus,
+                Map.copyOf(merged), shell, jobs);
+    }
+
+    /**
+     * Resolves a path argument against the working directory.
+     *
+     * @param path absolute or relative path
+     * @return normalized absolute path
+     */
+    public Path resolve(String path) {
+        return workingDirectory.resolve(path).normalize();
+    }
+
+    /**
+     * Returns a UTF-8 reader over {@link #stdIn()}, or {@code null} if there is no input.
+     */
+    public BufferedReader stdInReader() {
+        return stdIn != null ? new BufferedReader(new InputStreamReader(stdIn, StandardCharsets.UTF_8)) : null;
+    }
+
+    /**
+     * Returns a byte channel over {@link #stdIn()}, or {@code null} if there is no input.
+     */
+    public ReadableByteChannel stdInChannel() {
+        return stdIn != null ? BufferPool.channel(stdIn) : null;
+    }
+
+    /**
+     * Returns a byte channel writing to {@link #stdOut()}. Closing it closes stdout.
+     */
+    public WritableByteChannel stdOutChannel() {
+        return BufferPool.channel(stdOut);
+    }
+
+    /**
+     * Returns {@code true} if stdout or stderr is not the terminal, i.e. a file or a pipe.
+     */
+    public boolean isRedirected() {
+        return stdOut != System.out || stdErr != System.err;
+    }
+}
@@ -5,8 +5,8 @@ import java.util.List;
 public class Exit extends Command {
 
     @Override
-    public void executeWithException(List<String> args) {
-
+    public int executeWithException(ExecutionContext context, List<String> args) {
+        return 0;
     }
 
     @Override
@@ -1,6 +1,5 @@
 package com.github.lowkkid.jsh.command;
 
-import com.github.lowkkid.jsh.config.env.EnvStorage;
 import java.util.List;
 
 /**
@@ -23,16 +22,17 @@ import java.util.List;
 public class Export extends Command {
 
     @Override
-    protected void executeWithException(List<String> args) throws Exception {
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
         for (String arg : args) {
             int eqIndex = arg.indexOf('=');
             if (eqIndex == -1) {
-                EnvStorage.markExported(arg);
+                context.shell().variables().markExported(arg);
             } else if (eqIndex > 0) {
                 String key = arg.substring(0, eqIndex);
                 String value = arg.substring(eqIndex + 1);
-                EnvStorage.putExported(key, value);
+                context.shell().variables().putExported(key, value);
             }
         }
+        return 0;
     }
 }
@@ -1,10 +1,20 @@
 package com.github.lowkkid.jsh.command;
 
+import com.github.lowkkid.jsh.executor.ArgumentBatcher;
+import com.github.lowkkid.jsh.executor.BufferPool;
 import com.github.lowkkid.jsh.executor.ProcessBuilderFactory;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import com.github.lowkkid.jsh.executor.SharedInput;
+import com.github.lowkkid.jsh.parser.RedirectOptions;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Stream;
 
 public class ExternalCommand extends Command {
@@ -16,32 +26,175 @@ public class ExternalCommand extends Command {
     }
 
     @Override
-    public void executeWithException(List<String> args) throws Exception {
-        ProcessBuilder pb = ProcessBuilderFactory.create(
-                Stream.concat(Stream.of(commandName), args.stream()).toList());
-        if (isRedirected()) {
-            pb.redirectErrorStream(false);
-            Process process = pb.start();
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    stdOut.println(line);
-                }
+    public int executeWithException(ExecutionContext context, List<String> args) throws Exception {
+        return runBatched(context, args, null);
+    }
+
+    /**
+     * Executes the command with its output redirected to a file.
+     *
+     * <p>Unlike built-in commands, the redirect is handed to the operating system via
+     * {@link ProcessBuilder.Redirect}, so the child process writes directly to the file
+     * and no output is copied through the JVM.
+     */
+    @Override
+    public int executeWithRedirect(ExecutionContext context, List<String> args, RedirectOptions redirectOptions) {
+        try {
+            return runBatched(context, args, redirectOptions);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } catch (Exception e) {
+            context.stdErr().println(e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Runs the command once, or, if {@value ArgumentBatcher#BATCH_VARIABLE} is set and the arguments
+     * exceed {@code ARG_MAX}, once per batch of arguments, see {@link ArgumentBatcher}.
+     *
+     * <p>Batches after the first append to a redirect target rather than truncating it again, so
+     * in parallel a truncating first batch runs on its own. Parallel batches read no input. The
+     * exit status is that of the first batch that failed.
+     */
+    private int runBatched(ExecutionContext context, List<String> args, RedirectOptions redirectOptions)
+            throws Exception {
+        ArgumentBatcher.Mode mode = ArgumentBatcher.Mode.of(context.variables().apply(ArgumentBatcher.BATCH_VARIABLE));
+        if (mode == ArgumentBatcher.Mode.OFF) {
+            return run(context, createProcessBuilder(context, args, redirectOptions));
+        }
+        long budget = ArgumentBatcher.budget(
+                context.shell().variables().exportedEnvironment().withOverlay(context.assignments()).variables(),
+                context.variables().apply(ArgumentBatcher.ARG_MAX_VARIABLE));
+        if (ArgumentBatcher.fits(commandName, args, budget)) {
+            return run(context, createProcessBuilder(context, args, redirectOptions));
+        }
+
+        List<List<String>> batches = ArgumentBatcher.split(commandName, args, budget);
+        RedirectOptions appending = redirectOptions == null ? null : new RedirectOptions(
+                redirectOptions.redirectTo(), RedirectOptions.RedirectType.APPEND, redirectOptions.redirectStream());
+        if (mode == ArgumentBatcher.Mode.SEQUENTIAL) {
+            int exitStatus = 0;
+            for (int i = 0; i < batches.size(); i++) {
+                int batchStatus = run(context, createProcessBuilder(context, batches.get(i),
+                        i == 0 ? redirectOptions : appending));
+                exitStatus = exitStatus != 0 ? exitStatus : batchStatus;
             }
+            return exitStatus;
+        }
 
-            try (BufferedReader errorReader = new BufferedReader(
-                    new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = errorReader.readLine()) != null) {
-                    stdErr.println(line);
-                }
+        ExecutionContext noInput = context.withStdIn(InputStream.nullInputStream());
+        var permits = new Semaphore(Runtime.getRuntime().availableProcessors());
+        List<Future<Integer>> results = new ArrayList<>(batches.size());
+        int first = 0;
+        if (redirectOptions != null && !redirectOptions.isAppending()) {
+            // the batch truncating the target must be done before others append to it
+            results.add(CompletableFuture.completedFuture(
+                    run(noInput, createProcessBuilder(context, batches.getFirst(), redirectOptions))));
+            first = 1;
+        }
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = first; i < batches.size(); i++) {
+                ProcessBuilder pb = createProcessBuilder(context, batches.get(i), i == 0 ? redirectOptions : appending);
+                permits.acquire();
+                results.add(executor.submit(() -> {
+                    try {
+                        return run(noInput, pb);
+                    } finally {
+                        permits.release();
+                    }
+                }));
             }
-            process.waitFor();
-        } else {
-            pb.inheritIO();
+        }
+        int exitStatus = 0;
+        for (Future<Integer> result : results) {
+            try {
+                exitStatus = exitStatus != 0 ? exitStatus : result.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        return exitStatus;
+    }
+
+    /**
+     * Starts the process and waits for it. Output that is not redirected to a file goes to the
+     * context's streams: directly if they are the JVM's own, otherwise it is copied, e.g. into
+     * a pipe or to a daemon client.
+     *
+     * <p>Input from a pipe is copied into the process by a feeder. A session's {@link SharedInput}
+     * is read through its named pipe instead, so that what the process leaves unread is kept for
+     * the commands after it.
+     */
+    private static int run(ExecutionContext context, ProcessBuilder pb) throws IOException, InterruptedException {
+        if (pb.redirectOutput() == ProcessBuilder.Redirect.PIPE && context.stdOut() == System.out) {
+            pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        }
+        if (pb.redirectError() == ProcessBuilder.Redirect.PIPE && context.stdErr() == System.err) {
+            pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        }
+        InputStream stdIn = context.stdIn();
+        try (var sharedInput = stdIn instanceof SharedInput shared ? shared.connect(pb) : null) {
+            if (sharedInput == null) {
+                pb.redirectInput(stdIn != null ? ProcessBuilder.Redirect.PIPE : ProcessBuilder.Redirect.INHERIT);
+            }
+
             Process process = pb.start();
-            process.waitFor();
+            Thread inputFeeder = null;
+            if (sharedInput != null) {
+                sharedInput.start();
+            } else if (stdIn != null) {
+                inputFeeder = Thread.startVirtualThread(() -> feed(stdIn, process.getOutputStream()));
+            }
+            // drain stderr concurrently, so a chatty process can never block on a full stderr pipe
+            Thread errorDrainer = null;
+            if (pb.redirectError() == ProcessBuilder.Redirect.PIPE) {
+                errorDrainer = Thread.startVirtualThread(() -> copyQuietly(process.getErrorStream(), context.stdErr()));
+            }
+            if (pb.redirectOutput() == ProcessBuilder.Redirect.PIPE) {
+                copyQuietly(process.getInputStream(), context.stdOut());
+            }
+            if (errorDrainer != null) {
+                errorDrainer.join();
+            }
+            int exitStatus = process.waitFor();
+            if (inputFeeder != null) {
+                // the feeder ends by itself at the end of its input or once the process's stdin is
+                // broken; one still blocked reading input is interrupted and given up on, since not
+                // every stream (a socket, System.in) wakes up when its reader is interrupted
+                inputFeeder.join(100);
+                if (inputFeeder.isAlive()) {
+                    inputFeeder.interrupt();
+                }
+            }
+            context.stdOut().flush();
+            context.stdErr().flush();
+            return exitStatus;
+        }
+    }
+
+    private ProcessBuilder createProcessBuilder(ExecutionContext context, List<String> args,
+                                               RedirectOptions redirectOptions) {
+        ProcessBuilder pb = ProcessBuilderFactory.create(
+                Stream.concat(Stream.of(commandName), args.stream()).toList(), context.assignments(), context.shell())
+                .directory(context.workingDirectory().toFile());
+        return ProcessBuilderFactory.applyRedirect(pb, redirectOptions, true);
+    }
+
+    private static void feed(InputStream from, OutputStream processInput) {
+        try (processInput) {
+            BufferPool.transfer(from, processInput);
+        } catch (IOException ignored) {
+            // process exited without reading all of its input
+        }
+    }
+
+    private static void copyQuietly(InputStream from, OutputStream to) {
+        try (from) {
+            BufferPool.transfer(from, to);
+        } catch (IOException ignored) {
+            // process went away, nothing left to copy
         }
     }
 }
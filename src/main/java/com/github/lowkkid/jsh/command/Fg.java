@@ -0,0 +1,29 @@
+package com.github.lowkkid.jsh.command;
+
+import com.github.lowkkid.jsh.executor.JobSupervisor;
+import java.util.List;
+
+/**
+ * Built-in {@code fg} command, brings a background job to the foreground.
+ *
+ * <h3>Usage</h3>
+ * <ul>
+ *   <li>{@code fg} — wait for the current job.</li>
+ *   <li>{@code fg %n} — wait for job {@code n}; a stopped job is continued first.</li>
+ * </ul>
+ */
+public class Fg extends Command {
+
+    @Override
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
+        JobSupervisor jobSupervisor = context.jobs().get();
+        String spec = args.isEmpty() ? null : args.getFirst();
+        var job = jobSupervisor.find(spec);
+        if (job.isEmpty()) {
+            context.stdErr().println("fg: " + (spec != null ? spec : "current") + ": no such job");
+            return 1;
+        }
+        context.stdOut().println(job.get().commandLine());
+        return jobSupervisor.waitFor(job.get());
+    }
+}
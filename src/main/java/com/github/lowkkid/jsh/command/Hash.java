@@ -0,0 +1,119 @@
+package com.github.lowkkid.jsh.command;
+
+import com.github.lowkkid.jsh.config.env.ShellState;
+import com.github.lowkkid.jsh.utils.PathIndex;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Built-in {@code hash} command for inspecting and resetting the {@link PathIndex}.
+ *
+ * <h3>Usage</h3>
+ * <ul>
+ *   <li>{@code hash} — print every command resolved so far with its hit count and path.</li>
+ *   <li>{@code hash name ...} — resolve commands now, reporting the ones not found.</li>
+ *   <li>{@code hash -t name ...} — print the path each command resolves to.</li>
+ *   <li>{@code hash -d name ...} — forget the statistics of the given commands.</li>
+ *   <li>{@code hash -r} — clear the index; {@code PATH} is rescanned on the next lookup.</li>
+ * </ul>
+ *
+ * <p>The index is the one for the {@code PATH} of the shell running the command, see
+ * {@link PathIndex#forShell(ShellState)}.
+ */
+public class Hash extends Command {
+
+    private final Function<ShellState, PathIndex> pathIndexes;
+
+    public Hash() {
+        this(PathIndex::forShell);
+    }
+
+    public Hash(PathIndex pathIndex) {
+        this((ShellState shell) -> pathIndex);
+    }
+
+    private Hash(Function<ShellState, PathIndex> pathIndexes) {
+        this.pathIndexes = pathIndexes;
+    }
+
+    @Override
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
+        PathIndex pathIndex = pathIndexes.apply(context.shell());
+        if (args.isEmpty()) {
+            printTable(context.stdOut(), pathIndex);
+            return 0;
+        }
+
+        String option = args.getFirst();
+        List<String> names = args.subList(1, args.size());
+        return switch (option) {
+            case "-r" -> {
+                pathIndex.rehash();
+                yield 0;
+            }
+            case "-t" -> printPaths(context, pathIndex, names);
+            case "-d" -> forget(context, pathIndex, names);
+            default -> {
+                if (option.startsWith("-")) {
+                    context.stdErr().println("hash: " + option + ": invalid option");
+                    context.stdErr().println("hash: usage: hash [-r] [-d name ...] [-t name ...] [name ...]");
+                    yield 1;
+                }
+                yield remember(context, pathIndex, args);
+            }
+        };
+    }
+
+    private void printTable(PrintStream out, PathIndex pathIndex) {
+        Map<String, Long> hits = pathIndex.hitCounts();
+        if (hits.isEmpty()) {
+            out.println("hash: hash table empty");
+            return;
+        }
+        out.println("hits\tcommand");
+        hits.forEach((name, count) -> {
+            String path = pathIndex.resolve(name);
+            out.printf("%4d\t%s%n", count, path != null ? path : name);
+        });
+    }
+
+    private int printPaths(ExecutionContext context, PathIndex pathIndex, List<String> names) {
+        int status = 0;
+        for (String name : names) {
+            String path = pathIndex.resolve(name);
+            if (path == null) {
+                context.stdErr().println("hash: " + name + ": not found");
+                status = 1;
+            } else if (names.size() > 1) {
+                context.stdOut().println(name + "\t" + path);
+            } else {
+                context.stdOut().println(path);
+            }
+        }
+        return status;
+    }
+
+    private int forget(ExecutionContext context, PathIndex pathIndex, List<String> names) {
+        int status = 0;
+        for (String name : names) {
+            if (!pathIndex.forget(name)) {
+                context.stdErr().println("hash: " + name + ": not found");
+                status = 1;
+            }
+        }
+        return status;
+    }
+
+    private int remember(ExecutionContext context, PathIndex pathIndex, List<String> names) {
+        int status = 0;
+        for (String name : names) {
+            if (pathIndex.lookup(name) == null) {
+                context.stdErr().println("hash: " + name + ": not found");
+                status = 1;
+            }
+        }
+        return status;
+    }
+}
@@ -3,17 +3,18 @@ package com.github.lowkkid.jsh.command;
 import static com.github.lowkkid.jsh.command.utils.HistoryUtils.HISTORY;
 import static com.github.lowkkid.jsh.command.utils.HistoryUtils.initialHistorySize;
 import static com.github.lowkkid.jsh.config.env.EnvConfigReader.FILE_HISTORY_MAX_ENTRIES;
-import static com.github.lowkkid.jsh.config.env.EnvConfigReader.IN_MEMORY_HISTORY_MAX_ENTRIES;
 import static com.github.lowkkid.jsh.utils.StringUtils.isInteger;
 
 import com.github.lowkkid.jsh.config.env.EnvConfigReader;
+import com.github.lowkkid.jsh.history.ExecutionLog;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -21,14 +22,16 @@ import java.util.List;
  *
  * <h2>Overview</h2>
  * This command manages the command history list - a record of commands entered during
- * shell sessions. The history is stored both in memory (for the current session) and
- * can be persisted to/loaded from files.
+ * shell sessions. The history is stored in the history file as it is entered (see
+ * {@link com.github.lowkkid.jsh.history.ShellHistory}) and can be persisted to/loaded from other files.
+ * Entries are read from the file when they are shown, so the work done is proportional to the
+ * number of entries shown or written, not to the size of the history.
  *
  * <h2>Configuration</h2>
  * <ul>
- *   <li>{@code IN_MEMORY_HISTORY_MAX_ENTRIES} - Maximum entries kept in memory (like HISTSIZE in bash)</li>
+ *   <li>{@code IN_MEMORY_HISTORY_MAX_ENTRIES} - Maximum entries shown by the session (like HISTSIZE in bash)</li>
  *   <li>{@code FILE_HISTORY_MAX_ENTRIES} - Maximum entries written to file (like HISTFILESIZE in bash).
- *       Applied only during {@code -w} operation - older entries are truncated.</li>
+ *       Applied during {@code -w} operation - older entries are truncated.</li>
  * </ul>
  *
  * @see com.github.lowkkid.jsh.command.utils.HistoryUtils
@@ -42,28 +45,32 @@ public class History extends Command {
     private static final String MSG_NO_NEW_COMMANDS = "history: no new commands to append";
     private static final String MSG_APPENDED_TO_FILE = "history: appended %d entries to %s";
     private static final String MSG_FILE_NOT_FOUND = "history: file not found: %s";
-    private static final String MSG_MEMORY_LIMIT_REACHED = "history: memory limit reached, stopped loading";
     private static final String MSG_LOADED_FROM_FILE = "history: loaded %d entries from %s";
+    private static final String MSG_NO_RECORDS = "history: no execution records without a history file";
+
+    /** Commands listed by {@code --stats} and {@code --slowest} unless a count is given. */
+    private static final int DEFAULT_QUERY_COUNT = 10;
 
     /**
-     * Tracks how many history entries have been written to file.
+     * Number of the first history entry not yet written to file.
      *
      * <p>
      * This counter is crucial for the {@code -a} (append) functionality:
      * <ul>
-     *   <li>Initialized to {@code initialHistorySize} at startup (entries loaded from default file)</li>
-     *   <li>Updated after each write/append/read operation</li>
-     *   <li>Reset to 0 after {@code -c} (clear)</li>
+     *   <li>Initialized to {@code initialHistorySize} at startup (entries already in the default file)</li>
+     *   <li>Updated after each write/append/read/clear operation</li>
      * </ul>
+     * Entries are numbered from the start of the history file, so the counter stays valid
+     * when older entries are no longer shown.
      * </p>
      */
-    private static int historyWrittenCount = -1;
+    private static int historyWrittenCount = 0;
 
     /**
      * Initializes {@code historyWrittenCount} after the default history file is loaded.
      *
      * <p>
-     * Must be called once after JLine loads the history file at startup.
+     * Must be called once after the history file is opened at startup.
      * This ensures that entries loaded from the default file are not re-appended
      * when {@code history -a} is called.
      * </p>
@@ -86,14 +93,26 @@ public class History extends Command {
      *   <li>{@code -a [file]} - Append new entries (since last write) to file.
      *       If no filename is provided, the default history file is used</li>
      *   <li>{@code -c} - Clear the history list</li>
+     *   <li>{@code --stats [N]} - Show run counts, failures and time spent, overall and for the N
+     *       command names that took the most time</li>
+     *   <li>{@code --slowest [N]} - Show the N commands that ran the longest</li>
+     *   <li>{@code --dir [dir]} - Show the commands run in a directory (default: the current one) or below it</li>
      * </ul>
      *
-     * @param args command arguments (options and/or count)
+     * <p>
+     * The last three read the execution records of the whole history file (see {@link ExecutionLog}),
+     * not just the entries shown.
+     * </p>
+     *
+     * @param context streams of this invocation
+     * @param args    command arguments (options and/or count)
+     * @return exit status
      * @throws Exception if an I/O error occurs during file operations
      */
     @Override
-    protected void executeWithException(List<String> args) throws Exception {
-        int skipAmount = 0;
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
+        PrintStream stdOut = context.stdOut();
+        int from = HISTORY.first();
 
         for (int i = 0; i < args.size(); i++) {
             var arg = args.get(i);
@@ -101,45 +120,58 @@ public class History extends Command {
             if (isInteger(arg)) {
                 int n = Integer.parseInt(arg);
                 if (n < 0) {
-                    stdErr.printf((MSG_INVALID_NUMBER) + "%n", arg);
-                    return;
+                    context.stdErr().printf((MSG_INVALID_NUMBER) + "%n", arg);
+                    return 1;
                 }
-                skipAmount = Math.max(0, HISTORY.size() - n);
+                from = Math.max(from, HISTORY.last() + 1 - n);
             } else if ("-r".equals(arg)) {
                 if (i + 1 < args.size()) {
-                    loadHistoryFromFile(args.get(++i));
+                    loadHistoryFromFile(stdOut, args.get(++i));
                 } else {
                     HISTORY.load();
                 }
-                historyWrittenCount = HISTORY.size();
-                return;
+                historyWrittenCount = HISTORY.last() + 1;
+                return 0;
             } else if ("-w".equals(arg)) {
                 if (i + 1 < args.size()) {
-                    writeHistoryToFile(args.get(++i));
+                    writeHistoryToFile(stdOut, args.get(++i));
                 } else {
-                    HISTORY.save();
-                    historyWrittenCount = HISTORY.size();
+                    HISTORY.trim(FILE_HISTORY_MAX_ENTRIES);
+                    historyWrittenCount = HISTORY.last() + 1;
                 }
-                return;
+                return 0;
             } else if ("-a".equals(arg)) {
                 if (i + 1 < args.size()) {
-                    appendHistoryToFile(args.get(++i));
+                    appendHistoryToFile(stdOut, args.get(++i));
                 } else {
                     HISTORY.save();
-                    historyWrittenCount = HISTORY.size();
+                    historyWrittenCount = HISTORY.last() + 1;
                 }
-                return;
+                return 0;
             } else if ("-c".equals(arg)) {
                 HISTORY.purge();
-                historyWrittenCount = 0;
-                return;
+                historyWrittenCount = HISTORY.last() + 1;
+                return 0;
+            } else if ("--stats".equals(arg) || "--slowest".equals(arg)) {
+                int count = DEFAULT_QUERY_COUNT;
+                if (i + 1 < args.size() && isInteger(args.get(i + 1))) {
+                    count = Math.max(0, Integer.parseInt(args.get(++i)));
+                }
+                return query(context, arg, count, null);
+            } else if ("--dir".equals(arg)) {
+                Path dir = context.workingDirectory();
+                if (i + 1 < args.size()) {
+                    dir = context.workingDirectory().resolve(args.get(++i));
+                }
+                return query(context, arg, 0, dir);
             } else if (arg.startsWith("-")) {
-                stdErr.printf((MSG_INVALID_OPTION) + "%n", arg);
-                return;
+                context.stdErr().printf((MSG_INVALID_OPTION) + "%n", arg);
+                return 1;
             }
         }
 
-        displayHistory(skipAmount);
+        displayHistory(stdOut, from);
+        return 0;
     }
 
     /**
@@ -150,7 +182,7 @@ public class History extends Command {
      * </p>
      *
      * <p>
-     * <b>FILE_HISTORY_MAX_ENTRIES limit:</b> If the in-memory history exceeds this limit,
+     * <b>FILE_HISTORY_MAX_ENTRIES limit:</b> If the shown history exceeds this limit,
      * only the most recent entries are written (older entries are truncated).
      * This mirrors bash's {@code HISTFILESIZE} behavior.
      * </p>
@@ -160,25 +192,15 @@ public class History extends Command {
      * calls won't duplicate these entries.
      * </p>
      *
+     * @param stdOut   where to report the result
      * @param filename path to the target file
      * @throws IOException if the file cannot be written
      */
-    private void writeHistoryToFile(String filename) throws IOException {
-        Path filePath = Path.of(filename);
-        int skipAmount = Math.max(0, HISTORY.size() - FILE_HISTORY_MAX_ENTRIES);
-
-        try (BufferedWriter writer = Files.newBufferedWriter(filePath)) {
-            int currentIndex = 0;
-            for (var entry : HISTORY) {
-                if (currentIndex >= skipAmount) {
-                    writer.write(entry.line());
-                    writer.newLine();
-                }
-                currentIndex++;
-            }
-        }
+    private void writeHistoryToFile(PrintStream stdOut, String filename) throws IOException {
+        int from = HISTORY.last() + 1 - FILE_HISTORY_MAX_ENTRIES;
+        HISTORY.writeLines(Path.of(filename), from, StandardOpenOption.TRUNCATE_EXISTING);
 
-        historyWrittenCount = HISTORY.size();
+        historyWrittenCount = HISTORY.last() + 1;
         stdOut.printf((MSG_WRITTEN_TO_FILE) + "%n", filename);
     }
 
@@ -190,7 +212,7 @@ public class History extends Command {
      * </p>
      *
      * <p>
-     * Any entry with index >= {@code historyWrittenCount} is considered new. This includes:
+     * Any shown entry with index >= {@code historyWrittenCount} is considered new. This includes:
      * <ul>
      *   <li>Commands executed in the current session after the last write</li>
      *   <li>Entries loaded via {@code -r} (if historyWrittenCount wasn't updated - but we do update it)</li>
@@ -202,35 +224,22 @@ public class History extends Command {
      * The file may grow beyond the limit. Use {@code -w} periodically to truncate.
      * </p>
      *
+     * @param stdOut   where to report the result
      * @param filename path to the target file (created if doesn't exist)
      * @throws IOException if the file cannot be written
      */
-    private void appendHistoryToFile(String filename) throws IOException {
-        Path filePath = Path.of(filename);
-
-        int newCommandsCount = HISTORY.size() - historyWrittenCount;
+    private void appendHistoryToFile(PrintStream stdOut, String filename) throws IOException {
+        int from = Math.max(historyWrittenCount, HISTORY.first());
+        int newCommandsCount = HISTORY.last() + 1 - from;
 
         if (newCommandsCount <= 0) {
             stdOut.println(MSG_NO_NEW_COMMANDS);
             return;
         }
 
-        try (BufferedWriter writer = Files.newBufferedWriter(
-                filePath,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.APPEND)) {
+        HISTORY.writeLines(Path.of(filename), from, StandardOpenOption.APPEND);
 
-            int currentIndex = 0;
-            for (var entry : HISTORY) {
-                if (currentIndex >= historyWrittenCount) {
-                    writer.write(entry.line());
-                    writer.newLine();
-                }
-                currentIndex++;
-            }
-        }
-
-        historyWrittenCount = HISTORY.size();
+        historyWrittenCount = HISTORY.last() + 1;
         stdOut.printf((MSG_APPENDED_TO_FILE) + "%n", newCommandsCount, filename);
     }
 
@@ -245,7 +254,7 @@ public class History extends Command {
      * <b>Important behaviors:</b>
      * <ul>
      *   <li>Entries are APPENDED to existing history, not replaced</li>
-     *   <li>Loading stops if IN_MEMORY_HISTORY_MAX_ENTRIES limit is reached</li>
+     *   <li>The file is streamed, so there is no limit on its size</li>
      * </ul>
      * </p>
      *
@@ -255,26 +264,22 @@ public class History extends Command {
      * after this method returns.
      * </p>
      *
+     * @param stdOut   where to report the result
      * @param filename path to the source file
      * @throws IOException if the file cannot be read
      */
-    private void loadHistoryFromFile(String filename) throws IOException {
+    private void loadHistoryFromFile(PrintStream stdOut, String filename) throws IOException {
         Path filePath = Path.of(filename);
         if (!Files.exists(filePath)) {
             stdOut.printf((MSG_FILE_NOT_FOUND) + "%n", filename);
             return;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+        try (BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8)) {
             String line;
             int loadedCount = 0;
-            int currentSize = HISTORY.size();
 
             while ((line = reader.readLine()) != null) {
-                if (currentSize + loadedCount >= IN_MEMORY_HISTORY_MAX_ENTRIES) {
-                    stdOut.println(MSG_MEMORY_LIMIT_REACHED);
-                    break;
-                }
                 HISTORY.add(line);
                 loadedCount++;
             }
@@ -283,6 +288,76 @@ public class History extends Command {
         }
     }
 
+    /**
+     * Answers {@code --stats}, {@code --slowest} and {@code --dir} from the execution records.
+     *
+     * <p>
+     * Example output of {@code history --slowest 2}, with the entry number, duration and exit status:
+     * <pre>
+     *     42    3m07s    0  mvn verify
+     *     17    41.2s    1  ./gradlew test
+     * </pre>
+     * </p>
+     *
+     * @param context streams of this invocation
+     * @param option  {@code --stats}, {@code --slowest} or {@code --dir}
+     * @param count   number of commands to list for {@code --stats} and {@code --slowest}
+     * @param dir     directory for {@code --dir}
+     * @return exit status
+     * @throws IOException if the directory table cannot be read
+     */
+    private int query(ExecutionContext context, String option, int count, Path dir) throws IOException {
+        ExecutionLog executions = HISTORY.executions();
+        if (executions == null) {
+            context.stdErr().println(MSG_NO_RECORDS);
+            return 1;
+        }
+        PrintStream stdOut = context.stdOut();
+        switch (option) {
+            case "--slowest" -> executions.slowest(count, 0).forEach(execution ->
+                    stdOut.printf("%6d  %7s  %3d  %s%n", execution.index() + 1, format(execution.duration()),
+                            execution.status(), HISTORY.command(execution.index())));
+            case "--dir" -> {
+                for (int index : executions.runIn(dir, 0)) {
+                    stdOut.println("    " + (index + 1) + "  " + HISTORY.command(index));
+                }
+            }
+            default -> {
+                List<ExecutionLog.Summary> summaries = executions.summarize(0, HISTORY::command);
+                ExecutionLog.Summary all = summaries.getFirst();
+                stdOut.printf("runs     %d%n", all.count());
+                stdOut.printf("failed   %d%n", all.failed());
+                stdOut.printf("total    %s%n", format(all.total()));
+                stdOut.printf("mean     %s%n", format(all.mean()));
+                stdOut.printf("longest  %s%n", format(all.longest()));
+                if (summaries.size() > 1 && count > 0) {
+                    stdOut.println();
+                    stdOut.printf("%-16s %7s %7s %8s %8s%n", "command", "runs", "failed", "total", "mean");
+                    summaries.stream().skip(1).limit(count).forEach(summary ->
+                            stdOut.printf("%-16s %7d %7d %8s %8s%n", summary.name(), summary.count(),
+                                    summary.failed(), format(summary.total()), format(summary.mean())));
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Formats a duration the way {@code time} would at a glance: {@code 350ms}, {@code 4.2s},
+     * {@code 3m07s} or {@code 2h05m}.
+     */
+    static String format(Duration duration) {
+        long millis = duration.toMillis();
+        if (millis < 1000) {
+            return millis + "ms";
+        } else if (millis < 60_000) {
+            return String.format("%.1fs", millis / 1000.0);
+        } else if (millis < 3_600_000) {
+            return String.format("%dm%02ds", millis / 60_000, millis / 1000 % 60);
+        }
+        return String.format("%dh%02dm", millis / 3_600_000, millis / 60_000 % 60);
+    }
+
     /**
      * Displays history entries to stdout with line numbers.
      *
@@ -304,14 +379,11 @@ public class History extends Command {
      * </pre>
      * </p>
      *
-     * @param skipAmount number of oldest entries to skip (for "history N" behavior)
+     * @param stdOut where to print the entries
+     * @param from   number of the first entry to print (for "history N" behavior)
      */
-    private void displayHistory(int skipAmount) {
-        var iterator = HISTORY.iterator();
-
-        for (int i = 0; i < skipAmount && iterator.hasNext(); i++) {
-            iterator.next();
-        }
+    private void displayHistory(PrintStream stdOut, int from) {
+        var iterator = HISTORY.iterator(from);
 
         while (iterator.hasNext()) {
             var entry = iterator.next();
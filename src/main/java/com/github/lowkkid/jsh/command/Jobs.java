@@ -0,0 +1,61 @@
+package com.github.lowkkid.jsh.command;
+
+import com.github.lowkkid.jsh.executor.Job;
+import com.github.lowkkid.jsh.executor.JobSupervisor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Built-in {@code jobs} command, lists background jobs.
+ *
+ * <h3>Usage</h3>
+ * <ul>
+ *   <li>{@code jobs} — print every job with its state, e.g. {@code [1]+  Running   sleep 10 &}.</li>
+ *   <li>{@code jobs %n ...} — print only the given jobs.</li>
+ *   <li>{@code jobs -p} — print the process ids of the jobs instead.</li>
+ * </ul>
+ *
+ * <p>Finished jobs are removed from the job table once they have been listed.
+ */
+public class Jobs extends Command {
+
+    @Override
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
+        JobSupervisor jobSupervisor = context.jobs().get();
+        boolean pidsOnly = false;
+        List<Job> selected = new ArrayList<>();
+
+        for (String arg : args) {
+            if ("-p".equals(arg)) {
+                pidsOnly = true;
+            } else if (arg.startsWith("-")) {
+                context.stdErr().println("jobs: " + arg + ": invalid option");
+                return 1;
+            } else {
+                var job = jobSupervisor.find(arg);
+                if (job.isEmpty()) {
+                    context.stdErr().println("jobs: " + arg + ": no such job");
+                    return 1;
+                }
+                selected.add(job.get());
+            }
+        }
+        if (selected.isEmpty()) {
+            selected.addAll(jobSupervisor.jobs());
+        }
+
+        for (Job job : selected) {
+            if (pidsOnly) {
+                job.processes().forEach(process -> context.stdOut().println(process.pid()));
+            } else {
+                context.stdOut().println(jobSupervisor.describe(job));
+            }
+        }
+        for (Job job : selected) {
+            if (job.state() == Job.State.DONE) {
+                jobSupervisor.forget(job);
+            }
+        }
+        return 0;
+    }
+}
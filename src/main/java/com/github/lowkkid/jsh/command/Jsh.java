@@ -1,9 +1,11 @@
 package com.github.lowkkid.jsh.command;
 
-import com.github.lowkkid.jsh.Main;
 import com.github.lowkkid.jsh.command.utils.CommandRegistry;
+import com.github.lowkkid.jsh.parser.InputParser;
+import com.github.lowkkid.jsh.parser.ParseCache;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
 import java.net.InetAddress;
 import java.util.List;
 import java.util.Properties;
@@ -32,10 +34,11 @@ public class Jsh extends Command {
     private static final String PADDING = " ".repeat(LOGO_WIDTH);
 
     @Override
-    public void executeWithException(List<String> args) throws Exception {
+    public int executeWithException(ExecutionContext context, List<String> args) throws Exception {
         String version = loadVersion();
-        String[] infoLines = buildInfoLines(version);
+        String[] infoLines = buildInfoLines(version, context.workingDirectory().toString());
 
+        PrintStream stdOut = context.stdOut();
         stdOut.println();
         int maxLines = Math.max(LOGO.length, infoLines.length);
         for (int i = 0; i < maxLines; i++) {
@@ -45,9 +48,10 @@ public class Jsh extends Command {
             stdOut.println(logoPadded + "  " + infoPart);
         }
         stdOut.println();
+        return 0;
     }
 
-    private String[] buildInfoLines(String version) {
+    private String[] buildInfoLines(String version, String workingDir) {
         String user = System.getProperty("user.name");
         String hostname = getHostname();
         String title = " " + BOLD_CYAN + user + WHITE + "@" + BOLD_CYAN + hostname + RESET;
@@ -57,8 +61,8 @@ public class Jsh extends Command {
         String kernel = System.getProperty("os.arch");
         String java = System.getProperty("java.version");
         String terminal = System.getenv("TERM") != null ? System.getenv("TERM") : "unknown";
-        String workingDir = Main.currentDir.toString();
         int builtIns = CommandRegistry.getInstance().getBuiltInCommandCount();
+        ParseCache parseCache = InputParser.getInstance().cache();
         String colorPalette = buildColorPalette();
 
         return new String[] {
@@ -71,6 +75,7 @@ public class Jsh extends Command {
             infoLine("Terminal", terminal),
             infoLine("Working Dir", workingDir),
             infoLine("Built-ins", String.valueOf(builtIns)),
+            infoLine("Parse cache", parseCache.hits() + " hits, " + parseCache.misses() + " misses"),
             "",
             colorPalette,
         };
@@ -0,0 +1,77 @@
+package com.github.lowkkid.jsh.command;
+
+import com.github.lowkkid.jsh.executor.JobSupervisor;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Built-in {@code kill} command, sends a signal to jobs or processes.
+ *
+ * <h3>Usage</h3>
+ * <ul>
+ *   <li>{@code kill %n} — terminate every process of job {@code n} (and their descendants).</li>
+ *   <li>{@code kill pid} — terminate a process.</li>
+ *   <li>{@code kill -9 %n}, {@code kill -KILL %n}, {@code kill -s STOP %n} — send a specific signal.
+ *       {@code STOP} and {@code CONT} also update the state shown by {@code jobs}.</li>
+ * </ul>
+ */
+public class Kill extends Command {
+
+    private static final String USAGE = "kill: usage: kill [-s sigspec | -sigspec] pid | jobspec ...";
+
+    @Override
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
+        String signal = "TERM";
+        int first = 0;
+        if (!args.isEmpty() && "-s".equals(args.getFirst())) {
+            if (args.size() < 2) {
+                context.stdErr().println(USAGE);
+                return 1;
+            }
+            signal = args.get(1);
+            first = 2;
+        } else if (!args.isEmpty() && args.getFirst().startsWith("-") && args.getFirst().length() > 1) {
+            signal = args.getFirst().substring(1);
+            first = 1;
+        }
+
+        List<String> targets = args.subList(first, args.size());
+        if (targets.isEmpty()) {
+            context.stdErr().println(USAGE);
+            return 1;
+        }
+
+        JobSupervisor jobSupervisor = context.jobs().get();
+        int status = 0;
+        for (String target : targets) {
+            if (target.startsWith("%")) {
+                var job = jobSupervisor.find(target);
+                if (job.isEmpty()) {
+                    context.stdErr().println("kill: " + target + ": no such job");
+                    status = 1;
+                } else if (!jobSupervisor.signal(job.get(), signal)) {
+                    context.stdErr().println(
+                            "kill: " + target + ": job runs built-in commands and cannot be signalled");
+                    status = 1;
+                }
+            } else {
+                Optional<ProcessHandle> process = parsePid(target).flatMap(ProcessHandle::of);
+                if (process.isEmpty()) {
+                    context.stdErr().println("kill: (" + target + ") - No such process");
+                    status = 1;
+                } else {
+                    jobSupervisor.signal(process.get(), signal);
+                }
+            }
+        }
+        return status;
+    }
+
+    private Optional<Long> parsePid(String target) {
+        try {
+            return Optional.of(Long.parseLong(target));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
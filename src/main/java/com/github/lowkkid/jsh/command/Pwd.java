@@ -1,13 +1,12 @@
 package com.github.lowkkid.jsh.command;
 
-import com.github.lowkkid.jsh.Main;
 import java.util.List;
 
 public class Pwd extends Command {
 
     @Override
-    public void executeWithException(List<String> args) {
-        stdOut.println(Main.currentDir.toString());
-
+    public int executeWithException(ExecutionContext context, List<String> args) {
+        context.stdOut().println(context.workingDirectory().toString());
+        return 0;
     }
 }
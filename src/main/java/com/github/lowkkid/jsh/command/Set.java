@@ -21,7 +21,7 @@ import java.util.List;
 public class Set extends Command {
 
     @Override
-    protected void executeWithException(List<String> args) throws Exception {
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
         for (String arg : args) {
             int eqIndex = arg.indexOf('=');
             if (eqIndex <= 0) {
@@ -29,7 +29,8 @@ public class Set extends Command {
             }
             String key = arg.substring(0, eqIndex);
             String value = arg.substring(eqIndex + 1);
-            EnvStorage.putShell(key, value);
+            context.shell().variables().putShell(key, value);
         }
+        return 0;
     }
 }
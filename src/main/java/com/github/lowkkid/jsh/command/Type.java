@@ -1,37 +1,47 @@
 package com.github.lowkkid.jsh.command;
 
 import com.github.lowkkid.jsh.command.utils.CommandRegistry;
-import com.github.lowkkid.jsh.utils.FileUtils;
+import com.github.lowkkid.jsh.config.env.ShellState;
+import com.github.lowkkid.jsh.utils.PathIndex;
 import java.util.List;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public class Type extends Command {
 
     private final CommandRegistry registry;
-    private final Function<String, String> pathLookup;
+    /** Resolves a name in the {@code PATH} of the shell running the command. */
+    private final BiFunction<ShellState, String, String> pathLookup;
 
     public Type(CommandRegistry registry) {
-        this(registry, FileUtils::existsInPathDirectories);
+        this(registry, (shell, name) -> PathIndex.forShell(shell).lookup(name));
     }
 
     public Type(CommandRegistry registry, Function<String, String> pathLookup) {
+        this(registry, (shell, name) -> pathLookup.apply(name));
+    }
+
+    private Type(CommandRegistry registry, BiFunction<ShellState, String, String> pathLookup) {
         this.registry = registry;
         this.pathLookup = pathLookup;
     }
 
     @Override
-    public void executeWithException(List<String> args) {
-        args.forEach((arg) -> {
+    public int executeWithException(ExecutionContext context, List<String> args) {
+        int status = 0;
+        for (String arg : args) {
             if (registry.isBultInCommand(arg)) {
-                stdOut.println(arg + " is a shell builtin");
+                context.stdOut().println(arg + " is a shell builtin");
             } else {
-                String cmdDir = pathLookup.apply(arg);
+                String cmdDir = pathLookup.apply(context.shell(), arg);
                 if (cmdDir != null) {
-                    stdOut.println(arg + " is " + cmdDir);
+                    context.stdOut().println(arg + " is " + cmdDir);
                 } else {
-                    stdOut.println(arg + ": not found");
+                    context.stdOut().println(arg + ": not found");
+                    status = 1;
                 }
             }
-        });
+        }
+        return status;
     }
 }
@@ -1,6 +1,5 @@
 package com.github.lowkkid.jsh.command;
 
-import com.github.lowkkid.jsh.config.env.AliasStorage;
 import java.util.List;
 
 /**
@@ -15,16 +14,19 @@ import java.util.List;
 public class Unalias extends Command {
 
     @Override
-    protected void executeWithException(List<String> args) throws Exception {
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
         if (args.isEmpty()) {
-            stdErr.println("unalias: usage: unalias name [name ...]");
-            return;
+            context.stdErr().println("unalias: usage: unalias name [name ...]");
+            return 1;
         }
 
+        int status = 0;
         for (String name : args) {
-            if (!AliasStorage.remove(name)) {
-                stdErr.println("unalias: " + name + ": not found");
+            if (!context.shell().aliases().remove(name)) {
+                context.stdErr().println("unalias: " + name + ": not found");
+                status = 1;
             }
         }
+        return status;
     }
 }
@@ -18,9 +18,10 @@ import java.util.List;
 public class Unset extends Command {
 
     @Override
-    protected void executeWithException(List<String> args) throws Exception {
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
         for (String arg : args) {
-            EnvStorage.delete(arg);
+            context.shell().variables().delete(arg);
         }
+        return 0;
     }
 }
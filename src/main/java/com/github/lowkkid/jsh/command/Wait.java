@@ -0,0 +1,55 @@
+package com.github.lowkkid.jsh.command;
+
+import static com.github.lowkkid.jsh.utils.StringUtils.isInteger;
+
+import com.github.lowkkid.jsh.executor.Job;
+import com.github.lowkkid.jsh.executor.JobSupervisor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Built-in {@code wait} command, waits for background jobs to finish.
+ *
+ * <h3>Usage</h3>
+ * <ul>
+ *   <li>{@code wait} — wait for every background job.</li>
+ *   <li>{@code wait %n ...} — wait for the given jobs.</li>
+ *   <li>{@code wait pid ...} — wait for the jobs containing the given processes.</li>
+ * </ul>
+ */
+public class Wait extends Command {
+
+    @Override
+    protected int executeWithException(ExecutionContext context, List<String> args) throws Exception {
+        JobSupervisor jobSupervisor = context.jobs().get();
+        if (args.isEmpty()) {
+            for (Job job : new ArrayList<>(jobSupervisor.jobs())) {
+                jobSupervisor.waitFor(job);
+            }
+            return 0;
+        }
+
+        int status = 0;
+        for (String arg : args) {
+            Optional<Job> job = isInteger(arg) ? findByPid(jobSupervisor, Long.parseLong(arg))
+                                               : jobSupervisor.find(arg);
+            if (job.isPresent()) {
+                status = jobSupervisor.waitFor(job.get());
+            } else if (isInteger(arg)) {
+                context.stdErr().println("wait: pid " + arg + " is not a child of this shell");
+                status = 1;
+            } else {
+                context.stdErr().println("wait: " + arg + ": no such job");
+                status = 1;
+            }
+        }
+        return status;
+    }
+
+    private Optional<Job> findByPid(JobSupervisor jobSupervisor, long pid) {
+        return jobSupervisor.jobs().stream()
+                .filter(job -> job.processes().stream().anyMatch(process -> process.pid() == pid))
+                .findFirst();
+    }
+}
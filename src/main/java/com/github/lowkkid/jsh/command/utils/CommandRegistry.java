@@ -1,6 +1,7 @@
 package com.github.lowkkid.jsh.command.utils;
 
 import com.github.lowkkid.jsh.command.Alias;
+import com.github.lowkkid.jsh.command.Bg;
 import com.github.lowkkid.jsh.command.Cd;
 import com.github.lowkkid.jsh.command.Command;
 import com.github.lowkkid.jsh.command.Dc;
@@ -8,36 +9,45 @@ import com.github.lowkkid.jsh.command.Echo;
 import com.github.lowkkid.jsh.command.Exit;
 import com.github.lowkkid.jsh.command.Export;
 import com.github.lowkkid.jsh.command.ExternalCommand;
+import com.github.lowkkid.jsh.command.Fg;
+import com.github.lowkkid.jsh.command.Hash;
 import com.github.lowkkid.jsh.command.History;
+import com.github.lowkkid.jsh.command.Jobs;
+import com.github.lowkkid.jsh.command.Kill;
 import com.github.lowkkid.jsh.command.Pwd;
 import com.github.lowkkid.jsh.command.Type;
 import com.github.lowkkid.jsh.command.Unalias;
 import com.github.lowkkid.jsh.command.Unset;
-import com.github.lowkkid.jsh.utils.FileUtils;
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import com.github.lowkkid.jsh.command.Wait;
+import com.github.lowkkid.jsh.config.env.ShellState;
+import com.github.lowkkid.jsh.utils.PathIndex;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Singleton registry for shell commands (both built-in and external).
  *
  * <p>This class manages command registration, caching, and lookup for the shell.
  * Built-in commands are registered manually at startup, external commands found
- * in PATH are lazily cached.
+ * in PATH are resolved through the {@link PathIndex} and lazily cached. A shell with a {@code PATH}
+ * of its own, e.g. a daemon session, resolves them in its own {@code PATH}, see
+ * {@link #getExecutableCommand(String, ShellState)}.
  *
  * <h2>Caching Strategy</h2>
  *
  * <p>External commands are cached using an LRU (Least Recently Used) eviction policy
  * with a maximum capacity of {@value #MAX_EXTERNAL_COMMANDS_CACHE} entries.
- * Built-in commands are never evicted from the cache.
+ * Built-in commands are kept apart in an immutable map and never evicted.
+ *
+ * <h2>Thread Safety</h2>
+ *
+ * <p>The registry is shared by pipeline segments, background jobs and daemon sessions running
+ * at the same time. Built-ins are read without locking; since every lookup of an access-order
+ * map changes it, the external command cache is only touched while holding its lock.
  *
  * <h2>Usage Example</h2>
  * <pre>{@code
@@ -75,13 +85,16 @@ public class CommandRegistry {
         return CommandRegistryHolder.INSTANCE;
     }
 
+    /** Built-in commands by name, immutable once the registry is created. */
+    private final Map<String, Command> builtIns;
+
     /**
-     * LRU cache of executable commands (both built-in and external).
-     * Uses access-order LinkedHashMap with automatic eviction of eldest external commands.
+     * LRU cache of external commands, guarded by itself.
+     * Uses access-order LinkedHashMap with automatic eviction of the eldest command.
      */
-    private final Map<String, Command> executableCommands;
+    private final Map<String, Command> externalCommands;
 
-    /** Set of built-in command names (protected from cache eviction). */
+    /** Set of built-in command names. */
     private final Set<String> builtInCommands;
 
     /**
@@ -92,19 +105,30 @@ public class CommandRegistry {
      *   <li>Access-order iteration (most recently accessed elements at the end)</li>
      *   <li>Automatic eviction of least recently used external commands when size
      *       exceeds {@value #MAX_EXTERNAL_COMMANDS_CACHE}</li>
-     *   <li>Protection for built-in commands (never evicted)</li>
      * </ul>
      */
     private CommandRegistry() {
-        this.builtInCommands = new HashSet<>();
-        this.executableCommands = new LinkedHashMap<>(16, 0.75f, true) {
+        Map<String, Command> registered = new HashMap<>();
+        registerBuiltInCommands(registered);
+        this.builtIns = Map.copyOf(registered);
+        this.builtInCommands = builtIns.keySet();
+        this.externalCommands = new LinkedHashMap<>(16, 0.75f, true) {
             @Override
             protected boolean removeEldestEntry(Map.Entry<String, Command> eldest) {
-                return size() > MAX_EXTERNAL_COMMANDS_CACHE
-                        && !builtInCommands.contains(eldest.getKey());
+                return size() > MAX_EXTERNAL_COMMANDS_CACHE;
             }
         };
-        registerBuiltInCommands();
+    }
+
+    /**
+     * Retrieves a command by name from the interactive shell's {@code PATH}, see
+     * {@link #getExecutableCommand(String, ShellState)}.
+     *
+     * @param name the command name to look up (e.g., "ls", "cd", "grep")
+     * @return an {@link Optional} containing the command if found, or empty if not found
+     */
+    public Optional<Command> getExecutableCommand(String name) {
+        return getExecutableCommand(name, ShellState.global());
     }
 
     /**
@@ -112,35 +136,47 @@ public class CommandRegistry {
      *
      * <p>Lookup order:
      * <ol>
-     *   <li>Check the internal cache</li>
-     *   <li>If command is not found in cache, search for executable in PATH directories</li>
-     *   <li>If found, create {@link ExternalCommand} and cache it</li>
+     *   <li>Built-in commands are returned directly</li>
+     *   <li>Otherwise the name is resolved in the shell's {@code PATH}, see {@link PathIndex#forShell(ShellState)}</li>
+     *   <li>If found, the cached {@link ExternalCommand} is returned, or a new one is created and cached</li>
      * </ol>
      *
-     * <p>Accessing a cached command updates its position in the LRU order.
+     * <p>Accessing a cached command updates its position in the LRU order. Safe to call from
+     * several threads at once.
      *
-     * @param name the command name to look up (e.g., "ls", "cd", "grep")
+     * @param name  the command name to look up (e.g., "ls", "cd", "grep")
+     * @param shell the shell running the command
      * @return an {@link Optional} containing the command if found, or empty if not found
      */
-    public Optional<Command> getExecutableCommand(String name) {
-        return Optional.ofNullable(executableCommands.get(name))
-                .or(() -> {
-                    var externalPath = FileUtils.existsInPathDirectories(name);
-                    if (externalPath != null) {
-                        var externalExecutableCommand = new ExternalCommand(name);
-                        putExecutableCommand(name, externalExecutableCommand);
-                        return Optional.of(externalExecutableCommand);
-
-                    }
-                    return Optional.empty();
-                });
+    public Optional<Command> getExecutableCommand(String name, ShellState shell) {
+        Command builtIn = builtIns.get(name);
+        if (builtIn != null) {
+            return Optional.of(builtIn);
+        }
+        if (PathIndex.forShell(shell).lookup(name) == null) {
+            return Optional.empty();
+        }
+        synchronized (externalCommands) {
+            return Optional.of(externalCommands.computeIfAbsent(name, ExternalCommand::new));
+        }
+    }
+
+    /**
+     * Checks whether a command can be executed, without touching the cache
+     * or the {@code hash} statistics. Intended for per-keystroke callers such as the highlighter.
+     *
+     * @param name the command name
+     * @return {@code true} if the command is a built-in or an executable on {@code PATH}
+     */
+    public boolean isKnownCommand(String name) {
+        return builtInCommands.contains(name) || PathIndex.getInstance().contains(name);
     }
 
     /**
      * Checks if the given command is a built-in shell command.
      *
      * <p>Built-in commands are implemented in Java and registered in {@link #registerBuiltInCommands()}.
-     * They have special handling (e.g., never evicted from cache, can modify shell state).
+     * They have special handling (e.g., never evicted, can modify shell state).
      *
      * @param command the command name to check
      * @return {@code true} if the command is built-in, {@code false} otherwise
@@ -152,72 +188,54 @@ public class CommandRegistry {
     /**
      * Returns all available commands (built-in + all executables in PATH).
      *
-     * <p>This method scans all directories in the PATH environment variable
-     * and collects names of executable files. Primarily used for tab-completion.
-     *
-     * <p><b>Note:</b> This is an expensive operation as it performs filesystem I/O.
-     * Results are not cached.
+     * <p>Primarily used for tab-completion. Executable names come from the {@link PathIndex},
+     * so no filesystem I/O happens unless a {@code PATH} directory has changed.
      *
      * @return a set of all available command names
      */
     public Set<String> getAllCommands() {
         Set<String> allCommands = new HashSet<>(builtInCommands);
-        String[] directoriesFromPathEnv = System.getenv("PATH").split(File.pathSeparator);
-
-        for (var directoryFromPathEnv : directoriesFromPathEnv) {
-            try (Stream<Path> contentOfDirectoryFromPathEnv = Files.list(Path.of(directoryFromPathEnv))) {
-                var found = contentOfDirectoryFromPathEnv
-                        .filter(Files::isExecutable)
-                        .map(path ->  path.getFileName().toString())
-                        .collect(Collectors.toSet());
-                allCommands.addAll(found);
-            } catch (IOException e) {
-                //ignored
-            }
-        }
+        allCommands.addAll(PathIndex.getInstance().commandNames());
         return allCommands;
     }
 
     /**
-     * Adds a command to the cache.
+     * Returns the names of all built-in commands.
      *
-     * @param name    the command name
-     * @param command the command instance
+     * @return unmodifiable set of built-in command names
      */
-    private void putExecutableCommand(String name, Command command) {
-        if (executableCommands.containsKey(name)) {
-            return;
-        }
-        executableCommands.put(name, command);
+    public Set<String> getBuiltInCommands() {
+        return builtInCommands;
     }
 
-
     public int getBuiltInCommandCount() {
         return builtInCommands.size();
     }
 
     /**
-     * Registers all built-in commands manually.
+     * Registers all built-in commands manually. Commands are stateless, so each instance serves
+     * every invocation, including concurrent ones.
      */
-    private void registerBuiltInCommands() {
-        registerBuiltIn("echo", new Echo());
-        registerBuiltIn("exit", new Exit());
-        registerBuiltIn("cd", new Cd());
-        registerBuiltIn("pwd", new Pwd());
-        registerBuiltIn("type", new Type(this));
-        registerBuiltIn("history", new History());
-        registerBuiltIn("export", new Export());
-        registerBuiltIn("set", new com.github.lowkkid.jsh.command.Set());
-        registerBuiltIn("dc", new Dc());
-        registerBuiltIn("unset", new Unset());
-        registerBuiltIn("alias", new Alias());
-        registerBuiltIn("unalias", new Unalias());
-        registerBuiltIn("jsh", new com.github.lowkkid.jsh.command.Jsh());
-    }
-
-    private void registerBuiltIn(String name, Command command) {
-        putExecutableCommand(name, command);
-        builtInCommands.add(name);
+    private void registerBuiltInCommands(Map<String, Command> registered) {
+        registered.put("echo", new Echo());
+        registered.put("exit", new Exit());
+        registered.put("cd", new Cd());
+        registered.put("pwd", new Pwd());
+        registered.put("type", new Type(this));
+        registered.put("history", new History());
+        registered.put("export", new Export());
+        registered.put("set", new com.github.lowkkid.jsh.command.Set());
+        registered.put("dc", new Dc());
+        registered.put("unset", new Unset());
+        registered.put("alias", new Alias());
+        registered.put("unalias", new Unalias());
+        registered.put("jsh", new com.github.lowkkid.jsh.command.Jsh());
+        registered.put("hash", new Hash());
+        registered.put("jobs", new Jobs());
+        registered.put("fg", new Fg());
+        registered.put("bg", new Bg());
+        registered.put("wait", new Wait());
+        registered.put("kill", new Kill());
     }
 
     /**
@@ -1,24 +1,26 @@
 package com.github.lowkkid.jsh.command.utils;
 
 import static com.github.lowkkid.jsh.config.env.EnvConfigReader.FILE_HISTORY_MAX_ENTRIES;
+import static com.github.lowkkid.jsh.config.env.EnvConfigReader.HISTORY_CONTROL;
 import static com.github.lowkkid.jsh.config.env.EnvConfigReader.HISTORY_FILE;
 import static com.github.lowkkid.jsh.config.env.EnvConfigReader.INCREMENTAL_APPEND_HISTORY;
 import static com.github.lowkkid.jsh.config.env.EnvConfigReader.IN_MEMORY_HISTORY_MAX_ENTRIES;
 
-import org.jline.reader.History;
+import com.github.lowkkid.jsh.history.ShellHistory;
+import java.util.Arrays;
+import java.util.Set;
 import org.jline.reader.LineReader;
 import org.jline.reader.LineReaderBuilder;
-import org.jline.reader.impl.history.DefaultHistory;
 
 public final class HistoryUtils {
 
     private HistoryUtils() {}
 
-    public static final History HISTORY;
+    public static final ShellHistory HISTORY;
     public static int initialHistorySize = 0;
 
     static {
-        HISTORY = new DefaultHistory();
+        HISTORY = new ShellHistory();
     }
 
     public static void configureHistory(LineReaderBuilder readerBuilder) {
@@ -28,10 +30,27 @@ public final class HistoryUtils {
                 .variable(LineReader.HISTORY_FILE_SIZE, FILE_HISTORY_MAX_ENTRIES)
                 .option(LineReader.Option.HISTORY_INCREMENTAL, INCREMENTAL_APPEND_HISTORY)
                 .option(LineReader.Option.DISABLE_EVENT_EXPANSION, true);
+        if (HISTORY_CONTROL != null) {
+            configureHistoryControl(readerBuilder, HISTORY_CONTROL);
+        }
     }
 
-    public static void afterInitialization() {
-        initialHistorySize = HISTORY.size();
+    /**
+     * Applies a bash-style {@code HISTCONTROL} value, a colon-separated list of {@code ignorespace},
+     * {@code ignoredups}, {@code ignoreboth} and {@code erasedups}. Modes not listed are turned off;
+     * without the variable, JLine's defaults ignore both leading spaces and repeated lines.
+     */
+    static void configureHistoryControl(LineReaderBuilder readerBuilder, String control) {
+        Set<String> modes = Set.copyOf(Arrays.asList(control.split(":")));
+        boolean both = modes.contains("ignoreboth");
+        readerBuilder.option(LineReader.Option.HISTORY_IGNORE_SPACE, both || modes.contains("ignorespace"))
+                .option(LineReader.Option.HISTORY_IGNORE_DUPS, both || modes.contains("ignoredups"))
+                .variable(ShellHistory.ERASE_DUPS, modes.contains("erasedups"));
+    }
+
+    public static void afterInitialization(LineReader reader) {
+        HISTORY.attach(reader);
+        initialHistorySize = HISTORY.last() + 1;
         com.github.lowkkid.jsh.command.History.initLastAppendedIndex();
     }
 }
@@ -1,14 +1,17 @@
 package com.github.lowkkid.jsh.config.env;
 
-import java.util.Collections;
-import java.util.HashMap;
+import com.github.lowkkid.jsh.parser.AliasTable;
 import java.util.Map;
 
 /**
  * Static storage for shell aliases.
  *
  * <p>An alias maps a short name to a command string that may include
- * arguments, pipes, and redirects. Aliases are expanded before input parsing.
+ * arguments, pipes, and redirects. Values are kept tokenized, with chains of aliases
+ * already resolved, in an {@link AliasTable}; the parser expands them while parsing.
+ *
+ * <p>These are the aliases of the interactive shell, held in an {@link Aliases} instance, see
+ * {@link #aliases()}. Subshells and daemon sessions work on copies of them.
  *
  * @see com.github.lowkkid.jsh.parser.InputParser
  */
@@ -16,7 +19,17 @@ public final class AliasStorage {
 
     private AliasStorage() {}
 
-    private static final Map<String, String> aliases = new HashMap<>();
+    private static final Aliases ALIASES = new Aliases();
+
+    /**
+     * Returns the aliases of the interactive shell, which the static methods of this class
+     * read and change.
+     *
+     * @return the shell's aliases
+     */
+    public static Aliases aliases() {
+        return ALIASES;
+    }
 
     /**
      * Retrieves the value of an alias.
@@ -25,7 +38,17 @@ public final class AliasStorage {
      * @return the alias value, or {@code null} if not defined
      */
     public static String get(String name) {
-        return aliases.get(name);
+        return ALIASES.get(name);
+    }
+
+    /**
+     * Retrieves the tokenized and resolved value of an alias, for the parser.
+     *
+     * @param name alias name
+     * @return the expansion, or {@code null} if not defined
+     */
+    public static AliasTable.Expansion expansion(String name) {
+        return ALIASES.expansion(name);
     }
 
     /**
@@ -35,7 +58,7 @@ public final class AliasStorage {
      * @param value the command string to expand to
      */
     public static void put(String name, String value) {
-        aliases.put(name, value);
+        ALIASES.put(name, value);
     }
 
     /**
@@ -45,7 +68,7 @@ public final class AliasStorage {
      * @return {@code true} if the alias existed and was removed
      */
     public static boolean remove(String name) {
-        return aliases.remove(name) != null;
+        return ALIASES.remove(name);
     }
 
     /**
@@ -55,22 +78,50 @@ public final class AliasStorage {
      * @return {@code true} if the alias exists
      */
     public static boolean contains(String name) {
-        return aliases.containsKey(name);
+        return ALIASES.contains(name);
     }
 
     /**
-     * Returns an unmodifiable view of all aliases.
+     * Returns all aliases.
      *
-     * @return unmodifiable map of alias name to value
+     * @return unmodifiable copy of alias names and values
      */
     public static Map<String, String> getAll() {
-        return Collections.unmodifiableMap(aliases);
+        return ALIASES.getAll();
+    }
+
+    /**
+     * Returns the version of the alias table, which changes whenever an alias is added,
+     * changed or removed.
+     *
+     * @return the current version
+     */
+    public static int version() {
+        return ALIASES.version();
+    }
+
+    /**
+     * Captures all aliases, so they can be put back with {@link #restore(Map)}.
+     *
+     * @return an immutable copy of the aliases
+     */
+    public static Map<String, String> snapshot() {
+        return Map.copyOf(ALIASES.getAll());
+    }
+
+    /**
+     * Replaces all aliases with the ones captured by {@link #snapshot()}.
+     *
+     * @param snapshot the aliases to restore
+     */
+    public static void restore(Map<String, String> snapshot) {
+        ALIASES.replaceAll(snapshot);
     }
 
     /**
      * Removes all aliases.
      */
     public static void reset() {
-        aliases.clear();
+        ALIASES.replaceAll(Map.of());
     }
 }
@@ -0,0 +1,150 @@
+package com.github.lowkkid.jsh.config.env;
+
+import com.github.lowkkid.jsh.parser.AliasTable;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The aliases of one shell: the interactive shell's own ({@link AliasStorage}), or those of a
+ * subshell or daemon session, which start as a {@link #copy()} and never change the original.
+ *
+ * <p>A copy shares the compiled {@link AliasTable} until either side defines or removes an alias;
+ * only then is the table compiled again for that side. Subshells, which rarely touch aliases,
+ * thus cost no copying.
+ *
+ * <p>The version identifies the content: it is drawn from a counter shared by all instances on
+ * every change, and kept by a copy. Trees parsed with one instance's aliases can thus be cached
+ * by version and reused for any instance with the same version, see
+ * {@link com.github.lowkkid.jsh.parser.ParseCache}.
+ */
+public final class Aliases {
+
+    private static final AtomicInteger VERSIONS = new AtomicInteger();
+
+    private AliasTable table;
+    /** Whether {@link #table} is shared with a copy and must be copied before it is changed. */
+    private boolean shared;
+    private volatile int version;
+
+    public Aliases() {
+        this(new AliasTable(), false, 0);
+    }
+
+    private Aliases(AliasTable table, boolean shared, int version) {
+        this.table = table;
+        this.shared = shared;
+        this.version = version;
+    }
+
+    /**
+     * Returns independent aliases with the same definitions, e.g. for a subshell.
+     *
+     * @return the copy
+     */
+    public synchronized Aliases copy() {
+        shared = true;
+        return new Aliases(table, true, version);
+    }
+
+    /**
+     * Retrieves the value of an alias.
+     *
+     * @param name alias name
+     * @return the alias value, or {@code null} if not defined
+     */
+    public synchronized String get(String name) {
+        return table.get(name);
+    }
+
+    /**
+     * Retrieves the tokenized and resolved value of an alias, for the parser.
+     *
+     * @param name alias name
+     * @return the expansion, or {@code null} if not defined
+     */
+    public synchronized AliasTable.Expansion expansion(String name) {
+        return table.expansion(name);
+    }
+
+    /**
+     * Creates or updates an alias.
+     *
+     * @param name  alias name
+     * @param value the command string to expand to
+     */
+    public synchronized void put(String name, String value) {
+        writableTable().put(name, value);
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Removes an alias.
+     *
+     * @param name alias name
+     * @return {@code true} if the alias existed and was removed
+     */
+    public synchronized boolean remove(String name) {
+        if (!table.contains(name)) {
+            return false;
+        }
+        writableTable().remove(name);
+        version = VERSIONS.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Checks whether an alias is defined.
+     *
+     * @param name alias name
+     * @return {@code true} if the alias exists
+     */
+    public synchronized boolean contains(String name) {
+        return table.contains(name);
+    }
+
+    /**
+     * Returns all aliases.
+     *
+     * @return unmodifiable copy of alias names and values
+     */
+    public synchronized Map<String, String> getAll() {
+        return table.values();
+    }
+
+    /**
+     * Returns the version of the aliases, which changes whenever an alias is added, changed
+     * or removed.
+     *
+     * @return the current version
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Replaces all aliases, unless they are the same already.
+     *
+     * @param values alias names and values
+     */
+    synchronized void replaceAll(Map<String, String> values) {
+        if (table.values().equals(values)) {
+            return;
+        }
+        if (shared) {
+            table = new AliasTable();
+            shared = false;
+        }
+        table.replaceAll(values);
+        version = VERSIONS.incrementAndGet();
+    }
+
+    private AliasTable writableTable() {
+        if (shared) {
+            var copy = new AliasTable();
+            copy.replaceAll(table.values());
+            table = copy;
+            shared = false;
+        }
+        return table;
+    }
+}
@@ -18,6 +18,7 @@ public final class EnvConfigReader {
     public static Integer IN_MEMORY_HISTORY_MAX_ENTRIES;
     public static Integer FILE_HISTORY_MAX_ENTRIES;
     public static Boolean INCREMENTAL_APPEND_HISTORY;
+    public static String HISTORY_CONTROL;
 
 
     static {
@@ -38,6 +39,7 @@ public final class EnvConfigReader {
                 : 2000;
         INCREMENTAL_APPEND_HISTORY = EnvStorage.get("INC_APPEND_HISTORY") == null
                 || Boolean.parseBoolean(EnvStorage.get("INC_APPEND_HISTORY"));
+        HISTORY_CONTROL = EnvStorage.get("JSH_HISTCONTROL");
 
     }
 }
@@ -1,7 +1,5 @@
 package com.github.lowkkid.jsh.config.env;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -17,6 +15,9 @@ import java.util.Map;
  * <p>Lookup priority: {@code shellVars} first, then {@code exportedVars}.
  * A variable exists in at most one map at any given time.
  *
+ * <p>These are the variables of the interactive shell, held in a {@link Variables} instance, see
+ * {@link #variables()}. Subshells and background jobs work on copies of them.
+ *
  * <h3>Behavior summary</h3>
  * <table>
  *   <tr><th>Action</th><th>Result</th></tr>
@@ -41,8 +42,17 @@ public final class EnvStorage {
 
     private EnvStorage() {}
 
-    private static final Map<String, String> exportedVars = new HashMap<>(System.getenv());
-    private static final Map<String, String> shellVars = new HashMap<>();
+    private static final Variables VARIABLES = new Variables(System.getenv(), Map.of());
+
+    /**
+     * Returns the variables of the interactive shell, which the static methods of this class
+     * read and change.
+     *
+     * @return the shell's variables
+     */
+    public static Variables variables() {
+        return VARIABLES;
+    }
 
     /**
      * Retrieves the value of a variable, checking {@code shellVars} first,
@@ -52,8 +62,7 @@ public final class EnvStorage {
      * @return the value, or {@code null} if the variable does not exist
      */
     public static String get(String key) {
-        String value = shellVars.get(key);
-        return value != null ? value : exportedVars.get(key);
+        return VARIABLES.get(key);
     }
 
     /**
@@ -66,8 +75,7 @@ public final class EnvStorage {
      * @param value variable value
      */
     public static void putExported(String key, String value) {
-        shellVars.remove(key);
-        exportedVars.put(key, value);
+        VARIABLES.putExported(key, value);
     }
 
     /**
@@ -81,11 +89,7 @@ public final class EnvStorage {
      * @param value variable value
      */
     public static void putShell(String key, String value) {
-        if (exportedVars.containsKey(key)) {
-            exportedVars.put(key, value);
-        } else {
-            shellVars.put(key, value);
-        }
+        VARIABLES.putShell(key, value);
     }
 
     /**
@@ -99,31 +103,46 @@ public final class EnvStorage {
      * @param key variable name
      */
     public static void markExported(String key) {
-        String value = shellVars.remove(key);
-        if (value != null) {
-            exportedVars.put(key, value);
-        } else if (!exportedVars.containsKey(key)) {
-            exportedVars.put(key, "");
-        }
+        VARIABLES.markExported(key);
     }
 
     /**
-     * Returns an unmodifiable view of the exported variables map.
+     * Returns an unmodifiable copy of the exported variables, as they are now.
      * Used for building the environment of child processes ({@link ProcessBuilder}).
      *
-     * @return unmodifiable view of exported variables
+     * @return unmodifiable exported variables
      */
     public static Map<String, String> getExportedVars() {
-        return Collections.unmodifiableMap(exportedVars);
+        return VARIABLES.getExportedVars();
+    }
+
+    /**
+     * Returns the exported variables as an immutable snapshot for starting child processes,
+     * rebuilt only if they changed since the last call.
+     *
+     * @return the current snapshot
+     */
+    public static ExportedEnvironment exportedEnvironment() {
+        return VARIABLES.exportedEnvironment();
+    }
+
+    /**
+     * Returns the version of the exported variables, which changes whenever one is added,
+     * changed or removed.
+     *
+     * @return the current version
+     */
+    public static int version() {
+        return VARIABLES.version();
     }
 
     /**
-     * Returns an unmodifiable view of the shell-only variables map.
+     * Returns an unmodifiable copy of the shell-only variables, as they are now.
      *
-     * @return unmodifiable view of shell variables
+     * @return unmodifiable shell variables
      */
     public static Map<String, String> getShellVars() {
-        return Collections.unmodifiableMap(shellVars);
+        return VARIABLES.getShellVars();
     }
 
     /**
@@ -132,8 +151,25 @@ public final class EnvStorage {
      * @param key variable name
      */
     public static void delete(String key) {
-        exportedVars.remove(key);
-        shellVars.remove(key);
+        VARIABLES.delete(key);
+    }
+
+    /**
+     * Captures all variables, so they can be put back with {@link #restore(Snapshot)}.
+     *
+     * @return an immutable copy of both maps
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot(VARIABLES.getExportedVars(), VARIABLES.getShellVars());
+    }
+
+    /**
+     * Replaces all variables with the ones captured by {@link #snapshot()}, in one step.
+     *
+     * @param snapshot the variables to restore
+     */
+    public static void restore(Snapshot snapshot) {
+        VARIABLES.replaceAll(snapshot.exportedVars(), snapshot.shellVars());
     }
 
     /**
@@ -141,8 +177,14 @@ public final class EnvStorage {
      * and restores exported variables from {@link System#getenv()}.
      */
     public static void reset() {
-        shellVars.clear();
-        exportedVars.clear();
-        exportedVars.putAll(System.getenv());
+        VARIABLES.replaceAll(System.getenv(), Map.of());
     }
+
+    /**
+     * Immutable copy of the variables, see {@link #snapshot()}.
+     *
+     * @param exportedVars exported variables
+     * @param shellVars    shell-only variables
+     */
+    public record Snapshot(Map<String, String> exportedVars, Map<String, String> shellVars) {}
 }
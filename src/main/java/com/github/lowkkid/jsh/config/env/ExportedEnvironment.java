@@ -0,0 +1,180 @@
+package com.github.lowkkid.jsh.config.env;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Immutable snapshot of the exported variables, the environment of child processes, see
+ * {@link EnvStorage#exportedEnvironment()}.
+ *
+ * <p>The environment of a {@link ProcessBuilder} always starts out as a copy of the environment
+ * the JVM was started with. The snapshot therefore keeps, besides all variables, only how they
+ * differ from that inherited environment, and {@link #applyTo(ProcessBuilder)} changes just those
+ * entries instead of clearing the builder's environment and validating every variable again.
+ * As long as nothing was exported, changed or unset, a process does not get an environment
+ * map of its own at all.
+ *
+ * <p>Variables assigned for a single command ({@code FOO=bar cmd}) are layered on top of a snapshot
+ * with {@link #withOverlay(Map)}, which neither copies nor changes the snapshot, so concurrent
+ * pipeline segments can each have their own.
+ *
+ * <p>Entries the JDK would reject, a name that is empty or contains {@code =} or a name or value
+ * with a NUL character, are left out once when the snapshot is built.
+ */
+public final class ExportedEnvironment {
+
+    private final int version;
+    private final Map<String, String> variables;
+    private final Map<String, String> changed;
+    private final Set<String> removed;
+    private final Map<String, String> overlay;
+
+    ExportedEnvironment(int version, Map<String, String> exported, Map<String, String> inherited) {
+        Map<String, String> valid = new HashMap<>(exported.size());
+        Map<String, String> differing = new HashMap<>();
+        exported.forEach((name, value) -> {
+            if (isValid(name, value)) {
+                valid.put(name, value);
+                if (!value.equals(inherited.get(name))) {
+                    differing.put(name, value);
+                }
+            }
+        });
+        Set<String> missing = new HashSet<>();
+        for (String name : inherited.keySet()) {
+            if (!valid.containsKey(name)) {
+                missing.add(name);
+            }
+        }
+        this.version = version;
+        this.variables = Map.copyOf(valid);
+        this.changed = Map.copyOf(differing);
+        this.removed = Set.copyOf(missing);
+        this.overlay = Map.of();
+    }
+
+    private ExportedEnvironment(ExportedEnvironment base, Map<String, String> overlay) {
+        this.version = base.version;
+        this.changed = base.changed;
+        this.removed = base.removed;
+        this.overlay = overlay;
+        this.variables = new Layered(overlay, base.variables);
+    }
+
+    /**
+     * Returns this environment with variables set on top of it, e.g. the assignments in front
+     * of a command.
+     *
+     * @param assignments variable names and values, which take precedence
+     * @return a layered environment, or this one if there are no assignments
+     */
+    public ExportedEnvironment withOverlay(Map<String, String> assignments) {
+        if (assignments.isEmpty()) {
+            return this;
+        }
+        Map<String, String> valid = new HashMap<>(overlay);
+        assignments.forEach((name, value) -> {
+            if (isValid(name, value)) {
+                valid.put(name, value);
+            }
+        });
+        return new ExportedEnvironment(this, Map.copyOf(valid));
+    }
+
+    private static boolean isValid(String name, String value) {
+        return !name.isEmpty() && name.indexOf('=') < 0 && name.indexOf('\0') < 0 && value.indexOf('\0') < 0;
+    }
+
+    /**
+     * Returns the version of {@link EnvStorage} the snapshot was taken at.
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Returns all exported variables.
+     */
+    public Map<String, String> variables() {
+        return variables;
+    }
+
+    /**
+     * Returns {@code true} if the exported variables are the environment the JVM was started with.
+     */
+    public boolean isInherited() {
+        return changed.isEmpty() && removed.isEmpty() && overlay.isEmpty();
+    }
+
+    /**
+     * Makes the environment of a process builder, which starts out as the inherited one, equal
+     * to this snapshot.
+     *
+     * @param pb a process builder whose environment has not been modified
+     * @return the same {@link ProcessBuilder}
+     */
+    public ProcessBuilder applyTo(ProcessBuilder pb) {
+        if (isInherited()) {
+            return pb;
+        }
+        Map<String, String> environment = pb.environment();
+        environment.keySet().removeAll(removed);
+        environment.putAll(changed);
+        environment.putAll(overlay);
+        return pb;
+    }
+
+    /**
+     * Read-only view of an overlay over the variables of a snapshot.
+     */
+    private static final class Layered extends AbstractMap<String, String> {
+
+        private final Map<String, String> overlay;
+        private final Map<String, String> base;
+        private final int size;
+
+        Layered(Map<String, String> overlay, Map<String, String> base) {
+            this.overlay = overlay;
+            this.base = base;
+            this.size = base.size() + (int) overlay.keySet().stream().filter(name -> !base.containsKey(name)).count();
+        }
+
+        @Override
+        public String get(Object name) {
+            String value = overlay.get(name);
+            return value != null ? value : base.get(name);
+        }
+
+        @Override
+        public boolean containsKey(Object name) {
+            return overlay.containsKey(name) || base.containsKey(name);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return Stream.concat(overlay.entrySet().stream(),
+                            base.entrySet().stream().filter(entry -> !overlay.containsKey(entry.getKey()))).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.lowkkid.jsh.config.env;
+
+import com.github.lowkkid.jsh.Main;
+import java.nio.file.Path;
+
+/**
+ * Working directory, variables and aliases of one shell, which {@code cd}, {@code set},
+ * {@code export}, {@code unset}, {@code alias} and {@code unalias} change.
+ *
+ * <p>The interactive shell's state is {@link #global()}, backed by {@link Main#currentDir},
+ * {@link EnvStorage} and {@link AliasStorage}. Subshells ({@code ( ... )}, {@code $(...)}), background jobs and daemon
+ * sessions each work on their own state, so their changes are never seen by the shell that
+ * started them, and several of them can run at the same time.
+ */
+public class ShellState {
+
+    private static final ShellState GLOBAL = new ShellState(null, EnvStorage.variables(), AliasStorage.aliases()) {
+        @Override
+        public Path workingDirectory() {
+            return Main.currentDir;
+        }
+
+        @Override
+        public void changeDirectory(Path directory) {
+            Main.currentDir = directory;
+        }
+    };
+
+    private final Variables variables;
+    private final Aliases aliases;
+    private volatile Path workingDirectory;
+
+    /**
+     * Creates the state of a shell of its own.
+     *
+     * @param workingDirectory the working directory
+     * @param variables        the variables, changed by the shell's commands
+     * @param aliases          the aliases, changed by the shell's commands
+     */
+    public ShellState(Path workingDirectory, Variables variables, Aliases aliases) {
+        this.workingDirectory = workingDirectory;
+        this.variables = variables;
+        this.aliases = aliases;
+    }
+
+    /**
+     * Returns the state of the interactive shell.
+     *
+     * @return the global state
+     */
+    public static ShellState global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the directory relative paths are resolved against.
+     */
+    public Path workingDirectory() {
+        return workingDirectory;
+    }
+
+    /**
+     * Changes the working directory, as {@code cd} does.
+     *
+     * @param directory the new working directory
+     */
+    public void changeDirectory(Path directory) {
+        workingDirectory = directory;
+    }
+
+    public Variables variables() {
+        return variables;
+    }
+
+    public Aliases aliases() {
+        return aliases;
+    }
+
+    /**
+     * Returns the state of a subshell: the same working directory, variables and aliases as now,
+     * changed independently of this state from then on.
+     *
+     * @return a new state
+     */
+    public ShellState subshell() {
+        return new ShellState(workingDirectory(), variables.copy(), aliases.copy());
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.lowkkid.jsh.config.env;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The variables of one shell: the interactive shell's own ({@link EnvStorage}), or those of a
+ * subshell or background job, which start as a {@link #copy()} and never change the original.
+ * See {@link EnvStorage} for how {@code set}, {@code export} and {@code unset} treat the two maps.
+ *
+ * <p>Every change to the exported variables increments a version. Child processes take their
+ * environment from an {@link ExportedEnvironment} snapshot that is only rebuilt once the version
+ * has changed, so starting processes does not copy the variables over and over.
+ *
+ * <p>Both maps and the version are held in one immutable state, replaced as a whole on every
+ * change (copy-on-write) under a lock. Readers, such as pipeline segments building the
+ * environment of a process while another segment runs {@code export}, take the current state
+ * without locking and always see a consistent one. For the same reason a copy is cheap: it
+ * shares the state until one of the two is changed.
+ */
+public final class Variables {
+
+    private final Object lock = new Object();
+
+    /** The variables; replaced, never modified, while holding {@link #lock}. */
+    private volatile State state;
+    private volatile ExportedEnvironment environment;
+
+    /**
+     * Creates variables with the given exported and shell-only ones.
+     *
+     * @param exportedVars exported variables
+     * @param shellVars    shell-only variables
+     */
+    public Variables(Map<String, String> exportedVars, Map<String, String> shellVars) {
+        this.state = new State(Map.copyOf(exportedVars), Map.copyOf(shellVars), 0);
+    }
+
+    private Variables(State state, ExportedEnvironment environment) {
+        this.state = state;
+        this.environment = environment;
+    }
+
+    /**
+     * Returns independent variables with the same values, e.g. for a subshell.
+     *
+     * @return the copy
+     */
+    public Variables copy() {
+        return new Variables(state, environment);
+    }
+
+    /**
+     * Retrieves the value of a variable, checking {@code shellVars} first,
+     * then {@code exportedVars}.
+     *
+     * @param key variable name
+     * @return the value, or {@code null} if the variable does not exist
+     */
+    public String get(String key) {
+        State current = state;
+        String value = current.shellVars().get(key);
+        return value != null ? value : current.exportedVars().get(key);
+    }
+
+    /**
+     * Sets a variable as exported, see {@link EnvStorage#putExported(String, String)}.
+     *
+     * @param key   variable name
+     * @param value variable value
+     */
+    public void putExported(String key, String value) {
+        update(shellVars -> shellVars.remove(key), exportedVars -> exportedVars.put(key, value));
+    }
+
+    /**
+     * Sets a shell variable, see {@link EnvStorage#putShell(String, String)}.
+     *
+     * @param key   variable name
+     * @param value variable value
+     */
+    public void putShell(String key, String value) {
+        synchronized (lock) {
+            if (state.exportedVars().containsKey(key)) {
+                update(shellVars -> { }, exportedVars -> exportedVars.put(key, value));
+            } else {
+                update(shellVars -> shellVars.put(key, value), exportedVars -> { });
+            }
+        }
+    }
+
+    /**
+     * Marks a variable as exported, see {@link EnvStorage#markExported(String)}.
+     *
+     * @param key variable name
+     */
+    public void markExported(String key) {
+        synchronized (lock) {
+            String value = state.shellVars().get(key);
+            if (value != null) {
+                update(shellVars -> shellVars.remove(key), exportedVars -> exportedVars.put(key, value));
+            } else if (!state.exportedVars().containsKey(key)) {
+                update(shellVars -> { }, exportedVars -> exportedVars.put(key, ""));
+            }
+        }
+    }
+
+    /**
+     * Removes a variable from both maps, regardless of its export status.
+     *
+     * @param key variable name
+     */
+    public void delete(String key) {
+        update(shellVars -> shellVars.remove(key), exportedVars -> exportedVars.remove(key));
+    }
+
+    /**
+     * Returns the exported variables as they are now.
+     *
+     * @return unmodifiable exported variables
+     */
+    public Map<String, String> getExportedVars() {
+        return state.exportedVars();
+    }
+
+    /**
+     * Returns the shell-only variables as they are now.
+     *
+     * @return unmodifiable shell variables
+     */
+    public Map<String, String> getShellVars() {
+        return state.shellVars();
+    }
+
+    /**
+     * Returns the exported variables as an immutable snapshot for starting child processes,
+     * rebuilt only if they changed since the last call.
+     *
+     * @return the current snapshot
+     */
+    public ExportedEnvironment exportedEnvironment() {
+        ExportedEnvironment current = environment;
+        State variables = state;
+        if (current == null || current.version() != variables.version()) {
+            current = new ExportedEnvironment(variables.version(), variables.exportedVars(), System.getenv());
+            environment = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the version of the exported variables, which changes whenever one is added,
+     * changed or removed.
+     *
+     * @return the current version
+     */
+    public int version() {
+        return state.version();
+    }
+
+    /**
+     * Replaces all variables in one step.
+     *
+     * @param exportedVars exported variables
+     * @param shellVars    shell-only variables
+     */
+    void replaceAll(Map<String, String> exportedVars, Map<String, String> shellVars) {
+        synchronized (lock) {
+            State current = state;
+            Map<String, String> exported = Map.copyOf(exportedVars);
+            boolean changed = !current.exportedVars().equals(exported);
+            state = new State(exported, Map.copyOf(shellVars), changed ? current.version() + 1 : current.version());
+        }
+    }
+
+    /**
+     * Replaces the state with one whose maps are changed by the given actions, incrementing
+     * the version if the exported variables changed.
+     */
+    private void update(Consumer<Map<String, String>> shellChange, Consumer<Map<String, String>> exportedChange) {
+        synchronized (lock) {
+            State current = state;
+            Map<String, String> shellVars = new HashMap<>(current.shellVars());
+            Map<String, String> exportedVars = new HashMap<>(current.exportedVars());
+            shellChange.accept(shellVars);
+            exportedChange.accept(exportedVars);
+            boolean exportedChanged = !exportedVars.equals(current.exportedVars());
+            state = new State(exportedChanged ? Map.copyOf(exportedVars) : current.exportedVars(),
+                    shellVars.equals(current.shellVars()) ? current.shellVars() : Map.copyOf(shellVars),
+                    exportedChanged ? current.version() + 1 : current.version());
+        }
+    }
+
+    /**
+     * The variables at one point in time.
+     *
+     * @param exportedVars immutable exported variables
+     * @param shellVars    immutable shell-only variables
+     * @param version      incremented on every change to {@code exportedVars}
+     */
+    private record State(Map<String, String> exportedVars, Map<String, String> shellVars, int version) {}
+}
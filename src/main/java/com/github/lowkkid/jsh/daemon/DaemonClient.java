@@ -0,0 +1,101 @@
+package com.github.lowkkid.jsh.daemon;
+
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.EXIT;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.STDERR;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.STDIN;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.STDIN_EOF;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.STDOUT;
+
+import com.github.lowkkid.jsh.executor.BoundedPipe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client side of the daemon mode: forwards one {@code jsh} invocation to a {@link DaemonServer}
+ * and relays its output and exit status, see {@link DaemonProtocol}.
+ */
+public final class DaemonClient {
+
+    private DaemonClient() {}
+
+    /**
+     * Connects to the daemon listening on {@code socketPath}.
+     *
+     * @return the connection, or {@code null} if no daemon is listening
+     */
+    public static SocketChannel connect(Path socketPath) {
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs an invocation on the daemon. Stdin is forwarded while the session runs and
+     * the connection is closed when it has finished.
+     *
+     * @param channel          connection returned by {@link #connect(Path)}
+     * @param args             arguments of {@code jsh}
+     * @param workingDirectory directory the session runs in
+     * @param environment      exported variables of the session
+     * @param stdIn            input of the session
+     * @param stdOut           receives the session's standard output
+     * @param stdErr           receives the session's standard error
+     * @return exit status of the session
+     * @throws IOException if the connection fails or the daemon hangs up early
+     */
+    public static int forward(SocketChannel channel, List<String> args, Path workingDirectory,
+                              Map<String, String> environment, InputStream stdIn,
+                              OutputStream stdOut, OutputStream stdErr) throws IOException {
+        try (channel) {
+            var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            DaemonProtocol.writeRequest(out, args, workingDirectory, environment);
+            // a platform thread: starting the virtual thread scheduler costs more than the whole request
+            Thread.ofPlatform().daemon().name("jsh-daemon-stdin").start(() -> forwardInput(stdIn, out));
+
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DaemonProtocol.Frame frame;
+            while ((frame = DaemonProtocol.read(in)) != null) {
+                switch (frame.type()) {
+                    case STDOUT -> relay(frame, stdOut);
+                    case STDERR -> relay(frame, stdErr);
+                    case EXIT -> {
+                        return frame.exitStatus();
+                    }
+                    default -> throw new IOException("jsh: unexpected frame " + (char) frame.type());
+                }
+            }
+            throw new IOException("jsh: daemon closed the connection");
+        }
+    }
+
+    private static void relay(DaemonProtocol.Frame frame, OutputStream target) throws IOException {
+        target.write(frame.payload());
+        target.flush();
+    }
+
+    private static void forwardInput(InputStream stdIn, DataOutputStream out) {
+        byte[] buffer = new byte[BoundedPipe.DEFAULT_CAPACITY];
+        try {
+            int n;
+            while ((n = stdIn.read(buffer)) != -1) {
+                DaemonProtocol.write(out, STDIN, buffer, 0, n);
+            }
+            DaemonProtocol.write(out, STDIN_EOF, "");
+        } catch (IOException ignored) {
+            // the session has finished and the connection is closed
+        }
+    }
+}
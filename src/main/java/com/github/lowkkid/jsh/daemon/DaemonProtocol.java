@@ -0,0 +1,162 @@
+package com.github.lowkkid.jsh.daemon;
+
+import com.github.lowkkid.jsh.executor.BoundedPipe;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wire format between {@link DaemonClient} and {@link DaemonServer}.
+ *
+ * <p>Both directions are a sequence of frames: a type byte, the payload length as a
+ * big-endian {@code int} and the payload. A session starts with the client sending its
+ * arguments ({@link #ARG}, one frame each), working directory ({@link #CWD}) and environment
+ * ({@link #ENV}, one {@code NAME=value} frame per variable), followed by {@link #START}.
+ * From then on the client sends its stdin ({@link #STDIN}, then {@link #STDIN_EOF}) while the
+ * server sends the output ({@link #STDOUT}, {@link #STDERR}) and finally the exit status
+ * ({@link #EXIT}, a 4-byte payload), after which the connection is closed.
+ */
+public final class DaemonProtocol {
+
+    /** Variable holding the path of the daemon's socket; {@code jsh} only uses a daemon if it is set. */
+    public static final String SOCKET_VARIABLE = "JSH_DAEMON_SOCKET";
+
+    static final byte ARG = 'a';
+    static final byte CWD = 'c';
+    static final byte ENV = 'e';
+    static final byte START = 's';
+    static final byte STDIN = 'i';
+    static final byte STDIN_EOF = 'z';
+    static final byte STDOUT = 'o';
+    static final byte STDERR = 'r';
+    static final byte EXIT = 'x';
+
+    /** Larger frames are a protocol error rather than something to allocate memory for. */
+    private static final int MAX_PAYLOAD = 16 * 1024 * 1024;
+
+    private DaemonProtocol() {}
+
+    /**
+     * Returns the socket path of the daemon: {@value #SOCKET_VARIABLE} if set, otherwise
+     * {@code jsh-<user>.sock} in the temporary directory.
+     */
+    public static Path socketPath() {
+        String path = System.getenv(SOCKET_VARIABLE);
+        return path != null && !path.isBlank()
+                ? Path.of(path)
+                : Path.of(System.getProperty("java.io.tmpdir"), "jsh-" + System.getProperty("user.name") + ".sock");
+    }
+
+    /**
+     * Reads the next frame.
+     *
+     * @return the frame, or {@code null} if the connection was closed between two frames
+     * @throws IOException if reading fails or the frame is malformed
+     */
+    static Frame read(DataInputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("jsh: invalid frame length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame((byte) type, payload);
+    }
+
+    /**
+     * Writes a frame and flushes it. Frames written by concurrent threads are never interleaved.
+     */
+    static void write(DataOutputStream out, byte type, byte[] payload, int offset, int length) throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            out.writeInt(length);
+            out.write(payload, offset, length);
+            out.flush();
+        }
+    }
+
+    static void write(DataOutputStream out, byte type, String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        write(out, type, payload, 0, payload.length);
+    }
+
+    /**
+     * Writes the frames that start a session, flushing only once at the end.
+     */
+    static void writeRequest(DataOutputStream out, List<String> args, Path workingDirectory,
+                             Map<String, String> environment) throws IOException {
+        synchronized (out) {
+            for (String arg : args) {
+                writeText(out, ARG, arg);
+            }
+            writeText(out, CWD, workingDirectory.toString());
+            for (Map.Entry<String, String> variable : environment.entrySet()) {
+                writeText(out, ENV, variable.getKey() + '=' + variable.getValue());
+            }
+            writeText(out, START, "");
+            out.flush();
+        }
+    }
+
+    private static void writeText(DataOutputStream out, byte type, String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    static void writeExit(DataOutputStream out, int exitStatus) throws IOException {
+        write(out, EXIT, ByteBuffer.allocate(Integer.BYTES).putInt(exitStatus).array(), 0, Integer.BYTES);
+    }
+
+    /**
+     * Returns a stream that sends everything written to it as frames of the given type,
+     * each at most {@link BoundedPipe#DEFAULT_CAPACITY} bytes. Closing it sends nothing.
+     */
+    static OutputStream frameStream(DataOutputStream out, byte type) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                for (int sent = 0; sent < len; sent += BoundedPipe.DEFAULT_CAPACITY) {
+                    DaemonProtocol.write(out, type, b, off + sent, Math.min(len - sent, BoundedPipe.DEFAULT_CAPACITY));
+                }
+            }
+        };
+    }
+
+    /**
+     * A frame.
+     *
+     * @param type    one of the frame type constants
+     * @param payload the payload, possibly empty
+     */
+    record Frame(byte type, byte[] payload) {
+
+        String text() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+
+        int exitStatus() throws EOFException {
+            if (payload.length != Integer.BYTES) {
+                throw new EOFException("jsh: truncated exit status");
+            }
+            return ByteBuffer.wrap(payload).getInt();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.github.lowkkid.jsh.daemon;
+
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.ARG;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.CWD;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.ENV;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.START;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.STDERR;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.STDIN;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.STDIN_EOF;
+import static com.github.lowkkid.jsh.daemon.DaemonProtocol.STDOUT;
+
+import com.github.lowkkid.jsh.command.utils.CommandRegistry;
+import com.github.lowkkid.jsh.config.env.AliasStorage;
+import com.github.lowkkid.jsh.config.env.Aliases;
+import com.github.lowkkid.jsh.config.env.EnvStorage;
+import com.github.lowkkid.jsh.config.env.ShellState;
+import com.github.lowkkid.jsh.config.env.Variables;
+import com.github.lowkkid.jsh.executor.BoundedPipe;
+import com.github.lowkkid.jsh.executor.BrokenPipeException;
+import com.github.lowkkid.jsh.executor.CommandListExecutor;
+import com.github.lowkkid.jsh.executor.JobSupervisor;
+import com.github.lowkkid.jsh.executor.ScriptRunner;
+import com.github.lowkkid.jsh.executor.SegmentedExecutor;
+import com.github.lowkkid.jsh.executor.SharedInput;
+import com.github.lowkkid.jsh.parser.InputParser;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import jdk.net.ExtendedSocketOptions;
+import jdk.net.UnixDomainPrincipal;
+
+/**
+ * Long-running jsh that executes {@code jsh -c} and script invocations sent by {@link DaemonClient}s
+ * over a Unix domain socket, see {@link DaemonProtocol}.
+ *
+ * <p>The daemon pays for JVM startup, the RC file and the {@code PATH} scan once; a request
+ * only pays for a connection. Every request runs in its own session, with a {@link ShellState}
+ * of its own: it starts from the variables and aliases the daemon had after reading the RC file,
+ * with the client's working directory and environment, and nothing it changes ({@code cd},
+ * variables, aliases) is seen by any other session. The daemon's own state is never touched, so
+ * sessions run in parallel.
+ *
+ * <p>The client's stdin is the session's {@link SharedInput}: its commands read it one after
+ * another, and an external command takes only the bytes it reads, as if it had the client's
+ * stdin itself.
+ *
+ * <p>Each session also has its own {@link JobSupervisor}: its background jobs are not mixed into
+ * the jobs of other sessions, read no input and write to the session's client. Jobs still
+ * running when the session ends are not waited for; their output is lost once the client is gone.
+ *
+ * <p>The socket is only accessible to the user running the daemon: it is bound in a directory
+ * only that user can enter and moved into place once its permissions are restricted, and a
+ * connection from another user is closed right away where the peer's credentials are known.
+ */
+public final class DaemonServer implements Closeable {
+
+    private final Path socketPath;
+    private final SegmentedExecutor pipelineExecutor;
+
+    private ServerSocketChannel server;
+    /** User running the daemon, the only one whose connections are served. */
+    private UserPrincipal owner;
+    private Map<String, String> initialShellVars;
+    private Aliases initialAliases;
+
+    public DaemonServer(Path socketPath, SegmentedExecutor pipelineExecutor) {
+        this.socketPath = socketPath;
+        this.pipelineExecutor = pipelineExecutor;
+    }
+
+    /**
+     * Binds the socket, replacing a stale socket file, captures the shell state
+     * every session starts from and prepares the named pipes of the first sessions' input.
+     *
+     * @throws IOException if binding fails or another daemon already listens on the socket
+     */
+    public void bind() throws IOException {
+        if (Files.exists(socketPath)) {
+            try (var running = DaemonClient.connect(socketPath)) {
+                if (running != null) {
+                    throw new IOException("jsh: a daemon is already listening on " + socketPath);
+                }
+            }
+            Files.delete(socketPath);
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        // nobody else can connect while the socket is still in the private directory
+        Path privateDirectory = Files.createTempDirectory(socketPath.toAbsolutePath().getParent(), ".jsh-daemon");
+        try {
+            Path bound = privateDirectory.resolve("socket");
+            server.bind(UnixDomainSocketAddress.of(bound));
+            try {
+                Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException ignored) {
+                // not a POSIX file system, access is left to the directory's permissions
+            }
+            Files.move(bound, socketPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        } finally {
+            Files.deleteIfExists(privateDirectory.resolve("socket"));
+            Files.deleteIfExists(privateDirectory);
+        }
+        owner = Files.getOwner(socketPath);
+        initialShellVars = EnvStorage.getShellVars();
+        initialAliases = AliasStorage.aliases().copy();
+        SharedInput.warmUp();
+    }
+
+    /**
+     * Accepts connections until {@link #close()} is called, each on its own virtual thread.
+     */
+    public void serve() {
+        try (ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (server.isOpen()) {
+                try {
+                    SocketChannel client = server.accept();
+                    sessions.submit(() -> handle(client));
+                } catch (IOException e) {
+                    if (server.isOpen()) {
+                        System.err.println("jsh: daemon: " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file. Running sessions are finished.
+     */
+    @Override
+    public void close() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+        Files.deleteIfExists(socketPath);
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            if (!fromOwner(channel)) {
+                return;
+            }
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            Request request = readRequest(in);
+            if (request != null) {
+                DaemonProtocol.writeExit(out, runSession(request, in, out));
+            }
+        } catch (IOException e) {
+            // the client went away, nobody is left to report to
+        }
+    }
+
+    /**
+     * Checks that a connection comes from the user running the daemon. Where the peer's
+     * credentials are not available, the socket's permissions are all there is.
+     */
+    private boolean fromOwner(SocketChannel channel) throws IOException {
+        try {
+            UnixDomainPrincipal peer = channel.getOption(ExtendedSocketOptions.SO_PEERCRED);
+            return peer.user().equals(owner);
+        } catch (UnsupportedOperationException e) {
+            return true;
+        }
+    }
+
+    private static Request readRequest(DataInputStream in) throws IOException {
+        List<String> args = new ArrayList<>();
+        Path workingDirectory = null;
+        Map<String, String> environment = new HashMap<>();
+        DaemonProtocol.Frame frame;
+        while ((frame = DaemonProtocol.read(in)) != null) {
+            switch (frame.type()) {
+                case ARG -> args.add(frame.text());
+                case CWD -> workingDirectory = Path.of(frame.text());
+                case ENV -> {
+                    String variable = frame.text();
+                    int equals = variable.indexOf('=');
+                    if (equals > 0) {
+                        environment.put(variable.substring(0, equals), variable.substring(equals + 1));
+                    }
+                }
+                case START -> {
+                    if (workingDirectory == null) {
+                        throw new IOException("jsh: request without working directory");
+                    }
+                    return new Request(List.copyOf(args), workingDirectory, Map.copyOf(environment));
+                }
+                default -> throw new IOException("jsh: unexpected frame " + (char) frame.type());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs one request in a shell state and job table of its own.
+     *
+     * @return exit status of the request
+     */
+    private int runSession(Request request, DataInputStream in, DataOutputStream out) throws IOException {
+        var stdIn = new BoundedPipe();
+        var stdOut = new PrintStream(DaemonProtocol.frameStream(out, STDOUT), false, StandardCharsets.UTF_8);
+        var stdErr = new PrintStream(DaemonProtocol.frameStream(out, STDERR), false, StandardCharsets.UTF_8);
+        Thread session = Thread.currentThread();
+        Thread.startVirtualThread(() -> forwardInput(in, stdIn.sink(), session));
+        // commands read the client's input in turn; a process only gets what it reads itself
+        var input = new SharedInput(stdIn.source());
+
+        var shell = new ShellState(request.workingDirectory(),
+                new Variables(request.environment(), initialShellVars), initialAliases.copy());
+        var jobs = new AtomicReference<JobSupervisor>();
+        // background jobs read no input, like those of a non-interactive shell
+        jobs.set(new JobSupervisor(CommandRegistry.getInstance(), new CommandListExecutor(pipelineExecutor,
+                jobs::get, shell, InputStream.nullInputStream(), stdOut, stdErr)));
+        try {
+            var executor = new CommandListExecutor(pipelineExecutor, jobs::get, shell, input, stdOut, stdErr);
+            return new ScriptRunner(InputParser.getInstance(), executor, stdErr)
+                    .run(request.args(), input, request.workingDirectory());
+        } finally {
+            stdOut.flush();
+            stdErr.flush();
+            input.release();
+        }
+    }
+
+    /**
+     * Copies the client's stdin frames into the session's input. If the client disconnects
+     * before the session has finished, the session is interrupted and stops after the
+     * running command.
+     */
+    private static void forwardInput(DataInputStream in, OutputStream stdIn, Thread session) {
+        try (stdIn) {
+            DaemonProtocol.Frame frame;
+            while ((frame = DaemonProtocol.read(in)) != null) {
+                if (frame.type() == STDIN) {
+                    writeInput(stdIn, frame.payload());
+                } else if (frame.type() == STDIN_EOF) {
+                    stdIn.close();
+                } else {
+                    throw new IOException("jsh: unexpected frame " + (char) frame.type());
+                }
+            }
+            session.interrupt();
+        } catch (IOException e) {
+            session.interrupt();
+        }
+    }
+
+    private static void writeInput(OutputStream stdIn, byte[] data) throws IOException {
+        try {
+            stdIn.write(data);
+        } catch (BrokenPipeException ignored) {
+            // nothing reads the input anymore, keep reading frames to notice a disconnect
+        }
+    }
+
+    /**
+     * What a client asked for.
+     *
+     * @param args             arguments of {@code jsh}
+     * @param workingDirectory working directory of the client
+     * @param environment      environment of the client
+     */
+    private record Request(List<String> args, Path workingDirectory, Map<String, String> environment) {}
+}
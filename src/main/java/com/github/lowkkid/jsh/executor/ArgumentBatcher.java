@@ -0,0 +1,366 @@
+package com.github.lowkkid.jsh.executor;
+
+import com.github.lowkkid.jsh.parser.ArgumentList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Splits the arguments of an external command into batches that each fit the kernel's limit on
+ * the arguments and environment of a new process ({@code ARG_MAX}), like {@code xargs} does.
+ *
+ * <p>Batching is opt-in through {@value #BATCH_VARIABLE}: without it a command line that is too
+ * long fails the way it does in any other shell ({@code Argument list too long}). With it,
+ * {@code rm {1..1000000}.tmp} runs {@code rm} as often as needed, one batch after another
+ * ({@code on}) or several at once ({@code parallel}).
+ *
+ * <p>The size of a command line is estimated as the kernel counts it: every argument and every
+ * {@code NAME=value} of the environment takes its UTF-8 bytes, a terminating zero and a pointer.
+ * Batches are {@link List#subList views} of the arguments, so the computed words of a brace
+ * expansion (see {@link ArgumentList}) are never all held in memory, only those of the batch
+ * being started; the matches of a pathname expansion are already in memory when batching starts.
+ *
+ * <p>The limit depends on the platform, see {@link #ARG_MAX}, and can be set with
+ * {@value #ARG_MAX_VARIABLE}. On Linux a single argument may also not exceed
+ * {@link #MAX_ARG_STRLEN}; a command line with such an argument cannot be batched.
+ */
+public final class ArgumentBatcher {
+
+    /** Variable that enables batching: {@code on} runs batches in turn, {@code parallel} concurrently. */
+    public static final String BATCH_VARIABLE = "JSH_ARG_BATCH";
+
+    /** Variable that overrides {@link #ARG_MAX}, in bytes. */
+    public static final String ARG_MAX_VARIABLE = "JSH_ARG_MAX";
+
+    private static final String OS_NAME = System.getProperty("os.name", "");
+    private static final boolean LINUX = OS_NAME.startsWith("Linux");
+    private static final boolean WINDOWS = OS_NAME.startsWith("Windows");
+
+    /**
+     * Space for the arguments and environment of a new process: on Linux a quarter of the stack
+     * size limit, at most 6 MiB and at least 128 KiB, as the kernel computes it; 1 MiB on macOS;
+     * the 32767 characters of a command line on Windows, where the environment does not count;
+     * 256 KiB elsewhere.
+     */
+    static final long ARG_MAX = platformArgMax();
+    /** Longest single argument or environment entry on Linux, {@code MAX_ARG_STRLEN}: 32 pages. */
+    static final long MAX_ARG_STRLEN = LINUX ? 32 * 4096 : Long.MAX_VALUE;
+    /** Space left unused for what the estimate does not count, the same margin {@code xargs} keeps. */
+    static final long HEADROOM = 2048;
+
+    private static final int POINTER_SIZE = 8;
+    private static final long KIB = 1024;
+
+    private ArgumentBatcher() {}
+
+    /**
+     * How the batches of a command line that is too long are run.
+     */
+    public enum Mode {
+        /** Not at all: the command fails. */
+        OFF,
+        /** One after another, each waiting for the previous one. */
+        SEQUENTIAL,
+        /** Up to one per available processor at the same time. */
+        PARALLEL;
+
+        /**
+         * Reads the mode from the value of {@value ArgumentBatcher#BATCH_VARIABLE}.
+         *
+         * @param value the value, or {@code null} if the variable is not set
+         * @return {@link #OFF} if unset, empty, {@code off}, {@code false} or {@code 0};
+         *         {@link #PARALLEL} for {@code parallel}; {@link #SEQUENTIAL} otherwise
+         */
+        public static Mode of(String value) {
+            if (value == null) {
+                return OFF;
+            }
+            return switch (value.trim().toLowerCase()) {
+                case "", "off", "false", "0" -> OFF;
+                case "parallel" -> PARALLEL;
+                default -> SEQUENTIAL;
+            };
+        }
+    }
+
+    /**
+     * Returns the bytes available for the arguments of a process started with an environment.
+     *
+     * @param environment the environment of the process
+     * @return {@link #ARG_MAX} minus the environment and {@link #HEADROOM}
+     */
+    public static long budget(Map<String, String> environment) {
+        return budget(environment, ARG_MAX);
+    }
+
+    /**
+     * Returns the bytes available for the arguments of a process started with an environment,
+     * with the limit of {@value #ARG_MAX_VARIABLE} if it is set.
+     *
+     * @param environment the environment of the process
+     * @param argMax      the value of {@value #ARG_MAX_VARIABLE}, or {@code null} if it is not set
+     * @return the limit minus the environment and {@link #HEADROOM}
+     */
+    public static long budget(Map<String, String> environment, String argMax) {
+        return budget(environment, argMax(argMax));
+    }
+
+    private static long budget(Map<String, String> environment, long argMax) {
+        long size = 0;
+        if (!WINDOWS) {
+            for (Map.Entry<String, String> variable : environment.entrySet()) {
+                size += utf8Length(variable.getKey()) + 1 + utf8Length(variable.getValue()) + 1 + POINTER_SIZE;
+            }
+        }
+        return argMax - HEADROOM - size;
+    }
+
+    /**
+     * Reads the limit from the value of {@value #ARG_MAX_VARIABLE}.
+     *
+     * @param value the value, or {@code null} if the variable is not set
+     * @return the value if it is a positive number of bytes, otherwise {@link #ARG_MAX}
+     */
+    static long argMax(String value) {
+        if (value == null) {
+            return ARG_MAX;
+        }
+        try {
+            long argMax = Long.parseLong(value.trim());
+            return argMax > 0 ? argMax : ARG_MAX;
+        } catch (NumberFormatException e) {
+            return ARG_MAX;
+        }
+    }
+
+    private static long platformArgMax() {
+        if (LINUX) {
+            // fs/exec.c: a quarter of the stack limit, capped at 3/4 of the 8 MiB default stack
+            long stack = stackSizeLimit();
+            return Math.max(128 * KIB, Math.min(6 * KIB * KIB, stack / 4));
+        }
+        if (OS_NAME.startsWith("Mac")) {
+            return KIB * KIB;
+        }
+        return WINDOWS ? 32767 : 256 * KIB;
+    }
+
+    /**
+     * Reads the soft stack size limit of this process, which its children inherit, from
+     * {@code /proc/self/limits}.
+     *
+     * @return the limit in bytes, {@link Long#MAX_VALUE} if unlimited, the default 8 MiB if unknown
+     */
+    private static long stackSizeLimit() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/limits"))) {
+                if (line.startsWith("Max stack size")) {
+                    String soft = line.substring("Max stack size".length()).trim().split("\\s+")[0];
+                    return soft.equals("unlimited") ? Long.MAX_VALUE : Long.parseLong(soft);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // fall back to the default below
+        }
+        return 8 * KIB * KIB;
+    }
+
+    /**
+     * Checks whether a command line fits into a budget, stopping as soon as it does not.
+     *
+     * @param command   the command name
+     * @param arguments the arguments
+     * @param budget    the bytes available, see {@link #budget}
+     * @return {@code true} if the command can be started with all its arguments at once
+     */
+    public static boolean fits(String command, List<String> arguments, long budget) {
+        long remaining = budget - size(command);
+        for (String argument : arguments) {
+            long size = size(argument);
+            remaining -= size;
+            if (remaining < 0 || size > MAX_ARG_STRLEN) {
+                return false;
+            }
+        }
+        return remaining >= 0;
+    }
+
+    /**
+     * Splits arguments into consecutive batches that each fit into a budget together with the
+     * command name.
+     *
+     * <p>If the arguments are an {@link ArgumentList}, only those that came from expansions are
+     * split. Every other argument is repeated in every batch, in its place: {@code cmd *.c -o out *.h}
+     * runs as {@code cmd a.c b.c -o out}, {@code cmd c.c -o out x.h}, and so on.
+     *
+     * @param command   the command name
+     * @param arguments the arguments
+     * @param budget    the bytes available, see {@link #budget}
+     * @return views of the arguments, in order, none of them empty
+     * @throws IllegalArgumentException if an argument does not fit into a batch even on its own, or
+     *                                  the arguments repeated in every batch do not fit at all
+     */
+    public static List<List<String>> split(String command, List<String> arguments, long budget) {
+        int[] expansions = expansions(arguments);
+        long available = budget - size(command);
+        int previousEnd = 0;
+        for (int run = 0; run < expansions.length; run += 2) {
+            available -= repeatedSize(command, arguments.subList(previousEnd, expansions[run]));
+            previousEnd = expansions[run + 1];
+        }
+        available -= repeatedSize(command, arguments.subList(previousEnd, arguments.size()));
+        if (available < 0) {
+            throw new IllegalArgumentException("jsh: " + command + ": argument list too long");
+        }
+
+        // each batch takes the expanded arguments between two cuts, counted across all runs
+        List<Long> cuts = new ArrayList<>();
+        cuts.add(0L);
+        long expanded = 0;
+        long used = 0;
+        for (int run = 0; run < expansions.length; run += 2) {
+            for (int i = expansions[run]; i < expansions[run + 1]; i++, expanded++) {
+                String argument = arguments.get(i);
+                long size = size(argument);
+                if (size > available || size > MAX_ARG_STRLEN) {
+                    throw tooLong(command, argument);
+                }
+                if (used + size > available && used > 0) {
+                    cuts.add(expanded);
+                    used = 0;
+                }
+                used += size;
+            }
+        }
+        cuts.add(expanded);
+
+        List<List<String>> batches = new ArrayList<>(cuts.size() - 1);
+        for (int i = 0; i + 1 < cuts.size(); i++) {
+            batches.add(batch(arguments, expansions, cuts.get(i), cuts.get(i + 1)));
+        }
+        return batches;
+    }
+
+    /**
+     * Returns the start and end index of each run of expanded arguments; all arguments are one
+     * run unless they are an {@link ArgumentList} with expansions.
+     */
+    private static int[] expansions(List<String> arguments) {
+        if (arguments instanceof ArgumentList list && list.expansionCount() > 0) {
+            int[] expansions = new int[2 * list.expansionCount()];
+            for (int run = 0; run < list.expansionCount(); run++) {
+                expansions[2 * run] = list.expansionStart(run);
+                expansions[2 * run + 1] = list.expansionEnd(run);
+            }
+            return expansions;
+        }
+        return new int[] {0, arguments.size()};
+    }
+
+    /**
+     * Returns the arguments that are not expanded, and of the expanded ones those numbered
+     * {@code from} to {@code to} across all runs.
+     */
+    private static List<String> batch(List<String> arguments, int[] expansions, long from, long to) {
+        List<List<String>> parts = new ArrayList<>();
+        int previousEnd = 0;
+        long expanded = 0;
+        for (int run = 0; run < expansions.length; run += 2) {
+            int start = expansions[run];
+            int end = expansions[run + 1];
+            addPart(parts, arguments.subList(previousEnd, start));
+            int first = Math.clamp(from - expanded, 0, end - start);
+            int last = Math.clamp(to - expanded, 0, end - start);
+            addPart(parts, arguments.subList(start + first, start + last));
+            expanded += end - start;
+            previousEnd = end;
+        }
+        addPart(parts, arguments.subList(previousEnd, arguments.size()));
+        return new Batch(parts);
+    }
+
+    private static void addPart(List<List<String>> parts, List<String> part) {
+        if (!part.isEmpty()) {
+            parts.add(part);
+        }
+    }
+
+    /**
+     * Returns the size of arguments repeated in every batch, checking that each can be passed at all.
+     */
+    private static long repeatedSize(String command, List<String> arguments) {
+        long total = 0;
+        for (String argument : arguments) {
+            long size = size(argument);
+            if (size > MAX_ARG_STRLEN) {
+                throw tooLong(command, argument);
+            }
+            total += size;
+        }
+        return total;
+    }
+
+    private static IllegalArgumentException tooLong(String command, String argument) {
+        String start = argument.length() > 40 ? argument.substring(0, 40) + "..." : argument;
+        return new IllegalArgumentException("jsh: " + command + ": argument too long: " + start);
+    }
+
+    /**
+     * Returns what a string adds to a command line: its UTF-8 bytes, the terminating zero and its pointer.
+     */
+    static long size(String argument) {
+        return utf8Length(argument) + 1 + POINTER_SIZE;
+    }
+
+    /**
+     * Consecutive views of the arguments, read as a single list.
+     */
+    private static final class Batch extends AbstractList<String> implements RandomAccess {
+
+        private final List<List<String>> parts;
+        private final int[] offsets;
+
+        Batch(List<List<String>> parts) {
+            this.parts = parts;
+            this.offsets = new int[parts.size() + 1];
+            for (int i = 0; i < parts.size(); i++) {
+                offsets[i + 1] = offsets[i] + parts.get(i).size();
+            }
+        }
+
+        @Override
+        public String get(int index) {
+            Objects.checkIndex(index, size());
+            // parts are never empty, so an exact match is the offset of the part starting there
+            int part = Arrays.binarySearch(offsets, index);
+            part = part >= 0 ? part : -part - 2;
+            return parts.get(part).get(index - offsets[part]);
+        }
+
+        @Override
+        public int size() {
+            return offsets[parts.size()];
+        }
+    }
+
+    private static long utf8Length(String text) {
+        long length = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                // surrogate pairs are 4 bytes for 2 chars, everything else from here on 3 bytes
+                length += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+}
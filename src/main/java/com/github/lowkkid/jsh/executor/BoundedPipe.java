@@ -0,0 +1,228 @@
+package com.github.lowkkid.jsh.executor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory pipe with a fixed-size ring buffer, connecting two concurrently running
+ * pipeline segments.
+ *
+ * <p>The writer blocks while the buffer is full and the reader blocks while it is empty,
+ * so a fast producer can never run ahead of a slow consumer by more than
+ * {@link #DEFAULT_CAPACITY} bytes (backpressure). Semantics mirror an OS pipe:
+ * <ul>
+ *   <li>closing the {@link #sink()} delivers EOF to the reader once the buffer is drained</li>
+ *   <li>closing the {@link #source()} makes every further write fail with
+ *       {@link BrokenPipeException}, which is how upstream segments learn that
+ *       a downstream consumer (e.g. {@code head}) has finished early</li>
+ * </ul>
+ */
+public final class BoundedPipe {
+
+    /** Same size as a default Linux pipe buffer. */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final byte[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private int readPos = 0;
+    private int count = 0;
+    private boolean writerClosed = false;
+    private boolean readerClosed = false;
+
+    private final InputStream source = new Source();
+    private final OutputStream sink = new Sink();
+
+    public BoundedPipe() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public BoundedPipe(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Pipe capacity must be positive");
+        }
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Returns the read end of the pipe. The stream also implements {@link ReadableByteChannel}.
+     */
+    public InputStream source() {
+        return source;
+    }
+
+    /**
+     * Returns the write end of the pipe. The stream also implements {@link WritableByteChannel}.
+     */
+    public OutputStream sink() {
+        return sink;
+    }
+
+    private int read(ByteBuffer dst) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (writerClosed || readerClosed) {
+                    return -1;
+                }
+                notEmpty.await();
+            }
+            int n = Math.min(dst.remaining(), count);
+            int firstChunk = Math.min(n, buffer.length - readPos);
+            dst.put(buffer, readPos, firstChunk);
+            dst.put(buffer, 0, n - firstChunk);
+            readPos = (readPos + n) % buffer.length;
+            count -= n;
+            notFull.signal();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(ByteBuffer src) throws IOException, InterruptedException {
+        while (src.hasRemaining()) {
+            lock.lockInterruptibly();
+            try {
+                while (count == buffer.length && !readerClosed) {
+                    notFull.await();
+                }
+                if (readerClosed) {
+                    throw new BrokenPipeException();
+                }
+                if (writerClosed) {
+                    throw new IOException("Write end of pipe is closed");
+                }
+                int writePos = (readPos + count) % buffer.length;
+                int n = Math.min(src.remaining(), buffer.length - count);
+                int firstChunk = Math.min(n, buffer.length - writePos);
+                src.get(buffer, writePos, firstChunk);
+                src.get(buffer, 0, n - firstChunk);
+                count += n;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void closeWriter() {
+        lock.lock();
+        try {
+            writerClosed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeReader() {
+        lock.lock();
+        try {
+            readerClosed = true;
+            count = 0;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isOpen(boolean writeEnd) {
+        lock.lock();
+        try {
+            return writeEnd ? !writerClosed && !readerClosed : !readerClosed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read end; also a {@link ReadableByteChannel}, so bytes can be moved straight into a
+     * {@link ByteBuffer} without an intermediate array.
+     */
+    private final class Source extends InputStream implements ReadableByteChannel {
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return read(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+            try {
+                return BoundedPipe.this.read(dst);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Pipe read interrupted");
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return BoundedPipe.this.isOpen(false);
+        }
+
+        @Override
+        public void close() {
+            closeReader();
+        }
+    }
+
+    /**
+     * Write end; also a {@link WritableByteChannel}, see {@link Source}.
+     */
+    private final class Sink extends OutputStream implements WritableByteChannel {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            write(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = src.remaining();
+            try {
+                BoundedPipe.this.write(src);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Pipe write interrupted");
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return BoundedPipe.this.isOpen(true);
+        }
+
+        @Override
+        public void close() {
+            closeWriter();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.lowkkid.jsh.executor;
+
+/**
+ * Thrown when a pipeline segment writes to a pipe whose reading end has already been closed.
+ *
+ * <p>This is the in-JVM counterpart of {@code SIGPIPE}/{@code EPIPE}: it is unchecked so that it
+ * propagates through {@link java.io.PrintStream} (which swallows {@link java.io.IOException})
+ * and stops a built-in command as soon as its downstream consumer is gone.
+ */
+public class BrokenPipeException extends RuntimeException {
+
+    public BrokenPipeException() {
+        super("Broken pipe", null, false, false);
+    }
+}
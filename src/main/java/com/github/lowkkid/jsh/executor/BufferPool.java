@@ -0,0 +1,101 @@
+package com.github.lowkkid.jsh.executor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of direct {@link ByteBuffer}s used to move bytes between pipeline segments,
+ * processes and files.
+ *
+ * <p>Copying is byte-for-byte: nothing is decoded as text, so binary data passes through
+ * unchanged, and nothing is flushed until the copy is complete. Each buffer is
+ * {@link BoundedPipe#DEFAULT_CAPACITY} bytes, one pipe's worth of data per read.
+ * At most {@value #MAX_POOLED} idle buffers are kept; when the pool is empty a new buffer
+ * is allocated, and returning a buffer to a full pool drops it.
+ */
+public final class BufferPool {
+
+    private static final int MAX_POOLED = 16;
+
+    private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private BufferPool() {}
+
+    /**
+     * Takes a cleared buffer from the pool, allocating one if the pool is empty.
+     *
+     * @return a direct buffer of {@link BoundedPipe#DEFAULT_CAPACITY} bytes
+     */
+    public static ByteBuffer acquire() {
+        ByteBuffer buffer = POOL.poll();
+        return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(BoundedPipe.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire()} to the pool.
+     *
+     * @param buffer the buffer, must not be used by the caller afterwards
+     */
+    public static void release(ByteBuffer buffer) {
+        POOL.offer(buffer);
+    }
+
+    /**
+     * Copies everything from {@code from} to {@code to} through a pooled buffer.
+     * Neither channel is closed.
+     *
+     * @param from source channel, read until end of stream
+     * @param to   target channel
+     * @return number of bytes copied
+     * @throws IOException if reading or writing fails, e.g. {@link BrokenPipeException}
+     *                     when the reader of {@code to} has gone away
+     */
+    public static long transfer(ReadableByteChannel from, WritableByteChannel to) throws IOException {
+        ByteBuffer buffer = acquire();
+        long total = 0;
+        try {
+            while (from.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    total += to.write(buffer);
+                }
+                buffer.clear();
+            }
+            return total;
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Copies a stream into another, see {@link #transfer(ReadableByteChannel, WritableByteChannel)}.
+     * Streams that already are channels (e.g. the ends of a {@link BoundedPipe}) are used
+     * directly; other streams are adapted with {@link Channels}. Neither stream is closed.
+     */
+    public static long transfer(InputStream from, OutputStream to) throws IOException {
+        return transfer(channel(from), channel(to));
+    }
+
+    /**
+     * Returns a channel reading from {@code in}, or {@code in} itself if it is a channel.
+     * Closing the channel closes the stream.
+     */
+    public static ReadableByteChannel channel(InputStream in) {
+        return in instanceof ReadableByteChannel channel ? channel : Channels.newChannel(in);
+    }
+
+    /**
+     * Returns a channel writing to {@code out}, or {@code out} itself if it is a channel.
+     * Closing the channel closes the stream.
+     */
+    public static WritableByteChannel channel(OutputStream out) {
+        return out instanceof WritableByteChannel channel ? channel : Channels.newChannel(out);
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.lowkkid.jsh.executor;
 
+import com.github.lowkkid.jsh.command.ExecutionContext;
 import com.github.lowkkid.jsh.parser.CommandAndArgs;
 import java.util.List;
 
@@ -8,12 +9,37 @@ public interface CommandExecutor {
     /**
      * Execute a single command (no pipeline).
      */
-    ExecutionResult executeSingle(CommandAndArgs commandAndArgs);
+    ExecutionResult executeSingle(ExecutionContext context, CommandAndArgs commandAndArgs);
+
+    /**
+     * Execute a single command in the shell's own context, see {@link ExecutionContext#ofShell()}.
+     */
+    default ExecutionResult executeSingle(CommandAndArgs commandAndArgs) {
+        return executeSingle(ExecutionContext.ofShell(), commandAndArgs);
+    }
 
     /**
      * Execute a pipeline of 2+ commands.
      */
-    ExecutionResult executePipeline(List<CommandAndArgs> commandsAndArgs);
+    ExecutionResult executePipeline(ExecutionContext context, List<CommandAndArgs> commandsAndArgs);
+
+    /**
+     * Execute a pipeline in the shell's own context, see {@link ExecutionContext#ofShell()}.
+     */
+    default ExecutionResult executePipeline(List<CommandAndArgs> commandsAndArgs) {
+        return executePipeline(ExecutionContext.ofShell(), commandsAndArgs);
+    }
+
+    /**
+     * Outcome of an execution.
+     *
+     * @param shouldBreak whether the shell should exit
+     * @param exitStatus  exit status of the (last) command, {@code 0} means success
+     */
+    record ExecutionResult(boolean shouldBreak, int exitStatus) {
 
-    record ExecutionResult(boolean shouldBreak) {}
+        public boolean isSuccess() {
+            return exitStatus == 0;
+        }
+    }
 }
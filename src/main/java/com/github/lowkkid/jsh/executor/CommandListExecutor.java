@@ -0,0 +1,341 @@
+package com.github.lowkkid.jsh.executor;
+
+import com.github.lowkkid.jsh.command.Command;
+import com.github.lowkkid.jsh.command.ExecutionContext;
+import com.github.lowkkid.jsh.config.env.ShellState;
+import com.github.lowkkid.jsh.executor.CommandExecutor.ExecutionResult;
+import com.github.lowkkid.jsh.executor.PipelineSegment.BuiltInSegment;
+import com.github.lowkkid.jsh.parser.CommandAndArgs;
+import com.github.lowkkid.jsh.parser.CommandNode;
+import com.github.lowkkid.jsh.parser.CommandNode.Conditional;
+import com.github.lowkkid.jsh.parser.CommandNode.Group;
+import com.github.lowkkid.jsh.parser.CommandNode.Pipeline;
+import com.github.lowkkid.jsh.parser.CommandNode.Sequence;
+import com.github.lowkkid.jsh.parser.CommandNode.Simple;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Executes a parsed command line ({@link CommandNode}) by walking the tree.
+ *
+ * <p>Pipelines and single commands are handed to the {@link SegmentedExecutor}; this class
+ * only adds the control flow on top of them:
+ * <ul>
+ *   <li>{@code a; b} — run {@code a}, then {@code b}</li>
+ *   <li>{@code a && b} — run {@code b} only if {@code a} succeeded</li>
+ *   <li>{@code a || b} — run {@code b} only if {@code a} failed</li>
+ *   <li>{@code a &} — start {@code a} as a background job</li>
+ *   <li>{@code { a; b; }} — run the list in the current shell</li>
+ *   <li>{@code ( a; b )} — run the list in a subshell, whose working directory and variables
+ *       are a copy of this shell's</li>
+ *   <li>{@code { a; b; } | c} — run a group as a stage of a pipeline, in a subshell</li>
+ * </ul>
+ *
+ * <p>Commands run in the {@link ShellState} given to the constructor, by default the interactive
+ * shell's. Subshells and background jobs get an executor of their own, over a copy of that state,
+ * so they never change the working directory or variables of the shell that started them.
+ *
+ * <p>Variables are substituted right before each command runs, so earlier commands of the
+ * same line can change them. {@code $?} expands to the exit status of the last command.
+ *
+ * <p>Command substitutions ({@code $(cmd)}) run right before that, in a subshell of this executor
+ * whose output is captured in memory. Built-ins and aliases thus never start a process: {@code $(pwd)}
+ * is a method call. External commands stream their output into the capture, which keeps at most
+ * {@value OutputCapture#DEFAULT_LIMIT} bytes unless {@value #SUBSTITUTION_LIMIT_VARIABLE} says otherwise.
+ *
+ * <p>Commands read and write the streams given to the constructor; without them, the JVM's
+ * standard streams at the time each command runs, with no input for the first command.
+ */
+public class CommandListExecutor {
+
+    /** Exit status reported for command lines that cannot be executed as written. */
+    public static final int MISUSE = 2;
+
+    /** Variable limiting the bytes of output a command substitution keeps. */
+    public static final String SUBSTITUTION_LIMIT_VARIABLE = "JSH_SUBSTITUTION_LIMIT";
+
+    private final SegmentedExecutor pipelineExecutor;
+    private final Supplier<JobSupervisor> jobSupervisor;
+    private final ShellState shell;
+    private final InputStream stdIn;
+    private final PrintStream stdOut;
+    private final PrintStream stdErr;
+
+    private volatile int lastExitStatus = 0;
+    private int substitutions = 0;
+
+    public CommandListExecutor(SegmentedExecutor pipelineExecutor) {
+        this(pipelineExecutor, JobSupervisor::getInstance);
+    }
+
+    public CommandListExecutor(SegmentedExecutor pipelineExecutor, Supplier<JobSupervisor> jobSupervisor) {
+        this(pipelineExecutor, jobSupervisor, null, null, null);
+    }
+
+    /**
+     * Creates an executor whose commands use the given streams, e.g. those of a daemon session.
+     *
+     * @param pipelineExecutor executes single commands and pipelines
+     * @param jobSupervisor    supplies the supervisor of background jobs
+     * @param stdIn            input of the commands, or {@code null} for none
+     * @param stdOut           standard output, or {@code null} for {@link System#out}
+     * @param stdErr           standard error, or {@code null} for {@link System#err}
+     */
+    public CommandListExecutor(SegmentedExecutor pipelineExecutor, Supplier<JobSupervisor> jobSupervisor,
+                               InputStream stdIn, PrintStream stdOut, PrintStream stdErr) {
+        this(pipelineExecutor, jobSupervisor, ShellState.global(), stdIn, stdOut, stdErr);
+    }
+
+    /**
+     * Creates an executor whose commands run in the given shell and use the given streams.
+     *
+     * @param pipelineExecutor executes single commands and pipelines
+     * @param jobSupervisor    supplies the supervisor of background jobs
+     * @param shell            working directory and variables of the commands
+     * @param stdIn            input of the commands, or {@code null} for none
+     * @param stdOut           standard output, or {@code null} for {@link System#out}
+     * @param stdErr           standard error, or {@code null} for {@link System#err}
+     */
+    public CommandListExecutor(SegmentedExecutor pipelineExecutor, Supplier<JobSupervisor> jobSupervisor,
+                               ShellState shell, InputStream stdIn, PrintStream stdOut, PrintStream stdErr) {
+        this.pipelineExecutor = pipelineExecutor;
+        this.jobSupervisor = jobSupervisor;
+        this.shell = shell;
+        this.stdIn = stdIn;
+        this.stdOut = stdOut;
+        this.stdErr = stdErr;
+    }
+
+    /**
+     * Executes a command line.
+     *
+     * @param command the parsed command line
+     * @return the result of the last executed command
+     */
+    public ExecutionResult execute(CommandNode command) {
+        ExecutionResult result = switch (command) {
+            case Sequence sequence -> executeSequence(sequence);
+            case Conditional conditional -> executeConditional(conditional);
+            case Pipeline pipeline -> executePipeline(pipeline);
+            case Group group -> executeGroup(group);
+            case Simple simple -> executeSimple(simple);
+        };
+        lastExitStatus = result.exitStatus();
+        return result;
+    }
+
+    /**
+     * Returns an executor with the same streams whose commands run in another shell, e.g. in a
+     * copy of this one's state for a background job.
+     *
+     * @param shell working directory and variables of the commands
+     * @return a new executor
+     */
+    public CommandListExecutor withShell(ShellState shell) {
+        return new CommandListExecutor(pipelineExecutor, jobSupervisor, shell, stdIn, stdOut, stdErr);
+    }
+
+    /**
+     * Returns the working directory and variables the commands run in.
+     */
+    public ShellState shell() {
+        return shell;
+    }
+
+    /**
+     * Runs the command substitutions of a command, substitutes variables, including {@code $?},
+     * and expands wildcards against the current directory.
+     *
+     * @param command the parsed command
+     * @return the command ready for execution
+     */
+    public CommandAndArgs expand(Simple command) {
+        return command.substitute(this::substitute).expand(this::lookupVariable, shell.workingDirectory());
+    }
+
+    /**
+     * Returns the exit status of the last executed command, the value of {@code $?}.
+     */
+    public int lastExitStatus() {
+        return lastExitStatus;
+    }
+
+    private ExecutionResult executeSimple(Simple simple) {
+        int substitutionsBefore = substitutions;
+        Simple substituted = simple.substitute(this::substitute);
+        CommandAndArgs commandAndArgs = substituted.expand(this::lookupVariable, shell.workingDirectory());
+        ExecutionResult result = pipelineExecutor.executeSingle(newContext(), commandAndArgs);
+        if (substitutions != substitutionsBefore && result.exitStatus() == 0 && substituted.assignmentOnly()) {
+            // NAME=$(cmd) succeeds or fails with cmd, so that it can be used with && and ||
+            return new ExecutionResult(result.shouldBreak(), lastExitStatus);
+        }
+        return result;
+    }
+
+    /**
+     * Runs the command of a command substitution like a subshell, with its output captured.
+     * Its exit status becomes {@code $?}.
+     *
+     * @param command the parsed command
+     * @return the output without trailing newlines
+     */
+    private String substitute(CommandNode command) {
+        int limit = OutputCapture.limit(lookupVariable(SUBSTITUTION_LIMIT_VARIABLE));
+        try (var capture = new OutputCapture(limit)) {
+            var output = new PrintStream(capture, false, StandardCharsets.UTF_8);
+            var subshell = new CommandListExecutor(pipelineExecutor, jobSupervisor, shell.subshell(), stdIn, output,
+                    stdErr());
+            subshell.lastExitStatus = lastExitStatus;
+            subshell.execute(command);
+            try {
+                output.flush();
+            } catch (BrokenPipeException ignored) {
+                // the rest did not fit either
+            }
+            if (capture.isTruncated()) {
+                stdErr().println("jsh: command substitution output truncated to " + limit + " bytes");
+            }
+            lastExitStatus = subshell.lastExitStatus;
+            substitutions++;
+            return capture.text();
+        }
+    }
+
+    private ExecutionResult executeSequence(Sequence sequence) {
+        ExecutionResult result = new ExecutionResult(false, lastExitStatus);
+        for (Sequence.Entry entry : sequence.entries()) {
+            result = entry.background()
+                    ? launchInBackground(entry)
+                    : execute(entry.command());
+            lastExitStatus = result.exitStatus();
+            if (result.shouldBreak()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private ExecutionResult executeConditional(Conditional conditional) {
+        ExecutionResult left = execute(conditional.left());
+        if (left.shouldBreak() || !conditional.operator().shouldContinue(left.exitStatus())) {
+            return left;
+        }
+        return execute(conditional.right());
+    }
+
+    /**
+     * Runs a pipeline. A group in it ({@code { a; b; } | c}, {@code (cd x && make) | tee log}) is a
+     * segment of its own, which runs its commands in a subshell like every other stage does.
+     */
+    private ExecutionResult executePipeline(Pipeline pipeline) {
+        List<CommandAndArgs> commands = new ArrayList<>(pipeline.stages().size());
+        boolean hasGroups = false;
+        for (CommandNode stage : pipeline.stages()) {
+            if (stage instanceof Simple simple) {
+                commands.add(expand(simple));
+            } else {
+                commands.add(null);
+                hasGroups = true;
+            }
+        }
+        ExecutionContext context = newContext();
+        if (!hasGroups) {
+            return pipelineExecutor.executePipeline(context, commands);
+        }
+
+        List<PipelineSegment> segments = new ArrayList<>();
+        List<CommandAndArgs> between = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i++) {
+            if (commands.get(i) != null) {
+                between.add(commands.get(i));
+                continue;
+            }
+            if (!between.isEmpty()) {
+                segments.addAll(pipelineExecutor.splitIntoSegments(context, between));
+                between = new ArrayList<>();
+            }
+            segments.add(new BuiltInSegment(pipelineStage(pipeline.stages().get(i)), List.of()));
+        }
+        if (!between.isEmpty()) {
+            segments.addAll(pipelineExecutor.splitIntoSegments(context, between));
+        }
+        return pipelineExecutor.executeSegments(context, segments);
+    }
+
+    /**
+     * Returns a command running a group of a pipeline in a subshell with the streams of its segment.
+     */
+    private Command pipelineStage(CommandNode group) {
+        ShellState stageShell = shell.subshell();
+        int exitStatusBefore = lastExitStatus;
+        return new Command() {
+            @Override
+            protected int executeWithException(ExecutionContext context, List<String> args) {
+                var subshell = new CommandListExecutor(pipelineExecutor, jobSupervisor, stageShell,
+                        context.stdIn(), context.stdOut(), context.stdErr());
+                subshell.lastExitStatus = exitStatusBefore;
+                // exit only leaves the subshell
+                return subshell.execute(group).exitStatus();
+            }
+        };
+    }
+
+    private ExecutionResult executeGroup(Group group) {
+        if (!group.subshell()) {
+            return execute(group.body());
+        }
+
+        CommandListExecutor subshell = withShell(shell.subshell());
+        subshell.lastExitStatus = lastExitStatus;
+        // exit only leaves the subshell
+        return new ExecutionResult(false, subshell.execute(group.body()).exitStatus());
+    }
+
+    private ExecutionResult launchInBackground(Sequence.Entry entry) {
+        try {
+            Job job = jobSupervisor.get().launch(entry.source(), entry.command(), shell);
+            var processes = job.processes();
+            stdOut().println("[" + job.id() + "]"
+                    + (processes.isEmpty() ? "" : " " + processes.getLast().pid()));
+            return new ExecutionResult(false, 0);
+        } catch (IOException e) {
+            stdOut().println(e.getMessage());
+            return new ExecutionResult(false, 1);
+        }
+    }
+
+    /**
+     * Creates the context of the next command; the working directory is read at this point,
+     * so a {@code cd} earlier in the same line is taken into account.
+     */
+    private ExecutionContext newContext() {
+        return new ExecutionContext(stdIn, stdOut(), stdErr(), shell.workingDirectory(), this::lookupVariable,
+                lastExitStatus, Map.of(), shell, jobSupervisor);
+    }
+
+    /**
+     * Returns {@code true} if the commands write to the JVM's standard streams rather than to
+     * streams given to the constructor.
+     */
+    boolean writesToStandardStreams() {
+        return stdOut == null && stdErr == null;
+    }
+
+    private PrintStream stdOut() {
+        return stdOut != null ? stdOut : System.out;
+    }
+
+    private PrintStream stdErr() {
+        return stdErr != null ? stdErr : System.err;
+    }
+
+    private String lookupVariable(String name) {
+        return "?".equals(name) ? String.valueOf(lastExitStatus) : shell.variables().get(name);
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.lowkkid.jsh.executor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A command line running in the background, started with a trailing {@code &}.
+ *
+ * <p>A job is either backed by OS processes (when every command of the pipeline is external)
+ * or by a virtual thread running the command line through the {@link CommandListExecutor}
+ * (when it contains built-in commands, groups or command lists). In both cases {@link #completion()} completes
+ * when the job is finished, with the exit status of its last command.
+ *
+ * @see JobSupervisor
+ */
+public final class Job {
+
+    /** Lifecycle of a job, as shown by the {@code jobs} built-in. */
+    public enum State {
+        RUNNING("Running"),
+        STOPPED("Stopped"),
+        DONE("Done");
+
+        private final String label;
+
+        State(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private final int id;
+    private final String commandLine;
+    private final List<ProcessHandle> processes;
+    private final CompletableFuture<Integer> completion;
+    private volatile State state = State.RUNNING;
+
+    Job(int id, String commandLine, List<ProcessHandle> processes, CompletableFuture<Integer> completion) {
+        this.id = id;
+        this.commandLine = commandLine;
+        this.processes = List.copyOf(processes);
+        this.completion = completion;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public String commandLine() {
+        return commandLine;
+    }
+
+    /**
+     * Returns the processes started for this job, in pipeline order.
+     * Empty for jobs that contain built-in commands.
+     */
+    public List<ProcessHandle> processes() {
+        return processes;
+    }
+
+    /**
+     * Returns a future completed with the exit status of the job's last command.
+     */
+    public CompletableFuture<Integer> completion() {
+        return completion;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    void setState(State state) {
+        if (this.state != State.DONE) {
+            this.state = state;
+        }
+    }
+
+    /**
+     * Returns the exit status, or {@code null} while the job is still running.
+     */
+    public Integer exitStatus() {
+        return completion.isDone() ? completion.getNow(null) : null;
+    }
+
+    /**
+     * Returns the state as printed by {@code jobs}, e.g. {@code Running} or {@code Exit 2}.
+     */
+    public String statusLabel() {
+        Integer exitStatus = exitStatus();
+        if (state == State.DONE && exitStatus != null && exitStatus != 0) {
+            return "Exit " + exitStatus;
+        }
+        return state.label();
+    }
+}
@@ -0,0 +1,370 @@
+package com.github.lowkkid.jsh.executor;
+
+import com.github.lowkkid.jsh.command.utils.CommandRegistry;
+import com.github.lowkkid.jsh.config.env.ShellState;
+import com.github.lowkkid.jsh.parser.CommandAndArgs;
+import com.github.lowkkid.jsh.parser.CommandNode;
+import com.github.lowkkid.jsh.parser.CommandNode.Pipeline;
+import com.github.lowkkid.jsh.parser.CommandNode.Simple;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Starts and tracks background jobs ({@code cmd &}).
+ *
+ * <p>Jobs made only of external commands are started with {@link ProcessBuilder#startPipeline(List)}
+ * and tracked purely through {@link Process#onExit()} completions, so no thread is blocked
+ * while they run. Jobs containing built-in commands, groups or command lists run on a virtual thread,
+ * as do all jobs whose output goes to streams other than the JVM's, e.g. to a daemon client.
+ *
+ * <p>Every job runs as a subshell: with a copy of the working directory and variables of the shell
+ * that launched it and an executor of its own, so {@code cd dir &} or {@code export X=1 &} change
+ * nothing outside the job, and jobs never share state with each other or with the foreground.
+ *
+ * <p>Finished jobs are queued until {@link #drainFinished()} is called, which the shell does
+ * before printing the next prompt (like bash's {@code [1]+  Done} notifications).
+ *
+ * <h2>Job specifications</h2>
+ * <ul>
+ *   <li>{@code %n} — job number {@code n}</li>
+ *   <li>{@code %%}, {@code %+} or {@code %} — the current (most recent) job</li>
+ *   <li>{@code %-} — the previous job</li>
+ *   <li>{@code %prefix} — the job whose command line starts with {@code prefix}</li>
+ * </ul>
+ */
+public final class JobSupervisor {
+
+    private static final String SIGNAL_TERM = "TERM";
+    private static final String SIGNAL_KILL = "KILL";
+
+    /**
+     * Returns the job supervisor of the interactive shell.
+     *
+     * @return the singleton {@code JobSupervisor}
+     */
+    public static JobSupervisor getInstance() {
+        return JobSupervisorHolder.INSTANCE;
+    }
+
+    private final CommandRegistry registry;
+    private final CommandListExecutor executor;
+    private final ConcurrentSkipListMap<Integer, Job> jobs = new ConcurrentSkipListMap<>();
+    private final Queue<Job> finished = new ConcurrentLinkedQueue<>();
+
+    public JobSupervisor(CommandRegistry registry, CommandListExecutor executor) {
+        this.registry = registry;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a command line in the background, in a subshell of the interactive shell.
+     *
+     * @param commandLine the command line without the trailing {@code &}, shown by {@code jobs}
+     * @param command     the parsed command line
+     * @return the started job
+     * @throws IOException if a command is not found or a process cannot be started
+     */
+    public Job launch(String commandLine, CommandNode command) throws IOException {
+        return launch(commandLine, command, ShellState.global());
+    }
+
+    /**
+     * Starts a command line in the background, in a subshell of the given shell.
+     *
+     * @param commandLine the command line without the trailing {@code &}, shown by {@code jobs}
+     * @param command     the parsed command line
+     * @param shell       the shell launching the job, whose working directory and variables the job copies
+     * @return the started job
+     * @throws IOException if a command is not found or a process cannot be started
+     */
+    public synchronized Job launch(String commandLine, CommandNode command, ShellState shell) throws IOException {
+        int id = jobs.isEmpty() ? 1 : jobs.lastKey() + 1;
+        CommandListExecutor jobExecutor = executor.withShell(shell.subshell());
+        // processes can only inherit the JVM's own streams; other output is copied by a thread
+        Optional<List<CommandAndArgs>> externalPipeline = jobExecutor.writesToStandardStreams()
+                ? externalPipeline(jobExecutor, command)
+                : Optional.empty();
+
+        Job job = externalPipeline.isPresent()
+                ? startProcesses(id, commandLine, externalPipeline.get(), jobExecutor.shell())
+                : startThread(id, commandLine, command, jobExecutor);
+        jobs.put(id, job);
+        job.completion().whenComplete((status, error) -> {
+            job.setState(Job.State.DONE);
+            finished.add(job);
+        });
+        return job;
+    }
+
+    /**
+     * Returns the expanded commands if {@code command} is a single command or pipeline made only of
+     * external commands, which can run without a JVM thread.
+     */
+    private Optional<List<CommandAndArgs>> externalPipeline(CommandListExecutor executor, CommandNode command) {
+        List<CommandNode> stages = switch (command) {
+            case Simple simple -> List.of(simple);
+            case Pipeline pipeline -> pipeline.stages();
+            default -> List.of();
+        };
+        List<CommandAndArgs> commands = new ArrayList<>(stages.size());
+        for (CommandNode stage : stages) {
+            // command substitutions run in the job's thread, not in the one launching it
+            if (!(stage instanceof Simple simple) || simple.hasSubstitutions()) {
+                return Optional.empty();
+            }
+            CommandAndArgs cmdArgs = executor.expand(simple);
+            if (registry.isBultInCommand(cmdArgs.command())) {
+                return Optional.empty();
+            }
+            commands.add(cmdArgs);
+        }
+        return commands.isEmpty() ? Optional.empty() : Optional.of(commands);
+    }
+
+    private Job startProcesses(int id, String commandLine, List<CommandAndArgs> pipeline, ShellState shell)
+            throws IOException {
+        for (CommandAndArgs cmdArgs : pipeline) {
+            if (registry.getExecutableCommand(cmdArgs.command(), shell).isEmpty()) {
+                throw new IOException(cmdArgs.command() + ": not found");
+            }
+        }
+
+        List<ProcessBuilder> builders = new ArrayList<>(pipeline.size());
+        for (int i = 0; i < pipeline.size(); i++) {
+            CommandAndArgs cmdArgs = pipeline.get(i);
+            boolean isLast = i == pipeline.size() - 1;
+            ProcessBuilder pb = ProcessBuilderFactory.create(
+                    Stream.concat(Stream.of(cmdArgs.command()), cmdArgs.arguments().stream()).toList(),
+                    cmdArgs.assignments(), shell);
+            ProcessBuilderFactory.applyRedirect(pb, cmdArgs.redirectOptions(), isLast);
+            if (isLast && pb.redirectOutput() == ProcessBuilder.Redirect.PIPE) {
+                pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+            }
+            if (pb.redirectError() == ProcessBuilder.Redirect.PIPE) {
+                pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+            }
+            builders.add(pb);
+        }
+
+        List<Process> processes = ProcessBuilder.startPipeline(builders);
+        // background jobs never read from the terminal
+        processes.getFirst().getOutputStream().close();
+
+        Process last = processes.getLast();
+        CompletableFuture<Integer> completion = CompletableFuture
+                .allOf(processes.stream().map(Process::onExit).toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> last.exitValue());
+        return new Job(id, commandLine, processes.stream().map(Process::toHandle).toList(), completion);
+    }
+
+    private Job startThread(int id, String commandLine, CommandNode command, CommandListExecutor executor) {
+        CompletableFuture<Integer> completion = new CompletableFuture<>();
+        Thread.ofVirtual().name("jsh-job-" + id).start(() -> {
+            try {
+                completion.complete(executor.execute(command).exitStatus());
+            } catch (Throwable e) {
+                completion.completeExceptionally(e);
+            }
+        });
+        return new Job(id, commandLine, List.of(), completion);
+    }
+
+    /**
+     * Returns all jobs that have not been reported as finished yet, ordered by job number.
+     */
+    public Collection<Job> jobs() {
+        return jobs.values();
+    }
+
+    /**
+     * Resolves a job specification such as {@code %1}, {@code %+} or {@code %make}.
+     *
+     * @param spec the job specification
+     * @return the job, or empty if no job matches
+     */
+    public Optional<Job> find(String spec) {
+        if (spec == null || spec.equals("%") || spec.equals("%%") || spec.equals("%+")) {
+            return Optional.ofNullable(jobs.lastEntry()).map(Map.Entry::getValue);
+        }
+        if (spec.equals("%-")) {
+            var current = jobs.lastEntry();
+            return Optional.ofNullable(current == null ? null : jobs.lowerEntry(current.getKey()))
+                    .map(Map.Entry::getValue);
+        }
+        if (!spec.startsWith("%")) {
+            return Optional.empty();
+        }
+        String body = spec.substring(1);
+        try {
+            return Optional.ofNullable(jobs.get(Integer.parseInt(body)));
+        } catch (NumberFormatException e) {
+            return jobs.descendingMap().values().stream()
+                    .filter(job -> job.commandLine().startsWith(body))
+                    .findFirst();
+        }
+    }
+
+    /**
+     * Returns the marker shown after the job number: {@code +} for the current job,
+     * {@code -} for the previous one and a space otherwise.
+     */
+    public char marker(Job job) {
+        var current = jobs.lastEntry();
+        if (current != null && current.getValue() == job) {
+            return '+';
+        }
+        var previous = current == null ? null : jobs.lowerEntry(current.getKey());
+        return previous != null && previous.getValue() == job ? '-' : ' ';
+    }
+
+    /**
+     * Formats a job the way {@code jobs} and completion notifications print it,
+     * e.g. {@code [1]+  Running                 sleep 10 &}.
+     */
+    public String describe(Job job) {
+        String suffix = job.state() == Job.State.DONE ? "" : " &";
+        return String.format("[%d]%c  %-24s%s%s", job.id(), marker(job), job.statusLabel(),
+                job.commandLine(), suffix);
+    }
+
+    /**
+     * Removes finished jobs from the job table and returns their notifications.
+     *
+     * @return one line per finished job, in completion order
+     */
+    public List<String> drainFinished() {
+        List<String> lines = new ArrayList<>();
+        Job job;
+        while ((job = finished.poll()) != null) {
+            if (jobs.containsValue(job)) {
+                lines.add(describe(job));
+                jobs.remove(job.id(), job);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Waits for a job to finish and removes it from the job table without a notification.
+     *
+     * @param job the job to wait for
+     * @return the exit status of the job's last command
+     * @throws IOException          if a stopped job could not be continued
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public int waitFor(Job job) throws IOException, InterruptedException {
+        if (job.state() == Job.State.STOPPED) {
+            signal(job, "CONT");
+        }
+        int status;
+        try {
+            status = job.completion().get();
+        } catch (ExecutionException | CompletionException e) {
+            status = 1;
+        }
+        forget(job);
+        return status;
+    }
+
+    /**
+     * Removes a job from the job table without a completion notification.
+     *
+     * @param job the job to remove
+     */
+    public void forget(Job job) {
+        jobs.remove(job.id(), job);
+        finished.remove(job);
+    }
+
+    /**
+     * Sends a signal to every process of a job, including their descendants for
+     * {@code TERM} and {@code KILL}.
+     *
+     * @param job    the job to signal
+     * @param signal signal name or number, with or without the {@code SIG} prefix
+     * @return {@code false} if the job has no processes that can be signalled
+     * @throws IOException if the signal could not be delivered
+     */
+    public boolean signal(Job job, String signal) throws IOException {
+        if (job.processes().isEmpty()) {
+            return false;
+        }
+        String name = normalizeSignal(signal);
+        for (ProcessHandle process : job.processes()) {
+            signal(process, name);
+        }
+        switch (name) {
+            case "STOP", "TSTP" -> job.setState(Job.State.STOPPED);
+            case "CONT" -> job.setState(Job.State.RUNNING);
+            default -> { }
+        }
+        return true;
+    }
+
+    /**
+     * Sends a signal to a single process.
+     *
+     * <p>{@code TERM} and {@code KILL} are delivered through {@link ProcessHandle}, other signals
+     * are delegated to the system {@code kill} utility since the JDK cannot send them.
+     *
+     * @param process the target process
+     * @param signal  signal name or number, with or without the {@code SIG} prefix
+     * @throws IOException if the signal could not be delivered
+     */
+    public void signal(ProcessHandle process, String signal) throws IOException {
+        String name = normalizeSignal(signal);
+        switch (name) {
+            case SIGNAL_TERM -> {
+                process.descendants().forEach(ProcessHandle::destroy);
+                process.destroy();
+            }
+            case SIGNAL_KILL -> {
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+            }
+            default -> {
+                try {
+                    int status = ProcessBuilderFactory
+                            .create("kill", "-" + name, String.valueOf(process.pid()))
+                            .inheritIO()
+                            .start()
+                            .waitFor();
+                    if (status != 0) {
+                        throw new IOException("failed to send SIG" + name + " to " + process.pid());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static String normalizeSignal(String signal) {
+        String name = signal.toUpperCase();
+        if (name.startsWith("SIG")) {
+            name = name.substring(3);
+        }
+        return switch (name) {
+            case "15" -> SIGNAL_TERM;
+            case "9" -> SIGNAL_KILL;
+            default -> name;
+        };
+    }
+
+    private static class JobSupervisorHolder {
+        private static final JobSupervisor INSTANCE = new JobSupervisor(
+                CommandRegistry.getInstance(),
+                new CommandListExecutor(new SegmentedExecutor(CommandRegistry.getInstance())));
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.lowkkid.jsh.executor;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Collects the output of a command substitution in memory, up to a limit.
+ *
+ * <p>Output starts out in a buffer of {@value #POOLED_SIZE} bytes taken from a small pool, which
+ * holds the typical {@code $(pwd)} or {@code $(git rev-parse HEAD)} without allocating, and only
+ * grows beyond it for larger output. A write past the limit keeps what still fits and throws a
+ * {@link BrokenPipeException}, which stops the command like a pipeline whose reader has gone away.
+ */
+final class OutputCapture extends OutputStream {
+
+    /** Limit when {@value CommandListExecutor#SUBSTITUTION_LIMIT_VARIABLE} is not set. */
+    static final int DEFAULT_LIMIT = 16 * 1024 * 1024;
+
+    private static final int POOLED_SIZE = 8192;
+    private static final int MAX_POOLED = 8;
+
+    private static final BlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private final int limit;
+    private byte[] buffer;
+    private int count;
+    private boolean truncated;
+
+    /**
+     * Creates a capture.
+     *
+     * @param limit the maximum number of bytes kept
+     */
+    OutputCapture(int limit) {
+        this.limit = limit;
+        byte[] pooled = POOL.poll();
+        this.buffer = pooled != null ? pooled : new byte[POOLED_SIZE];
+    }
+
+    /**
+     * Reads the limit from the value of {@value CommandListExecutor#SUBSTITUTION_LIMIT_VARIABLE}.
+     *
+     * @param value number of bytes, or {@code null} if the variable is not set
+     * @return the limit, {@link #DEFAULT_LIMIT} if the value is not a positive number
+     */
+    static int limit(String value) {
+        if (value == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            int limit = Integer.parseInt(value.trim());
+            return limit > 0 ? limit : DEFAULT_LIMIT;
+        } catch (NumberFormatException e) {
+            return DEFAULT_LIMIT;
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        int accepted = Math.min(len, limit - count);
+        if (accepted > 0) {
+            if (count + accepted > buffer.length) {
+                grow(count + accepted);
+            }
+            System.arraycopy(b, off, buffer, count, accepted);
+            count += accepted;
+        }
+        if (accepted < len) {
+            truncated = true;
+            throw new BrokenPipeException();
+        }
+    }
+
+    private void grow(int minimum) {
+        byte[] previous = buffer;
+        buffer = Arrays.copyOf(previous, (int) Math.min(limit, Math.max(minimum, previous.length * 2L)));
+        if (previous.length == POOLED_SIZE) {
+            POOL.offer(previous);
+        }
+    }
+
+    /**
+     * Returns {@code true} if output was dropped because it exceeded the limit.
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Returns the output as UTF-8 text without trailing newlines, the value of the substitution.
+     */
+    String text() {
+        int end = count;
+        while (end > 0 && buffer[end - 1] == '\n') {
+            end--;
+        }
+        return new String(buffer, 0, end, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the buffer to the pool. The output must have been read before.
+     */
+    @Override
+    public void close() {
+        if (buffer.length == POOLED_SIZE) {
+            POOL.offer(buffer);
+        }
+        buffer = new byte[0];
+        count = 0;
+    }
+}
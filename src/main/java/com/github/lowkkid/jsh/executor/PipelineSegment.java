@@ -3,6 +3,7 @@ package com.github.lowkkid.jsh.executor;
 import com.github.lowkkid.jsh.command.Command;
 import com.github.lowkkid.jsh.parser.CommandAndArgs;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a segment of a command pipeline.
@@ -27,10 +28,17 @@ public sealed interface PipelineSegment permits
     /**
      * A segment containing a single built-in command.
      *
-     * @param command the built-in command instance
-     * @param args    command arguments
+     * @param command     the built-in command instance
+     * @param args        command arguments
+     * @param assignments variables set for this command only
      */
-    record BuiltInSegment(Command command, List<String> args) implements PipelineSegment {}
+    record BuiltInSegment(Command command, List<String> args, Map<String, String> assignments)
+            implements PipelineSegment {
+
+        public BuiltInSegment(Command command, List<String> args) {
+            this(command, args, Map.of());
+        }
+    }
 
     /**
      * A segment containing one or more external commands.
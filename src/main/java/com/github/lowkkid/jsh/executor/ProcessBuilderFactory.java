@@ -1,8 +1,18 @@
 package com.github.lowkkid.jsh.executor;
 
+import static com.github.lowkkid.jsh.utils.FileUtils.createParentDirsIfNotExists;
+
 import com.github.lowkkid.jsh.Main;
 import com.github.lowkkid.jsh.config.env.EnvStorage;
+import com.github.lowkkid.jsh.config.env.ShellState;
+import com.github.lowkkid.jsh.parser.RedirectOptions;
+import com.github.lowkkid.jsh.utils.PathIndex;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Factory for creating {@link ProcessBuilder} instances with the shell's
@@ -11,9 +21,17 @@ import java.util.List;
  * <p>By default, {@code ProcessBuilder} inherits {@link System#getenv()} of the JVM process.
  * This factory replaces that with the shell's own exported variables from {@link EnvStorage},
  * so that {@code set}, {@code export}, and {@code unset} changes are visible to child processes.
+ * Only the variables that differ from the inherited environment are applied to each builder,
+ * see {@link com.github.lowkkid.jsh.config.env.ExportedEnvironment}.
+ *
+ * <p>{@code ProcessBuilder} looks a command name up in the {@code PATH} of the JVM, not in that of
+ * the environment it passes on. When a shell's {@code PATH} differs, e.g. in a daemon session or
+ * after {@code export PATH=...}, the command is resolved in the shell's {@code PATH} here instead.
  */
 public final class ProcessBuilderFactory {
 
+    private static final Path DEV_NULL = Path.of("/dev/null");
+
     private ProcessBuilderFactory() {}
 
     /**
@@ -24,11 +42,34 @@ public final class ProcessBuilderFactory {
      * @return a configured {@link ProcessBuilder}
      */
     public static ProcessBuilder create(List<String> command) {
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.directory(Main.currentDir.toFile());
-        pb.environment().clear();
-        pb.environment().putAll(EnvStorage.getExportedVars());
-        return pb;
+        return create(command, Map.of());
+    }
+
+    /**
+     * Creates a {@link ProcessBuilder} with the shell's exported environment plus variables assigned
+     * for this command only, and {@link Main#currentDir} as the working directory.
+     *
+     * @param command     the command and its arguments
+     * @param assignments variables set in front of the command ({@code FOO=bar cmd})
+     * @return a configured {@link ProcessBuilder}
+     */
+    public static ProcessBuilder create(List<String> command, Map<String, String> assignments) {
+        return create(command, assignments, ShellState.global());
+    }
+
+    /**
+     * Creates a {@link ProcessBuilder} with the exported environment of a shell plus variables assigned
+     * for this command only, and the shell's working directory, e.g. for a command of a background job.
+     *
+     * @param command     the command and its arguments
+     * @param assignments variables set in front of the command ({@code FOO=bar cmd})
+     * @param shell       the shell starting the process
+     * @return a configured {@link ProcessBuilder}
+     */
+    public static ProcessBuilder create(List<String> command, Map<String, String> assignments, ShellState shell) {
+        ProcessBuilder pb = new ProcessBuilder(resolveInShellPath(command, shell));
+        pb.directory(shell.workingDirectory().toFile());
+        return shell.variables().exportedEnvironment().withOverlay(assignments).applyTo(pb);
     }
 
     /**
@@ -41,4 +82,62 @@ public final class ProcessBuilderFactory {
     public static ProcessBuilder create(String... command) {
         return create(List.of(command));
     }
+
+    /**
+     * Replaces a command name by the executable found in the shell's {@code PATH}, if that is not
+     * the {@code PATH} the JVM would search. Names that are not found are left for the JVM to report.
+     */
+    private static List<String> resolveInShellPath(List<String> command, ShellState shell) {
+        String name = command.getFirst();
+        if (name.contains("/") || Objects.equals(shell.variables().get("PATH"), System.getenv("PATH"))) {
+            return command;
+        }
+        String executable = PathIndex.forShell(shell).resolve(name);
+        if (executable == null) {
+            return command;
+        }
+        List<String> resolved = new ArrayList<>(command);
+        resolved.set(0, executable);
+        return resolved;
+    }
+
+    /**
+     * Applies a shell redirect ({@code >}, {@code >>}, {@code 2>}, {@code 2>>}) to a {@link ProcessBuilder},
+     * so the child process writes straight to the target file and the bytes never pass through the JVM.
+     *
+     * <p>The target is resolved against the working directory of {@code pb}; missing parent directories are created.
+     * {@code /dev/null} is mapped to {@link ProcessBuilder.Redirect#DISCARD}.
+     *
+     * @param pb              the process builder to configure
+     * @param redirectOptions the redirect parsed from the command line, may be {@code null}
+     * @param allowStdOut     whether stdout may be redirected; {@code false} for processes whose stdout
+     *                        must stay connected to the next process of a pipeline
+     * @return the same {@link ProcessBuilder}
+     */
+    public static ProcessBuilder applyRedirect(ProcessBuilder pb, RedirectOptions redirectOptions,
+                                               boolean allowStdOut) {
+        if (redirectOptions == null || (redirectOptions.isRedirectingStdOut() && !allowStdOut)) {
+            return pb;
+        }
+        ProcessBuilder.Redirect target = toRedirect(pb, redirectOptions);
+        if (redirectOptions.isRedirectingStdOut()) {
+            pb.redirectOutput(target);
+        } else {
+            pb.redirectError(target);
+        }
+        return pb;
+    }
+
+    private static ProcessBuilder.Redirect toRedirect(ProcessBuilder pb, RedirectOptions redirectOptions) {
+        Path workingDir = pb.directory() != null ? pb.directory().toPath() : Main.currentDir;
+        Path target = workingDir.resolve(redirectOptions.redirectTo()).normalize();
+        if (DEV_NULL.equals(target)) {
+            return ProcessBuilder.Redirect.DISCARD;
+        }
+        createParentDirsIfNotExists(target);
+        File file = target.toFile();
+        return redirectOptions.isAppending()
+                ? ProcessBuilder.Redirect.appendTo(file)
+                : ProcessBuilder.Redirect.to(file);
+    }
 }
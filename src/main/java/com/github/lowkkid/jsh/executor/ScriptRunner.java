@@ -0,0 +1,129 @@
+package com.github.lowkkid.jsh.executor;
+
+import static com.github.lowkkid.jsh.executor.CommandListExecutor.MISUSE;
+import static com.github.lowkkid.jsh.executor.SegmentedExecutor.COMMAND_NOT_FOUND;
+
+import com.github.lowkkid.jsh.executor.CommandExecutor.ExecutionResult;
+import com.github.lowkkid.jsh.parser.CommandNode;
+import com.github.lowkkid.jsh.parser.InputParser;
+import com.github.lowkkid.jsh.parser.SyntaxException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Runs commands without a terminal: a single command line ({@code jsh -c '...'}),
+ * a script file ({@code jsh script.jsh}) or the lines read from stdin.
+ *
+ * <p>A script is executed line by line, each line before the next one is parsed, so aliases
+ * and variables defined by a line apply to the following ones. A line that leaves a command
+ * unfinished, e.g. ending in {@code |} or {@code &&} or inside {@code ( ... )}, is joined with
+ * the next one. A syntax error stops the script with {@link CommandListExecutor#MISUSE};
+ * {@code exit} stops it with the status of the last command.
+ */
+public final class ScriptRunner {
+
+    private final InputParser parser;
+    private final CommandListExecutor executor;
+    private final PrintStream stdErr;
+
+    /**
+     * Creates a runner.
+     *
+     * @param parser   parses the command lines
+     * @param executor executes them, with the streams the commands should use
+     * @param stdErr   where syntax errors and unreadable scripts are reported
+     */
+    public ScriptRunner(InputParser parser, CommandListExecutor executor, PrintStream stdErr) {
+        this.parser = parser;
+        this.executor = executor;
+        this.stdErr = stdErr;
+    }
+
+    /**
+     * Runs what the shell's arguments ask for: {@code -c command} runs the command,
+     * a path runs that script and no arguments run the lines of {@code stdIn}.
+     *
+     * @param args             the arguments of {@code jsh}
+     * @param stdIn            script read when there are no arguments
+     * @param workingDirectory directory a relative script path is resolved against
+     * @return exit status of the last command
+     * @throws IOException if reading the script fails
+     */
+    public int run(List<String> args, InputStream stdIn, Path workingDirectory) throws IOException {
+        if (args.isEmpty()) {
+            return runScript(new BufferedReader(new InputStreamReader(stdIn, StandardCharsets.UTF_8)));
+        }
+        if ("-c".equals(args.getFirst())) {
+            if (args.size() < 2) {
+                stdErr.println("jsh: -c: option requires an argument");
+                return MISUSE;
+            }
+            return runCommand(args.get(1));
+        }
+        try (BufferedReader script = Files.newBufferedReader(workingDirectory.resolve(args.getFirst()))) {
+            return runScript(script);
+        } catch (NoSuchFileException e) {
+            stdErr.println("jsh: " + args.getFirst() + ": No such file or directory");
+            return COMMAND_NOT_FOUND;
+        }
+    }
+
+    /**
+     * Parses and executes a command line, which may span several lines.
+     *
+     * @param commandLine the command line
+     * @return exit status of the last command, {@link CommandListExecutor#MISUSE} on a syntax error
+     */
+    public int runCommand(String commandLine) {
+        try {
+            return executor.execute(parser.parse(commandLine, executor.shell().aliases())).exitStatus();
+        } catch (SyntaxException e) {
+            stdErr.println(e.getMessage());
+            return MISUSE;
+        }
+    }
+
+    /**
+     * Executes a script line by line, until its end, {@code exit}, a syntax error or until
+     * the calling thread is interrupted.
+     *
+     * @param script the script; not closed
+     * @return exit status of the last command
+     * @throws IOException if reading the script fails
+     */
+    public int runScript(BufferedReader script) throws IOException {
+        var pending = new StringBuilder();
+        int exitStatus = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            pending.append(line).append('\n');
+            CommandNode command;
+            try {
+                command = parser.parse(pending.toString(), executor.shell().aliases());
+            } catch (SyntaxException e) {
+                if (e.isIncomplete()) {
+                    continue;
+                }
+                stdErr.println(e.getMessage());
+                return MISUSE;
+            }
+            pending.setLength(0);
+
+            ExecutionResult result = executor.execute(command);
+            exitStatus = result.exitStatus();
+            if (result.shouldBreak() || Thread.currentThread().isInterrupted()) {
+                return exitStatus;
+            }
+        }
+        // the script ended inside an unfinished command
+        return pending.isEmpty() ? exitStatus : runCommand(pending.toString());
+    }
+}
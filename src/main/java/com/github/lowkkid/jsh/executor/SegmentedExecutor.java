@@ -1,16 +1,26 @@
 package com.github.lowkkid.jsh.executor;
 
 import com.github.lowkkid.jsh.command.Command;
+import com.github.lowkkid.jsh.command.ExecutionContext;
+import com.github.lowkkid.jsh.command.ExternalCommand;
 import com.github.lowkkid.jsh.command.utils.CommandRegistry;
 import com.github.lowkkid.jsh.executor.PipelineSegment.BuiltInSegment;
 import com.github.lowkkid.jsh.executor.PipelineSegment.ExternalSegment;
 import com.github.lowkkid.jsh.parser.CommandAndArgs;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 /**
@@ -18,8 +28,9 @@ import java.util.stream.Stream;
  *
  * <p>Pipelines are split into segments at built-in command boundaries.
  * External command segments use {@link ProcessBuilder#startPipeline(List)}
- * for efficient OS-level piping. Built-in commands are executed in the JVM
- * with buffered I/O between segments.
+ * for efficient OS-level piping. Built-in commands are executed in the JVM.
+ * All segments run concurrently and stream data to each other through
+ * {@link BoundedPipe}s, so no segment output is ever fully buffered in memory.
  *
  * <h2>Example</h2>
  * <pre>
@@ -30,12 +41,18 @@ import java.util.stream.Stream;
  *   2. BuiltIn  [pwd]                → executed in JVM
  *   3. External [wc -l]              → executed via startPipeline()
  *
- * Data flow:
- *   startPipeline([cat, grep]) → buffer → pwd → buffer → startPipeline([wc])
+ * Data flow (all three segments run at the same time):
+ *   startPipeline([cat, grep]) → pipe → pwd → pipe → startPipeline([wc])
  * </pre>
  */
 public class SegmentedExecutor implements CommandExecutor {
 
+    /** Exit status of a command that could not be found, as in POSIX shells. */
+    public static final int COMMAND_NOT_FOUND = 127;
+
+    /** Variable that, when {@code true}, prefixes stderr lines of pipeline processes with their stage. */
+    public static final String STDERR_PREFIX_VARIABLE = "JSH_STDERR_PREFIX";
+
     private final CommandRegistry registry;
 
     public SegmentedExecutor(CommandRegistry registry) {
@@ -43,36 +60,35 @@ public class SegmentedExecutor implements CommandExecutor {
     }
 
     @Override
-    public ExecutionResult executeSingle(CommandAndArgs commandAndArgs) {
+    public ExecutionResult executeSingle(ExecutionContext context, CommandAndArgs commandAndArgs) {
         var command = commandAndArgs.command();
         var arguments = commandAndArgs.arguments();
         var shouldBeRedirected = commandAndArgs.shouldBeRedirected();
 
-        var executableCommandOpt = registry.getExecutableCommand(command);
+        var executableCommandOpt = registry.getExecutableCommand(command, context.shell());
 
         if (executableCommandOpt.isEmpty()) {
-            System.out.println(command + ": not found");
-            return new ExecutionResult(false);
+            context.stdOut().println(command + ": not found");
+            return new ExecutionResult(false, COMMAND_NOT_FOUND);
         }
 
         var executableCommand = executableCommandOpt.get();
-        if (shouldBeRedirected) {
-            executableCommand.executeWithRedirect(arguments, commandAndArgs.redirectOptions());
-        } else {
-            executableCommand.execute(arguments);
-        }
+        var commandContext = context.withAssignments(commandAndArgs.assignments());
+        int exitStatus = shouldBeRedirected
+                ? executableCommand.executeWithRedirect(commandContext, arguments, commandAndArgs.redirectOptions())
+                : executableCommand.execute(commandContext, arguments);
 
-        return new ExecutionResult(executableCommand.shouldBreak());
+        return new ExecutionResult(executableCommand.shouldBreak(), exitStatus);
     }
 
     @Override
-    public ExecutionResult executePipeline(List<CommandAndArgs> commandsAndArgs) {
+    public ExecutionResult executePipeline(ExecutionContext context, List<CommandAndArgs> commandsAndArgs) {
         if (commandsAndArgs.size() < 2) {
             throw new IllegalArgumentException("Pipeline requires at least 2 commands");
         }
 
-        List<PipelineSegment> segments = splitIntoSegments(commandsAndArgs);
-        return executeSegments(segments);
+        List<PipelineSegment> segments = splitIntoSegments(context, commandsAndArgs);
+        return executeSegments(context, segments);
     }
 
     /**
@@ -81,7 +97,7 @@ public class SegmentedExecutor implements CommandExecutor {
      * <p>Consecutive external commands are grouped into a single segment.
      * Each built-in command becomes its own segment.
      */
-    protected List<PipelineSegment> splitIntoSegments(List<CommandAndArgs> commandsAndArgs) {
+    protected List<PipelineSegment> splitIntoSegments(ExecutionContext context, List<CommandAndArgs> commandsAndArgs) {
         List<PipelineSegment> segments = new ArrayList<>();
         List<CommandAndArgs> currentExternalBatch = new ArrayList<>();
 
@@ -94,8 +110,18 @@ public class SegmentedExecutor implements CommandExecutor {
                     currentExternalBatch.clear();
                 }
 
+                // commands are stateless, so the shared instance may run in several segments at once
                 var command = registry.getExecutableCommand(commandName);
-                command.ifPresent(value -> segments.add(new BuiltInSegment(value, cmdArgs.arguments())));
+                command.ifPresent(value -> segments.add(
+                        new BuiltInSegment(value, cmdArgs.arguments(), cmdArgs.assignments())));
+            } else if (needsBatches(context, cmdArgs)) {
+                if (!currentExternalBatch.isEmpty()) {
+                    segments.add(new ExternalSegment(new ArrayList<>(currentExternalBatch)));
+                    currentExternalBatch.clear();
+                }
+                // too long for a single process, so it runs like a built-in that starts one per batch
+                segments.add(new BuiltInSegment(new ExternalCommand(commandName), cmdArgs.arguments(),
+                        cmdArgs.assignments()));
             } else {
                 currentExternalBatch.add(cmdArgs);
             }
@@ -108,102 +134,202 @@ public class SegmentedExecutor implements CommandExecutor {
         return segments;
     }
 
+    private static boolean needsBatches(ExecutionContext context, CommandAndArgs cmdArgs) {
+        UnaryOperator<String> variables = context.withAssignments(cmdArgs.assignments()).variables();
+        if (ArgumentBatcher.Mode.of(variables.apply(ArgumentBatcher.BATCH_VARIABLE))
+                == ArgumentBatcher.Mode.OFF) {
+            return false;
+        }
+        long budget = ArgumentBatcher.budget(
+                context.shell().variables().exportedEnvironment().withOverlay(cmdArgs.assignments()).variables(),
+                variables.apply(ArgumentBatcher.ARG_MAX_VARIABLE));
+        return !ArgumentBatcher.fits(cmdArgs.command(), cmdArgs.arguments(), budget);
+    }
+
     /**
-     * Executes segments sequentially, passing buffered data between them.
+     * Executes all segments concurrently, connecting neighbours with {@link BoundedPipe}s.
+     *
+     * <p>Every segment runs on its own virtual thread, so data starts flowing downstream as soon
+     * as the first segment produces it and at most {@link BoundedPipe#DEFAULT_CAPACITY} bytes
+     * are held in memory between any two segments. When a segment finishes, it closes the read
+     * end of its input pipe, which stops upstream segments early (see {@link BrokenPipeException}).
+     * {@link CommandListExecutor} passes its own segments for pipelines with command groups.
      */
-    private ExecutionResult executeSegments(List<PipelineSegment> segments) {
-        byte[] buffer = null;
-        boolean shouldBreak = false;
-
-        for (int i = 0; i < segments.size(); i++) {
-            PipelineSegment segment = segments.get(i);
-            boolean isLast = (i == segments.size() - 1);
-
-            InputStream input = (buffer != null)
-                    ? new ByteArrayInputStream(buffer)
-                    : null;
-
-            SegmentResult result = switch (segment) {
-                case BuiltInSegment builtIn -> executeBuiltInSegment(builtIn, input, isLast);
-                case ExternalSegment external -> executeExternalSegment(external, input, isLast);
-            };
+    ExecutionResult executeSegments(ExecutionContext context, List<PipelineSegment> segments) {
+        int count = segments.size();
+        List<BoundedPipe> pipes = new ArrayList<>(count - 1);
+        for (int i = 0; i < count - 1; i++) {
+            pipes.add(new BoundedPipe());
+        }
 
-            buffer = result.output();
-            if (result.shouldBreak()) {
-                shouldBreak = true;
-                break;
+        var stderr = new StderrMultiplexer(context.stdErr(),
+                Boolean.parseBoolean(context.variables().apply(STDERR_PREFIX_VARIABLE)));
+        List<Future<ExecutionResult>> results = new ArrayList<>(count);
+        try (ExecutorService segmentThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            int firstStage = 1;
+            for (int i = 0; i < count; i++) {
+                PipelineSegment segment = segments.get(i);
+                InputStream input = i > 0 ? pipes.get(i - 1).source() : nonClosing(context.stdIn());
+                OutputStream output = i < count - 1 ? pipes.get(i).sink() : null;
+                int stage = firstStage;
+
+                results.add(segmentThreads.submit(() -> switch (segment) {
+                    case BuiltInSegment builtIn -> executeBuiltInSegment(context, builtIn, input, output);
+                    case ExternalSegment external ->
+                            executeExternalSegment(context, external, stderr, stage, input, output);
+                }));
+                firstStage += segment instanceof ExternalSegment external ? external.commands().size() : 1;
             }
         }
+        try {
+            stderr.awaitAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
 
-        return new ExecutionResult(shouldBreak);
+        // like a POSIX shell, the pipeline's exit status is the one of its last command
+        boolean shouldBreak = false;
+        ExecutionResult last = null;
+        for (Future<ExecutionResult> result : results) {
+            last = resultOf(context, result);
+            shouldBreak |= last.shouldBreak();
+        }
+        return new ExecutionResult(shouldBreak, last.exitStatus());
     }
 
-    private record SegmentResult(byte[] output, boolean shouldBreak) {}
+    /**
+     * Returns the result of a finished segment. A segment whose task failed with an exception
+     * is reported on stderr and gets exit status 1, so the failure does not escape the pipeline.
+     */
+    private static ExecutionResult resultOf(ExecutionContext context, Future<ExecutionResult> result) {
+        if (result.state() == Future.State.SUCCESS) {
+            return result.resultNow();
+        }
+        String message = result.state() == Future.State.FAILED
+                ? String.valueOf(result.exceptionNow().getMessage())
+                : "segment was cancelled";
+        context.stdErr().println("Pipeline error: " + message);
+        return new ExecutionResult(false, 1);
+    }
 
     /**
      * Executes a built-in command segment.
+     *
+     * @param input  read end of the pipe from the previous segment, or the pipeline's input; may be {@code null}
+     * @param output write end of the pipe to the next segment, or {@code null} for the last segment
+     * @return the command's result
      */
-    private SegmentResult executeBuiltInSegment(BuiltInSegment segment, InputStream input,
-                                                boolean isLast) {
+    private ExecutionResult executeBuiltInSegment(ExecutionContext context, BuiltInSegment segment,
+                                                  InputStream input, OutputStream output) {
         Command command = segment.command();
-        ByteArrayOutputStream output = isLast ? null : new ByteArrayOutputStream();
-
-        if (isLast) {
-            // last segment: write directly to System.out
-            command.executeInPipeline(input, System.out, segment.args());
-        } else {
-            command.executeInPipeline(input, output, segment.args());
+        // last segment: write directly to the pipeline's stdout; otherwise buffer the pipe,
+        // so a command printing line by line does not hand every line to the next segment separately
+        PrintStream stdOut = output != null
+                ? new PrintStream(new BufferedOutputStream(output, BoundedPipe.DEFAULT_CAPACITY), false,
+                        StandardCharsets.UTF_8)
+                : context.stdOut();
+        try {
+            int exitStatus = command.execute(
+                    context.withAssignments(segment.assignments()).withStdIn(input).withStdOut(stdOut), segment.args());
+            stdOut.flush();
+            return new ExecutionResult(command.shouldBreak(), exitStatus);
+        } finally {
+            closeQuietly(output);
+            closeQuietly(input);
         }
-
-        return new SegmentResult(
-                output != null ? output.toByteArray() : null,
-                command.shouldBreak()
-        );
     }
 
     /**
      * Executes an external command segment using ProcessBuilder.startPipeline().
+     *
+     * <p>The stderr of every process is drained by {@code stderr} while the segment runs; only the
+     * very last process of the pipeline writes to the terminal directly when no prefix is wanted.
+     *
+     * @param stderr     forwards the stderr of the processes
+     * @param firstStage 1-based position of the segment's first process in the pipeline
+     * @param input  read end of the pipe from the previous segment, or the pipeline's input; may be {@code null}
+     * @param output write end of the pipe to the next segment, or {@code null} for the last segment
+     * @return the exit status of the segment's last process; external commands never terminate the shell
      */
-    private SegmentResult executeExternalSegment(ExternalSegment segment, InputStream input,
-                                                 boolean isLast) {
-        List<ProcessBuilder> builders = new ArrayList<>(segment.commands().stream()
-                .map(this::createProcessBuilder)
-                .toList());
+    private ExecutionResult executeExternalSegment(ExecutionContext context, ExternalSegment segment,
+                                                   StderrMultiplexer stderr, int firstStage,
+                                                   InputStream input, OutputStream output) {
+        List<CommandAndArgs> commands = segment.commands();
+        List<ProcessBuilder> builders = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            CommandAndArgs cmdArgs = commands.get(i);
+            // startPipeline() requires stdout of all but the last process to stay a pipe
+            boolean isLastInSegment = i == commands.size() - 1;
+            builders.add(ProcessBuilderFactory.applyRedirect(
+                    createProcessBuilder(context, cmdArgs), cmdArgs.redirectOptions(), isLastInSegment));
+        }
 
-        // for last segment, redirect output directly to terminal (no buffering)
-        if (isLast) {
-            builders.getLast().redirectOutput(ProcessBuilder.Redirect.INHERIT);
-            builders.getLast().redirectError(ProcessBuilder.Redirect.INHERIT);
+        // for last segment, write directly to terminal (no buffering) unless redirected to a file;
+        // if the context's streams are not the terminal, the output is copied to them instead
+        OutputStream stdOut = output;
+        if (output == null) {
+            ProcessBuilder last = builders.getLast();
+            if (last.redirectOutput() == ProcessBuilder.Redirect.PIPE) {
+                if (context.stdOut() == System.out) {
+                    last.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+                } else {
+                    stdOut = context.stdOut();
+                }
+            }
+            if (last.redirectError() == ProcessBuilder.Redirect.PIPE && context.stdErr() == System.err
+                    && !stderr.prefixesStages()) {
+                last.redirectError(ProcessBuilder.Redirect.INHERIT);
+            }
         }
 
+        Thread inputFeeder = null;
+        SharedInput.Connection sharedInput = null;
+        int exitStatus = 1;
         try {
+            // a session's input is read through its named pipe, so what is left unread stays for later commands
+            if (input instanceof SharedInput shared) {
+                sharedInput = shared.connect(builders.getFirst());
+            }
             List<Process> processes = ProcessBuilder.startPipeline(builders);
             Process first = processes.getFirst();
             Process last = processes.getLast();
+            for (int i = 0; i < processes.size(); i++) {
+                if (builders.get(i).redirectError() == ProcessBuilder.Redirect.PIPE) {
+                    stderr.drain(firstStage + i, processes.get(i).getErrorStream());
+                }
+            }
 
             // Feed input from previous segment in a separate thread to avoid deadlock
-            Thread inputFeeder = null;
-            if (input != null) {
-                final InputStream finalInput = input;
+            if (sharedInput != null) {
+                sharedInput.start();
+            } else if (input != null) {
                 inputFeeder = Thread.startVirtualThread(() -> {
                     try (var os = first.getOutputStream()) {
-                        finalInput.transferTo(os);
+                        BufferPool.transfer(input, os);
                     } catch (IOException ignored) {
-                        // Broken pipe is expected when downstream closes early
+                        // Broken pipe is expected when the process exits without reading everything
+                    } finally {
+                        closeQuietly(input);
                     }
                 });
-            } else {
+            }
+            if (inputFeeder == null) {
                 first.getOutputStream().close();
             }
 
-            byte[] output = null;
-            if (!isLast) {
-                // Capture output for next segment
-                output = last.getInputStream().readAllBytes();
+            if (stdOut != null) {
+                // Stream output to the next segment; if it stops reading, close our end
+                // so the process receives SIGPIPE on its next write
+                try (var processOutput = last.getInputStream()) {
+                    BufferPool.transfer(processOutput, stdOut);
+                } catch (BrokenPipeException ignored) {
+                    // downstream segment finished early
+                }
+                closeQuietly(output);
             }
 
             // Wait for the last process (others will terminate via SIGPIPE)
-            last.waitFor();
+            exitStatus = last.waitFor();
 
             if (inputFeeder != null) {
                 inputFeeder.join(100);
@@ -212,26 +338,53 @@ public class SegmentedExecutor implements CommandExecutor {
                 }
             }
 
-            // Handle stderr for non-last segments
-            if (!isLast) {
-                for (Process p : processes) {
-                    p.getErrorStream().transferTo(System.err);
-                }
+        } catch (IOException | InterruptedException e) {
+            context.stdErr().println("Pipeline error: " + e.getMessage());
+        } finally {
+            closeQuietly(sharedInput);
+            closeQuietly(output);
+            if (inputFeeder == null) {
+                closeQuietly(input);
             }
+        }
+        return new ExecutionResult(false, exitStatus);
+    }
 
-            return new SegmentResult(output, false);
+    /**
+     * Wraps the pipeline's input, so that the first segment closing its input when it is done
+     * leaves the stream open for the commands that follow the pipeline. A {@link SharedInput}
+     * is never closed by its commands and is passed on as it is, so that processes can read it
+     * through its named pipe.
+     */
+    private static InputStream nonClosing(InputStream stdIn) {
+        if (stdIn == null || stdIn instanceof SharedInput) {
+            return stdIn;
+        }
+        return new FilterInputStream(stdIn) {
+            @Override
+            public void close() {
+                // the stream belongs to the caller
+            }
+        };
+    }
 
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Pipeline error: " + e.getMessage());
-            return new SegmentResult(null, false);
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // nothing useful to do, the other side is already gone
         }
     }
 
-    private ProcessBuilder createProcessBuilder(CommandAndArgs cmdArgs) {
+    private ProcessBuilder createProcessBuilder(ExecutionContext context, CommandAndArgs cmdArgs) {
         var command = cmdArgs.command();
         var arguments = cmdArgs.arguments();
 
         return ProcessBuilderFactory.create(
-                Stream.concat(Stream.of(command), arguments.stream()).toList());
+                Stream.concat(Stream.of(command), arguments.stream()).toList(), cmdArgs.assignments(), context.shell())
+                .directory(context.workingDirectory().toFile());
     }
 }
@@ -0,0 +1,338 @@
+package com.github.lowkkid.jsh.executor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Input that the commands of a session read one after another, e.g. the stdin a daemon client
+ * forwards.
+ *
+ * <p>A process cannot be handed the stream itself, and copying the stream into the stdin pipe of
+ * the process would take bytes the process never reads away from the commands after it: in
+ * {@code sleep 1; cat}, {@code sleep} would swallow the input. So a process reads the input
+ * through a named pipe instead, see {@link #connect(ProcessBuilder)}. Once the process has exited,
+ * whatever is still in the named pipe, or not yet written to it, is put back in front of the
+ * input for the next command. Built-in commands read the stream directly.
+ *
+ * <p>Named pipes are made ahead of time, several with a single {@code mkfifo}, so that starting a
+ * session does not wait for it. Where there are none (Windows, or {@code mkfifo} failing),
+ * {@link #connect(ProcessBuilder)} returns {@code null} and the input is copied into the process's
+ * stdin like any other; a process then consumes more of it than it reads.
+ *
+ * <p>The source must stop a blocked read when the reading thread is interrupted, without losing
+ * data, as the {@link BoundedPipe#source()} does.
+ *
+ * <p>Closing the stream does nothing: it belongs to the session, not to one of its commands.
+ * The session ends it with {@link #release()}.
+ */
+public final class SharedInput extends InputStream {
+
+    private final InputStream source;
+    /** Bytes processes did not read, oldest first, read before the {@link #source}. */
+    private final Deque<ByteBuffer> unread = new ArrayDeque<>();
+    private Path namedPipe;
+
+    public SharedInput(InputStream source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        synchronized (unread) {
+            ByteBuffer first = unread.peekFirst();
+            if (first != null) {
+                int n = Math.min(len, first.remaining());
+                first.get(b, off, n);
+                if (!first.hasRemaining()) {
+                    unread.removeFirst();
+                }
+                return n;
+            }
+        }
+        return source.read(b, off, len);
+    }
+
+    @Override
+    public void close() {
+        // the input belongs to the session, see release()
+    }
+
+    /**
+     * Closes the source and removes the named pipe, once the session has finished.
+     *
+     * @throws IOException if the named pipe cannot be removed
+     */
+    public synchronized void release() throws IOException {
+        source.close();
+        if (namedPipe != null) {
+            Files.deleteIfExists(namedPipe);
+            namedPipe = null;
+        }
+    }
+
+    /**
+     * Makes the first named pipes in the background, so that the first session does not wait for them.
+     */
+    public static void warmUp() {
+        NamedPipes.refillIfLow();
+    }
+
+    /**
+     * Makes a process that is about to be started read this input. Its stdin is redirected to the
+     * named pipe, which is fed from the input from {@link Connection#start()} until the connection
+     * is closed.
+     *
+     * @param builder the process
+     * @return the connection, to be started once the process has been started and closed once it
+     *         has exited, or {@code null} if there is no named pipe and the caller copies the input
+     *         into the process itself
+     * @throws IOException if the named pipe cannot be opened
+     */
+    public Connection connect(ProcessBuilder builder) throws IOException {
+        Path pipe = namedPipe();
+        if (pipe == null) {
+            return null;
+        }
+        // opening a named pipe for reading and writing never waits for the other end, so neither
+        // this nor the process opening its stdin blocks
+        FileChannel writer = FileChannel.open(pipe, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel rest;
+        try {
+            rest = FileChannel.open(pipe, StandardOpenOption.READ);
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+        builder.redirectInput(pipe.toFile());
+        return new Connection(writer, rest);
+    }
+
+    private synchronized Path namedPipe() {
+        if (namedPipe == null) {
+            namedPipe = NamedPipes.take();
+        }
+        return namedPipe;
+    }
+
+    private void takeBack(ByteBuffer bytes) {
+        if (bytes.hasRemaining()) {
+            synchronized (unread) {
+                unread.addFirst(bytes);
+            }
+        }
+    }
+
+    /**
+     * Feeds the input into the named pipe a process reads, see {@link #connect(ProcessBuilder)}.
+     */
+    public final class Connection implements Closeable {
+
+        private final FileChannel writer;
+        /** Read end kept open to take back what the process did not read. */
+        private final FileChannel rest;
+        /** Bytes taken from the input and not yet written to the named pipe. */
+        private final ByteBuffer pending = ByteBuffer.allocate(BoundedPipe.DEFAULT_CAPACITY).limit(0);
+        private Thread feeder;
+
+        private Connection(FileChannel writer, FileChannel rest) {
+            this.writer = writer;
+            this.rest = rest;
+        }
+
+        /**
+         * Starts feeding the input to the process. Only called once the process has been started:
+         * at the end of the input the writing end is closed, and opening a named pipe for reading
+         * waits until it has a writer.
+         */
+        public void start() {
+            feeder = Thread.startVirtualThread(this::feed);
+        }
+
+        private void feed() {
+            try (writer) {
+                while (true) {
+                    int n = read(pending.array(), 0, pending.capacity());
+                    if (n == -1) {
+                        // closing the only writer delivers EOF to the process
+                        return;
+                    }
+                    pending.position(0).limit(n);
+                    while (pending.hasRemaining()) {
+                        writer.write(pending);
+                    }
+                }
+            } catch (IOException e) {
+                // interrupted after the process exited; close() takes back what is left
+            }
+        }
+
+        /**
+         * Stops feeding the process and puts back in front of the input what the process did not
+         * read: first what is still in the named pipe, then what was not written to it yet.
+         *
+         * @throws IOException if the named pipe cannot be read
+         */
+        @Override
+        public void close() throws IOException {
+            try (rest) {
+                if (feeder != null) {
+                    // the feeder only blocks reading the source or writing the channel, both of
+                    // which give up when it is interrupted
+                    feeder.interrupt();
+                    feeder.join();
+                } else {
+                    writer.close();
+                }
+                takeBack(pending.slice());
+                // the writer is closed now, so reading ends once the named pipe is drained
+                var left = new ByteArrayOutputStream();
+                ByteBuffer buffer = ByteBuffer.allocate(BoundedPipe.DEFAULT_CAPACITY);
+                while (rest.read(buffer.clear()) != -1) {
+                    left.write(buffer.array(), 0, buffer.position());
+                }
+                takeBack(ByteBuffer.wrap(left.toByteArray()));
+            } catch (InterruptedException e) {
+                // the session is being stopped, its input is no longer needed
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Named pipes ready to be handed to a session, in a directory only the daemon's user can
+     * enter. A pipe is used by a single session and removed after it, since a process the session
+     * left running may still hold it open.
+     */
+    private static final class NamedPipes {
+
+        /** Number of named pipes one {@code mkfifo} makes. */
+        private static final int BATCH = 8;
+
+        /** Pipes not handed out yet, guarded by itself. */
+        private static final Deque<Path> READY = new ArrayDeque<>();
+        private static final AtomicLong NAMES = new AtomicLong();
+
+        private static boolean refilling;
+        /** Cleared once named pipes turned out not to work here. */
+        private static volatile boolean supported = !System.getProperty("os.name", "").startsWith("Windows");
+        private static Path directory;
+
+        private NamedPipes() {}
+
+        /**
+         * Takes a ready named pipe, making one if there is none.
+         *
+         * @return the named pipe, or {@code null} if named pipes cannot be made here
+         */
+        static Path take() {
+            if (!supported) {
+                return null;
+            }
+            Path pipe;
+            synchronized (READY) {
+                pipe = READY.pollFirst();
+            }
+            refillIfLow();
+            if (pipe != null) {
+                return pipe;
+            }
+            List<Path> made = make(1);
+            return made.isEmpty() ? null : made.getFirst();
+        }
+
+        static void refillIfLow() {
+            synchronized (READY) {
+                if (!supported || refilling || READY.size() >= BATCH / 2) {
+                    return;
+                }
+                refilling = true;
+            }
+            Thread.startVirtualThread(() -> {
+                List<Path> made = make(BATCH);
+                synchronized (READY) {
+                    READY.addAll(made);
+                    refilling = false;
+                }
+            });
+        }
+
+        /**
+         * Makes named pipes with a single {@code mkfifo}; none if that fails, and none from then on
+         * if it cannot be run at all.
+         */
+        private static List<Path> make(int count) {
+            List<String> command = new ArrayList<>(count + 1);
+            List<Path> pipes = new ArrayList<>(count);
+            try {
+                Path parent = directory();
+                command.add("mkfifo");
+                for (int i = 0; i < count; i++) {
+                    Path pipe = parent.resolve("stdin-" + NAMES.incrementAndGet());
+                    pipes.add(pipe);
+                    command.add(pipe.toString());
+                }
+                Process mkfifo = new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (mkfifo.waitFor() == 0) {
+                    return pipes;
+                }
+            } catch (IOException e) {
+                supported = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Path pipe : pipes) {
+                deleteQuietly(pipe);
+            }
+            return List.of();
+        }
+
+        private static synchronized Path directory() throws IOException {
+            if (directory == null) {
+                Path created = Files.createTempDirectory("jsh-input");
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    synchronized (READY) {
+                        READY.forEach(NamedPipes::deleteQuietly);
+                    }
+                    deleteQuietly(created);
+                }));
+                directory = created;
+            }
+            return directory;
+        }
+
+        private static void deleteQuietly(Path path) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // left in the temporary directory
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.lowkkid.jsh.executor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Forwards the stderr of every process of a pipeline to one target while the pipeline runs.
+ *
+ * <p>Each process gets its own virtual thread that drains its stderr as soon as it is
+ * written, so no stage can block on a full stderr pipe, whatever the volume. Output is
+ * forwarded line by line and each line is written atomically, so lines of different stages
+ * may interleave but are never mixed up. With {@code prefixStages} every line is prefixed
+ * with the 1-based position of its stage, e.g. {@code [stage 2] grep: foo: No such file}.
+ */
+public final class StderrMultiplexer {
+
+    /** Lines longer than this are forwarded in pieces, so a binary stream cannot fill the memory. */
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final PrintStream target;
+    private final boolean prefixStages;
+    private final Queue<Thread> drainers = new ConcurrentLinkedQueue<>();
+
+    public StderrMultiplexer(PrintStream target, boolean prefixStages) {
+        this.target = target;
+        this.prefixStages = prefixStages;
+    }
+
+    /**
+     * Returns whether lines are prefixed with their stage number.
+     */
+    public boolean prefixesStages() {
+        return prefixStages;
+    }
+
+    /**
+     * Starts draining a process's stderr. The stream is closed once it reaches EOF.
+     *
+     * @param stage  1-based position of the process in the pipeline
+     * @param stderr the stderr of the process
+     */
+    public void drain(int stage, InputStream stderr) {
+        drainers.add(Thread.startVirtualThread(() -> forward(stage, stderr)));
+    }
+
+    /**
+     * Waits until every stream passed to {@link #drain} has reached EOF and was forwarded.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitAll() throws InterruptedException {
+        for (Thread drainer : drainers) {
+            drainer.join();
+        }
+    }
+
+    private void forward(int stage, InputStream stderr) {
+        byte[] chunk = new byte[MAX_LINE_LENGTH];
+        var line = new ByteArrayOutputStream();
+        boolean lineStart = true;
+        try (stderr) {
+            int n;
+            while ((n = stderr.read(chunk)) != -1) {
+                int start = 0;
+                for (int i = 0; i < n; i++) {
+                    if (chunk[i] == '\n') {
+                        line.write(chunk, start, i + 1 - start);
+                        lineStart = emit(stage, line, lineStart);
+                        start = i + 1;
+                    }
+                }
+                line.write(chunk, start, n - start);
+                if (line.size() >= MAX_LINE_LENGTH) {
+                    lineStart = emit(stage, line, lineStart);
+                }
+            }
+        } catch (IOException ignored) {
+            // process went away, forward what was read
+        }
+        if (line.size() > 0) {
+            emit(stage, line, lineStart);
+        }
+    }
+
+    /**
+     * Writes the buffered bytes as one unit and clears the buffer.
+     *
+     * @return whether the next write starts a new line
+     */
+    private boolean emit(int stage, ByteArrayOutputStream line, boolean lineStart) {
+        byte[] bytes = line.toByteArray();
+        line.reset();
+        synchronized (target) {
+            if (prefixStages && lineStart) {
+                target.print("[stage " + stage + "] ");
+            }
+            target.write(bytes, 0, bytes.length);
+            target.flush();
+        }
+        return bytes[bytes.length - 1] == '\n';
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.lowkkid.jsh.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only file of fixed-width numbers, one per history entry, read and written through
+ * memory mappings.
+ *
+ * <p>The file starts with the number of values as an 8-byte header, followed by the values.
+ * It is mapped in chunks of {@value #CHUNK_SIZE} bytes as it grows, so opening a column costs
+ * one mapping regardless of its size, and reading or appending a value is a memory access.
+ * The header is written after the value, so a value is never counted before it is complete.
+ *
+ * <p>Reads may happen on any thread; appends must not run concurrently with each other.
+ */
+final class Column implements Closeable {
+
+    /** Bytes mapped at a time; a multiple of every width, so no value spans two chunks. */
+    static final int CHUNK_SIZE = 256 * 1024;
+
+    private static final int HEADER_SIZE = Long.BYTES;
+
+    private final FileChannel channel;
+    private final int width;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private volatile MappedByteBuffer[] mapped = new MappedByteBuffer[0];
+
+    private Column(FileChannel channel, int width) {
+        this.channel = channel;
+        this.width = width;
+    }
+
+    /**
+     * Opens a column, creating an empty one if the file does not exist.
+     *
+     * @param path  the file
+     * @param width bytes per value: 1, 2, 4 or 8
+     * @return the column
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    static Column open(Path path, int width) throws IOException {
+        var column = new Column(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE), width);
+        column.chunk(0);
+        return column;
+    }
+
+    /**
+     * Returns the number of values, as last written by any process sharing the file.
+     */
+    long size() {
+        return mapped[0].getLong(0);
+    }
+
+    /**
+     * Returns a value.
+     *
+     * @param index the index, from {@code 0} to {@link #size()} exclusive
+     */
+    long get(long index) {
+        long position = HEADER_SIZE + index * width;
+        MappedByteBuffer chunk = chunkFor(position);
+        int offset = (int) (position % CHUNK_SIZE);
+        return switch (width) {
+            case 1 -> chunk.get(offset);
+            case 2 -> chunk.getShort(offset);
+            case 4 -> chunk.getInt(offset);
+            default -> chunk.getLong(offset);
+        };
+    }
+
+    /**
+     * Overwrites a value that was already appended.
+     */
+    void set(long index, long value) throws IOException {
+        long position = HEADER_SIZE + index * width;
+        MappedByteBuffer chunk = chunk((int) (position / CHUNK_SIZE));
+        int offset = (int) (position % CHUNK_SIZE);
+        switch (width) {
+            case 1 -> chunk.put(offset, (byte) value);
+            case 2 -> chunk.putShort(offset, (short) value);
+            case 4 -> chunk.putInt(offset, (int) value);
+            default -> chunk.putLong(offset, value);
+        }
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param value the value, truncated to the width
+     * @throws IOException if the file cannot be grown
+     */
+    void append(long value) throws IOException {
+        long size = size();
+        set(size, value);
+        mapped[0].putLong(0, size + 1);
+    }
+
+    /**
+     * Drops the values from {@code size} on. The file keeps its length; the space is reused.
+     */
+    void truncate(long size) {
+        mapped[0].putLong(0, Math.min(size, size()));
+    }
+
+    private MappedByteBuffer chunkFor(long position) {
+        MappedByteBuffer[] current = mapped;
+        int index = (int) (position / CHUNK_SIZE);
+        if (index < current.length) {
+            return current[index];
+        }
+        try {
+            // another process appended beyond what this one has mapped
+            return chunk(index);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map history column", e);
+        }
+    }
+
+    private synchronized MappedByteBuffer chunk(int index) throws IOException {
+        while (chunks.size() <= index) {
+            chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * CHUNK_SIZE, CHUNK_SIZE));
+            mapped = chunks.toArray(MappedByteBuffer[]::new);
+        }
+        return chunks.get(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.lowkkid.jsh.history;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The working directories commands were run in, numbered in the order they were first seen, so
+ * that each execution record stores a number instead of a path.
+ *
+ * <p>The table is a text file with one absolute path per line, the line number being the
+ * directory's number. It is small, a few hundred lines for years of history, and is held in
+ * memory; directories other sessions added are read when a path or number is not known yet.
+ */
+final class Directories {
+
+    private final Path file;
+    private final List<Path> paths = new ArrayList<>();
+    private final Map<Path, Integer> ids = new HashMap<>();
+
+    Directories(Path file) throws IOException {
+        this.file = file;
+        reload();
+    }
+
+    /**
+     * Returns the number of a directory, adding it to the table if it is not in it yet.
+     */
+    synchronized int id(Path directory) throws IOException {
+        Path normalized = directory.toAbsolutePath().normalize();
+        Integer id = ids.get(normalized);
+        if (id == null) {
+            reload();
+            id = ids.get(normalized);
+        }
+        if (id == null) {
+            Files.writeString(file, normalized + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            id = add(normalized);
+        }
+        return id;
+    }
+
+    /**
+     * Returns a directory by its number, or {@code null} if there is no such directory.
+     */
+    synchronized Path path(int id) {
+        if (id >= paths.size()) {
+            try {
+                reload();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return id >= 0 && id < paths.size() ? paths.get(id) : null;
+    }
+
+    /**
+     * Returns the numbers of a directory and of all directories below it.
+     */
+    synchronized BitSet under(Path directory) throws IOException {
+        reload();
+        Path normalized = directory.toAbsolutePath().normalize();
+        BitSet matching = new BitSet(paths.size());
+        for (int id = 0; id < paths.size(); id++) {
+            if (paths.get(id).startsWith(normalized)) {
+                matching.set(id);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Reads the lines of the table added since it was last read.
+     */
+    private void reload() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int id = paths.size(); id < lines.size(); id++) {
+            add(Path.of(lines.get(id)));
+        }
+    }
+
+    private int add(Path path) {
+        int id = paths.size();
+        paths.add(path);
+        ids.putIfAbsent(path, id);
+        return id;
+    }
+}
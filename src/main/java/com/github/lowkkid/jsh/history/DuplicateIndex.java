@@ -0,0 +1,64 @@
+package com.github.lowkkid.jsh.history;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The most recent entry of each command line, so that erasing the earlier occurrence of a line
+ * entered again takes a hash lookup rather than a scan of the history.
+ *
+ * <p>Lines are keyed by a 64-bit hash instead of being held themselves; the caller compares the
+ * line of the entry found, so a collision, which is unlikely, only costs a missed duplicate.
+ *
+ * <p>Not thread-safe; {@link ShellHistory} uses it from the thread adding entries.
+ */
+final class DuplicateIndex {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<Long, Integer> latest = new HashMap<>();
+    private int size;
+
+    /**
+     * Returns the number after the last entry added, {@code 0} if none was.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        latest.clear();
+        size = 0;
+    }
+
+    /**
+     * Adds an entry, which becomes the most recent one of its line.
+     *
+     * @param index the number of the entry, greater than that of any entry added before
+     * @param line  the command
+     */
+    void add(int index, String line) {
+        latest.put(hash(line), index);
+        size = index + 1;
+    }
+
+    /**
+     * Returns the most recent entry added with a line, or {@code -1} if there is none. The entry
+     * may have a different line with the same hash.
+     */
+    int latest(String line) {
+        return latest.getOrDefault(hash(line), -1);
+    }
+
+    private static long hash(String line) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < line.length(); i++) {
+            hash = (hash ^ line.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,377 @@
+package com.github.lowkkid.jsh.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * How the commands of a {@link HistoryLog} ran: when each started, how long it took, its exit
+ * status and the directory it ran in.
+ *
+ * <p>Each field is a {@link Column} of its own next to the history file, {@code <file>.started}
+ * (8 bytes), {@code <file>.duration} (4 bytes, milliseconds), {@code <file>.status} (1 byte) and
+ * {@code <file>.dir} (4 bytes, a number from the {@link Directories} table {@code <file>.dirs}),
+ * so a record takes 17 bytes and a query reads only the columns it needs. Record {@code n}
+ * describes entry {@code n} of the history; entries that were not run by the shell, such as lines
+ * read with {@code history -r} or written by other programs, have a record with an unknown
+ * duration, which queries skip.
+ *
+ * <p>Queries scan the mapped columns in parallel on the common {@code ForkJoinPool}, one slice
+ * of {@value #SLICE_SIZE} records at a time.
+ */
+public final class ExecutionLog implements Closeable {
+
+    /** Suffixes of the column files next to the history file. */
+    static final String STARTED_SUFFIX = ".started";
+    static final String DURATION_SUFFIX = ".duration";
+    static final String STATUS_SUFFIX = ".status";
+    static final String DIRECTORY_SUFFIX = ".dir";
+    static final String DIRECTORIES_SUFFIX = ".dirs";
+
+    /** Records scanned by one task of a query. */
+    static final int SLICE_SIZE = 64 * 1024;
+
+    private static final int UNKNOWN = -1;
+
+    private final Column started;
+    private final Column duration;
+    private final Column status;
+    private final Column directory;
+    private final Directories directories;
+
+    /**
+     * How a command ran.
+     *
+     * @param index     the number of its history entry
+     * @param started   when it started
+     * @param duration  how long it ran
+     * @param status    its exit status
+     * @param directory the working directory it ran in, or {@code null} if it is not known
+     */
+    public record Execution(int index, Instant started, Duration duration, int status, Path directory) {}
+
+    /**
+     * Totals of the recorded executions of one command name, or of all of them.
+     *
+     * @param name     the command name, the first word of the line
+     * @param count    how often it ran
+     * @param failed   how often it exited with a status other than {@code 0}
+     * @param total    how long it ran altogether
+     * @param longest  its longest run
+     */
+    public record Summary(String name, int count, int failed, Duration total, Duration longest) {
+
+        /**
+         * Returns the mean duration of a run.
+         */
+        public Duration mean() {
+            return count == 0 ? Duration.ZERO : total.dividedBy(count);
+        }
+    }
+
+    private ExecutionLog(Column started, Column duration, Column status, Column directory, Directories directories) {
+        this.started = started;
+        this.duration = duration;
+        this.status = status;
+        this.directory = directory;
+        this.directories = directories;
+    }
+
+    /**
+     * Opens the records of a history file, creating empty columns if they do not exist.
+     *
+     * @param file the history file
+     * @return the records
+     * @throws IOException if a column cannot be opened
+     */
+    public static ExecutionLog open(Path file) throws IOException {
+        return new ExecutionLog(
+                Column.open(HistoryLog.sidecar(file, STARTED_SUFFIX), Long.BYTES),
+                Column.open(HistoryLog.sidecar(file, DURATION_SUFFIX), Integer.BYTES),
+                Column.open(HistoryLog.sidecar(file, STATUS_SUFFIX), Byte.BYTES),
+                Column.open(HistoryLog.sidecar(file, DIRECTORY_SUFFIX), Integer.BYTES),
+                new Directories(HistoryLog.sidecar(file, DIRECTORIES_SUFFIX)));
+    }
+
+    /**
+     * Returns the number of records, at most the number of history entries.
+     */
+    public int size() {
+        // the status column is written last
+        return (int) status.size();
+    }
+
+    /**
+     * Records how the command of a history entry ran. Entries before it without a record get
+     * one with an unknown duration.
+     *
+     * @param index    the number of the history entry
+     * @param start    when the command started, the time of the entry
+     * @param elapsed  how long it ran
+     * @param exitCode its exit status
+     * @param workDir  the working directory it ran in
+     * @throws IOException if a column cannot be grown
+     */
+    public synchronized void record(int index, Instant start, Duration elapsed, int exitCode, Path workDir)
+            throws IOException {
+        int dir = directories.id(workDir);
+        while (size() < index) {
+            append(0, UNKNOWN, 0, UNKNOWN);
+        }
+        long millis = Math.min(Integer.MAX_VALUE, Math.max(0, elapsed.toMillis()));
+        if (index < size()) {
+            started.set(index, start.toEpochMilli());
+            duration.set(index, millis);
+            directory.set(index, dir);
+            status.set(index, exitCode);
+        } else {
+            append(start.toEpochMilli(), millis, exitCode, dir);
+        }
+    }
+
+    private void append(long startedMillis, long millis, int exitCode, int dir) throws IOException {
+        // drop what an append interrupted before the status column was written left behind
+        int size = size();
+        started.truncate(size);
+        duration.truncate(size);
+        directory.truncate(size);
+        started.append(startedMillis);
+        duration.append(millis);
+        directory.append(dir);
+        status.append(exitCode);
+    }
+
+    /**
+     * Returns how the command of a history entry ran, or {@code null} if it has no record.
+     */
+    public Execution execution(int index) {
+        if (index < 0 || index >= size() || duration.get(index) == UNKNOWN) {
+            return null;
+        }
+        return new Execution(index, Instant.ofEpochMilli(started.get(index)), Duration.ofMillis(duration.get(index)),
+                status(index), directories.path((int) directory.get(index)));
+    }
+
+    private int status(int index) {
+        return (int) status.get(index) & 0xFF;
+    }
+
+    /**
+     * Returns the started time of the last record, or {@code -1} if there is none, to tell
+     * whether the records still belong to the entries of the history file.
+     */
+    long lastStarted() {
+        int size = size();
+        return size == 0 ? UNKNOWN : started.get(size - 1);
+    }
+
+    /**
+     * Drops the records of the oldest entries, after they were dropped from the history file.
+     *
+     * @param count the number of entries dropped
+     * @throws IOException if a column cannot be written
+     */
+    public synchronized void dropFirst(int count) throws IOException {
+        int kept = Math.max(0, size() - count);
+        for (int i = 0; i < kept; i++) {
+            started.set(i, started.get(count + i));
+            duration.set(i, duration.get(count + i));
+            directory.set(i, directory.get(count + i));
+            status.set(i, status.get(count + i));
+        }
+        clear(kept);
+    }
+
+    /**
+     * Keeps just the records of the given entries, after the history file was compacted to them.
+     *
+     * @param kept the former numbers of the kept entries, in ascending order, as returned by
+     *             {@link HistoryLog#compact}
+     * @throws IOException if a column cannot be written
+     */
+    public synchronized void retain(int[] kept) throws IOException {
+        int size = size();
+        int recorded = 0;
+        while (recorded < kept.length && kept[recorded] < size) {
+            int from = kept[recorded];
+            if (from != recorded) {
+                started.set(recorded, started.get(from));
+                duration.set(recorded, duration.get(from));
+                directory.set(recorded, directory.get(from));
+                status.set(recorded, status.get(from));
+            }
+            recorded++;
+        }
+        clear(recorded);
+    }
+
+    /**
+     * Drops all records from {@code size} on.
+     */
+    public synchronized void clear(int size) {
+        status.truncate(size);
+        started.truncate(size);
+        duration.truncate(size);
+        directory.truncate(size);
+    }
+
+    /**
+     * Returns the records of the longest-running commands, longest first, and of two equally long
+     * runs the more recent one first.
+     *
+     * @param count the number of records to return
+     * @param from  the number of the first history entry to consider
+     */
+    public List<Execution> slowest(int count, int from) {
+        // shortest first, and of two equally long the older one, so the heads of the heaps are dropped first
+        Comparator<Integer> order = Comparator.<Integer>comparingLong(index -> duration.get(index))
+                .thenComparing(Comparator.naturalOrder());
+        List<Integer> top = slices(from)
+                .mapToObj(slice -> {
+                    PriorityQueue<Integer> longest = new PriorityQueue<>(order);
+                    forEachKnown(slice, from, index -> {
+                        if (longest.size() < count) {
+                            longest.add(index);
+                        } else if (count > 0 && order.compare(index, longest.peek()) > 0) {
+                            longest.poll();
+                            longest.add(index);
+                        }
+                    });
+                    return longest;
+                })
+                .flatMap(PriorityQueue::stream)
+                .sorted(order.reversed())
+                .limit(count)
+                .toList();
+        return top.stream().map(this::execution).toList();
+    }
+
+    /**
+     * Returns the numbers of the history entries run in a directory or below it, in order.
+     *
+     * @param workDir the directory
+     * @param from    the number of the first history entry to consider
+     * @throws IOException if the directory table cannot be read
+     */
+    public int[] runIn(Path workDir, int from) throws IOException {
+        BitSet matching = directories.under(workDir);
+        if (matching.isEmpty()) {
+            return new int[0];
+        }
+        return slices(from)
+                .mapToObj(slice -> {
+                    IntStream.Builder indices = IntStream.builder();
+                    forEachKnown(slice, from, index -> {
+                        if (matching.get((int) directory.get(index))) {
+                            indices.add(index);
+                        }
+                    });
+                    return indices.build();
+                })
+                .flatMapToInt(indices -> indices)
+                .toArray();
+    }
+
+    /**
+     * Sums up the recorded executions per command name.
+     *
+     * @param from     the number of the first history entry to consider
+     * @param commands the command line of a history entry by its number
+     * @return the totals of all executions, followed by the totals per command name by descending
+     *         total duration
+     */
+    public List<Summary> summarize(int from, IntFunction<String> commands) {
+        List<Map<String, long[]>> slices = slices(from)
+                .mapToObj(slice -> {
+                    Map<String, long[]> byName = new HashMap<>();
+                    forEachKnown(slice, from, index ->
+                            add(byName.computeIfAbsent(name(commands.apply(index)), name -> new long[4]), index));
+                    return byName;
+                })
+                .toList();
+        Map<String, long[]> totals = new HashMap<>();
+        slices.forEach(byName -> byName.forEach((name, sums) -> totals.merge(name, sums, ExecutionLog::merge)));
+        long[] all = new long[4];
+        totals.values().forEach(sums -> merge(all, sums));
+
+        List<Summary> summaries = new ArrayList<>(totals.size() + 1);
+        summaries.add(summary("", all));
+        totals.entrySet().stream()
+                .map(entry -> summary(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparing(Summary::total).reversed().thenComparing(Summary::name))
+                .forEach(summaries::add);
+        return summaries;
+    }
+
+    private void add(long[] sums, int index) {
+        long millis = duration.get(index);
+        sums[0]++;
+        sums[1] += status(index) != 0 ? 1 : 0;
+        sums[2] += millis;
+        sums[3] = Math.max(sums[3], millis);
+    }
+
+    private static long[] merge(long[] into, long[] sums) {
+        into[0] += sums[0];
+        into[1] += sums[1];
+        into[2] += sums[2];
+        into[3] = Math.max(into[3], sums[3]);
+        return into;
+    }
+
+    private static Summary summary(String name, long[] sums) {
+        return new Summary(name, (int) sums[0], (int) sums[1], Duration.ofMillis(sums[2]), Duration.ofMillis(sums[3]));
+    }
+
+    private static String name(String line) {
+        String trimmed = line.strip();
+        int end = 0;
+        while (end < trimmed.length() && !Character.isWhitespace(trimmed.charAt(end))) {
+            end++;
+        }
+        return trimmed.substring(0, end);
+    }
+
+    /**
+     * Returns the slices of the records from {@code from} on, as a parallel stream if there is more than one.
+     */
+    private IntStream slices(int from) {
+        int first = Math.max(0, from) / SLICE_SIZE;
+        int last = (size() + SLICE_SIZE - 1) / SLICE_SIZE;
+        IntStream slices = IntStream.range(first, Math.max(first, last));
+        return last - first > 1 ? slices.parallel() : slices;
+    }
+
+    private void forEachKnown(int slice, int from, IntConsumer action) {
+        int start = Math.max(from, slice * SLICE_SIZE);
+        int end = Math.min(size(), (slice + 1) * SLICE_SIZE);
+        for (int index = start; index < end; index++) {
+            if (duration.get(index) != UNKNOWN) {
+                action.accept(index);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            started.close();
+            duration.close();
+            status.close();
+        } finally {
+            directory.close();
+        }
+    }
+}
@@ -0,0 +1,570 @@
+package com.github.lowkkid.jsh.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * The history file: an append-only text file with one command per line, indexed by a sidecar
+ * file of line end offsets, so that any entry can be read without reading the ones before it.
+ *
+ * <p>Lines use JLine's format, {@code <epoch millis>:<command>} with backslashes, newlines and
+ * carriage returns escaped, so the file stays readable by JLine and by earlier versions of jsh.
+ * Lines without a timestamp are accepted as well.
+ *
+ * <p>The index ({@code <file>.idx}, see {@link Column}) holds the offset after each line.
+ * Opening the log maps the index and the text; lines appended by other programs since the last
+ * run are indexed by reading just those, and only a file that was rewritten behind the index's
+ * back is read in full. Reading an entry, appending one and counting them are constant-time.
+ *
+ * <p>Entries can be {@link #erase erased}, which is noted in a third file, {@code <file>.erased},
+ * with one byte per entry. An erased entry stays in the file and keeps the numbers of the entries
+ * after it unchanged until {@link #compact} drops it.
+ *
+ * <p>Several shells may share the file. Changes are made while holding a {@link LockFile}, so
+ * appends from different sessions never overlap, and the index is shared as well: an entry
+ * appended by one session is counted by all of them. When a session drops old entries, the
+ * others notice the dropped count in the lock file change and reopen the file before reading on;
+ * a file replaced by another program is noticed by {@link #synchronize()}.
+ *
+ * <p>Reads may happen on any thread; changes are serialized.
+ */
+public final class HistoryLog implements Closeable {
+
+    /** Suffix of the index file next to the history file. */
+    static final String INDEX_SUFFIX = ".idx";
+    /** Suffix of the lock file next to the history file. */
+    static final String LOCK_SUFFIX = ".lock";
+    /** Suffix of the file marking erased entries next to the history file. */
+    static final String ERASED_SUFFIX = ".erased";
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    /** Growth of the file below which lines past the mapping are read instead of mapping the file again. */
+    private static final long REMAP_THRESHOLD = 1024 * 1024;
+
+    private final Path file;
+    private volatile FileChannel text;
+    private volatile MappedByteBuffer mappedText;
+    private volatile Object textKey;
+    private volatile long textDropped;
+    private final Column ends;
+    private final Column erased;
+    private final LockFile lock;
+
+    private HistoryLog(Path file, FileChannel text, Column ends, Column erased, LockFile lock) throws IOException {
+        this.file = file;
+        this.text = text;
+        this.ends = ends;
+        this.erased = erased;
+        this.lock = lock;
+        this.textKey = fileKey(file);
+        this.textDropped = lock.dropped();
+    }
+
+    /**
+     * Opens a history file, creating it and its index if they do not exist, and indexes lines the
+     * index does not cover yet.
+     *
+     * @param file the history file
+     * @return the opened log
+     * @throws IOException if the files cannot be created, read or mapped
+     */
+    public static HistoryLog open(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        LockFile lock = LockFile.open(sidecar(file, LOCK_SUFFIX));
+        HistoryLog log;
+        lock.lock();
+        try {
+            log = new HistoryLog(file, openText(file), Column.open(sidecar(file, INDEX_SUFFIX), Long.BYTES),
+                    Column.open(sidecar(file, ERASED_SUFFIX), Byte.BYTES), lock);
+            log.synchronize();
+        } catch (IOException | RuntimeException e) {
+            lock.unlock();
+            lock.close();
+            throw e;
+        }
+        lock.unlock();
+        return log;
+    }
+
+    private static FileChannel openText(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Returns what identifies the file on disk, to tell whether it was replaced, or {@code null}
+     * if the file system does not say or the file does not exist.
+     */
+    private static Object fileKey(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Keeps other sessions from changing the history until {@link #unlock()}, e.g. to append
+     * entries and their execution records together. Changes made through this log take the lock
+     * themselves.
+     *
+     * @throws IOException if the lock file cannot be locked
+     */
+    void lock() throws IOException {
+        lock.lock();
+    }
+
+    /**
+     * Releases the lock taken by {@link #lock()}.
+     *
+     * @throws IOException if the lock file cannot be unlocked
+     */
+    void unlock() throws IOException {
+        lock.unlock();
+    }
+
+    /**
+     * Returns the number of entries dropped from the history file by any session since the file
+     * was created; a change means that entries were renumbered.
+     */
+    long dropped() {
+        return lock.dropped();
+    }
+
+    static Path sidecar(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    /**
+     * Returns the history file.
+     */
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+        return (int) ends.size();
+    }
+
+    /**
+     * Returns the command of an entry.
+     *
+     * @param index the entry, from {@code 0} to {@link #size()} exclusive
+     */
+    public String line(int index) {
+        String raw = raw(index);
+        return unescape(raw, timestampEnd(raw) + 1);
+    }
+
+    /**
+     * Returns when an entry was added, or {@link Instant#EPOCH} if its line has no timestamp.
+     *
+     * @param index the entry, from {@code 0} to {@link #size()} exclusive
+     */
+    public Instant time(int index) {
+        String raw = raw(index);
+        int colon = timestampEnd(raw);
+        return colon > 0 ? Instant.ofEpochMilli(Long.parseLong(raw, 0, colon, 10)) : Instant.EPOCH;
+    }
+
+    /**
+     * Appends an entry, after indexing lines other programs may have appended to the file.
+     *
+     * @param time when the command was entered
+     * @param line the command, may span several lines
+     * @return the index of the new entry
+     * @throws IOException if the file cannot be written
+     */
+    public int append(Instant time, String line) throws IOException {
+        byte[] bytes = (time.toEpochMilli() + ":" + escape(line) + "\n").getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            if (textDropped != lock.dropped() || text.size() != end(size() - 1)) {
+                synchronize();
+            }
+            long start = end(size() - 1);
+            write(ByteBuffer.wrap(bytes), start);
+            ends.append(start + bytes.length);
+            return size() - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks an entry as erased, e.g. because the same command was entered again. It is dropped
+     * from the file by the next {@link #compact}.
+     *
+     * @param index the entry, from {@code 0} to {@link #size()} exclusive
+     * @throws IOException if the erased marks cannot be written
+     */
+    public void erase(int index) throws IOException {
+        lock.lock();
+        try {
+            while (erased.size() <= index) {
+                erased.append(0);
+            }
+            erased.set(index, 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether an entry was {@link #erase erased}.
+     */
+    public boolean erased(int index) {
+        return index < erased.size() && erased.get(index) != 0;
+    }
+
+    /**
+     * Removes all entries.
+     *
+     * @throws IOException if the file cannot be truncated
+     */
+    public void clear() throws IOException {
+        lock.lock();
+        try {
+            reopenIfDropped();
+            int size = size();
+            ends.truncate(0);
+            erased.truncate(0);
+            text.truncate(0);
+            mappedText = null;
+            lock.drop(size);
+            textDropped = lock.dropped();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops all but the most recent entries, e.g. to apply {@code JSH_HISTFILESIZE}. The kept lines
+     * are copied to a new file in one pass, which then replaces the history file.
+     *
+     * @param count the number of entries to keep
+     * @throws IOException if the file cannot be rewritten
+     */
+    public void retainLast(int count) throws IOException {
+        lock.lock();
+        try {
+            reopenIfDropped();
+            retain(IntStream.range(Math.max(0, size() - count), size()).toArray());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the erased entries, the entries before {@code from} and all but the {@code count}
+     * most recent of the others. The kept lines are copied to a new file in one pass, a run of
+     * consecutive lines at a time, which then replaces the history file.
+     *
+     * @param from  the number of the first entry that may be kept
+     * @param count the number of entries to keep
+     * @return the former numbers of the kept entries, in ascending order; entry {@code i} of the
+     *         compacted file was entry {@code kept[i]}
+     * @throws IOException if the file cannot be rewritten
+     */
+    public int[] compact(int from, int count) throws IOException {
+        lock.lock();
+        try {
+            reopenIfDropped();
+            int[] kept = new int[Math.max(0, Math.min(count, size() - from))];
+            int found = 0;
+            for (int index = size() - 1; index >= Math.max(0, from) && found < kept.length; index--) {
+                if (!erased(index)) {
+                    kept[kept.length - 1 - found++] = index;
+                }
+            }
+            kept = Arrays.copyOfRange(kept, kept.length - found, kept.length);
+            retain(kept);
+            return kept;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites the file with just the given entries.
+     *
+     * @param kept the numbers of the entries to keep, in ascending order
+     */
+    private void retain(int[] kept) throws IOException {
+        int size = size();
+        if (kept.length == size) {
+            return;
+        }
+        long[] keptEnds = new long[kept.length];
+        boolean[] keptErased = new boolean[kept.length];
+        Path temp = sidecar(file, ".tmp");
+        try (var out = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long written = 0;
+            for (int first = 0, last; first < kept.length; first = last + 1) {
+                last = first;
+                while (last + 1 < kept.length && kept[last + 1] == kept[last] + 1) {
+                    last++;
+                }
+                long offset = end(kept[first] - 1);
+                long length = end(kept[last]) - offset;
+                for (long copied = 0; copied < length; ) {
+                    copied += text.transferTo(offset + copied, length - copied, out);
+                }
+                for (int i = first; i <= last; i++) {
+                    keptEnds[i] = written + end(kept[i]) - offset;
+                    keptErased[i] = erased(kept[i]);
+                }
+                written += length;
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (int i = 0; i < kept.length; i++) {
+            ends.set(i, keptEnds[i]);
+        }
+        ends.truncate(kept.length);
+        erased.truncate(0);
+        for (int i = 0; i < kept.length; i++) {
+            if (keptErased[i]) {
+                erase(i);
+            }
+        }
+        lock.drop(size - kept.length);
+        reopenText();
+    }
+
+    private void reopenText() throws IOException {
+        text.close();
+        text = openText(file);
+        textKey = fileKey(file);
+        textDropped = lock.dropped();
+        mappedText = null;
+    }
+
+    /**
+     * Reopens the file if another session dropped entries from it since it was opened, which
+     * replaced the file and renumbered the index.
+     */
+    private void reopenIfDropped() throws IOException {
+        if (textDropped != lock.dropped()) {
+            lock.lock();
+            try {
+                if (textDropped != lock.dropped()) {
+                    reopenText();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Indexes lines appended to the file by other programs since it was last indexed, or the
+     * whole file if it no longer matches the index, e.g. because another program replaced it.
+     * Lines appended by other sessions of the shell are indexed already. Only the lines past the
+     * index are read.
+     *
+     * @return {@code true} if the whole file was indexed again, which renumbers the entries
+     * @throws IOException if the file cannot be read
+     */
+    public boolean synchronize() throws IOException {
+        lock.lock();
+        try {
+            reopenIfDropped();
+            boolean replaced = !Objects.equals(textKey, fileKey(file));
+            if (replaced) {
+                // another program replaced the file, the index may happen to match it but belongs to the old one
+                reopenText();
+                ends.truncate(0);
+                erased.truncate(0);
+            }
+            return index() || replaced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean index() throws IOException {
+        long length = text.size();
+        long indexed = end(size() - 1);
+        boolean renumbered = false;
+        if (indexed > length || indexed > 0 && byteAt(indexed - 1) != '\n') {
+            ends.truncate(0);
+            erased.truncate(0);
+            mappedText = null;
+            indexed = 0;
+            renumbered = true;
+        }
+        if (indexed == length) {
+            return renumbered;
+        }
+        if (byteAt(length - 1) != '\n') {
+            // a line was left unterminated, finish it before anything is appended after it
+            write(ByteBuffer.wrap(new byte[] {'\n'}), length);
+            length++;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = indexed;
+        while (position < length) {
+            buffer.clear();
+            int read = text.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    ends.append(position + i + 1);
+                }
+            }
+            position += read;
+        }
+        return renumbered;
+    }
+
+    private void write(ByteBuffer bytes, long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            position += text.write(bytes, position);
+        }
+    }
+
+    /**
+     * Returns the offset after entry {@code index}, which is where the next one starts.
+     */
+    private long end(int index) {
+        return index < 0 ? 0 : ends.get(index);
+    }
+
+    /**
+     * Returns the line of an entry as stored, without the newline.
+     */
+    private String raw(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        byte[] bytes;
+        try {
+            reopenIfDropped();
+            long start = end(index - 1);
+            int length = (int) (end(index) - start - 1);
+            bytes = new byte[length];
+            MappedByteBuffer mapped = mapped(start + length);
+            if (mapped != null) {
+                mapped.get((int) start, bytes);
+            } else {
+                text.read(ByteBuffer.wrap(bytes), start);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read history file " + file, e);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a mapping of the text covering {@code end}, or {@code null} if the line is to be
+     * read from the file. The file is mapped again once it has grown by a quarter, and at least by
+     * {@value #REMAP_THRESHOLD} bytes, since it was last mapped, so appending and reading back lines
+     * one by one does not map it again each time; until then the newest lines are read. A file too
+     * large to be mapped as a whole is always read.
+     */
+    private MappedByteBuffer mapped(long end) {
+        MappedByteBuffer current = mappedText;
+        if (current != null && end <= current.capacity()) {
+            return current;
+        }
+        try {
+            long length = text.size();
+            long mappedLength = current != null ? current.capacity() : 0;
+            if (length > Integer.MAX_VALUE
+                    || current != null && length - mappedLength < Math.max(REMAP_THRESHOLD, mappedLength / 4)) {
+                return null;
+            }
+            current = text.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            mappedText = current;
+            return current;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map history file " + file, e);
+        }
+    }
+
+    private byte byteAt(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        text.read(buffer, position);
+        return buffer.get(0);
+    }
+
+    /**
+     * Returns the offset of the colon ending a leading timestamp, or {@code -1} if there is none.
+     */
+    private static int timestampEnd(String raw) {
+        int index = 0;
+        while (index < raw.length() && index < 19 && Character.isDigit(raw.charAt(index))) {
+            index++;
+        }
+        return index > 0 && index < raw.length() && raw.charAt(index) == ':' ? index : -1;
+    }
+
+    static String escape(String line) {
+        var sb = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            switch (c) {
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\\' -> sb.append("\\\\");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String raw, int from) {
+        if (raw.indexOf('\\', from) < 0) {
+            return raw.substring(from);
+        }
+        var sb = new StringBuilder(raw.length() - from);
+        for (int i = from; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '\\' && i + 1 < raw.length()) {
+                char next = raw.charAt(++i);
+                sb.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mappedText = null;
+        try {
+            text.close();
+        } finally {
+            try {
+                ends.close();
+                erased.close();
+            } finally {
+                lock.close();
+            }
+        }
+    }
+}
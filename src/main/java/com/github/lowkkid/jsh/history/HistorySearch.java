@@ -0,0 +1,324 @@
+package com.github.lowkkid.jsh.history;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Fuzzy search over the shown history entries, ranked by how well an entry matches and how
+ * recent it is.
+ *
+ * <p>A query is split into words, which may match in any order. A word matches an entry that
+ * contains it, ignoring case, or failing that contains its characters in order ({@code gco}
+ * matches {@code git checkout}); matches at the start of the line or of a word and whole words
+ * rank higher. Each step back in time costs a little, doubling the age costs as much as a match
+ * at a word start gains, so a good match wins over a recent one but equal matches are sorted
+ * newest first. Equal lines are listed once.
+ *
+ * <p>Words of three characters or more are looked up in a {@link TrigramIndex} that is brought
+ * up to date before each query, so only entries containing all their trigrams are read and
+ * scored; only if that yields fewer matches than wanted, or no word is that long, are all entries
+ * scored. Candidates are scored newest first, in parallel batches of {@value #BATCH_SIZE}, until
+ * no older entry could still make it into the results.
+ *
+ * <p>Queries run one at a time on a thread of their own. Starting a query cancels the previous
+ * one, which stops at its next batch, so typing ahead never waits for results nobody will see.
+ * That thread reads the history only while holding its monitor, a batch at a time, so the reader
+ * thread adding or reloading entries meanwhile waits for at most one batch.
+ */
+public final class HistorySearch {
+
+    /** Candidates scored at once. */
+    static final int BATCH_SIZE = 4096;
+
+    /** Points a match loses each time its age doubles. */
+    private static final double RECENCY_WEIGHT = 12;
+    private static final int SUBSTRING = 100;
+    private static final int LINE_START = 30;
+    private static final int WORD_START = 15;
+    private static final int WHOLE_WORD = 10;
+    private static final int SUBSEQUENCE = 50;
+    private static final int BEST_PER_WORD = SUBSTRING + LINE_START + WHOLE_WORD;
+
+    /** Best first, and of two equally good the newer one. */
+    private static final Comparator<Match> RANKING = Comparator.comparingDouble(Match::score).reversed()
+            .thenComparing(Comparator.comparingInt(Match::index).reversed());
+
+    private final ShellHistory history;
+    private final TrigramIndex index = new TrigramIndex();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+            Thread.ofPlatform().daemon().name("jsh-history-search").unstarted(runnable));
+    private final AtomicInteger generation = new AtomicInteger();
+    private int indexedGeneration = -1;
+
+    /**
+     * A matching entry.
+     *
+     * @param index the number of the entry
+     * @param line  the command
+     * @param score how well it ranks, higher is better
+     */
+    public record Match(int index, String line, double score) {}
+
+    public HistorySearch(ShellHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Indexes the history in the background, so that the first search does not have to.
+     */
+    public void warmUp() {
+        executor.execute(this::catchUp);
+    }
+
+    /**
+     * Starts a query, cancelling the one running.
+     *
+     * @param query the text typed
+     * @param limit the number of matches wanted
+     * @return the best matches, best first, or a future completing with {@code null} if the query
+     *         was cancelled by a later one
+     */
+    public CompletableFuture<List<Match>> searchAsync(String query, int limit) {
+        int current = generation.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            if (generation.get() != current) {
+                return null;
+            }
+            catchUp();
+            return search(query, limit, () -> generation.get() != current);
+        }, executor);
+    }
+
+    /**
+     * Runs a query on the calling thread.
+     *
+     * @param query     the text typed
+     * @param limit     the number of matches wanted
+     * @param cancelled tells whether the query is no longer needed, checked between batches
+     * @return the best matches, best first, or {@code null} if the query was cancelled or the
+     *         history was renumbered while it ran
+     */
+    List<Match> search(String query, int limit, BooleanSupplier cancelled) {
+        String[] words = query.toLowerCase(Locale.ROOT).strip().split("\\s+");
+        int first;
+        int last;
+        int renumbered;
+        synchronized (history) {
+            first = history.first();
+            last = history.last();
+            renumbered = history.generation();
+        }
+        if (words[0].isEmpty() || limit <= 0 || last < first) {
+            return List.of();
+        }
+        Map<String, Match> best = new HashMap<>();
+        // the index is of no use if the history was renumbered since it was brought up to date
+        Candidates indexed = indexedGeneration == renumbered ? indexed(words, first, last) : null;
+        BooleanSupplier stale = () -> cancelled.getAsBoolean() || history.generation() != renumbered;
+        if (indexed != null && !scan(indexed, words, last, limit, best, stale)) {
+            return null;
+        }
+        if (indexed == null || best.size() < limit) {
+            var all = new Candidates(last - first + 1, position -> last - position);
+            if (!scan(all, words, last, limit, best, stale)) {
+                return null;
+            }
+        }
+        return best.values().stream().sorted(RANKING).limit(limit).toList();
+    }
+
+    /**
+     * Entries to score, newest first.
+     *
+     * @param count       the number of entries
+     * @param newestFirst the entry at a position
+     */
+    private record Candidates(int count, IntUnaryOperator newestFirst) {}
+
+    /**
+     * Returns the entries containing all trigrams of the words of three characters or more, or
+     * {@code null} if there are no such words.
+     */
+    private Candidates indexed(String[] words, int first, int last) {
+        int[] indexed = null;
+        for (String word : words) {
+            if (word.length() >= 3) {
+                int[] containing = index.containingAll(word, first);
+                indexed = indexed == null ? containing : intersect(indexed, containing);
+            }
+        }
+        if (indexed == null) {
+            return null;
+        }
+        // entries added since the index was brought up to date are candidates as well
+        int unindexed = Math.max(0, last + 1 - Math.max(index.size(), first));
+        int[] candidates = indexed;
+        return new Candidates(unindexed + candidates.length, position -> position < unindexed
+                ? last - position : candidates[candidates.length - 1 - (position - unindexed)]);
+    }
+
+    /**
+     * Scores candidates into the best match per line until no older candidate could rank among
+     * the first {@code limit}.
+     *
+     * @return {@code false} if the query was cancelled or the history renumbered
+     */
+    private boolean scan(Candidates candidates, String[] words, int last, int limit, Map<String, Match> best,
+                         BooleanSupplier cancelled) {
+        double bound = BEST_PER_WORD * words.length;
+        for (int done = 0; done < candidates.count(); ) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            int end = Math.min(candidates.count(), done + BATCH_SIZE);
+            int[] entries = IntStream.range(done, end).map(candidates.newestFirst()).toArray();
+            String[] lines = new String[entries.length];
+            synchronized (history) {
+                if (cancelled.getAsBoolean()) {
+                    return false;
+                }
+                for (int i = 0; i < entries.length; i++) {
+                    lines[i] = history.command(entries[i]);
+                }
+            }
+            IntStream.range(0, entries.length).parallel()
+                    .mapToObj(i -> score(entries[i], lines[i], last, words))
+                    .filter(Objects::nonNull)
+                    .toList()
+                    .forEach(match -> best.merge(match.line(), match, HistorySearch::better));
+            done = end;
+
+            if (best.size() >= limit && done < candidates.count()) {
+                double worst = best.values().stream().sorted(RANKING).skip(limit - 1).findFirst().orElseThrow().score();
+                if (bound - recencyPenalty(last - candidates.newestFirst().applyAsInt(done)) < worst) {
+                    // not even a perfect match this old would make it into the results
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Match better(Match left, Match right) {
+        return RANKING.compare(left, right) <= 0 ? left : right;
+    }
+
+    private static Match score(int entry, String line, int last, String[] words) {
+        String lower = line.toLowerCase(Locale.ROOT);
+        double score = 0;
+        for (String word : words) {
+            int matched = matchWord(lower, word);
+            if (matched < 0) {
+                return null;
+            }
+            score += matched;
+        }
+        return new Match(entry, line, score - recencyPenalty(last - entry));
+    }
+
+    private static double recencyPenalty(int age) {
+        return RECENCY_WEIGHT * Math.log1p(age) / Math.log(2);
+    }
+
+    /**
+     * Returns how well a word matches a line, or {@code -1} if it does not.
+     *
+     * @param line the line in lower case
+     * @param word the word in lower case
+     */
+    static int matchWord(String line, String word) {
+        int best = -1;
+        for (int at = line.indexOf(word); at >= 0; at = line.indexOf(word, at + 1)) {
+            int score = SUBSTRING;
+            if (at == 0) {
+                score += LINE_START;
+            } else if (startsWord(line, at)) {
+                score += WORD_START;
+            }
+            if (startsWord(line, at) && endsWord(line, at + word.length())) {
+                score += WHOLE_WORD;
+            }
+            best = Math.max(best, score);
+        }
+        if (best >= 0) {
+            return best;
+        }
+
+        // the characters of the word in order, fewer gaps and more word starts rank higher
+        int score = SUBSEQUENCE;
+        int position = -1;
+        for (int i = 0; i < word.length(); i++) {
+            int found = line.indexOf(word.charAt(i), position + 1);
+            if (found < 0) {
+                return -1;
+            }
+            if (position >= 0 && found > position + 1) {
+                score -= 2;
+            }
+            if (startsWord(line, found)) {
+                score += 3;
+            }
+            position = found;
+        }
+        return Math.max(1, score);
+    }
+
+    private static boolean startsWord(String line, int at) {
+        return at == 0 || !Character.isLetterOrDigit(line.charAt(at - 1));
+    }
+
+    private static boolean endsWord(String line, int at) {
+        return at == line.length() || !Character.isLetterOrDigit(line.charAt(at));
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+        int[] result = new int[Math.min(left.length, right.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < left.length && j < right.length; ) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[count++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Indexes the entries added since the last query, or all of them if the history was
+     * renumbered, a batch at a time.
+     */
+    private void catchUp() {
+        boolean more = true;
+        while (more) {
+            synchronized (history) {
+                if (indexedGeneration != history.generation() || index.size() > history.last() + 1) {
+                    index.clear();
+                    indexedGeneration = history.generation();
+                }
+                int from = Math.max(index.size(), history.first());
+                int last = Math.min(history.last(), from + BATCH_SIZE - 1);
+                for (int entry = from; entry <= last; entry++) {
+                    index.add(entry, history.command(entry));
+                }
+                more = last < history.last();
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.lowkkid.jsh.history;
+
+import java.nio.file.Path;
+
+/**
+ * Suggests how to complete the line being typed from the shown history entries, as fish does:
+ * the most recent entry starting with the text typed so far, preferring one that was run in the
+ * current directory.
+ *
+ * <p>Entries are kept in a {@link SuggestionTrie}, which is brought up to date with the entries
+ * added since the last suggestion, so a suggestion costs the length of the text typed plus a
+ * look at the few most recent lines cached for it, however long the history is. Of those lines,
+ * the first one whose execution record names the current directory is suggested, or else the
+ * most recent one.
+ *
+ * <p>Not thread-safe; suggestions are made on the reader's thread.
+ */
+public final class HistorySuggestions {
+
+    private final ShellHistory history;
+    private final SuggestionTrie trie = new SuggestionTrie();
+    private int indexedGeneration = -1;
+    private int indexed;
+
+    public HistorySuggestions(ShellHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Returns the entry to suggest for the text typed so far.
+     *
+     * @param prefix    the text typed so far
+     * @param directory the current directory, or {@code null} to take the most recent entry
+     * @return the command of the entry, longer than {@code prefix} and starting with it, or
+     *         {@code null} if no entry starts with {@code prefix}
+     */
+    public String suggest(String prefix, Path directory) {
+        if (prefix.isEmpty()) {
+            return null;
+        }
+        catchUp();
+        Path normalized = directory != null ? directory.toAbsolutePath().normalize() : null;
+        String mostRecent = null;
+        for (SuggestionTrie.Candidate candidate : trie.startingWith(prefix)) {
+            if (candidate == null) {
+                break;
+            }
+            int index = candidate.index();
+            if (index < history.first() || index > history.last() || history.erased(index)
+                    || candidate.line().length() == prefix.length()) {
+                continue;
+            }
+            if (normalized == null || normalized.equals(directory(index))) {
+                return candidate.line();
+            }
+            if (mostRecent == null) {
+                mostRecent = candidate.line();
+            }
+        }
+        return mostRecent;
+    }
+
+    private Path directory(int index) {
+        ExecutionLog executions = history.executions();
+        ExecutionLog.Execution execution = executions != null ? executions.execution(index) : null;
+        return execution != null ? execution.directory() : null;
+    }
+
+    /**
+     * Adds the entries added since the last suggestion, or all of them if the history was
+     * renumbered.
+     */
+    private void catchUp() {
+        if (indexedGeneration != history.generation() || indexed > history.last() + 1) {
+            trie.clear();
+            indexedGeneration = history.generation();
+            indexed = 0;
+        }
+        int last = history.last();
+        for (int entry = Math.max(indexed, history.first()); entry <= last; entry++) {
+            if (!history.erased(entry)) {
+                trie.add(entry, history.command(entry));
+            }
+        }
+        indexed = Math.max(indexed, last + 1);
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.lowkkid.jsh.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The lock file next to a history file, {@code <file>.lock}, which every shell sharing the history
+ * locks while it changes the file, its index or its execution records.
+ *
+ * <p>The lock file is never replaced, unlike the history file when old entries are dropped, so
+ * all sessions lock the same file. Its first 8 bytes count the entries dropped from the history
+ * since it was created, old ones from its start or erased ones by compaction; a session that sees
+ * the count change knows the entries were renumbered by another one, and by how much.
+ *
+ * <p>The lock is reentrant and also excludes the other threads of the process, which share one
+ * in-process lock per file, since a JVM can hold only one lock on a file at a time.
+ */
+final class LockFile implements Closeable {
+
+    private static final Map<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer counter;
+    private final ReentrantLock local;
+    private FileLock held;
+
+    private LockFile(FileChannel channel, MappedByteBuffer counter, ReentrantLock local) {
+        this.channel = channel;
+        this.counter = counter;
+        this.local = local;
+    }
+
+    /**
+     * Opens a lock file, creating it if it does not exist.
+     *
+     * @param path the file
+     * @return the lock file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    static LockFile open(Path path) throws IOException {
+        var channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new LockFile(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES),
+                    LOCAL_LOCKS.computeIfAbsent(path.toAbsolutePath().normalize(), key -> new ReentrantLock()));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until no other session or thread holds the lock, and takes it.
+     *
+     * @throws IOException if the file cannot be locked
+     */
+    void lock() throws IOException {
+        local.lock();
+        if (local.getHoldCount() == 1) {
+            try {
+                held = channel.lock();
+            } catch (IOException | RuntimeException e) {
+                local.unlock();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Releases the lock taken by the matching {@link #lock()}.
+     *
+     * @throws IOException if the file cannot be unlocked
+     */
+    void unlock() throws IOException {
+        try {
+            if (local.getHoldCount() == 1 && held != null) {
+                held.release();
+                held = null;
+            }
+        } finally {
+            local.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries dropped from the history by any session.
+     */
+    long dropped() {
+        return counter.getLong(0);
+    }
+
+    /**
+     * Counts entries dropped from the history; must be called while holding the lock.
+     */
+    void drop(long count) {
+        counter.putLong(0, dropped() + count);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
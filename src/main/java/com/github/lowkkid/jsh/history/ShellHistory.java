@@ -0,0 +1,636 @@
+package com.github.lowkkid.jsh.history;
+
+import com.github.lowkkid.jsh.logger.Logger;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.stream.IntStream;
+import org.jline.reader.History;
+import org.jline.reader.LineReader;
+import org.jline.reader.impl.ReaderUtils;
+
+/**
+ * The shell's command history, a JLine {@link History} backed by a {@link HistoryLog} instead of
+ * a list loaded from the history file.
+ *
+ * <p>Entries are numbered from the start of the history file, so entry {@code n} is line
+ * {@code n} of the file no matter how many entries the session shows. Of these, the session
+ * shows the last {@link LineReader#HISTORY_SIZE} ({@code JSH_HISTSIZE}); the rest stay on disk
+ * and are never read. With {@link LineReader.Option#HISTORY_INCREMENTAL} every accepted line is
+ * appended to the file right away, otherwise lines are kept in memory until {@link #save()}.
+ *
+ * <p>Like JLine's {@code DefaultHistory}, lines starting with a space or repeating the previous
+ * one are skipped if {@link LineReader.Option#HISTORY_IGNORE_SPACE} or
+ * {@link LineReader.Option#HISTORY_IGNORE_DUPS} are set, and the file is cut down to
+ * {@link LineReader#HISTORY_FILE_SIZE} entries once it exceeds that size by a quarter. If the
+ * {@value #ERASE_DUPS} variable is set, a line entered again erases its earlier occurrence: the
+ * entry is found through a {@link DuplicateIndex} of the shown entries and marked in the
+ * {@link HistoryLog}, and it is no longer shown, listed or recalled. Erased entries keep their
+ * numbers until {@link #trim} compacts the file.
+ *
+ * <p>How each command ran is kept in an {@link ExecutionLog} next to the history file, see
+ * {@link #record}.
+ *
+ * <p>Sessions sharing the history file see each other's commands: {@link #load()}, called before
+ * each prompt, takes in the entries other sessions appended since, reading just those, and
+ * appending first takes in the entries before it. In between, the entries a session shows do not
+ * change. When another session drops old entries, this one renumbers its own accordingly.
+ *
+ * <p>Until a reader is attached or a file is {@link #open opened}, the history is kept in memory.
+ *
+ * <p>The history is used from the reader thread. Methods that add, drop or renumber entries
+ * hold its monitor, so another thread synchronizing on the history reads consistent entries
+ * through {@link #first()}, {@link #last()} and {@link #command(int)} (see {@link HistorySearch}).
+ */
+public final class ShellHistory implements History {
+
+    /** Entries shown if the reader does not set {@link LineReader#HISTORY_SIZE}, as in JLine. */
+    static final int DEFAULT_SIZE = 500;
+    /** Entries kept in the file if the reader does not set {@link LineReader#HISTORY_FILE_SIZE}, as in JLine. */
+    static final int DEFAULT_FILE_SIZE = 10_000;
+    /** Reader variable that makes a line entered again erase its earlier occurrence, like bash's {@code erasedups}. */
+    public static final String ERASE_DUPS = "history-erase-dups";
+
+    private final List<Entry> pending = new ArrayList<>();
+    private final Map<Integer, ExecutionLog.Execution> pendingExecutions = new HashMap<>();
+    private final BitSet erasedPending = new BitSet();
+    private final DuplicateIndex duplicates = new DuplicateIndex();
+    private int duplicatesGeneration = -1;
+    private HistoryLog log;
+    private ExecutionLog executions;
+    private LineReader reader;
+    private int saved;
+    private long dropped;
+    private int start;
+    private int cursor;
+    private int added = -1;
+    private volatile int generation;
+
+    /**
+     * An entry of the history.
+     *
+     * @param index the number of the entry, counted from the start of the history file
+     * @param time  when the command was entered
+     * @param line  the command
+     */
+    public record Entry(int index, Instant time, String line) implements History.Entry {}
+
+    /**
+     * Opens a history file, replacing the one in use. Lines not yet saved are appended to the new file.
+     *
+     * @param file the history file
+     * @throws IOException if the file or its index cannot be opened
+     */
+    public synchronized void open(Path file) throws IOException {
+        HistoryLog opened = HistoryLog.open(file);
+        ExecutionLog openedExecutions;
+        try {
+            openedExecutions = ExecutionLog.open(file);
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+        if (log != null) {
+            log.close();
+            executions.close();
+        }
+        log = opened;
+        executions = openedExecutions;
+        generation++;
+        start = 0;
+        saved = log.size();
+        dropped = log.dropped();
+        alignExecutions();
+        flush();
+        moveToEnd();
+    }
+
+    /**
+     * Takes in the entries other sessions appended to the history file since it was last read, and
+     * renumbers the entries if other sessions dropped old ones or the file was replaced. Must be
+     * called while holding the log's lock.
+     */
+    private void refresh() throws IOException {
+        boolean reindexed = log.synchronize();
+        long newlyDropped = log.dropped() - dropped;
+        if (reindexed) {
+            generation++;
+            start = 0;
+            added = -1;
+        } else if (newlyDropped > 0) {
+            renumber((int) Math.min(newlyDropped, Integer.MAX_VALUE));
+        }
+        dropped = log.dropped();
+        saved = log.size();
+        alignExecutions();
+    }
+
+    /**
+     * Shifts the numbers this session holds after the oldest entries were dropped.
+     */
+    private void renumber(int count) {
+        generation++;
+        start = Math.max(0, start - count);
+        cursor = Math.max(start, cursor - count);
+        added = added >= count ? added - count : -1;
+    }
+
+    /**
+     * Drops the execution records if the history file was replaced or rewritten by another
+     * program, so that they no longer belong to its entries.
+     */
+    private void alignExecutions() {
+        int recorded = executions.size();
+        if (recorded > log.size()
+                || recorded > 0 && executions.lastStarted() != log.time(recorded - 1).toEpochMilli()) {
+            executions.clear(0);
+        }
+    }
+
+    /**
+     * Returns a number that changes whenever entries are renumbered, because another file was
+     * opened or old entries were dropped from the file.
+     */
+    public int generation() {
+        return generation;
+    }
+
+    /**
+     * Returns the history file in use, or {@code null} if the history is kept in memory.
+     */
+    public Path file() {
+        return log != null ? log.file() : null;
+    }
+
+    @Override
+    public synchronized void attach(LineReader reader) {
+        if (this.reader != reader) {
+            this.reader = reader;
+            load();
+        }
+    }
+
+    /**
+     * Opens the reader's {@link LineReader#HISTORY_FILE}, or picks up the lines other sessions
+     * have appended to the file in use.
+     */
+    @Override
+    public synchronized void load() {
+        Path file = historyFile();
+        try {
+            if (file == null) {
+                return;
+            }
+            if (log == null || !file.equals(log.file())) {
+                open(file);
+            } else {
+                log.lock();
+                try {
+                    refresh();
+                } finally {
+                    log.unlock();
+                }
+                moveToEnd();
+            }
+        } catch (IOException e) {
+            Logger.log("Failed to load history from " + file + ": " + e.getMessage());
+        }
+    }
+
+    private Path historyFile() {
+        Object file = reader != null ? reader.getVariable(LineReader.HISTORY_FILE) : null;
+        return file instanceof Path path ? path : file != null ? Path.of(file.toString()) : file();
+    }
+
+    /**
+     * Appends the lines kept in memory to the history file and trims the file if it has grown
+     * more than a quarter beyond {@link LineReader#HISTORY_FILE_SIZE}.
+     */
+    @Override
+    public synchronized void save() throws IOException {
+        if (log == null) {
+            return;
+        }
+        flush();
+        int max = ReaderUtils.getInt(reader, LineReader.HISTORY_FILE_SIZE, DEFAULT_FILE_SIZE);
+        if (log.size() > max + max / 4) {
+            trim(max);
+        }
+    }
+
+    /**
+     * Drops all but the most recent entries from the history file, after appending the lines kept
+     * in memory. Entries cleared by {@link #purge()} and erased duplicates are dropped as well, in
+     * the same pass over the file.
+     *
+     * @param count the number of entries to keep
+     * @throws IOException if the file cannot be rewritten
+     */
+    public synchronized void trim(int count) throws IOException {
+        if (log == null) {
+            return;
+        }
+        log.lock();
+        try {
+            flush();
+            int size = log.size();
+            int[] kept = log.compact(start, count);
+            executions.retain(kept);
+            dropped = log.dropped();
+            saved = log.size();
+            int latest = added;
+            renumber(size - kept.length);
+            added = latest >= 0 ? Math.max(-1, Arrays.binarySearch(kept, latest)) : -1;
+        } finally {
+            log.unlock();
+        }
+    }
+
+    /**
+     * Appends the lines kept in memory to the history file, after the entries other sessions
+     * appended meanwhile.
+     */
+    private void flush() throws IOException {
+        log.lock();
+        try {
+            refresh();
+            for (int i = 0; i < pending.size(); i++) {
+                Entry entry = pending.get(i);
+                int index = log.append(entry.time(), entry.line());
+                ExecutionLog.Execution execution = pendingExecutions.get(i);
+                if (execution != null) {
+                    executions.record(index, entry.time(), execution.duration(), execution.status(),
+                            execution.directory());
+                }
+                if (erasedPending.get(i)) {
+                    log.erase(index);
+                }
+            }
+            pending.clear();
+            pendingExecutions.clear();
+            erasedPending.clear();
+            saved = log.size();
+        } finally {
+            log.unlock();
+        }
+    }
+
+    /**
+     * Records how the line last added to the history ran. Does nothing if that line was not
+     * added, e.g. because it repeated the previous one, or was recorded already.
+     *
+     * @param elapsed   how long the line ran
+     * @param status    its exit status
+     * @param directory the working directory it started in
+     */
+    public void record(Duration elapsed, int status, Path directory) {
+        int index = added;
+        added = -1;
+        if (index < 0) {
+            return;
+        }
+        try {
+            if (index < saved) {
+                log.lock();
+                try {
+                    executions.record(index, log.time(index), elapsed, status, directory);
+                } finally {
+                    log.unlock();
+                }
+            } else {
+                pendingExecutions.put(index - saved,
+                        new ExecutionLog.Execution(index, Instant.EPOCH, elapsed, status, directory));
+            }
+        } catch (IOException e) {
+            Logger.log("Failed to save history to " + log.file() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns how the commands in the history file ran, or {@code null} if the history is kept in memory.
+     */
+    public ExecutionLog executions() {
+        return executions;
+    }
+
+    @Override
+    public void write(Path file, boolean incremental) throws IOException {
+        writeLines(file, first(), StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void append(Path file, boolean incremental) throws IOException {
+        writeLines(file, first(), StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Writes the commands of the entries from {@code from} on to a file, one per line.
+     *
+     * @param file   the file, created if it does not exist
+     * @param from   the number of the first entry to write
+     * @param option {@link StandardOpenOption#TRUNCATE_EXISTING} or {@link StandardOpenOption#APPEND}
+     * @throws IOException if the file cannot be written
+     */
+    public void writeLines(Path file, int from, StandardOpenOption option) throws IOException {
+        try (var writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, option)) {
+            for (int index = Math.max(from, first()); index <= last(); index++) {
+                if (!erased(index)) {
+                    writer.write(get(index));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds every line of a file to the history, streaming it without a limit on its size.
+     */
+    @Override
+    public synchronized void read(Path file, boolean checkDuplicates) throws IOException {
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> {
+                if (!checkDuplicates || size() == 0 || !line.equals(get(last()))) {
+                    append(Instant.now(), line);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Clears the history of this session. The history file is left as it is; its entries are
+     * just no longer shown.
+     */
+    @Override
+    public synchronized void purge() {
+        pending.clear();
+        pendingExecutions.clear();
+        erasedPending.clear();
+        start = total();
+        cursor = start;
+    }
+
+    @Override
+    public int size() {
+        return total() - first();
+    }
+
+    private int total() {
+        return saved + pending.size();
+    }
+
+    @Override
+    public int index() {
+        return cursor;
+    }
+
+    @Override
+    public int first() {
+        return Math.max(start, total() - ReaderUtils.getInt(reader, LineReader.HISTORY_SIZE, DEFAULT_SIZE));
+    }
+
+    @Override
+    public int last() {
+        return total() - 1;
+    }
+
+    @Override
+    public String get(int index) {
+        return entry(index).line();
+    }
+
+    /**
+     * Returns the command of any entry, shown or not.
+     *
+     * @param index the number of the entry, from {@code 0} to {@link #last()}
+     */
+    public String command(int index) {
+        return index < saved ? log.line(index) : pending.get(index - saved).line();
+    }
+
+    /**
+     * Returns whether an entry was erased because the same line was entered again later.
+     *
+     * @param index the number of the entry, from {@code 0} to {@link #last()}
+     */
+    public boolean erased(int index) {
+        return index < saved ? log.erased(index) : erasedPending.get(index - saved);
+    }
+
+    /**
+     * Returns an entry, reading it from the history file if it was saved.
+     *
+     * @param index the number of the entry, from {@link #first()} to {@link #last()}
+     */
+    public Entry entry(int index) {
+        if (index < first() || index > last()) {
+            throw new IllegalArgumentException("IndexOutOfBounds: Index:" + index + ", Size:" + size());
+        }
+        if (index >= saved) {
+            Entry entry = pending.get(index - saved);
+            return new Entry(index, entry.time(), entry.line());
+        }
+        return new Entry(index, log.time(index), log.line(index));
+    }
+
+    @Override
+    public synchronized void add(Instant time, String line) {
+        added = -1;
+        if (ReaderUtils.getBoolean(reader, LineReader.DISABLE_HISTORY, false)) {
+            return;
+        }
+        if (ReaderUtils.isSet(reader, LineReader.Option.HISTORY_IGNORE_SPACE) && line.startsWith(" ")) {
+            return;
+        }
+        if (ReaderUtils.isSet(reader, LineReader.Option.HISTORY_REDUCE_BLANKS)) {
+            line = line.trim();
+        }
+        if (ReaderUtils.isSet(reader, LineReader.Option.HISTORY_IGNORE_DUPS)
+                && size() > 0 && line.equals(get(last()))) {
+            return;
+        }
+        if (!ReaderUtils.getBoolean(reader, ERASE_DUPS, false)) {
+            added = append(time, line);
+            return;
+        }
+        int previous = latest(line);
+        if (previous >= 0) {
+            erase(previous);
+        }
+        added = append(time, line);
+        duplicates.add(added, line);
+    }
+
+    /**
+     * Returns the most recent shown entry with a line that is not erased, or {@code -1} if there
+     * is none, after indexing the entries added since the last lookup.
+     */
+    private int latest(String line) {
+        if (duplicatesGeneration != generation || duplicates.size() > total()) {
+            duplicates.clear();
+            duplicatesGeneration = generation;
+        }
+        for (int index = Math.max(duplicates.size(), first()); index <= last(); index++) {
+            if (!erased(index)) {
+                duplicates.add(index, command(index));
+            }
+        }
+        int index = duplicates.latest(line);
+        return index >= first() && index <= last() && !erased(index) && command(index).equals(line) ? index : -1;
+    }
+
+    private void erase(int index) {
+        if (index >= saved) {
+            erasedPending.set(index - saved);
+            return;
+        }
+        try {
+            log.erase(index);
+        } catch (IOException e) {
+            Logger.log("Failed to save history to " + log.file() + ": " + e.getMessage());
+        }
+    }
+
+    private int append(Instant time, String line) {
+        boolean incremental = reader == null || reader.isSet(LineReader.Option.HISTORY_INCREMENTAL);
+        if (log != null && incremental && pending.isEmpty()) {
+            try {
+                log.lock();
+                try {
+                    refresh();
+                    int index = log.append(time, line);
+                    saved = index + 1;
+                    moveToEnd();
+                    return index;
+                } finally {
+                    log.unlock();
+                }
+            } catch (IOException e) {
+                Logger.log("Failed to save history to " + log.file() + ": " + e.getMessage());
+            }
+        }
+        int index = total();
+        pending.add(new Entry(index, time, line));
+        moveToEnd();
+        return index;
+    }
+
+    @Override
+    public ListIterator<History.Entry> iterator(int index) {
+        int[] shown = IntStream.range(first(), total()).filter(entry -> !erased(entry)).toArray();
+        int position = Arrays.binarySearch(shown, index);
+        return new Window(shown).listIterator(position >= 0 ? position : -position - 1);
+    }
+
+    /**
+     * Returns the first entry from {@code index} on, stepping by {@code step}, that is not erased,
+     * or the first number past the shown entries.
+     */
+    private int skipErased(int index, int step) {
+        while (index >= first() && index < total() && erased(index)) {
+            index += step;
+        }
+        return index;
+    }
+
+    @Override
+    public String current() {
+        return cursor >= first() && cursor <= last() ? get(cursor) : "";
+    }
+
+    @Override
+    public boolean previous() {
+        int index = skipErased(Math.min(cursor, total()) - 1, -1);
+        if (index < first()) {
+            return false;
+        }
+        cursor = index;
+        return true;
+    }
+
+    @Override
+    public boolean next() {
+        if (cursor >= total()) {
+            return false;
+        }
+        cursor = skipErased(Math.max(cursor, first()) + 1, 1);
+        return true;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        int index = skipErased(first(), 1);
+        if (index <= last() && cursor != index) {
+            cursor = index;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean moveToLast() {
+        int index = skipErased(last(), -1);
+        if (index >= first() && cursor != index) {
+            cursor = index;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean moveTo(int index) {
+        if (index >= first() && index <= last()) {
+            cursor = index;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void moveToEnd() {
+        cursor = total();
+    }
+
+    @Override
+    public void resetIndex() {
+        cursor = Math.min(cursor, total());
+    }
+
+    /**
+     * The shown entries that are not erased, read when they are iterated.
+     */
+    private final class Window extends AbstractList<History.Entry> implements RandomAccess {
+
+        private final int[] indices;
+
+        Window(int[] indices) {
+            this.indices = indices;
+        }
+
+        @Override
+        public History.Entry get(int index) {
+            return entry(indices[index]);
+        }
+
+        @Override
+        public int size() {
+            return indices.length;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.lowkkid.jsh.history;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prefix tree of history entries in which every node keeps the most recent distinct lines below
+ * it, so that the lines starting with a prefix are found by walking the prefix, without visiting
+ * the entries.
+ *
+ * <p>Each node caches up to {@value #CANDIDATES} lines, newest first, with the number of their
+ * latest entry; an entry added later replaces an older entry with the same line and pushes the
+ * oldest one out. Adding an entry costs its length times that number. Only the first
+ * {@value #MAX_DEPTH} characters of a line are indexed; longer prefixes are looked up at the
+ * deepest node and checked against the lines cached there.
+ *
+ * <p>Not thread-safe; {@link HistorySuggestions} uses it from the reader's thread.
+ */
+final class SuggestionTrie {
+
+    /** Lines cached per node. */
+    static final int CANDIDATES = 8;
+    /** Characters of a line that are indexed. */
+    static final int MAX_DEPTH = 256;
+
+    private final Node root = new Node();
+
+    /**
+     * A cached line.
+     *
+     * @param index the number of its latest entry
+     * @param line  the command
+     */
+    record Candidate(int index, String line) {}
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        root.children.clear();
+    }
+
+    /**
+     * Adds an entry, which becomes the most recent candidate of every prefix of its line.
+     *
+     * @param index the number of the entry, greater than that of any entry added before
+     * @param line  the command
+     */
+    void add(int index, String line) {
+        var candidate = new Candidate(index, line);
+        Node node = root;
+        for (int i = 0; i < Math.min(line.length(), MAX_DEPTH); i++) {
+            node = node.children.computeIfAbsent(line.charAt(i), key -> new Node());
+            node.add(candidate);
+        }
+    }
+
+    /**
+     * Returns the most recent lines starting with a prefix, newest first; the array may contain
+     * {@code null}s at the end.
+     *
+     * @param prefix the prefix, not empty
+     */
+    Candidate[] startingWith(String prefix) {
+        Node node = root;
+        for (int i = 0; i < Math.min(prefix.length(), MAX_DEPTH) && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node == null || node == root) {
+            return new Candidate[0];
+        }
+        if (prefix.length() <= MAX_DEPTH) {
+            return node.candidates.clone();
+        }
+        Candidate[] matching = new Candidate[CANDIDATES];
+        int found = 0;
+        for (Candidate candidate : node.candidates) {
+            if (candidate != null && candidate.line().startsWith(prefix)) {
+                matching[found++] = candidate;
+            }
+        }
+        return matching;
+    }
+
+    private static final class Node {
+
+        private final Map<Character, Node> children = new HashMap<>(2);
+        private final Candidate[] candidates = new Candidate[CANDIDATES];
+
+        /**
+         * Puts a candidate first, dropping an older one with the same line, or else the oldest.
+         */
+        void add(Candidate candidate) {
+            int drop = CANDIDATES - 1;
+            for (int i = 0; i < CANDIDATES; i++) {
+                if (candidates[i] == null || candidates[i].line().equals(candidate.line())) {
+                    drop = i;
+                    break;
+                }
+            }
+            System.arraycopy(candidates, 0, candidates, 1, drop);
+            candidates[0] = candidate;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.lowkkid.jsh.history;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from the trigrams of history entries, three consecutive characters ignoring
+ * case, to the entries containing them.
+ *
+ * <p>Entries are added in ascending order, so each trigram's entries form an ascending list,
+ * which is stored as variable-length deltas: a trigram in every other entry costs about one byte
+ * per entry. A million typical command lines take a few tens of megabytes.
+ *
+ * <p>Not thread-safe; {@link HistorySearch} adds and looks up from a single thread.
+ */
+final class TrigramIndex {
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private int size;
+
+    /**
+     * Returns the number after the last entry added, {@code 0} if none was.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        postings.clear();
+        size = 0;
+    }
+
+    /**
+     * Adds an entry.
+     *
+     * @param index the number of the entry, greater than that of any entry added before
+     * @param line  the command
+     */
+    void add(int index, String line) {
+        String lower = line.toLowerCase(Locale.ROOT);
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            postings.computeIfAbsent(key(lower, i), key -> new Postings()).add(index);
+        }
+        size = index + 1;
+    }
+
+    /**
+     * Returns the entries containing all trigrams of some text, in ascending order.
+     *
+     * @param text lower-case text of at least three characters
+     * @param from the number of the first entry to consider
+     */
+    int[] containingAll(String text, int from) {
+        Set<Long> keys = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            keys.add(key(text, i));
+        }
+        Postings[] lists = new Postings[keys.size()];
+        int count = 0;
+        for (Long key : keys) {
+            Postings list = postings.get(key);
+            if (list == null) {
+                return new int[0];
+            }
+            lists[count++] = list;
+        }
+        Arrays.sort(lists, (left, right) -> Integer.compare(left.count, right.count));
+
+        int[] result = lists[0].decode(from);
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            result = lists[i].retain(result);
+        }
+        return result;
+    }
+
+    private static long key(String text, int offset) {
+        return (long) text.charAt(offset) << 32 | (long) text.charAt(offset + 1) << 16 | text.charAt(offset + 2);
+    }
+
+    /**
+     * The ascending entries of one trigram as variable-length deltas.
+     */
+    private static final class Postings {
+
+        private byte[] bytes = new byte[4];
+        private int length;
+        private int count;
+        private int last = -1;
+
+        void add(int index) {
+            if (index == last) {
+                // the trigram occurs more than once in the entry
+                return;
+            }
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int delta = index - last;
+            while (delta >= 0x80) {
+                bytes[length++] = (byte) (delta | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+            last = index;
+            count++;
+        }
+
+        /**
+         * Returns the entries from {@code from} on.
+         */
+        int[] decode(int from) {
+            int[] entries = new int[count];
+            int found = 0;
+            int index = -1;
+            int position = 0;
+            while (position < length) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                index += delta;
+                if (index >= from) {
+                    entries[found++] = index;
+                }
+            }
+            return found == count ? entries : Arrays.copyOf(entries, found);
+        }
+
+        /**
+         * Returns those of the ascending entries that are in this list.
+         */
+        int[] retain(int[] entries) {
+            int[] kept = new int[entries.length];
+            int found = 0;
+            int next = 0;
+            int index = -1;
+            int position = 0;
+            while (position < length && next < entries.length) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                index += delta;
+                while (next < entries.length && entries[next] < index) {
+                    next++;
+                }
+                if (next < entries.length && entries[next] == index) {
+                    kept[found++] = index;
+                    next++;
+                }
+            }
+            return Arrays.copyOf(kept, found);
+        }
+    }
+}
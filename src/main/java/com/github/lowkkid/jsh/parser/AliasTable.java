@@ -0,0 +1,223 @@
+package com.github.lowkkid.jsh.parser;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aliases compiled for the parser, backing {@link com.github.lowkkid.jsh.config.env.Aliases}.
+ *
+ * <p>A value is tokenized once when the alias is defined. At the same time its expansion chain is
+ * resolved: while the value starts with another alias, that alias is spliced in, until the first
+ * word is not an alias or is an alias already being expanded ({@code alias ls='ls --color'},
+ * or {@code a} and {@code b} defined in terms of each other). Expanding an alias at parse time
+ * is then a single lookup plus a splice of the resolved tokens.
+ *
+ * <p>A chain depends on the aliases it looked up, including the first word it stopped at, so a
+ * change only re-resolves the aliases whose chains looked up the changed name.
+ *
+ * <p>Not thread-safe; {@link com.github.lowkkid.jsh.config.env.Aliases} synchronizes access to it.
+ */
+public final class AliasTable {
+
+    private final Map<String, Alias> aliases = new HashMap<>();
+    /** Name looked up while resolving a chain → aliases whose chain looked it up. */
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+
+    /**
+     * Returns the value of an alias as it was defined.
+     *
+     * @param name alias name
+     * @return the value, or {@code null} if not defined
+     */
+    public String get(String name) {
+        Alias alias = aliases.get(name);
+        return alias == null ? null : alias.value;
+    }
+
+    /**
+     * Returns the resolved expansion of an alias.
+     *
+     * @param name alias name
+     * @return the expansion, or {@code null} if not defined
+     */
+    public Expansion expansion(String name) {
+        Alias alias = aliases.get(name);
+        return alias == null ? null : alias.resolved;
+    }
+
+    /**
+     * Creates or updates an alias and re-resolves the chains that depend on it.
+     *
+     * @param name  alias name
+     * @param value the command string to expand to
+     */
+    public void put(String name, String value) {
+        Alias previous = aliases.put(name, new Alias(value, Tokenizer.tokenize(value)));
+        if (previous != null) {
+            forgetDependencies(name, previous.resolved);
+        }
+        resolveDependents(name);
+    }
+
+    /**
+     * Removes an alias and re-resolves the chains that depended on it.
+     *
+     * @param name alias name
+     * @return {@code true} if the alias existed
+     */
+    public boolean remove(String name) {
+        Alias removed = aliases.remove(name);
+        if (removed == null) {
+            return false;
+        }
+        forgetDependencies(name, removed.resolved);
+        resolveDependents(name);
+        return true;
+    }
+
+    /**
+     * Replaces all aliases, resolving every chain once.
+     *
+     * @param values alias names and values
+     */
+    public void replaceAll(Map<String, String> values) {
+        aliases.clear();
+        dependents.clear();
+        values.forEach((name, value) -> aliases.put(name, new Alias(value, Tokenizer.tokenize(value))));
+        aliases.keySet().forEach(this::resolve);
+    }
+
+    /**
+     * Returns the aliases as names and values, in no particular order.
+     */
+    public Map<String, String> values() {
+        Map<String, String> values = new LinkedHashMap<>();
+        aliases.forEach((name, alias) -> values.put(name, alias.value));
+        return Collections.unmodifiableMap(values);
+    }
+
+    public boolean contains(String name) {
+        return aliases.containsKey(name);
+    }
+
+    public int size() {
+        return aliases.size();
+    }
+
+    private void resolveDependents(String name) {
+        Set<String> affected = new HashSet<>(dependents.getOrDefault(name, Set.of()));
+        if (aliases.containsKey(name)) {
+            affected.add(name);
+        }
+        affected.forEach(this::resolve);
+    }
+
+    /**
+     * Resolves the chain of an alias the way the parser expanded aliases one at a time.
+     */
+    private void resolve(String name) {
+        Alias alias = aliases.get(name);
+        if (alias.resolved != null) {
+            forgetDependencies(name, alias.resolved);
+        }
+
+        TokenList tokens = alias.tokens.copy();
+        Map<String, Integer> active = new LinkedHashMap<>();
+        active.put(name, tokens.size());
+        Set<String> lookedUp = new HashSet<>();
+        lookedUp.add(name);
+        while (tokens.size() > 0 && tokens.kind(0) == Tokenizer.WORD && !tokens.has(0, Tokenizer.QUOTED)) {
+            String word = tokens.text(0);
+            lookedUp.add(word);
+            Integer end = active.get(word);
+            Alias next = aliases.get(word);
+            if (end != null && end > 0 || next == null) {
+                break;
+            }
+            int delta = next.tokens.size() - 1;
+            active.replaceAll((activeName, activeEnd) -> activeEnd > 0 ? activeEnd + delta : activeEnd);
+            tokens.splice(0, next.tokens);
+            active.put(word, next.tokens.size());
+        }
+
+        var singleStep = new Expansion(alias.tokens, Map.of(name, alias.tokens.size()), null, Set.of());
+        alias.resolved = new Expansion(tokens, active, singleStep, lookedUp);
+        for (String word : lookedUp) {
+            dependents.computeIfAbsent(word, key -> new HashSet<>()).add(name);
+        }
+    }
+
+    private void forgetDependencies(String name, Expansion expansion) {
+        for (String word : expansion.lookedUp) {
+            Set<String> names = dependents.get(word);
+            if (names != null) {
+                names.remove(name);
+                if (names.isEmpty()) {
+                    dependents.remove(word);
+                }
+            }
+        }
+    }
+
+    private static final class Alias {
+        private final String value;
+        private final TokenList tokens;
+        private Expansion resolved;
+
+        Alias(String value, TokenList tokens) {
+            this.value = value;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * Tokens an alias expands to, with the aliases expanded along the way and how many of the
+     * tokens each of them produced, so the parser does not expand them again inside their own value.
+     */
+    public static final class Expansion {
+
+        private final TokenList tokens;
+        private final String[] names;
+        private final int[] ends;
+        private final Expansion step;
+        private final Set<String> lookedUp;
+
+        private Expansion(TokenList tokens, Map<String, Integer> active, Expansion step, Set<String> lookedUp) {
+            this.tokens = tokens;
+            this.names = active.keySet().toArray(String[]::new);
+            this.ends = active.values().stream().mapToInt(Integer::intValue).toArray();
+            this.step = step;
+            this.lookedUp = lookedUp;
+        }
+
+        TokenList tokens() {
+            return tokens;
+        }
+
+        int aliasCount() {
+            return names.length;
+        }
+
+        String name(int alias) {
+            return names[alias];
+        }
+
+        /**
+         * Returns the end, relative to the start of the expansion, of the tokens produced by an alias.
+         */
+        int end(int alias) {
+            return ends[alias];
+        }
+
+        /**
+         * Returns the expansion of only the alias itself, without the aliases in its value.
+         */
+        Expansion singleStep() {
+            return step == null ? this : step;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.lowkkid.jsh.parser;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.UnaryOperator;
+
+/**
+ * Arguments of a command as {@link CommandNode.Simple#expand expanded}, in which the words of a
+ * large brace expansion are not stored but computed from the brace word each time they are read.
+ *
+ * <p>{@code echo {1..1000000}} thus holds one {@link Word} instead of a million strings, and
+ * commands that stream their arguments, such as built-ins or a batched external command, never
+ * have all of them in memory at once.
+ *
+ * <p>This only holds for brace expansions. The matches of a pathname expansion are stored like
+ * plain arguments: {@link com.github.lowkkid.jsh.utils.GlobExpander} returns them sorted and
+ * caches the directory listings they come from, so {@code **} over a large tree holds all of
+ * its matches while the command runs.
+ *
+ * <p>The list also remembers which runs of arguments came from brace and pathname expansions, so
+ * that {@link com.github.lowkkid.jsh.executor.ArgumentBatcher} splits only those and repeats the
+ * other words, e.g. the {@code -f} of {@code rm -f *.log}, the {@code dest/} of
+ * {@code cp *.txt dest/} or the {@code -o out} of {@code cmd *.c -o out *.h}.
+ */
+public final class ArgumentList extends AbstractList<String> implements RandomAccess {
+
+    /** Upper bound on the number of arguments, which must fit an {@code int} list index. */
+    static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    private final List<List<String>> chunks = new ArrayList<>();
+    private int[] offsets = new int[4];
+    private List<String> tail;
+    private int size;
+    /** Start and end index of each run of expanded arguments, in order. */
+    private int[] expansions = new int[0];
+    private int expansionCount;
+
+    /**
+     * Appends a single argument.
+     */
+    @Override
+    public boolean add(String argument) {
+        if (tail == null) {
+            tail = new ArrayList<>();
+            addChunk(tail);
+        }
+        tail.add(argument);
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends String> arguments) {
+        arguments.forEach(this::add);
+        return !arguments.isEmpty();
+    }
+
+    /**
+     * Appends the words of a brace expansion without computing them.
+     *
+     * @param word  the word, without variable references
+     * @param count the number of words, as returned by {@link Word#count()}
+     */
+    void addExpansions(Word word, int count) {
+        addChunk(new Expansions(word, count));
+        size += count;
+        tail = null;
+    }
+
+    /**
+     * Marks the arguments added since {@code from} as the result of an expansion. Expansions next
+     * to each other make up a single run.
+     */
+    void markExpanded(int from) {
+        if (size <= from) {
+            return;
+        }
+        if (expansionCount > 0 && expansions[2 * expansionCount - 1] == from) {
+            expansions[2 * expansionCount - 1] = size;
+            return;
+        }
+        if (2 * expansionCount == expansions.length) {
+            expansions = Arrays.copyOf(expansions, Math.max(4, expansions.length * 2));
+        }
+        expansions[2 * expansionCount] = from;
+        expansions[2 * expansionCount + 1] = size;
+        expansionCount++;
+    }
+
+    /**
+     * Returns the number of runs of arguments that came from expansions.
+     */
+    public int expansionCount() {
+        return expansionCount;
+    }
+
+    /**
+     * Returns the index of the first argument of a run of expanded arguments.
+     *
+     * @param run the run, from {@code 0} to {@link #expansionCount()}
+     */
+    public int expansionStart(int run) {
+        return expansions[2 * Objects.checkIndex(run, expansionCount)];
+    }
+
+    /**
+     * Returns the index after the last argument of a run of expanded arguments.
+     *
+     * @param run the run, from {@code 0} to {@link #expansionCount()}
+     */
+    public int expansionEnd(int run) {
+        return expansions[2 * Objects.checkIndex(run, expansionCount) + 1];
+    }
+
+    private void addChunk(List<String> chunk) {
+        if (chunks.size() == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[chunks.size()] = size;
+        chunks.add(chunk);
+    }
+
+    /**
+     * Returns the arguments as a plain list if none of them is computed or expanded, otherwise this list.
+     */
+    List<String> build() {
+        if (chunks.isEmpty()) {
+            return List.of();
+        }
+        return chunks.size() == 1 && tail != null && expansionCount == 0 ? tail : this;
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int chunk = Arrays.binarySearch(offsets, 0, chunks.size(), index);
+        if (chunk < 0) {
+            chunk = -chunk - 2;
+        }
+        return chunks.get(chunk).get(index - offsets[chunk]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static final class Expansions extends AbstractList<String> implements RandomAccess {
+
+        private static final UnaryOperator<String> NO_VARIABLES = name -> null;
+
+        private final Word word;
+        private final int size;
+
+        Expansions(Word word, int size) {
+            this.word = word;
+            this.size = size;
+        }
+
+        @Override
+        public String get(int index) {
+            return word.expand(index, NO_VARIABLES);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -1,8 +1,22 @@
 package com.github.lowkkid.jsh.parser;
 
 import java.util.List;
+import java.util.Map;
 
-public record CommandAndArgs(String command, List<String> arguments, RedirectOptions redirectOptions) {
+/**
+ * A command ready for execution.
+ *
+ * @param command         the command name
+ * @param arguments       the arguments
+ * @param redirectOptions the output redirect, or {@code null}
+ * @param assignments     variables set for this command only ({@code FOO=bar cmd}), in order
+ */
+public record CommandAndArgs(String command, List<String> arguments, RedirectOptions redirectOptions,
+                             Map<String, String> assignments) {
+
+    public CommandAndArgs(String command, List<String> arguments, RedirectOptions redirectOptions) {
+        this(command, arguments, redirectOptions, Map.of());
+    }
 
     public boolean shouldBeRedirected() {
         return redirectOptions != null;
@@ -0,0 +1,344 @@
+package com.github.lowkkid.jsh.parser;
+
+import com.github.lowkkid.jsh.utils.GlobExpander;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Immutable syntax tree of a command line, produced once per line by {@link InputParser#parse(String)}.
+ *
+ * <p>Grammar, from the loosest to the tightest binding:
+ * <pre>
+ * list     := and_or (( ';' | '&amp;' | newline ) and_or)*
+ * and_or   := pipeline (( '&amp;&amp;' | '||' ) pipeline)*
+ * pipeline := command ( '|' command )*
+ * command  := simple | '{' list '}' | '(' list ')'
+ * simple   := assignment+ | assignment* word ( word | redirect )*
+ * </pre>
+ *
+ * <p>Example: {@code cd /tmp && ls | wc -l; echo done &}
+ * <pre>
+ * Sequence
+ *   ├─ Conditional(AND)
+ *   │    ├─ Simple [cd /tmp]
+ *   │    └─ Pipeline [ls, wc -l]
+ *   └─ Simple [echo done] (background)
+ * </pre>
+ *
+ * <p>Single-element lists and pipelines are collapsed into their only element, so parsing
+ * {@code echo hi} yields just a {@link Simple}.
+ */
+public sealed interface CommandNode permits
+        CommandNode.Sequence,
+        CommandNode.Conditional,
+        CommandNode.Pipeline,
+        CommandNode.Group,
+        CommandNode.Simple {
+
+    /**
+     * Commands separated by {@code ;}, {@code &} or newlines, run one after another.
+     *
+     * @param entries the commands in order
+     */
+    record Sequence(List<Entry> entries) implements CommandNode {
+
+        public Sequence {
+            entries = List.copyOf(entries);
+        }
+
+        /**
+         * A command of a sequence.
+         *
+         * @param command    the command
+         * @param background {@code true} if the command was terminated by {@code &}
+         * @param source     the command's text as typed, shown by {@code jobs}
+         */
+        public record Entry(CommandNode command, boolean background, String source) {}
+    }
+
+    /**
+     * Two commands joined by {@code &&} or {@code ||}. Chains are left-associative,
+     * {@code a && b || c} is {@code (a && b) || c}.
+     *
+     * @param left     the command that always runs
+     * @param operator decides whether {@code right} runs, based on the exit status of {@code left}
+     * @param right    the conditionally executed command
+     */
+    record Conditional(CommandNode left, Operator operator, CommandNode right) implements CommandNode {
+
+        public enum Operator {
+            AND("&&"),
+            OR("||");
+
+            private final String symbol;
+
+            Operator(String symbol) {
+                this.symbol = symbol;
+            }
+
+            public String symbol() {
+                return symbol;
+            }
+
+            /**
+             * Returns whether the right-hand command runs after the left one exited with {@code status}.
+             */
+            public boolean shouldContinue(int status) {
+                return this == AND ? status == 0 : status != 0;
+            }
+        }
+    }
+
+    /**
+     * Two or more commands connected with {@code |}.
+     *
+     * @param stages the commands in pipeline order
+     */
+    record Pipeline(List<CommandNode> stages) implements CommandNode {
+
+        public Pipeline {
+            stages = List.copyOf(stages);
+        }
+    }
+
+    /**
+     * A list grouped with {@code { }} or {@code ( )}.
+     *
+     * @param body     the grouped commands
+     * @param subshell {@code true} for {@code ( )}: directory and variable changes do not leak out
+     */
+    record Group(CommandNode body, boolean subshell) implements CommandNode {}
+
+    /**
+     * A single command with its arguments, optional output redirect and variable assignments.
+     *
+     * @param name        the command name
+     * @param arguments   the arguments
+     * @param redirect    the output redirect, or {@code null}
+     * @param assignments    variables set for this command only, written in front of it
+     * @param assignmentOnly {@code true} if the command was written as assignments alone, which
+     *                       are turned into a {@code set} command, see {@link #ofAssignments}
+     */
+    record Simple(Word name, List<Word> arguments, Redirect redirect, List<Assignment> assignments,
+                  boolean assignmentOnly) implements CommandNode {
+
+        /** Number of words from which a brace expansion is computed on demand. */
+        static final int LAZY_EXPANSION = 1024;
+
+        public Simple {
+            arguments = List.copyOf(arguments);
+            assignments = List.copyOf(assignments);
+        }
+
+        public Simple(Word name, List<Word> arguments, Redirect redirect, List<Assignment> assignments) {
+            this(name, arguments, redirect, assignments, false);
+        }
+
+        public Simple(Word name, List<Word> arguments, Redirect redirect) {
+            this(name, arguments, redirect, List.of());
+        }
+
+        /**
+         * Creates the command for a line of assignments alone, which sets the variables in the shell
+         * like {@code set NAME=value} does.
+         *
+         * @param assignments the assignments, possibly none
+         * @param redirect    the output redirect, or {@code null}
+         * @return a {@code set} command, marked as {@link #assignmentOnly()}
+         */
+        static Simple ofAssignments(List<Assignment> assignments, Redirect redirect) {
+            List<Word> values = new ArrayList<>(assignments.size());
+            for (Assignment assignment : assignments) {
+                List<Word.Part> parts = new ArrayList<>(assignment.value().parts());
+                parts.addFirst(new Word.Literal(assignment.name() + "="));
+                values.add(new Word(parts));
+            }
+            return new Simple(Word.literal("set"), values, redirect, List.of(), true);
+        }
+
+        /**
+         * Returns {@code true} if any word of the command contains a command substitution.
+         */
+        public boolean hasSubstitutions() {
+            return name.hasSubstitutions()
+                    || arguments.stream().anyMatch(Word::hasSubstitutions)
+                    || redirect != null && redirect.target().hasSubstitutions()
+                    || assignments.stream().anyMatch(assignment -> assignment.value().hasSubstitutions());
+        }
+
+        /**
+         * Runs the command substitutions, from left to right, and returns the command with their
+         * output in place. The output of unquoted substitutions in the name and arguments is split
+         * into words (see {@link Word#fields(Function)}), the one in assignments and the redirect
+         * target is not.
+         *
+         * <p>If no words are left, e.g. for {@code $(true)}, the command only sets its assignments.
+         *
+         * @param output runs a command and returns its output, without trailing newlines
+         * @return the command without substitutions, or this one if it has none
+         */
+        public Simple substitute(Function<CommandNode, String> output) {
+            if (!hasSubstitutions()) {
+                return this;
+            }
+            Redirect target = redirect != null
+                    ? new Redirect(redirect.target().substitute(output), redirect.type(), redirect.stream())
+                    : null;
+            if (assignmentOnly) {
+                // the arguments are NAME=value words, whose values are not split either
+                List<Word> values = new ArrayList<>(arguments.size());
+                for (Word argument : arguments) {
+                    values.add(argument.substitute(output));
+                }
+                return new Simple(name, values, target, List.of(), true);
+            }
+            List<Assignment> values = new ArrayList<>(assignments.size());
+            for (Assignment assignment : assignments) {
+                values.add(new Assignment(assignment.name(), assignment.value().substitute(output)));
+            }
+            List<Word> words = new ArrayList<>(name.fields(output));
+            for (Word argument : arguments) {
+                words.addAll(argument.fields(output));
+            }
+            if (words.isEmpty()) {
+                return ofAssignments(values, target);
+            }
+            return new Simple(words.getFirst(), words.subList(1, words.size()), target, values);
+        }
+
+        /**
+         * Substitutes variables, expands braces and produces the command to execute, without
+         * pathname expansion.
+         *
+         * <p>Arguments that expand to an empty string are dropped, like unquoted empty
+         * expansions in POSIX shells.
+         *
+         * @param variables resolves a variable name to its value, or {@code null} if it is not set
+         * @return the command ready for execution
+         */
+        public CommandAndArgs expand(UnaryOperator<String> variables) {
+            return expand(variables, null);
+        }
+
+        /**
+         * Substitutes variables, expands braces, expands arguments with wildcards to the matching
+         * paths and produces the command to execute.
+         *
+         * <p>Arguments that expand to an empty string are dropped, like unquoted empty
+         * expansions in POSIX shells. A pattern that matches nothing is passed on as written.
+         * Directory listings are shared by all arguments of the command.
+         *
+         * <p>A brace expansion of {@value #LAZY_EXPANSION} words or more that contains a range is
+         * not materialized: its words are computed when the command reads them, see {@link ArgumentList}.
+         * One that would exceed the maximum number of arguments is passed on as written. Pathname
+         * expansions, including those of the words of a brace expansion, are always materialized
+         * and sorted.
+         *
+         * @param variables        resolves a variable name to its value, or {@code null} if it is not set
+         * @param workingDirectory directory relative patterns are matched against, or {@code null}
+         *                         to leave wildcards unexpanded
+         * @return the command ready for execution
+         */
+        public CommandAndArgs expand(UnaryOperator<String> variables, Path workingDirectory) {
+            GlobExpander globs = null;
+            var args = new ArgumentList();
+            for (Word argument : arguments) {
+                boolean globbing = workingDirectory != null && argument.isPattern();
+                if (globbing && globs == null) {
+                    globs = new GlobExpander(workingDirectory);
+                }
+                long count = argument.hasBraces() ? argument.count() : 0;
+                int start = args.size();
+                if (count > ArgumentList.MAX_SIZE - start) {
+                    count = 0;
+                } else if (count >= LAZY_EXPANSION && !globbing && isNeverEmpty(argument)) {
+                    args.addExpansions(argument.withValues(variables), (int) count);
+                    args.markExpanded(start);
+                    continue;
+                }
+                if (count == 0) {
+                    add(argument, -1, variables, globbing ? globs : null, args);
+                }
+                for (long index = 0; index < count; index++) {
+                    add(argument, index, variables, globbing ? globs : null, args);
+                }
+                if (count > 0 || globbing) {
+                    args.markExpanded(start);
+                }
+            }
+            return new CommandAndArgs(
+                    name.expand(variables),
+                    args.build(),
+                    redirect != null ? redirect.expand(variables) : null,
+                    expandAssignments(variables));
+        }
+
+        private Map<String, String> expandAssignments(UnaryOperator<String> variables) {
+            if (assignments.isEmpty()) {
+                return Map.of();
+            }
+            Map<String, String> values = new LinkedHashMap<>();
+            for (Assignment assignment : assignments) {
+                values.put(assignment.name(), assignment.value().expand(variables));
+            }
+            return Collections.unmodifiableMap(values);
+        }
+
+        /**
+         * Adds a word of the argument's brace expansion, or the argument with braces as written if
+         * {@code index} is negative, with its pathname expansion if {@code globs} is given.
+         */
+        private static void add(Word argument, long index, UnaryOperator<String> variables,
+                GlobExpander globs, List<String> args) {
+            if (globs != null) {
+                List<String> matches = globs.expand(index < 0
+                        ? argument.expandPattern(variables)
+                        : argument.expandPattern(index, variables));
+                if (!matches.isEmpty()) {
+                    args.addAll(matches);
+                    return;
+                }
+            }
+            String value = index < 0 ? argument.expand(variables) : argument.expand(index, variables);
+            if (!value.isEmpty()) {
+                args.add(value);
+            }
+        }
+
+        /**
+         * A range never yields an empty item, so no word of the expansion needs to be dropped.
+         */
+        private static boolean isNeverEmpty(Word argument) {
+            return argument.parts().stream().anyMatch(Word.Range.class::isInstance);
+        }
+    }
+
+    /**
+     * A variable assignment in front of a command, such as {@code FOO=bar} in {@code FOO=bar cmd}.
+     * The value is expanded like a word, except for wildcards and braces.
+     *
+     * @param name  the variable name
+     * @param value the value
+     */
+    record Assignment(String name, Word value) {}
+
+    /**
+     * An output redirect such as {@code 2>> err.log}, with the target not yet expanded.
+     *
+     * @param target the file to write to
+     * @param type   rewrite or append
+     * @param stream the redirected stream
+     */
+    record Redirect(Word target, RedirectOptions.RedirectType type, RedirectOptions.RedirectStream stream) {
+
+        RedirectOptions expand(UnaryOperator<String> variables) {
+            return new RedirectOptions(target.expand(variables), type, stream);
+        }
+    }
+}
@@ -1,29 +1,38 @@
 package com.github.lowkkid.jsh.parser;
 
 import com.github.lowkkid.jsh.config.env.AliasStorage;
+import com.github.lowkkid.jsh.config.env.Aliases;
 import com.github.lowkkid.jsh.config.env.EnvStorage;
+import com.github.lowkkid.jsh.parser.CommandNode.Assignment;
+import com.github.lowkkid.jsh.parser.CommandNode.Conditional;
+import com.github.lowkkid.jsh.parser.CommandNode.Conditional.Operator;
+import com.github.lowkkid.jsh.parser.CommandNode.Group;
+import com.github.lowkkid.jsh.parser.CommandNode.Pipeline;
+import com.github.lowkkid.jsh.parser.CommandNode.Redirect;
+import com.github.lowkkid.jsh.parser.CommandNode.Sequence;
+import com.github.lowkkid.jsh.parser.CommandNode.Simple;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * Recursive descent parser turning a command line into a {@link CommandNode} tree.
+ *
+ * <p>The whole line is parsed once, before anything runs. The {@link Tokenizer} first splits it
+ * into a compact {@link TokenList} of offsets; the parser then works on those and only creates
+ * strings for the words that end up in the tree. Quotes, escapes and aliases are resolved during
+ * parsing, while variable references are kept in the tree (see {@link Word}) and substituted
+ * right before each command executes. The command of a command substitution is parsed along with
+ * the line, so running it later needs no parsing.
+ *
+ * <p>Trees are cached per instance, see {@link ParseCache}. Apart from that cache, the parser
+ * keeps no state between calls, so a single instance can be shared by threads.
+ */
 public class InputParser {
 
-    private final StringBuilder sb = new StringBuilder();
-    private int index = 0;
-    private String input;
-
-    private boolean isWithinSingleQuotes = false;
-    private boolean isWithinDoubleQuotes = false;
-    private boolean isEscaping = false;
-    private boolean isCommandQuoted = false;
-
-    private String command = "";
-    private String redirectTo = null;
-    private RedirectOptions.RedirectType redirectType = RedirectOptions.RedirectType.REWRITE;
-    private RedirectOptions.RedirectStream redirectStream = RedirectOptions.RedirectStream.STDOUT;
-    private List<String> arguments = new ArrayList<>();
+    private static final Set<Character> ESCAPED_CHARS_WITHIN_DOUBLE_QUOTES = Set.of('"', '\\', '$', '`');
 
+    private final ParseCache cache = new ParseCache();
 
     public InputParser() {
     }
@@ -32,225 +41,580 @@ public class InputParser {
         return InputParserHolder.INSTANCE;
     }
 
+    /**
+     * Parses a command line, or returns the cached tree if the same line was parsed before
+     * with the current aliases.
+     *
+     * @param userInput the command line, may contain several lines
+     * @return the syntax tree; an empty {@link Sequence} for blank input
+     * @throws SyntaxException if the input is not a valid command line
+     */
+    public CommandNode parse(String userInput) {
+        return parse(userInput, AliasStorage.aliases());
+    }
+
+    /**
+     * Parses a command line with the aliases of a particular shell, e.g. of a daemon session,
+     * or returns the cached tree if the same line was parsed before with the same aliases.
+     *
+     * @param userInput the command line, may contain several lines
+     * @param aliases   the aliases to expand
+     * @return the syntax tree; an empty {@link Sequence} for blank input
+     * @throws SyntaxException if the input is not a valid command line
+     */
+    public CommandNode parse(String userInput, Aliases aliases) {
+        return cache.get(userInput, aliases.version(),
+                line -> new Cursor(Tokenizer.tokenize(line), aliases).parse());
+    }
+
+    /**
+     * Returns the cache of parsed lines, e.g. for its hit and miss counters.
+     */
+    public ParseCache cache() {
+        return cache;
+    }
+
+    /**
+     * Parses a single command or pipeline and expands it with the current shell variables.
+     *
+     * @param userInput a command line without {@code ;}, {@code &&}, {@code ||}, {@code &} or groups
+     * @return the commands of the pipeline, empty for blank input
+     * @throws SyntaxException          if the input is not a valid command line
+     * @throws IllegalArgumentException if the input is a command list rather than a pipeline
+     */
     public List<CommandAndArgs> getCommandAndArgs(String userInput) {
-        input = expandAliases(userInput.trim());
-        index = 0;
-        reset();
-        List<CommandAndArgs> commandsAndArgs = new ArrayList<>();
-        while (index < input.length()) {
-            reset();
-            parseCommand();
-            parseArguments();
-            var commandAndArgs = new CommandAndArgs(
-                    command,
-                    arguments,
-                    redirectTo != null
-                            ? new RedirectOptions(redirectTo, redirectType, redirectStream)
-                            : null);
-            commandsAndArgs.add(commandAndArgs);
-        }
-        return commandsAndArgs;
+        return switch (parse(userInput)) {
+            case Simple simple -> List.of(simple.expand(EnvStorage::get));
+            case Pipeline(List<CommandNode> stages) -> stages.stream()
+                    .map(stage -> stage instanceof Simple simple
+                            ? simple.expand(EnvStorage::get)
+                            : unsupported(userInput))
+                    .toList();
+            case Sequence(List<Sequence.Entry> entries) when entries.isEmpty() -> List.of();
+            default -> unsupported(userInput);
+        };
+    }
+
+    private static <T> T unsupported(String userInput) {
+        throw new IllegalArgumentException("Not a simple pipeline: " + userInput);
     }
 
-    private void parseCommand() {
-        char commandEndChar = ' ';
+    /**
+     * State of a single {@link #parse} call: the tokens and the position in them.
+     */
+    private static final class Cursor {
+
+        private final TokenList tokens;
+        private final Aliases aliases;
+        private final List<ActiveAlias> activeAliases = new ArrayList<>();
+        private int position = 0;
+
+        private StringBuilder sb;
+        private List<Word.Part> parts;
+        private boolean isWithinSingleQuotes;
+        private boolean isWithinDoubleQuotes;
+        private boolean isExpandingPatterns;
+
+        Cursor(TokenList tokens, Aliases aliases) {
+            this.tokens = tokens;
+            this.aliases = aliases;
+        }
+
+        CommandNode parse() {
+            CommandNode result = parseList('\0');
+            if (position < tokens.size()) {
+                throw unexpected();
+            }
+            return result;
+        }
+
+        private CommandNode parseList(char closing) {
+            List<Sequence.Entry> entries = new ArrayList<>();
+            while (true) {
+                skipNewlines();
+                if (isListEnd(closing)) {
+                    break;
+                }
+
+                int first = position;
+                CommandNode command = parseAndOr();
+                String source = tokens.span(first, position - 1);
+
+                boolean background = false;
+                if (isAt(Tokenizer.AMPERSAND)) {
+                    background = true;
+                    position++;
+                } else if (isAt(Tokenizer.SEMICOLON) || isAt(Tokenizer.NEWLINE)) {
+                    position++;
+                } else if (!isListEnd(closing)) {
+                    throw unexpected();
+                }
+                entries.add(new Sequence.Entry(command, background, source));
+            }
 
-        if (input.charAt(0) == '\'') {
-            index++;
-            isCommandQuoted = true;
-            commandEndChar = '\'';
+            if (entries.size() == 1 && !entries.getFirst().background()) {
+                return entries.getFirst().command();
+            }
+            return new Sequence(entries);
         }
 
-        if (input.charAt(0) == '"') {
-            index++;
-            isCommandQuoted = true;
-            commandEndChar = '"';
+        private CommandNode parseAndOr() {
+            CommandNode left = parsePipeline();
+            while (true) {
+                Operator operator;
+                if (isAt(Tokenizer.AND_IF)) {
+                    operator = Operator.AND;
+                } else if (isAt(Tokenizer.OR_IF)) {
+                    operator = Operator.OR;
+                } else {
+                    return left;
+                }
+                position++;
+                skipNewlines();
+                left = new Conditional(left, operator, parsePipeline());
+            }
         }
 
-        while (index < input.length() && input.charAt(index) != commandEndChar) {
-            sb.append(input.charAt(index++));
+        private CommandNode parsePipeline() {
+            List<CommandNode> stages = new ArrayList<>();
+            stages.add(parseCommand());
+            while (isAt(Tokenizer.PIPE)) {
+                position++;
+                skipNewlines();
+                stages.add(parseCommand());
+            }
+            return stages.size() == 1 ? stages.getFirst() : new Pipeline(stages);
         }
 
-        command = sb.toString();
-        index = isCommandQuoted ? index + 2 : index + 1;
-        sb.setLength(0);
-    }
+        private CommandNode parseCommand() {
+            expandAliases();
 
-    private void parseArguments() {
-        while (index < input.length()) {
-            char currentChar = input.charAt(index++);
+            if (isAtReservedWord('{')) {
+                position++;
+                return new Group(parseGroupBody('}'), false);
+            }
+            if (isAt(Tokenizer.OPEN_PAREN)) {
+                position++;
+                return new Group(parseGroupBody(')'), true);
+            }
+            return parseSimple();
+        }
 
-            if (isEscaping) {
-                sb.append(currentChar);
-                isEscaping = false;
-                continue;
+        private CommandNode parseGroupBody(char closing) {
+            CommandNode body = parseList(closing);
+            if (body instanceof Sequence(List<Sequence.Entry> entries) && entries.isEmpty()) {
+                throw SyntaxException.unexpected(position < tokens.size() ? String.valueOf(closing) : "newline");
+            }
+            if (position >= tokens.size()) {
+                throw new SyntaxException("jsh: syntax error: unexpected end of input, expected `" + closing + "'",
+                        true);
             }
+            position++;
+            return body;
+        }
 
-            switch (currentChar) {
-                case '|' -> {
-                    skipWhitespace();
-                    return;
+        /**
+         * Parses a simple command. {@code NAME=value} words in front of the command name are
+         * assignments for that command only; a command of assignments alone sets them in the
+         * shell, like {@code set NAME=value}.
+         */
+        private Simple parseSimple() {
+            List<Assignment> assignments = List.of();
+            while (isAt(Tokenizer.WORD) && assignmentNameEnd() > 0) {
+                if (assignments.isEmpty()) {
+                    assignments = new ArrayList<>();
                 }
-                case '>' -> handleRedirect();
-                case '\\' -> handleBackslash();
-                case '\'' -> handleSingleQuote();
-                case '"' -> handleDoubleQuote();
-                case '$' -> handleDollar();
-                case ' ' -> handleSpace();
-                default -> sb.append(currentChar);
+                int nameEnd = assignmentNameEnd();
+                String variable = tokens.source(position).substring(tokens.start(position), nameEnd);
+                assignments.add(new Assignment(variable, word(position++, nameEnd + 1, false)));
+                // the word after the assignments is in command position, too
+                expandAliases();
             }
+
+            Word name = null;
+            List<Word> arguments = new ArrayList<>();
+            Redirect redirect = null;
+
+            while (true) {
+                if (isAt(Tokenizer.REDIRECT)) {
+                    redirect = parseRedirect();
+                } else if (!isAt(Tokenizer.WORD)) {
+                    break;
+                } else if (name == null) {
+                    name = word(position++);
+                } else {
+                    arguments.add(word(position++));
+                }
+            }
+
+            if (name == null && !assignments.isEmpty()) {
+                return Simple.ofAssignments(assignments, redirect);
+            }
+            if (name == null) {
+                throw unexpected();
+            }
+            return new Simple(name, arguments, redirect, assignments);
+        }
+
+        /**
+         * Returns the offset of the {@code =} if the current word starts with a variable name
+         * followed by {@code =}, otherwise {@code -1}.
+         */
+        private int assignmentNameEnd() {
+            String input = tokens.source(position);
+            int end = tokens.end(position);
+            int index = tokens.start(position);
+            if (index >= end || !isVarStartChar(input.charAt(index))) {
+                return -1;
+            }
+            while (index < end && isVarChar(input.charAt(index))) {
+                index++;
+            }
+            return index < end && input.charAt(index) == '=' ? index : -1;
         }
-        if (!sb.isEmpty()) {
-            arguments.add(sb.toString());
+
+        private Redirect parseRedirect() {
+            var stream = tokens.has(position, Tokenizer.STDERR)
+                    ? RedirectOptions.RedirectStream.STDERR
+                    : RedirectOptions.RedirectStream.STDOUT;
+            var type = tokens.has(position, Tokenizer.APPEND)
+                    ? RedirectOptions.RedirectType.APPEND
+                    : RedirectOptions.RedirectType.REWRITE;
+            position++;
+            if (!isAt(Tokenizer.WORD)) {
+                throw unexpected();
+            }
+            return new Redirect(word(position++), type, stream);
         }
-    }
 
-    private static final Set<Character> ESCAPED_CHARS_WITHIN_DOUBLE_QUOTES = Set.of('"', '\\', '$', '`');
+        /**
+         * Materializes a word token. Words without quotes, escapes, variables, wildcards and braces
+         * are a substring of their source; the others are decoded character by character.
+         */
+        private Word word(int token) {
+            return word(token, tokens.start(token), true);
+        }
 
-    private void handleRedirect() {
-        if (sb.length() == 1) {
-            char outputStream = sb.charAt(0);
-            if (outputStream == '1') {
-                sb.setLength(0);
+        /**
+         * Materializes a word token from an offset on, e.g. the value of an assignment. Without
+         * {@code patterns}, wildcards and braces are ordinary characters.
+         */
+        private Word word(int token, int start, boolean patterns) {
+            if (!tokens.has(token, Tokenizer.QUOTED | Tokenizer.GLOB | Tokenizer.BRACE)) {
+                return Word.literal(tokens.source(token).substring(start, tokens.end(token)));
             }
-            if (outputStream == '2') {
-                redirectStream = RedirectOptions.RedirectStream.STDERR;
-                sb.setLength(0);
+            if (sb == null) {
+                sb = new StringBuilder();
+                parts = new ArrayList<>();
+            }
+            sb.setLength(0);
+            parts.clear();
+            isWithinSingleQuotes = false;
+            isWithinDoubleQuotes = false;
+            isExpandingPatterns = patterns;
+
+            String input = tokens.source(token);
+            int end = tokens.end(token);
+            int index = start;
+            while (index < end) {
+                char currentChar = input.charAt(index++);
+                index = switch (currentChar) {
+                    case '\\' -> handleBackslash(input, index, end);
+                    case '\'' -> handleSingleQuote(index);
+                    case '"' -> handleDoubleQuote(index);
+                    case '$' -> handleDollar(input, index, end);
+                    case '`' -> handleBackquote(input, index, end);
+                    case '*', '?', '[' -> handleWildcard(input, index - 1, end);
+                    case '{' -> handleBrace(input, index, end);
+                    default -> {
+                        sb.append(currentChar);
+                        yield index;
+                    }
+                };
+            }
+
+            if (!sb.isEmpty() || parts.isEmpty()) {
+                parts.add(new Word.Literal(sb.toString()));
             }
+            return new Word(parts);
         }
-        if ('>' == input.charAt(index)) {
-            redirectType = RedirectOptions.RedirectType.APPEND;
-            index++;
+
+        private int handleBackslash(String input, int index, int end) {
+            if (isWithinSingleQuotes) {
+                sb.append('\\');
+                return index;
+            }
+            if (index >= end) {
+                // trailing backslash escapes nothing
+                return index;
+            }
+            char next = input.charAt(index);
+            if (next == '\n') {
+                // line continuation
+                return index + 1;
+            } else if (!isWithinDoubleQuotes || ESCAPED_CHARS_WITHIN_DOUBLE_QUOTES.contains(next)) {
+                sb.append(next);
+                return index + 1;
+            }
+            sb.append('\\');
+            return index;
         }
-        skipWhitespace();
 
-        var redirectBuilder = new StringBuilder();
+        private int handleDoubleQuote(int index) {
+            if (isWithinSingleQuotes) {
+                sb.append('"');
+            } else {
+                isWithinDoubleQuotes = !isWithinDoubleQuotes;
+            }
+            return index;
+        }
 
-        while (index < input.length() && input.charAt(index) != ' ') {
-            redirectBuilder.append(input.charAt(index++));
+        private int handleSingleQuote(int index) {
+            if (isWithinDoubleQuotes) {
+                sb.append('\'');
+            } else {
+                isWithinSingleQuotes = !isWithinSingleQuotes;
+            }
+            return index;
         }
 
-        index++;
-        redirectTo = redirectBuilder.toString();
-    }
+        private int handleDollar(String input, int index, int end) {
+            if (isWithinSingleQuotes) {
+                sb.append('$');
+                return index;
+            }
 
-    private void handleBackslash() {
-        if (isWithinSingleQuotes) {
-            sb.append("\\");
-        } else if (isWithinDoubleQuotes) {
-            if (ESCAPED_CHARS_WITHIN_DOUBLE_QUOTES.contains(input.charAt(index))) {
-                isEscaping = true;
+            if (index < end && input.charAt(index) == '(') {
+                int close = Tokenizer.substitutionEnd(input, index);
+                if (close > 0 && close <= end) {
+                    return substitution(input.substring(index + 1, close - 1), close);
+                }
+            }
+
+            String varName = null;
+            int next = index;
+            if (index < end && input.charAt(index) == '?') {
+                varName = "?";
+                next = index + 1;
+            } else if (index < end && input.charAt(index) == '{') {
+                int close = input.indexOf('}', index);
+                if (close > index + 1 && close < end) {
+                    varName = input.substring(index + 1, close);
+                    next = close + 1;
+                }
             } else {
-                sb.append("\\");
+                while (next < end && isVarChar(input.charAt(next))) {
+                    next++;
+                }
+                if (next > index) {
+                    varName = input.substring(index, next);
+                }
             }
-        } else {
-            isEscaping = true;
-        }
-    }
 
-    private void handleSpace() {
-        if (!isWithinQuotes()) {
+            if (varName == null) {
+                sb.append('$');
+                return index;
+            }
             if (!sb.isEmpty()) {
-                arguments.add(sb.toString());
+                parts.add(new Word.Literal(sb.toString()));
                 sb.setLength(0);
             }
-        } else {
-            sb.append(' ');
+            parts.add(new Word.Variable(varName));
+            return next;
         }
-    }
 
-    private void handleDoubleQuote() {
-        if (isWithinSingleQuotes) {
-            sb.append("\"");
-            return;
+        /**
+         * Turns the command between backquotes into a {@link Word.Substitution}. Within them, a
+         * backslash only escapes {@code $}, a backquote and another backslash.
+         */
+        private int handleBackquote(String input, int index, int end) {
+            int close = isWithinSingleQuotes ? -1 : Tokenizer.backquoteEnd(input, index);
+            if (close < 0 || close > end) {
+                sb.append('`');
+                return index;
+            }
+            var source = new StringBuilder(close - index);
+            for (int i = index; i < close - 1; i++) {
+                char c = input.charAt(i);
+                if (c == '\\' && i + 1 < close - 1 && "$`\\".indexOf(input.charAt(i + 1)) >= 0) {
+                    c = input.charAt(++i);
+                }
+                source.append(c);
+            }
+            return substitution(source.toString(), close);
         }
 
-        isWithinDoubleQuotes = !isWithinDoubleQuotes;
-    }
-
-    private void handleSingleQuote() {
-        if (isWithinDoubleQuotes) {
-            sb.append("'");
-            return;
+        /**
+         * Parses the command of a command substitution on its own and adds it to the word as a
+         * {@link Word.Substitution}, its aliases already expanded.
+         */
+        private int substitution(String source, int next) {
+            CommandNode command = new Cursor(Tokenizer.tokenize(source), aliases).parse();
+            if (!sb.isEmpty()) {
+                parts.add(new Word.Literal(sb.toString()));
+                sb.setLength(0);
+            }
+            parts.add(new Word.Substitution(source, command, isWithinDoubleQuotes));
+            return next;
         }
 
-        isWithinSingleQuotes = !isWithinSingleQuotes;
-    }
+        /**
+         * Keeps an unquoted wildcard as a {@link Word.Glob} part; a {@code [} without a closing
+         * {@code ]} in the word is an ordinary character.
+         */
+        private int handleWildcard(String input, int index, int end) {
+            char c = input.charAt(index);
+            int next = index + 1;
+            if (c == '[') {
+                int close = input.indexOf(']', index + 2);
+                next = close > 0 && close < end ? close + 1 : -1;
+            }
+            if (isWithinSingleQuotes || isWithinDoubleQuotes || !isExpandingPatterns || next < 0) {
+                sb.append(c);
+                return index + 1;
+            }
+            if (!sb.isEmpty()) {
+                parts.add(new Word.Literal(sb.toString()));
+                sb.setLength(0);
+            }
+            parts.add(new Word.Glob(input.substring(index, next)));
+            return next;
+        }
 
-    private void handleDollar() {
-        if (isWithinSingleQuotes) {
-            sb.append('$');
-            return;
+        /**
+         * Keeps an unquoted list or range in braces as a {@link Word.Brace} part. Braces that do not
+         * enclose one, or enclose quotes, variables or other braces, are ordinary characters.
+         */
+        private int handleBrace(String input, int index, int end) {
+            int close = index;
+            while (close < end && "{}'\"\\$".indexOf(input.charAt(close)) < 0) {
+                close++;
+            }
+            Word.Brace brace = null;
+            if (!isWithinSingleQuotes && !isWithinDoubleQuotes && isExpandingPatterns
+                    && close < end && input.charAt(close) == '}') {
+                brace = Word.Brace.parse(input.substring(index, close));
+            }
+            if (brace == null) {
+                sb.append('{');
+                return index;
+            }
+            if (!sb.isEmpty()) {
+                parts.add(new Word.Literal(sb.toString()));
+                sb.setLength(0);
+            }
+            parts.add(brace);
+            return close + 1;
         }
-        var varName = new StringBuilder();
-        while (index < input.length() && isVarChar(input.charAt(index))) {
-            varName.append(input.charAt(index++));
+
+        /**
+         * Replaces an alias at the current command position with its value.
+         *
+         * <p>The tokens of the value are spliced into the command line's, so aliases may contain
+         * pipes and command lists. An alias is not expanded again while the parser is still inside
+         * its own value, which stops recursive definitions such as {@code alias ls='ls --color'}.
+         * Quoted words are never aliases.
+         *
+         * <p>Aliases starting with other aliases are spliced in fully resolved, see {@link AliasTable}.
+         * Only if one of the aliases in that chain is already being expanded here, e.g. in the second
+         * command of an alias' pipeline, is the alias expanded a single step at a time.
+         */
+        private void expandAliases() {
+            while (isAt(Tokenizer.WORD) && !tokens.has(position, Tokenizer.QUOTED)) {
+                String word = tokens.text(position);
+                if (isAliasActive(word)) {
+                    return;
+                }
+                AliasTable.Expansion expansion = aliases.expansion(word);
+                if (expansion == null) {
+                    return;
+                }
+                if (isAnyAliasActive(expansion)) {
+                    expansion = expansion.singleStep();
+                }
+
+                int delta = expansion.tokens().size() - 1;
+                int start = position;
+                activeAliases.replaceAll(alias -> alias.end() > start
+                        ? new ActiveAlias(alias.name(), alias.end() + delta)
+                        : alias);
+                tokens.splice(position, expansion.tokens());
+                for (int i = 0; i < expansion.aliasCount(); i++) {
+                    activeAliases.add(new ActiveAlias(expansion.name(i), position + expansion.end(i)));
+                }
+            }
         }
-        if (varName.isEmpty()) {
-            sb.append('$');
-            return;
+
+        private boolean isAnyAliasActive(AliasTable.Expansion expansion) {
+            for (int i = 0; i < expansion.aliasCount(); i++) {
+                if (isAliasActive(expansion.name(i))) {
+                    return true;
+                }
+            }
+            return false;
         }
-        String value = EnvStorage.get(varName.toString());
-        if (value != null) {
-            sb.append(value);
+
+        private boolean isAliasActive(String name) {
+            for (ActiveAlias alias : activeAliases) {
+                if (alias.name().equals(name) && position < alias.end()) {
+                    return true;
+                }
+            }
+            return false;
         }
-    }
 
-    private boolean isVarChar(char c) {
-        return Character.isLetterOrDigit(c) || c == '_';
-    }
+        private boolean isListEnd(char closing) {
+            if (position >= tokens.size()) {
+                return true;
+            }
+            return switch (closing) {
+                case ')' -> isAt(Tokenizer.CLOSE_PAREN);
+                case '}' -> isAtReservedWord('}');
+                default -> false;
+            };
+        }
 
-    private boolean isWithinQuotes() {
-        return isWithinSingleQuotes || isWithinDoubleQuotes;
-    }
+        /**
+         * Checks for a group brace, which is a reserved word only when it stands alone.
+         */
+        private boolean isAtReservedWord(char word) {
+            if (!isAt(Tokenizer.WORD) || tokens.has(position, Tokenizer.QUOTED)
+                    || tokens.end(position) - tokens.start(position) != 1 || tokens.firstChar(position) != word) {
+                return false;
+            }
+            String input = tokens.source(position);
+            int next = tokens.end(position);
+            return next >= input.length()
+                    || Tokenizer.isBlank(input.charAt(next)) || Tokenizer.isOperator(input.charAt(next));
+        }
 
-    private void skipWhitespace() {
-        while (input.charAt(index) == ' ') {
-            index++;
+        private boolean isAt(int kind) {
+            return position < tokens.size() && tokens.kind(position) == kind;
         }
-    }
 
-    private void reset() {
-        redirectTo = null;
-        redirectType = RedirectOptions.RedirectType.REWRITE;
-        redirectStream = RedirectOptions.RedirectStream.STDOUT;
-        sb.setLength(0);
-        isEscaping = false;
-        isCommandQuoted = false;
-        isWithinSingleQuotes = false;
-        isWithinDoubleQuotes = false;
-        command = "";
-        arguments = new ArrayList<>();
-    }
+        private void skipNewlines() {
+            while (isAt(Tokenizer.NEWLINE)) {
+                position++;
+            }
+        }
 
-    private String expandAliases(String rawInput) {
-        Set<String> expanded = new HashSet<>();
-        String result = rawInput;
+        private SyntaxException unexpected() {
+            return SyntaxException.unexpected(position < tokens.size()
+                    ? String.valueOf(tokens.firstChar(position))
+                    : "newline");
+        }
 
-        while (true) {
-            String firstWord = extractFirstWord(result);
-            if (firstWord.isEmpty() || expanded.contains(firstWord)) {
-                break;
-            }
-            String aliasValue = AliasStorage.get(firstWord);
-            if (aliasValue == null) {
-                break;
-            }
-            expanded.add(firstWord);
-            String rest = result.substring(firstWord.length());
-            result = aliasValue + rest;
+        private static boolean isVarChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_';
         }
-        return result;
-    }
 
-    private String extractFirstWord(String text) {
-        int i = 0;
-        while (i < text.length() && text.charAt(i) != ' ') {
-            i++;
+        private static boolean isVarStartChar(char c) {
+            return Character.isLetter(c) || c == '_';
         }
-        return text.substring(0, i);
     }
 
+    private record ActiveAlias(String name, int end) {}
+
     private static class InputParserHolder {
         private static final InputParser INSTANCE = new InputParser();
     }
@@ -0,0 +1,96 @@
+package com.github.lowkkid.jsh.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of syntax trees, used by {@link InputParser#parse(String)}.
+ *
+ * <p>History recall, the RC file and loops in scripts send the same lines through the parser
+ * again and again. A {@link CommandNode} tree is immutable and keeps variable references
+ * unexpanded (see {@link Word}), so the tree of a line can be reused as long as the aliases it
+ * was parsed with have not changed; the key is the line plus the
+ * {@linkplain com.github.lowkkid.jsh.config.env.AliasStorage#version() alias table version}.
+ *
+ * <p>Lines that fail to parse are not cached. Lines longer than {@value #MAX_LINE_LENGTH}
+ * characters, typically whole scripts, are parsed every time.
+ */
+public final class ParseCache {
+
+    /** Maximum number of trees kept; the least recently used one is dropped first. */
+    static final int MAX_ENTRIES = 256;
+
+    /** Longest line that is cached. */
+    static final int MAX_LINE_LENGTH = 4096;
+
+    private final Map<Key, CommandNode> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CommandNode> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    ParseCache() {
+    }
+
+    /**
+     * Returns the cached tree of a line, parsing and caching it on a miss.
+     *
+     * @param line         the command line
+     * @param aliasVersion version of the alias table the tree must have been parsed with
+     * @param parser       parses the line on a miss
+     * @return the tree
+     */
+    CommandNode get(String line, int aliasVersion, Function<String, CommandNode> parser) {
+        if (line.length() > MAX_LINE_LENGTH) {
+            misses.increment();
+            return parser.apply(line);
+        }
+        var key = new Key(line, aliasVersion);
+        CommandNode cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        // parsed outside the lock: a concurrent miss on the same line just parses it twice
+        CommandNode parsed = parser.apply(line);
+        synchronized (entries) {
+            entries.put(key, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns how many lines were served from the cache.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many lines had to be parsed.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of cached trees.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Key(String line, int aliasVersion) {}
+}
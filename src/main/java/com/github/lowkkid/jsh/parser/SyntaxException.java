@@ -0,0 +1,31 @@
+package com.github.lowkkid.jsh.parser;
+
+/**
+ * Thrown by {@link InputParser} when a command line does not match the shell grammar,
+ * e.g. {@code echo a ;; echo b} or an unclosed {@code (}.
+ */
+public class SyntaxException extends RuntimeException {
+
+    private final boolean incomplete;
+
+    public SyntaxException(String message) {
+        this(message, false);
+    }
+
+    SyntaxException(String message, boolean incomplete) {
+        super(message);
+        this.incomplete = incomplete;
+    }
+
+    /**
+     * Returns whether the input ended too early, e.g. after a trailing {@code |} or inside
+     * an unclosed {@code (}, so that appending more lines could make it valid.
+     */
+    public boolean isIncomplete() {
+        return incomplete;
+    }
+
+    static SyntaxException unexpected(String token) {
+        return new SyntaxException("jsh: syntax error near unexpected token `" + token + "'", "newline".equals(token));
+    }
+}
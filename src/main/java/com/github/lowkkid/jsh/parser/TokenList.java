@@ -0,0 +1,143 @@
+package com.github.lowkkid.jsh.parser;
+
+import java.util.Arrays;
+
+/**
+ * Tokens of a command line, see {@link Tokenizer}, packed into a single {@code int} array.
+ *
+ * <p>Each token takes three slots: kind, flags and source packed into one {@code int}, then its
+ * start and end offsets in the source. The source is the command line itself, or the value of an
+ * alias {@link #splice spliced} in place of a word; for the latter, the offsets of that word in the
+ * command line are kept as well, so that {@link #span} can return the text as the user typed it.
+ */
+final class TokenList {
+
+    private static final int STRIDE = 3;
+    private static final int KIND_BITS = 4;
+    private static final int FLAG_BITS = 5;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+    private static final int FLAG_MASK = (1 << FLAG_BITS) - 1;
+    private static final int SOURCE_SHIFT = KIND_BITS + FLAG_BITS;
+
+    private int[] tokens = new int[16 * STRIDE];
+    private int size;
+    private String[] sources;
+    /** Start and end offset in the first source of the word each source replaced. */
+    private int[] anchors;
+    private int sourceCount = 1;
+
+    TokenList(String line) {
+        sources = new String[] {line};
+        anchors = new int[] {0, line.length()};
+    }
+
+    private TokenList(TokenList other) {
+        tokens = Arrays.copyOf(other.tokens, other.tokens.length);
+        size = other.size;
+        sources = Arrays.copyOf(other.sources, other.sources.length);
+        anchors = Arrays.copyOf(other.anchors, other.anchors.length);
+        sourceCount = other.sourceCount;
+    }
+
+    /**
+     * Returns an independent copy, to splice into without changing this list.
+     */
+    TokenList copy() {
+        return new TokenList(this);
+    }
+
+    void add(int kind, int flags, int start, int end) {
+        if ((size + 1) * STRIDE > tokens.length) {
+            tokens = Arrays.copyOf(tokens, tokens.length * 2);
+        }
+        int slot = size * STRIDE;
+        tokens[slot] = kind | flags << KIND_BITS;
+        tokens[slot + 1] = start;
+        tokens[slot + 2] = end;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int kind(int token) {
+        return tokens[token * STRIDE] & KIND_MASK;
+    }
+
+    boolean has(int token, int flag) {
+        return (tokens[token * STRIDE] >>> KIND_BITS & FLAG_MASK & flag) != 0;
+    }
+
+    int start(int token) {
+        return tokens[token * STRIDE + 1];
+    }
+
+    int end(int token) {
+        return tokens[token * STRIDE + 2];
+    }
+
+    /**
+     * Returns the string the token's offsets refer to.
+     */
+    String source(int token) {
+        return sources[tokens[token * STRIDE] >>> SOURCE_SHIFT];
+    }
+
+    char firstChar(int token) {
+        return source(token).charAt(start(token));
+    }
+
+    String text(int token) {
+        return source(token).substring(start(token), end(token));
+    }
+
+    /**
+     * Returns the command line from the first to the last token, both inclusive. Tokens that
+     * came from an alias stand for the alias name as typed.
+     */
+    String span(int first, int last) {
+        int firstSource = tokens[first * STRIDE] >>> SOURCE_SHIFT;
+        int lastSource = tokens[last * STRIDE] >>> SOURCE_SHIFT;
+        int start = firstSource == 0 ? start(first) : anchors[firstSource * 2];
+        int end = lastSource == 0 ? end(last) : anchors[lastSource * 2 + 1];
+        return sources[0].substring(start, end);
+    }
+
+    /**
+     * Replaces a token with all tokens of another list, which keep referring to their own source.
+     */
+    void splice(int token, TokenList other) {
+        int base = sourceCount;
+        int replacedSource = tokens[token * STRIDE] >>> SOURCE_SHIFT;
+        int anchorStart = replacedSource == 0 ? start(token) : anchors[replacedSource * 2];
+        int anchorEnd = replacedSource == 0 ? end(token) : anchors[replacedSource * 2 + 1];
+        if (sourceCount + other.sourceCount > sources.length) {
+            int capacity = Math.max(sources.length * 2, sourceCount + other.sourceCount);
+            sources = Arrays.copyOf(sources, capacity);
+            anchors = Arrays.copyOf(anchors, capacity * 2);
+        }
+        for (int i = 0; i < other.sourceCount; i++) {
+            sources[base + i] = other.sources[i];
+            anchors[(base + i) * 2] = anchorStart;
+            anchors[(base + i) * 2 + 1] = anchorEnd;
+        }
+        sourceCount += other.sourceCount;
+
+        int newSize = size - 1 + other.size;
+        if (newSize * STRIDE > tokens.length) {
+            tokens = Arrays.copyOf(tokens, Math.max(tokens.length * 2, newSize * STRIDE));
+        }
+        System.arraycopy(tokens, (token + 1) * STRIDE, tokens, (token + other.size) * STRIDE,
+                (size - token - 1) * STRIDE);
+        for (int i = 0; i < other.size; i++) {
+            int from = i * STRIDE;
+            int to = (token + i) * STRIDE;
+            int source = (other.tokens[from] >>> SOURCE_SHIFT) + base;
+            tokens[to] = other.tokens[from] & ((1 << SOURCE_SHIFT) - 1) | source << SOURCE_SHIFT;
+            tokens[to + 1] = other.tokens[from + 1];
+            tokens[to + 2] = other.tokens[from + 2];
+        }
+        size = newSize;
+    }
+}
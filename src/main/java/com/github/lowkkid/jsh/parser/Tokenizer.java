@@ -0,0 +1,203 @@
+package com.github.lowkkid.jsh.parser;
+
+/**
+ * Splits a command line into a {@link TokenList} without copying any of it.
+ *
+ * <p>A token is only a kind, a few flags and its offsets in the line; the text of a word is
+ * materialized by {@link InputParser} when the word ends up in the syntax tree, and words
+ * without quotes, escapes or variables become a plain substring. Quotes are tracked only as
+ * far as needed to find where a word ends.
+ *
+ * <p>The tokenizer has no state of its own and may be used by any number of threads at once.
+ */
+final class Tokenizer {
+
+    static final int WORD = 0;
+    static final int SEMICOLON = 1;
+    static final int AMPERSAND = 2;
+    static final int PIPE = 3;
+    static final int AND_IF = 4;
+    static final int OR_IF = 5;
+    static final int OPEN_PAREN = 6;
+    static final int CLOSE_PAREN = 7;
+    static final int NEWLINE = 8;
+    static final int REDIRECT = 9;
+
+    /** Flag of a {@link #WORD} containing quotes, backslashes, {@code $} or backquotes, which need decoding. */
+    static final int QUOTED = 1;
+    /** Flag of a {@link #REDIRECT} of standard error rather than standard output. */
+    static final int STDERR = 2;
+    /** Flag of a {@link #REDIRECT} appending to its target ({@code >>}). */
+    static final int APPEND = 4;
+    /** Flag of a {@link #WORD} containing an unquoted {@code *}, {@code ?} or {@code [}. */
+    static final int GLOB = 8;
+    /** Flag of a {@link #WORD} containing an unquoted opening brace, which may start a brace expression. */
+    static final int BRACE = 16;
+
+    private Tokenizer() {}
+
+    /**
+     * Tokenizes a command line. Blanks and {@code #} comments are dropped, newlines are tokens.
+     */
+    static TokenList tokenize(String line) {
+        var tokens = new TokenList(line);
+        int length = line.length();
+        int index = 0;
+        while (index < length) {
+            char c = line.charAt(index);
+            if (isBlank(c)) {
+                index++;
+            } else if (c == '#') {
+                int newline = line.indexOf('\n', index);
+                index = newline < 0 ? length : newline;
+            } else if (isOperator(c)) {
+                index = operator(line, index, tokens);
+            } else if (c == '>' || (c == '1' || c == '2') && index + 1 < length && line.charAt(index + 1) == '>') {
+                index = redirect(line, index, tokens);
+            } else {
+                index = word(line, index, tokens);
+            }
+        }
+        return tokens;
+    }
+
+    private static int operator(String line, int start, TokenList tokens) {
+        char c = line.charAt(start);
+        boolean doubled = start + 1 < line.length() && line.charAt(start + 1) == c;
+        int kind = switch (c) {
+            case ';' -> SEMICOLON;
+            case '&' -> doubled ? AND_IF : AMPERSAND;
+            case '|' -> doubled ? OR_IF : PIPE;
+            case '(' -> OPEN_PAREN;
+            case ')' -> CLOSE_PAREN;
+            default -> NEWLINE;
+        };
+        int end = kind == AND_IF || kind == OR_IF ? start + 2 : start + 1;
+        tokens.add(kind, 0, start, end);
+        return end;
+    }
+
+    private static int redirect(String line, int start, TokenList tokens) {
+        int flags = line.charAt(start) == '2' ? STDERR : 0;
+        int end = line.charAt(start) == '>' ? start + 1 : start + 2;
+        if (end < line.length() && line.charAt(end) == '>') {
+            flags |= APPEND;
+            end++;
+        }
+        tokens.add(REDIRECT, flags, start, end);
+        return end;
+    }
+
+    /**
+     * Scans a word up to the first blank, operator or {@code >} outside quotes.
+     */
+    private static int word(String line, int start, TokenList tokens) {
+        int length = line.length();
+        int flags = 0;
+        boolean singleQuoted = false;
+        boolean doubleQuoted = false;
+        int index = start;
+        while (index < length) {
+            char c = line.charAt(index);
+            if (!singleQuoted && !doubleQuoted && (isOperator(c) || isBlank(c) || c == '>')) {
+                break;
+            }
+            index++;
+            if (c == '\\' || c == '\'' || c == '"' || c == '$' || c == '`') {
+                flags |= QUOTED;
+            } else if ((c == '*' || c == '?' || c == '[') && !singleQuoted && !doubleQuoted) {
+                flags |= GLOB;
+            } else if (c == '{' && !singleQuoted && !doubleQuoted) {
+                flags |= BRACE;
+            }
+            if (c == '\\' && !singleQuoted && index < length) {
+                index++;
+            } else if (c == '\'' && !doubleQuoted) {
+                singleQuoted = !singleQuoted;
+            } else if (c == '"' && !singleQuoted) {
+                doubleQuoted = !doubleQuoted;
+            } else if (c == '$' && !singleQuoted && index < length && line.charAt(index) == '{') {
+                // ${name} is one reference even if the braces enclose blanks
+                int close = line.indexOf('}', index);
+                if (close > index + 1) {
+                    index = close + 1;
+                }
+            } else if (c == '$' && !singleQuoted && index < length && line.charAt(index) == '(') {
+                // so is $(...), whose command may contain blanks, operators and quotes of its own
+                int close = substitutionEnd(line, index);
+                if (close > 0) {
+                    index = close;
+                }
+            } else if (c == '`' && !singleQuoted) {
+                int close = backquoteEnd(line, index);
+                if (close > 0) {
+                    index = close;
+                }
+            }
+        }
+        tokens.add(WORD, flags, start, index);
+        return index;
+    }
+
+    /**
+     * Finds the end of a {@code $(...)} command substitution, skipping nested parentheses and
+     * anything quoted or escaped.
+     *
+     * @param line the line
+     * @param open offset of the opening parenthesis
+     * @return the offset after the closing parenthesis, or {@code -1} if it is missing
+     */
+    static int substitutionEnd(String line, int open) {
+        int depth = 0;
+        boolean singleQuoted = false;
+        boolean doubleQuoted = false;
+        for (int index = open; index < line.length(); index++) {
+            char c = line.charAt(index);
+            if (c == '\\' && !singleQuoted) {
+                index++;
+            } else if (c == '\'' && !doubleQuoted) {
+                singleQuoted = !singleQuoted;
+            } else if (c == '"' && !singleQuoted) {
+                doubleQuoted = !doubleQuoted;
+            } else if (doubleQuoted && c == '$' && index + 1 < line.length() && line.charAt(index + 1) == '(') {
+                int close = substitutionEnd(line, index + 1);
+                if (close < 0) {
+                    return -1;
+                }
+                index = close - 1;
+            } else if (!singleQuoted && !doubleQuoted && c == '(') {
+                depth++;
+            } else if (!singleQuoted && !doubleQuoted && c == ')' && --depth == 0) {
+                return index + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of a command substitution in backquotes.
+     *
+     * @param line the line
+     * @param from offset after the opening backquote
+     * @return the offset after the closing backquote, or {@code -1} if it is missing
+     */
+    static int backquoteEnd(String line, int from) {
+        for (int index = from; index < line.length(); index++) {
+            char c = line.charAt(index);
+            if (c == '\\') {
+                index++;
+            } else if (c == '`') {
+                return index + 1;
+            }
+        }
+        return -1;
+    }
+
+    static boolean isOperator(char c) {
+        return c == ';' || c == '&' || c == '|' || c == '(' || c == ')' || c == '\n';
+    }
+
+    static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
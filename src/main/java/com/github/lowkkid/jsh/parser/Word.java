@@ -0,0 +1,454 @@
+package com.github.lowkkid.jsh.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A single shell word as written in the input, with quotes and escapes already resolved.
+ *
+ * <p>Variable references are kept as {@link Variable} parts instead of being substituted at parse
+ * time, so a parsed command line can be executed repeatedly and each command sees the variables
+ * as they are when it runs (e.g. {@code export A=1; echo $A}). Words without variables consist of
+ * a single {@link Literal} and expand without any allocation.
+ *
+ * <p>Unquoted wildcards are kept as {@link Glob} parts, so that pathname expansion, too, happens
+ * when the command runs and only applies to the characters the user did not quote.
+ *
+ * <p>Unquoted brace expressions are kept as {@link Brace} parts. A word with braces stands for
+ * several words, one per combination of their items, which are computed by index on demand so
+ * that {@code {1..1000000}} never exists as a million strings at once.
+ *
+ * <p>Command substitutions, {@code $(cmd)} and {@code `cmd`}, are kept as {@link Substitution}
+ * parts holding the command already parsed. It runs each time the word is expanded, before
+ * anything else, see {@link #fields(Function)}.
+ *
+ * @param parts literal text and variable references, in order
+ */
+public record Word(List<Part> parts) {
+
+    /**
+     * A fragment of a word.
+     */
+    public sealed interface Part permits Literal, Variable, Glob, Brace, Substitution {}
+
+    /**
+     * Text taken verbatim.
+     *
+     * @param text the text
+     */
+    public record Literal(String text) implements Part {}
+
+    /**
+     * A variable reference such as {@code $HOME}, {@code ${HOME}} or {@code $?}.
+     *
+     * @param name the variable name, without {@code $} and braces
+     */
+    public record Variable(String name) implements Part {}
+
+    /**
+     * An unquoted wildcard: {@code *}, {@code ?} or a bracket expression such as {@code [a-z]}.
+     *
+     * @param pattern the wildcard as written
+     */
+    public record Glob(String pattern) implements Part {}
+
+    /**
+     * A command substitution such as {@code $(pwd)}, replaced by the output of the command.
+     *
+     * @param source  the command as written, without {@code $(} and {@code )} or the backquotes
+     * @param command the parsed command
+     * @param quoted  {@code true} if it is inside double quotes, where its output is not split into words
+     */
+    public record Substitution(String source, CommandNode command, boolean quoted) implements Part {}
+
+    /**
+     * An unquoted brace expression, such as {@code {a,b}} or {@code {1..10}}, which stands for
+     * each of its items in turn.
+     */
+    public sealed interface Brace extends Part permits Alternatives, Range {
+
+        /**
+         * Returns the number of items.
+         */
+        long size();
+
+        /**
+         * Returns an item.
+         *
+         * @param index the index, from {@code 0} to {@link #size()} exclusive
+         */
+        String get(long index);
+
+        /**
+         * Parses the text between the braces.
+         *
+         * @param body the text, without the braces
+         * @return the expression, or {@code null} if the text is neither a list nor a range
+         */
+        static Brace parse(String body) {
+            Matcher range = RANGE.matcher(body);
+            if (range.matches()) {
+                return Range.parse(range);
+            }
+            if (body.indexOf(',') >= 0) {
+                return new Alternatives(List.of(body.split(",", -1)));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A list such as {@code {a,b,}}, items may be empty.
+     *
+     * @param items the items
+     */
+    public record Alternatives(List<String> items) implements Brace {
+
+        public Alternatives {
+            items = List.copyOf(items);
+        }
+
+        @Override
+        public long size() {
+            return items.size();
+        }
+
+        @Override
+        public String get(long index) {
+            return items.get((int) index);
+        }
+
+        @Override
+        public String toString() {
+            return "{" + String.join(",", items) + "}";
+        }
+    }
+
+    /**
+     * A sequence such as {@code {1..10}}, {@code {10..0..2}}, {@code {01..10}} or {@code {a..z}}.
+     *
+     * @param first   the first value, a character for letter ranges
+     * @param step    the difference between consecutive values, negative for descending ranges
+     * @param size    the number of values
+     * @param width   the minimum number of digits, zero-padded, or {@code 0} for no padding
+     * @param letters {@code true} if the values are characters rather than numbers
+     */
+    public record Range(long first, long step, long size, int width, boolean letters) implements Brace {
+
+        private static Range parse(Matcher matcher) {
+            String from = matcher.group(1);
+            String to = matcher.group(2);
+            long increment = matcher.group(3) == null ? 1 : Math.abs(Long.parseLong(matcher.group(3)));
+            boolean letters = !Character.isDigit(from.charAt(from.length() - 1));
+            if (letters != !Character.isDigit(to.charAt(to.length() - 1)) || increment == 0) {
+                return null;
+            }
+            long first = letters ? from.charAt(0) : Long.parseLong(from);
+            long last = letters ? to.charAt(0) : Long.parseLong(to);
+            long size = Math.abs(last - first) / increment + 1;
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            int width = letters || !isPadded(from) && !isPadded(to) ? 0 : Math.max(from.length(), to.length());
+            return new Range(first, last < first ? -increment : increment, size, width, letters);
+        }
+
+        private static boolean isPadded(String number) {
+            int digits = number.startsWith("-") ? 1 : 0;
+            return number.length() > digits + 1 && number.charAt(digits) == '0';
+        }
+
+        @Override
+        public String get(long index) {
+            long value = first + index * step;
+            if (letters) {
+                return String.valueOf((char) value);
+            }
+            String digits = Long.toString(Math.abs(value));
+            int padding = width - digits.length() - (value < 0 ? 1 : 0);
+            if (padding <= 0) {
+                return value < 0 ? "-" + digits : digits;
+            }
+            return (value < 0 ? "-" : "") + "0".repeat(padding) + digits;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + get(0) + ".." + get(size - 1) + (Math.abs(step) != 1 ? ".." + Math.abs(step) : "") + "}";
+        }
+    }
+
+    private static final Pattern RANGE =
+            Pattern.compile("(-?\\d{1,18}|[a-zA-Z])\\.\\.(-?\\d{1,18}|[a-zA-Z])(?:\\.\\.(-?\\d{1,18}))?");
+
+    public Word {
+        parts = List.copyOf(parts);
+    }
+
+    /**
+     * Creates a word consisting of literal text only.
+     */
+    public static Word literal(String text) {
+        return new Word(List.of(new Literal(text)));
+    }
+
+    /**
+     * Returns {@code true} if the word contains no variable references or command substitutions.
+     */
+    public boolean isLiteral() {
+        return parts.stream().noneMatch(part -> part instanceof Variable || part instanceof Substitution);
+    }
+
+    /**
+     * Returns {@code true} if the word contains command substitutions, which must be run with
+     * {@link #fields(Function)} or {@link #substitute(Function)} before it is expanded.
+     */
+    public boolean hasSubstitutions() {
+        return parts.stream().anyMatch(Substitution.class::isInstance);
+    }
+
+    /**
+     * Returns {@code true} if the word contains unquoted wildcards and is subject to pathname expansion.
+     */
+    public boolean isPattern() {
+        return parts.stream().anyMatch(Glob.class::isInstance);
+    }
+
+    /**
+     * Returns {@code true} if the word contains brace expressions and stands for several words.
+     */
+    public boolean hasBraces() {
+        return parts.stream().anyMatch(Brace.class::isInstance);
+    }
+
+    /**
+     * Returns the number of words the braces expand to: the product of their sizes, {@code 1}
+     * for a word without braces, or {@link Long#MAX_VALUE} if the product does not fit a {@code long}.
+     */
+    public long count() {
+        long count = 1;
+        for (Part part : parts) {
+            if (part instanceof Brace brace) {
+                try {
+                    count = Math.multiplyExact(count, brace.size());
+                } catch (ArithmeticException e) {
+                    return Long.MAX_VALUE;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a copy with every variable reference replaced by its current value, so that its
+     * expansions no longer depend on the variables.
+     *
+     * @param variables resolves a variable name to its value, or {@code null} if it is not set
+     * @return the word without {@link Variable} parts
+     */
+    public Word withValues(UnaryOperator<String> variables) {
+        if (isLiteral()) {
+            return this;
+        }
+        List<Part> resolved = new ArrayList<>(parts.size());
+        for (Part part : parts) {
+            if (part instanceof Variable(String name)) {
+                String value = variables.apply(name);
+                resolved.add(new Literal(value != null ? value : ""));
+            } else {
+                resolved.add(part);
+            }
+        }
+        return new Word(resolved);
+    }
+
+    /**
+     * Runs the command substitutions and splits the output of unquoted ones into words at blanks
+     * and newlines, as a POSIX shell does with the default {@code IFS}: {@code a$(echo "1 2")b} is
+     * {@code a1} and {@code 2b}. Variables, wildcards and braces are left for {@link #expand}.
+     *
+     * @param output runs a command and returns its output, without trailing newlines
+     * @return the words, none if an unquoted substitution without output was all there was;
+     *         a list of just this word if it has no substitutions
+     */
+    public List<Word> fields(Function<CommandNode, String> output) {
+        if (!hasSubstitutions()) {
+            return List.of(this);
+        }
+        List<Word> words = new ArrayList<>();
+        List<Part> current = new ArrayList<>();
+        for (Part part : parts) {
+            if (!(part instanceof Substitution substitution)) {
+                current.add(part);
+                continue;
+            }
+            String text = output.apply(substitution.command());
+            if (substitution.quoted()) {
+                current.add(new Literal(text));
+                continue;
+            }
+            int index = 0;
+            while (index < text.length()) {
+                int start = index;
+                while (index < text.length() && !isFieldSeparator(text.charAt(index))) {
+                    index++;
+                }
+                if (index > start) {
+                    current.add(new Literal(text.substring(start, index)));
+                }
+                if (index < text.length()) {
+                    if (!current.isEmpty()) {
+                        words.add(new Word(current));
+                        current = new ArrayList<>();
+                    }
+                    while (index < text.length() && isFieldSeparator(text.charAt(index))) {
+                        index++;
+                    }
+                }
+            }
+        }
+        if (!current.isEmpty()) {
+            words.add(new Word(current));
+        }
+        return words;
+    }
+
+    /**
+     * Runs the command substitutions and puts their output in place as it is, without splitting
+     * it, e.g. for the value of an assignment.
+     *
+     * @param output runs a command and returns its output, without trailing newlines
+     * @return the word without {@link Substitution} parts
+     */
+    public Word substitute(Function<CommandNode, String> output) {
+        if (!hasSubstitutions()) {
+            return this;
+        }
+        List<Part> resolved = new ArrayList<>(parts.size());
+        for (Part part : parts) {
+            resolved.add(part instanceof Substitution substitution
+                    ? new Literal(output.apply(substitution.command()))
+                    : part);
+        }
+        return new Word(resolved);
+    }
+
+    private static boolean isFieldSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '\n';
+    }
+
+    /**
+     * Substitutes variable references and returns the word as a pattern for
+     * {@link com.github.lowkkid.jsh.utils.GlobExpander}: wildcards from {@link Glob} parts are kept,
+     * while {@code *}, {@code ?}, {@code [} and {@code \} in all other text are escaped with a backslash.
+     * Braces are kept as written.
+     *
+     * @param variables resolves a variable name to its value, or {@code null} if it is not set
+     * @return the pattern
+     */
+    public String expandPattern(UnaryOperator<String> variables) {
+        return render(-1, variables, true);
+    }
+
+    /**
+     * Returns one of the words the braces expand to as a pattern, see {@link #expandPattern(UnaryOperator)}.
+     *
+     * @param index     the word, from {@code 0} to {@link #count()} exclusive
+     * @param variables resolves a variable name to its value, or {@code null} if it is not set
+     * @return the pattern
+     */
+    public String expandPattern(long index, UnaryOperator<String> variables) {
+        return render(index, variables, true);
+    }
+
+    /**
+     * Substitutes variable references, unset variables expand to an empty string. Wildcards and
+     * braces are kept as written.
+     *
+     * @param variables resolves a variable name to its value, or {@code null} if it is not set
+     * @return the expanded word
+     */
+    public String expand(UnaryOperator<String> variables) {
+        if (parts.size() == 1 && parts.getFirst() instanceof Literal(String text)) {
+            return text;
+        }
+        return render(-1, variables, false);
+    }
+
+    /**
+     * Returns one of the words the braces expand to, with variable references substituted.
+     * The rightmost brace varies fastest: {@code {a,b}{1,2}} is {@code a1 a2 b1 b2}.
+     *
+     * @param index     the word, from {@code 0} to {@link #count()} exclusive
+     * @param variables resolves a variable name to its value, or {@code null} if it is not set
+     * @return the expanded word
+     */
+    public String expand(long index, UnaryOperator<String> variables) {
+        return render(index, variables, false);
+    }
+
+    /**
+     * Renders the word with the braces picking the items for {@code index}, or as written if it is negative.
+     */
+    private String render(long index, UnaryOperator<String> variables, boolean pattern) {
+        long combinations = index < 0 ? 1 : count();
+        var sb = new StringBuilder();
+        for (Part part : parts) {
+            switch (part) {
+                case Literal(String text) -> append(text, pattern, sb);
+                case Variable(String name) -> {
+                    String value = variables.apply(name);
+                    if (value != null) {
+                        append(value, pattern, sb);
+                    }
+                }
+                case Glob(String glob) -> sb.append(glob);
+                case Substitution substitution -> {
+                    // not run, the output is put in place by fields() or substitute()
+                }
+                case Brace brace -> {
+                    if (index < 0) {
+                        append(brace.toString(), pattern, sb);
+                    } else {
+                        combinations /= brace.size();
+                        append(brace.get(index / combinations % brace.size()), pattern, sb);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void append(String text, boolean pattern, StringBuilder sb) {
+        if (!pattern) {
+            sb.append(text);
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder();
+        for (Part part : parts) {
+            switch (part) {
+                case Literal(String text) -> sb.append(text);
+                case Variable(String name) -> sb.append("${").append(name).append('}');
+                case Glob(String pattern) -> sb.append(pattern);
+                case Brace brace -> sb.append(brace);
+                case Substitution substitution -> sb.append("$(").append(substitution.source()).append(')');
+            }
+        }
+        return sb.toString();
+    }
+}
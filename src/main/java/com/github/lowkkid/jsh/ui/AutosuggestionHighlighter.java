@@ -0,0 +1,130 @@
+package com.github.lowkkid.jsh.ui;
+
+import com.github.lowkkid.jsh.history.HistorySuggestions;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.jline.reader.Highlighter;
+import org.jline.reader.LineReader;
+import org.jline.reader.Widget;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+
+/**
+ * Shows the rest of the history entry suggested for the line being typed in faint text after the
+ * cursor, as fish does, and highlights the line itself with another highlighter.
+ *
+ * <p>The suggestion is only shown while the cursor is at the end of a single-line buffer, and is
+ * taken by Right or End, or one word of it by Alt-F; elsewhere those keys move the cursor as
+ * usual. It is hidden once the line is accepted, so that it is not left on the screen.
+ */
+public class AutosuggestionHighlighter implements Highlighter {
+
+    private static final AttributedStyle SUGGESTION_STYLE = AttributedStyle.DEFAULT.faint();
+
+    private final Highlighter delegate;
+    private final HistorySuggestions suggestions;
+    private final Supplier<Path> directory;
+    private volatile boolean hidden;
+
+    public AutosuggestionHighlighter(Highlighter delegate, HistorySuggestions suggestions,
+                                     Supplier<Path> directory) {
+        this.delegate = delegate;
+        this.suggestions = suggestions;
+        this.directory = directory;
+    }
+
+    /**
+     * Makes the keys that move the cursor to the end of the line take the suggestion, and shows
+     * suggestions only while a line is being read.
+     */
+    public void install(LineReader reader) {
+        Map<String, Widget> widgets = reader.getWidgets();
+        for (String name : List.of(LineReader.FORWARD_CHAR, LineReader.END_OF_LINE,
+                LineReader.VI_FORWARD_CHAR, LineReader.VI_END_OF_LINE)) {
+            Widget original = widgets.get(name);
+            widgets.put(name, () -> accept(reader, false) || original.apply());
+        }
+        Widget forwardWord = widgets.get(LineReader.FORWARD_WORD);
+        widgets.put(LineReader.FORWARD_WORD, () -> accept(reader, true) || forwardWord.apply());
+        chain(widgets, LineReader.CALLBACK_INIT, () -> hidden = false);
+        chain(widgets, LineReader.CALLBACK_FINISH, () -> hidden = true);
+    }
+
+    private static void chain(Map<String, Widget> widgets, String name, Runnable action) {
+        Widget existing = widgets.get(name);
+        widgets.put(name, () -> {
+            action.run();
+            return existing == null || existing.apply();
+        });
+    }
+
+    @Override
+    public AttributedString highlight(LineReader reader, String buffer) {
+        AttributedString highlighted = delegate.highlight(reader, buffer);
+        String rest = rest(reader, buffer);
+        if (rest == null) {
+            return highlighted;
+        }
+        return new AttributedStringBuilder()
+                .append(highlighted)
+                .styled(SUGGESTION_STYLE, rest)
+                .toAttributedString();
+    }
+
+    @Override
+    public void refresh(LineReader reader) {
+        delegate.refresh(reader);
+    }
+
+    @Override
+    public void setErrorPattern(Pattern errorPattern) {
+        delegate.setErrorPattern(errorPattern);
+    }
+
+    @Override
+    public void setErrorIndex(int errorIndex) {
+        delegate.setErrorIndex(errorIndex);
+    }
+
+    /**
+     * Returns the part of the suggestion that is not typed yet, or {@code null} if there is
+     * nothing to suggest for the buffer of the reader.
+     */
+    private String rest(LineReader reader, String buffer) {
+        var current = reader.getBuffer();
+        if (hidden || buffer.isEmpty() || buffer.indexOf('\n') >= 0
+                || current.cursor() != current.length() || !buffer.equals(current.toString())) {
+            return null;
+        }
+        String suggestion = suggestions.suggest(buffer, directory.get());
+        return suggestion != null ? suggestion.substring(buffer.length()) : null;
+    }
+
+    /**
+     * Puts the suggestion, or its next word, into the line.
+     *
+     * @return {@code false} if there was no suggestion to take
+     */
+    private boolean accept(LineReader reader, boolean word) {
+        String rest = rest(reader, reader.getBuffer().toString());
+        if (rest == null) {
+            return false;
+        }
+        if (word) {
+            int end = 0;
+            while (end < rest.length() && Character.isWhitespace(rest.charAt(end))) {
+                end++;
+            }
+            while (end < rest.length() && !Character.isWhitespace(rest.charAt(end))) {
+                end++;
+            }
+            rest = rest.substring(0, end);
+        }
+        reader.getBuffer().write(rest);
+        return true;
+    }
+}
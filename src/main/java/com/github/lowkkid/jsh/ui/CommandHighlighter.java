@@ -27,7 +27,7 @@ public class CommandHighlighter implements Highlighter {
 
         AttributedStringBuilder sb = new AttributedStringBuilder();
 
-        if (finishedTyping && registry.getExecutableCommand(command).isEmpty()) {
+        if (finishedTyping && !registry.isKnownCommand(command)) {
             sb.styled(AttributedStyle.DEFAULT.foreground(AttributedStyle.RED), command);
         } else {
             sb.append(command);
@@ -0,0 +1,209 @@
+package com.github.lowkkid.jsh.ui;
+
+import com.github.lowkkid.jsh.history.HistorySearch;
+import com.github.lowkkid.jsh.history.HistorySearch.Match;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.jline.keymap.BindingReader;
+import org.jline.keymap.KeyMap;
+import org.jline.reader.LineReader;
+import org.jline.reader.Reference;
+import org.jline.reader.Widget;
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.jline.utils.InfoCmp.Capability;
+import org.jline.utils.NonBlockingReader;
+import org.jline.utils.Status;
+
+/**
+ * Fuzzy reverse history search, bound to Ctrl-R in place of JLine's substring search.
+ *
+ * <p>The text typed so far becomes the query. As keys arrive, each query is handed to
+ * {@link HistorySearch}, which cancels the one before it, and the best matches are listed in the
+ * terminal's status area below the line as soon as they are ready, while the selected one is
+ * shown in the line itself. Ctrl-R or Up selects the next, older-ranked match, Ctrl-S or Down
+ * the previous one; Enter runs the selected command, Tab or Right puts it into the line for
+ * editing, and Esc or Ctrl-G goes back to the line as it was.
+ */
+public class HistorySearchWidget implements Widget {
+
+    /** Name of the widget, for binding it to other keys. */
+    public static final String NAME = "fuzzy-history-search";
+
+    private static final int SHOWN_MATCHES = 8;
+    private static final long POLL_MILLIS = 10;
+
+    private enum Operation { INSERT, BACKSPACE, OLDER, NEWER, EXECUTE, ACCEPT, ABORT }
+
+    private final LineReader reader;
+    private final HistorySearch search;
+    private final KeyMap<Operation> keys;
+
+    public HistorySearchWidget(LineReader reader, HistorySearch search) {
+        this.reader = reader;
+        this.search = search;
+        this.keys = keys(reader.getTerminal());
+    }
+
+    /**
+     * Registers the widget with a reader and binds it to Ctrl-R in the emacs and vi insert keymaps.
+     */
+    public static void install(LineReader reader, HistorySearch search) {
+        reader.getWidgets().put(NAME, new HistorySearchWidget(reader, search));
+        for (String keyMap : List.of(LineReader.EMACS, LineReader.VIINS)) {
+            reader.getKeyMaps().get(keyMap).bind(new Reference(NAME), KeyMap.ctrl('R'));
+        }
+    }
+
+    private static KeyMap<Operation> keys(Terminal terminal) {
+        KeyMap<Operation> keys = new KeyMap<>();
+        keys.bind(Operation.INSERT, KeyMap.range(" -~"));
+        keys.setUnicode(Operation.INSERT);
+        keys.bind(Operation.BACKSPACE, KeyMap.del(), KeyMap.ctrl('H'));
+        keys.bind(Operation.OLDER, KeyMap.ctrl('R'), "\033[A", "\033OA");
+        keys.bind(Operation.NEWER, KeyMap.ctrl('S'), "\033[B", "\033OB");
+        keys.bind(Operation.EXECUTE, KeyMap.ctrl('M'), KeyMap.ctrl('J'));
+        keys.bind(Operation.ACCEPT, KeyMap.ctrl('I'), "\033[C", "\033OC");
+        keys.bind(Operation.ABORT, KeyMap.esc(), KeyMap.ctrl('G'));
+        bind(keys, terminal, Capability.key_up, Operation.OLDER);
+        bind(keys, terminal, Capability.key_down, Operation.NEWER);
+        bind(keys, terminal, Capability.key_right, Operation.ACCEPT);
+        return keys;
+    }
+
+    /**
+     * Binds the sequence the terminal sends for a key, if it is known.
+     */
+    private static void bind(KeyMap<Operation> keys, Terminal terminal, Capability key, Operation operation) {
+        String sequence = KeyMap.key(terminal, key);
+        if (sequence != null && !sequence.isEmpty()) {
+            keys.bind(operation, sequence);
+        }
+    }
+
+    @Override
+    public boolean apply() {
+        String original = reader.getBuffer().toString();
+        int originalCursor = reader.getBuffer().cursor();
+        Terminal terminal = reader.getTerminal();
+        Status status = Status.getStatus(terminal, true);
+        var bindings = new BindingReader(terminal.reader());
+
+        var query = new StringBuilder(original);
+        List<Match> matches = List.of();
+        int selected = 0;
+        CompletableFuture<List<Match>> pending = search.searchAsync(query.toString(), SHOWN_MATCHES);
+        try {
+            while (true) {
+                show(status, query, matches, selected, original, pending != null);
+                if (!awaitKey(bindings, pending)) {
+                    break;
+                }
+                if (pending != null && pending.isDone()) {
+                    List<Match> result = results(pending);
+                    pending = null;
+                    if (result != null) {
+                        matches = result;
+                        selected = 0;
+                    }
+                    continue;
+                }
+                Operation operation = bindings.readBinding(keys);
+                if (operation == null) {
+                    break;
+                }
+                switch (operation) {
+                    case INSERT -> {
+                        query.append(bindings.getLastBinding());
+                        pending = search.searchAsync(query.toString(), SHOWN_MATCHES);
+                    }
+                    case BACKSPACE -> {
+                        if (!query.isEmpty()) {
+                            query.setLength(query.offsetByCodePoints(query.length(), -1));
+                            pending = search.searchAsync(query.toString(), SHOWN_MATCHES);
+                        }
+                    }
+                    case OLDER -> selected = Math.min(selected + 1, Math.max(0, matches.size() - 1));
+                    case NEWER -> selected = Math.max(selected - 1, 0);
+                    case EXECUTE, ACCEPT -> {
+                        setBuffer(matches.isEmpty() ? original : matches.get(selected).line(), -1);
+                        if (operation == Operation.EXECUTE) {
+                            reader.callWidget(LineReader.ACCEPT_LINE);
+                        }
+                        return true;
+                    }
+                    case ABORT -> {
+                        setBuffer(original, originalCursor);
+                        return true;
+                    }
+                }
+            }
+            setBuffer(original, originalCursor);
+            return true;
+        } finally {
+            if (status != null) {
+                status.update(List.of());
+            }
+        }
+    }
+
+    /**
+     * Waits until a key is pressed or the pending query completes.
+     *
+     * @return {@code false} if the terminal was closed
+     */
+    private static boolean awaitKey(BindingReader bindings, CompletableFuture<List<Match>> pending) {
+        while (true) {
+            int next = bindings.peekCharacter(POLL_MILLIS);
+            if (next == NonBlockingReader.EOF) {
+                return false;
+            }
+            if (next != NonBlockingReader.READ_EXPIRED || pending != null && pending.isDone()) {
+                return true;
+            }
+        }
+    }
+
+    private static List<Match> results(CompletableFuture<List<Match>> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            return List.of();
+        }
+    }
+
+    private void setBuffer(String line, int cursor) {
+        var buffer = reader.getBuffer();
+        buffer.clear();
+        buffer.write(line);
+        if (cursor >= 0) {
+            buffer.cursor(cursor);
+        }
+    }
+
+    private void show(Status status, CharSequence query, List<Match> matches, int selected, String original,
+                      boolean searching) {
+        setBuffer(matches.isEmpty() ? original : matches.get(selected).line(), -1);
+        if (status != null) {
+            int width = Math.max(1, reader.getTerminal().getWidth() - 1);
+            List<AttributedString> lines = new ArrayList<>(matches.size() + 1);
+            lines.add(new AttributedStringBuilder()
+                    .styled(AttributedStyle.BOLD, "fuzzy-search: ")
+                    .append(query.toString())
+                    .append(searching ? "  ..." : matches.isEmpty() ? "  (no matches)" : "")
+                    .toAttributedString()
+                    .columnSubSequence(0, width));
+            for (int i = 0; i < matches.size(); i++) {
+                String line = (i == selected ? "> " : "  ") + matches.get(i).line().replace('\n', ' ');
+                var style = i == selected ? AttributedStyle.INVERSE : AttributedStyle.DEFAULT;
+                lines.add(new AttributedString(line, style).columnSubSequence(0, width));
+            }
+            status.update(lines);
+        }
+        reader.callWidget(LineReader.REDISPLAY);
+    }
+}
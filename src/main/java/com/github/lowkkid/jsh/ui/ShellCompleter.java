@@ -0,0 +1,180 @@
+package com.github.lowkkid.jsh.ui;
+
+import static com.github.lowkkid.jsh.config.env.EnvConfigReader.HOME;
+
+import com.github.lowkkid.jsh.Main;
+import com.github.lowkkid.jsh.command.utils.CommandRegistry;
+import com.github.lowkkid.jsh.config.env.AliasStorage;
+import com.github.lowkkid.jsh.utils.DirectoryListingCache;
+import com.github.lowkkid.jsh.utils.PathIndex;
+import com.github.lowkkid.jsh.utils.PrefixTrie;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.jline.reader.Candidate;
+import org.jline.reader.Completer;
+import org.jline.reader.LineReader;
+import org.jline.reader.ParsedLine;
+
+/**
+ * Tab completion for command names and file names.
+ *
+ * <p>The first word of a command (also after {@code |}, {@code ;}, {@code &&}, {@code ||}
+ * and {@code &}) is completed from a {@link PrefixTrie} of built-ins, aliases and executables
+ * on {@code PATH}. The trie is updated incrementally: before each completion the sources are
+ * compared with what was indexed last time and only the differences are applied, so commands
+ * installed while the shell runs show up without rebuilding anything. Executables come from
+ * the last scan of {@code PATH}; Tab never scans it itself. Until the first scan, which runs in
+ * the background from {@link #warmUp()}, command names are completed as file names instead.
+ *
+ * <p>Other words are completed as file names from a {@link DirectoryListingCache}; a listing
+ * that is not ready within {@value #LISTING_WAIT_MS} ms is finished in the background and
+ * offered on the next Tab.
+ */
+public class ShellCompleter implements Completer {
+
+    private static final long LISTING_WAIT_MS = 100;
+    private static final int MAX_COMMAND_CANDIDATES = 1000;
+    private static final Set<String> COMMAND_SEPARATORS = Set.of("|", ";", "&&", "||", "&");
+
+    private final Supplier<Set<String>> builtIns;
+    private final Supplier<Set<String>> aliases;
+    private final Supplier<Set<String>> executables;
+    private final Supplier<Path> workingDirectory;
+    private final Runnable indexExecutables;
+    private final DirectoryListingCache listings = new DirectoryListingCache();
+
+    private final PrefixTrie commands = new PrefixTrie();
+    private Set<String> indexedBuiltIns = Set.of();
+    private Set<String> indexedAliases = Set.of();
+    private Set<String> indexedExecutables = Set.of();
+
+    public ShellCompleter(CommandRegistry registry, PathIndex pathIndex) {
+        this(registry::getBuiltInCommands, () -> Set.copyOf(AliasStorage.getAll().keySet()),
+                pathIndex::indexedCommandNames, () -> Main.currentDir, pathIndex::commandNames);
+    }
+
+    /**
+     * Creates a completer over the given sources.
+     *
+     * @param builtIns         names of built-in commands
+     * @param aliases          alias names; must return a snapshot, not a live view
+     * @param executables      names of executables, or {@code null} while they are not known yet;
+     *                         must return a snapshot, not a live view, and must not block
+     * @param workingDirectory directory relative file names are completed in
+     */
+    public ShellCompleter(Supplier<Set<String>> builtIns, Supplier<Set<String>> aliases,
+                          Supplier<Set<String>> executables, Supplier<Path> workingDirectory) {
+        this(builtIns, aliases, executables, workingDirectory, () -> { });
+    }
+
+    private ShellCompleter(Supplier<Set<String>> builtIns, Supplier<Set<String>> aliases,
+                           Supplier<Set<String>> executables, Supplier<Path> workingDirectory,
+                           Runnable indexExecutables) {
+        this.builtIns = builtIns;
+        this.aliases = aliases;
+        this.executables = executables;
+        this.workingDirectory = workingDirectory;
+        this.indexExecutables = indexExecutables;
+    }
+
+    /**
+     * Indexes commands and lists the working directory in the background, so that
+     * neither startup nor the first Tab pays for scanning {@code PATH}.
+     */
+    public void warmUp() {
+        Thread.ofVirtual().name("jsh-completion-warmup").start(() -> {
+            indexExecutables.run();
+            commandsStartingWith("");
+        });
+        prefetch();
+    }
+
+    /**
+     * Starts listing the working directory in the background if it changed since the last Tab.
+     */
+    public void prefetch() {
+        listings.prefetch(workingDirectory.get());
+    }
+
+    @Override
+    public void complete(LineReader reader, ParsedLine line, List<Candidate> candidates) {
+        String word = line.word().substring(0, line.wordCursor());
+        List<String> matches = isCommandPosition(line) && !word.contains("/") ? commandsStartingWith(word) : null;
+        if (matches == null) {
+            completeFileName(word, candidates);
+            return;
+        }
+        for (String command : matches) {
+            candidates.add(new Candidate(command));
+        }
+    }
+
+    /**
+     * Returns the known commands starting with {@code prefix}, after bringing the trie up to date.
+     *
+     * @return matching command names, or {@code null} if the executables have not been indexed yet
+     */
+    synchronized List<String> commandsStartingWith(String prefix) {
+        Set<String> currentExecutables = executables.get();
+        if (currentExecutables == null) {
+            return null;
+        }
+        indexedBuiltIns = sync(indexedBuiltIns, builtIns.get());
+        indexedAliases = sync(indexedAliases, aliases.get());
+        indexedExecutables = sync(indexedExecutables, currentExecutables);
+        return commands.startingWith(prefix, MAX_COMMAND_CANDIDATES);
+    }
+
+    private Set<String> sync(Set<String> indexed, Set<String> current) {
+        // executables come as an immutable set that is replaced whenever PATH changes,
+        // so the identity check alone covers the common case
+        if (current == indexed || current.equals(indexed)) {
+            return current;
+        }
+        for (String name : indexed) {
+            if (!current.contains(name)) {
+                commands.remove(name);
+            }
+        }
+        for (String name : current) {
+            if (!indexed.contains(name)) {
+                commands.add(name);
+            }
+        }
+        return current;
+    }
+
+    private void completeFileName(String word, List<Candidate> candidates) {
+        int slash = word.lastIndexOf('/');
+        String dirPart = word.substring(0, slash + 1);
+        String namePrefix = word.substring(slash + 1);
+
+        Path dir = resolveDirectory(dirPart);
+        for (var entry : listings.entries(dir, namePrefix, LISTING_WAIT_MS, TimeUnit.MILLISECONDS)) {
+            if (entry.name().startsWith(".") && !namePrefix.startsWith(".")) {
+                continue;
+            }
+            String value = dirPart + entry.name() + (entry.directory() ? "/" : "");
+            candidates.add(new Candidate(value, entry.name() + (entry.directory() ? "/" : ""),
+                    null, null, null, null, !entry.directory()));
+        }
+    }
+
+    private Path resolveDirectory(String dirPart) {
+        if (dirPart.isEmpty()) {
+            return workingDirectory.get();
+        }
+        if (dirPart.startsWith("~/")) {
+            return Path.of(HOME).resolve(dirPart.substring(2));
+        }
+        return workingDirectory.get().resolve(dirPart);
+    }
+
+    private static boolean isCommandPosition(ParsedLine line) {
+        int index = line.wordIndex();
+        return index == 0 || COMMAND_SEPARATORS.contains(line.words().get(index - 1));
+    }
+}
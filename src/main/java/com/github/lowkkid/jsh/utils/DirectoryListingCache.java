@@ -0,0 +1,178 @@
+package com.github.lowkkid.jsh.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cache of directory listings for file name completion.
+ *
+ * <p>A listing is validated by comparing the directory's modification time, which changes
+ * whenever an entry is added, removed or renamed, so a hit costs a single {@code stat}.
+ * Listing a directory happens on a background virtual thread: the caller waits at most a
+ * given time and otherwise gets the previous listing (or nothing) while the scan finishes
+ * in the background. Requesting a different directory cancels a scan nobody is waiting for
+ * anymore. Entries are sorted by name, so a prefix is found with a binary search.
+ *
+ * <p>At most {@value #MAX_CACHED_DIRECTORIES} directories are kept, least recently used first out.
+ */
+public final class DirectoryListingCache {
+
+    private static final int MAX_CACHED_DIRECTORIES = 64;
+
+    private final ExecutorService scanner = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Path, Listing> listings = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Listing> eldest) {
+            return size() > MAX_CACHED_DIRECTORIES;
+        }
+    };
+    private final Map<Path, Future<Listing>> pending = new LinkedHashMap<>();
+
+    /**
+     * Returns the entries of {@code dir} whose names start with {@code prefix}.
+     *
+     * @param dir     the directory
+     * @param prefix  file name prefix, may be empty
+     * @param timeout how long to wait for a scan if the cached listing is missing or stale
+     * @param unit    unit of {@code timeout}
+     * @return matching entries sorted by name; possibly stale or empty if the scan did not finish in time
+     */
+    public List<Entry> entries(Path dir, String prefix, long timeout, TimeUnit unit) {
+        Listing listing = listing(dir, timeout, unit);
+        return listing != null ? listing.startingWith(prefix) : List.of();
+    }
+
+    /**
+     * Starts scanning {@code dir} in the background if its cached listing is missing or stale,
+     * e.g. for the working directory before the prompt is shown.
+     *
+     * @param dir the directory
+     */
+    public void prefetch(Path dir) {
+        listing(dir, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private Listing listing(Path dir, long timeout, TimeUnit unit) {
+        Path key = dir.toAbsolutePath().normalize();
+        FileTime mtime = lastModified(key);
+        if (mtime == null) {
+            return null;
+        }
+
+        Future<Listing> scan;
+        Listing cached;
+        synchronized (this) {
+            cached = listings.get(key);
+            if (cached != null && cached.mtime().equals(mtime)) {
+                return cached;
+            }
+            // nobody waits for scans of other directories anymore
+            pending.entrySet().removeIf(entry -> {
+                if (!entry.getKey().equals(key) && timeout > 0) {
+                    entry.getValue().cancel(true);
+                    return true;
+                }
+                return entry.getValue().isDone();
+            });
+            scan = pending.computeIfAbsent(key, this::startScan);
+        }
+
+        try {
+            return timeout > 0 ? scan.get(timeout, unit) : cached;
+        } catch (TimeoutException | CancellationException | ExecutionException e) {
+            return cached;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return cached;
+        }
+    }
+
+    private Future<Listing> startScan(Path dir) {
+        CompletableFuture<Listing> result = new CompletableFuture<>();
+        Future<?> task = scanner.submit(() -> {
+            try {
+                Listing listing = scan(dir);
+                synchronized (this) {
+                    listings.put(dir, listing);
+                    pending.remove(dir, result);
+                }
+                result.complete(listing);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    pending.remove(dir, result);
+                }
+                result.completeExceptionally(e);
+            }
+        });
+        // cancelling the result interrupts the scanning thread
+        result.whenComplete((listing, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static Listing scan(Path dir) throws IOException {
+        // read the time first: a change during the scan makes the listing stale, never wrongly fresh
+        FileTime mtime = Objects.requireNonNull(lastModified(dir), "directory vanished");
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> content = Files.newDirectoryStream(dir)) {
+            for (Path file : content) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException();
+                }
+                entries.add(new Entry(file.getFileName().toString(), Files.isDirectory(file)));
+            }
+        }
+        entries.sort(Comparator.comparing(Entry::name));
+        return new Listing(mtime, List.copyOf(entries));
+    }
+
+    private static FileTime lastModified(Path dir) {
+        try {
+            return Files.isDirectory(dir) ? Files.getLastModifiedTime(dir) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A directory entry.
+     *
+     * @param name      file name
+     * @param directory whether the entry is a directory (following symbolic links)
+     */
+    public record Entry(String name, boolean directory) {}
+
+    private record Listing(FileTime mtime, List<Entry> entries) {
+
+        List<Entry> startingWith(String prefix) {
+            int from = Collections.binarySearch(entries, new Entry(prefix, false), Comparator.comparing(Entry::name));
+            from = from < 0 ? -from - 1 : from;
+            int to = from;
+            while (to < entries.size() && entries.get(to).name().startsWith(prefix)) {
+                to++;
+            }
+            return entries.subList(from, to);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.github.lowkkid.jsh.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Pathname expansion of patterns such as {@code *.log}, {@code src/**}{@code /*.java} or {@code file?.[ch]}.
+ *
+ * <p>A pattern is split at {@code /} into segments that are matched against one directory level
+ * each; {@code **} matches any number of directories, including none. Segments without wildcards
+ * are resolved directly instead of listing their directory, and the literal start of a segment
+ * narrows the listing down with a binary search, so {@code /usr/share/doc/lib*} lists a single
+ * directory and only compares the names starting with {@code lib}.
+ *
+ * <p>Directories are walked in parallel: every directory to descend into is a task on the common
+ * {@link ForkJoinPool}, so a {@code **} over a large tree uses all cores. Each task returns the
+ * matches of its subtree, which are merged and sorted once at the end.
+ *
+ * <p>Like POSIX shells, a wildcard never matches a leading {@code .} and {@code **} neither
+ * descends into hidden directories nor follows symbolic links. A backslash makes the next character
+ * literal, which is how quoted parts of a word reach the expander.
+ *
+ * <p>An expander caches directory listings for its lifetime, which is meant to be a single command:
+ * {@code cp *.txt *.md dir} lists the working directory once.
+ */
+public final class GlobExpander {
+
+    private static final String RECURSIVE = "**";
+
+    private final Path workingDirectory;
+    private final Map<Path, Listing> listings = new ConcurrentHashMap<>();
+
+    /**
+     * @param workingDirectory directory relative patterns are matched against
+     */
+    public GlobExpander(Path workingDirectory) {
+        this.workingDirectory = workingDirectory;
+    }
+
+    /**
+     * Returns whether a pattern contains an unescaped {@code *}, {@code ?} or {@code [}.
+     */
+    public static boolean isPattern(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '*' || c == '?' || c == '[') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Expands a pattern to the paths matching it.
+     *
+     * @param pattern the pattern, relative to the working directory or absolute
+     * @return matching paths in sorted order, spelled like the pattern (relative or absolute);
+     *         empty if nothing matches
+     */
+    public List<String> expand(String pattern) {
+        boolean absolute = pattern.startsWith("/");
+        boolean directoriesOnly = pattern.endsWith("/");
+        List<String> segments = new ArrayList<>();
+        for (String segment : pattern.split("/")) {
+            if (!segment.isEmpty() && !(RECURSIVE.equals(segment) && RECURSIVE.equals(last(segments)))) {
+                segments.add(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+
+        var walk = new Walk(segments.stream().map(Segment::new).toArray(Segment[]::new), directoriesOnly);
+        Path start = absolute ? Path.of("/") : workingDirectory;
+        List<String> matches = ForkJoinPool.commonPool().invoke(walk.task(start, absolute ? "/" : "", 0));
+
+        String[] sorted = matches.toArray(String[]::new);
+        Arrays.parallelSort(sorted);
+        return List.of(sorted);
+    }
+
+    private static String last(List<String> segments) {
+        return segments.isEmpty() ? null : segments.getLast();
+    }
+
+    /**
+     * Returns the entries of a directory sorted by name, or no entries if it cannot be listed.
+     */
+    private Listing list(Path dir) {
+        Listing cached = listings.get(dir);
+        if (cached != null) {
+            return cached;
+        }
+        List<Map.Entry<String, Path>> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                entries.add(Map.entry(entry.getFileName().toString(), entry));
+            }
+        } catch (IOException | SecurityException e) {
+            entries.clear();
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        var listing = new Listing(new String[entries.size()], new Path[entries.size()]);
+        for (int i = 0; i < entries.size(); i++) {
+            listing.names[i] = entries.get(i).getKey();
+            listing.paths[i] = entries.get(i).getValue();
+        }
+        Listing raced = listings.putIfAbsent(dir, listing);
+        return raced != null ? raced : listing;
+    }
+
+    /**
+     * Entries of a directory. The paths are kept next to the names because a name that is not
+     * valid in the platform encoding cannot be turned back into a path.
+     */
+    private record Listing(String[] names, Path[] paths) {}
+
+    /**
+     * One expansion of a pattern; tasks share its segments.
+     */
+    private final class Walk {
+
+        private final Segment[] segments;
+        private final boolean directoriesOnly;
+
+        Walk(Segment[] segments, boolean directoriesOnly) {
+            this.segments = segments;
+            this.directoriesOnly = directoriesOnly;
+        }
+
+        RecursiveTask<List<String>> task(Path dir, String display, int segment) {
+            return new RecursiveTask<>() {
+                @Override
+                protected List<String> compute() {
+                    return match(dir, display, segment);
+                }
+            };
+        }
+
+        /**
+         * Matches the segments from {@code index} on below {@code dir}, whose path as typed is {@code display}.
+         */
+        private List<String> match(Path dir, String display, int index) {
+            Segment segment = segments[index];
+            boolean isLast = index == segments.length - 1;
+            List<String> matches = new ArrayList<>();
+            List<RecursiveTask<List<String>>> subtasks = new ArrayList<>();
+
+            if (segment.recursive && isLast) {
+                addEntries(dir, display, matches, subtasks, index);
+            } else if (segment.recursive) {
+                // zero directories: the rest of the pattern right here
+                subtasks.add(task(dir, display, index + 1));
+                Listing listing = list(dir);
+                for (int i = 0; i < listing.names.length; i++) {
+                    String name = listing.names[i];
+                    Path child = listing.paths[i];
+                    if (name.charAt(0) != '.' && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        subtasks.add(task(child, display + name + "/", index));
+                    }
+                }
+            } else if (segment.literal != null) {
+                Path child;
+                try {
+                    child = dir.resolve(segment.literal);
+                } catch (InvalidPathException e) {
+                    return matches;
+                }
+                if (isLast && !directoriesOnly && !Files.exists(child, LinkOption.NOFOLLOW_LINKS)) {
+                    return matches;
+                }
+                accept(child, display + segment.literal, isLast, index, matches, subtasks);
+            } else {
+                Listing listing = list(dir);
+                String[] names = listing.names;
+                for (int i = firstWithPrefix(names, segment.prefix); i < names.length; i++) {
+                    String name = names[i];
+                    if (!name.startsWith(segment.prefix)) {
+                        break;
+                    }
+                    if (segment.matches(name)) {
+                        accept(listing.paths[i], display + name, isLast, index, matches, subtasks);
+                    }
+                }
+            }
+
+            if (subtasks.size() == 1) {
+                matches.addAll(subtasks.getFirst().invoke());
+            } else if (!subtasks.isEmpty()) {
+                for (RecursiveTask<List<String>> subtask : ForkJoinTask.invokeAll(subtasks)) {
+                    matches.addAll(subtask.join());
+                }
+            }
+            return matches;
+        }
+
+        /**
+         * Handles a trailing {@code **}: every entry below {@code dir}, recursively.
+         */
+        private void addEntries(Path dir, String display, List<String> matches,
+                                List<RecursiveTask<List<String>>> subtasks, int index) {
+            Listing listing = list(dir);
+            for (int i = 0; i < listing.names.length; i++) {
+                String name = listing.names[i];
+                if (name.charAt(0) == '.') {
+                    continue;
+                }
+                boolean isDirectory = Files.isDirectory(listing.paths[i], LinkOption.NOFOLLOW_LINKS);
+                if (isDirectory || !directoriesOnly) {
+                    matches.add(display + name + (directoriesOnly ? "/" : ""));
+                }
+                if (isDirectory) {
+                    subtasks.add(task(listing.paths[i], display + name + "/", index));
+                }
+            }
+        }
+
+        /**
+         * Adds an existing path matching segment {@code index}, or descends into it.
+         */
+        private void accept(Path path, String display, boolean isLast, int index, List<String> matches,
+                            List<RecursiveTask<List<String>>> subtasks) {
+            if (!isLast) {
+                if (Files.isDirectory(path)) {
+                    subtasks.add(task(path, display + "/", index + 1));
+                }
+            } else if (!directoriesOnly) {
+                matches.add(display);
+            } else if (Files.isDirectory(path)) {
+                matches.add(display + "/");
+            }
+        }
+    }
+
+    private static int firstWithPrefix(String[] names, String prefix) {
+        if (prefix.isEmpty()) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(names, prefix);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * A segment of a pattern, between two {@code /}.
+     */
+    private static final class Segment {
+
+        private final boolean recursive;
+        /** The segment without escapes if it has no wildcards, otherwise {@code null}. */
+        private final String literal;
+        /** Literal text before the first wildcard. */
+        private final String prefix;
+        private final String pattern;
+
+        Segment(String pattern) {
+            this.pattern = pattern;
+            this.recursive = RECURSIVE.equals(pattern);
+            var text = new StringBuilder();
+            int i = 0;
+            while (i < pattern.length() && !isWildcard(pattern.charAt(i))) {
+                if (pattern.charAt(i) == '\\' && i + 1 < pattern.length()) {
+                    i++;
+                }
+                text.append(pattern.charAt(i));
+                i++;
+            }
+            this.prefix = text.toString();
+            this.literal = recursive || i < pattern.length() ? null : prefix;
+        }
+
+        private static boolean isWildcard(char c) {
+            return c == '*' || c == '?' || c == '[';
+        }
+
+        /**
+         * Matches a name against the segment; a leading {@code .} must be matched literally.
+         */
+        boolean matches(String name) {
+            if (name.charAt(0) == '.' && !prefix.startsWith(".")) {
+                return false;
+            }
+            // iterative matching that backtracks to the last *, linear in the name for each *
+            int n = 0;
+            int p = 0;
+            int starP = -1;
+            int starN = 0;
+            while (n < name.length()) {
+                if (p < pattern.length() && pattern.charAt(p) == '*') {
+                    starP = ++p;
+                    starN = n;
+                    continue;
+                }
+                int next = p < pattern.length() ? matchOne(name.charAt(n), p) : -1;
+                if (next >= 0) {
+                    p = next;
+                    n++;
+                } else if (starP >= 0) {
+                    p = starP;
+                    n = ++starN;
+                } else {
+                    return false;
+                }
+            }
+            while (p < pattern.length() && pattern.charAt(p) == '*') {
+                p++;
+            }
+            return p == pattern.length();
+        }
+
+        /**
+         * Matches one character against the pattern element at {@code p}.
+         *
+         * @return the index of the next element, or -1 if the character does not match
+         */
+        private int matchOne(char c, int p) {
+            char element = pattern.charAt(p);
+            if (element == '?') {
+                return p + 1;
+            }
+            if (element == '[') {
+                int end = classEnd(p);
+                if (end > 0) {
+                    return classMatches(c, p + 1, end) ? end + 1 : -1;
+                }
+            }
+            if (element == '\\' && p + 1 < pattern.length()) {
+                return pattern.charAt(p + 1) == c ? p + 2 : -1;
+            }
+            return element == c ? p + 1 : -1;
+        }
+
+        /**
+         * Returns the index of the {@code ]} closing the bracket expression at {@code open}, or -1.
+         */
+        private int classEnd(int open) {
+            int i = open + 1;
+            if (i < pattern.length() && (pattern.charAt(i) == '!' || pattern.charAt(i) == '^')) {
+                i++;
+            }
+            if (i < pattern.length() && pattern.charAt(i) == ']') {
+                // a leading ] is a member
+                i++;
+            }
+            for (; i < pattern.length(); i++) {
+                if (pattern.charAt(i) == '\\') {
+                    i++;
+                } else if (pattern.charAt(i) == ']') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean classMatches(char c, int from, int end) {
+            boolean negated = pattern.charAt(from) == '!' || pattern.charAt(from) == '^';
+            int i = negated ? from + 1 : from;
+            boolean found = false;
+            while (i < end) {
+                char low = pattern.charAt(i);
+                if (low == '\\' && i + 1 < end) {
+                    low = pattern.charAt(++i);
+                }
+                if (i + 2 < end && pattern.charAt(i + 1) == '-') {
+                    char high = pattern.charAt(i + 2);
+                    found |= c >= low && c <= high;
+                    i += 3;
+                } else {
+                    found |= c == low;
+                    i++;
+                }
+            }
+            return found != negated;
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.github.lowkkid.jsh.utils;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import com.github.lowkkid.jsh.config.env.EnvStorage;
+import com.github.lowkkid.jsh.config.env.ShellState;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Session-wide index of executables found in the {@code PATH} directories.
+ *
+ * <p>Every {@code PATH} directory is listed once and the results are merged into a single
+ * immutable hash table mapping command name to the first matching executable, so a lookup
+ * is a single {@link Map#get(Object)} without any filesystem access. A miss is answered
+ * from the same table, which makes it a cached negative result as well.
+ *
+ * <h2>Change detection</h2>
+ *
+ * <p>Each directory is registered with a {@link WatchService}; a background virtual thread
+ * marks a directory dirty when files are created, deleted or modified in it. Only dirty
+ * directories are listed again, on the next lookup. Directories that cannot be watched
+ * (e.g. they do not exist yet) are re-validated by modification time at most once every
+ * {@value #MTIME_RECHECK_INTERVAL_MS} ms. Changing {@code PATH} itself rebuilds the table.
+ *
+ * <h2>Deferred indexing</h2>
+ *
+ * <p>After {@link #deferIndexing()}, lookups probe the {@code PATH} directories for the one
+ * name asked for until something needs the whole list ({@link #commandNames()}, e.g. tab
+ * completion). Non-interactive runs use this: they resolve a handful of names, which costs a
+ * few {@code stat} calls, instead of listing and watching every directory.
+ *
+ * <h2>Shells with their own {@code PATH}</h2>
+ *
+ * <p>Daemon sessions, subshells and background jobs have variables of their own, and with them
+ * possibly a {@code PATH} of their own. {@link #forShell(ShellState)} returns the shared index if
+ * the shell's {@code PATH} is the interactive shell's, and otherwise an index for that
+ * {@code PATH} value, kept for every shell using the same value. Only the
+ * {@value #MAX_SHELL_INDEXES} most recently used of those are kept: each watches its directories
+ * with a {@link WatchService} of its own, and a daemon serving clients with many different
+ * {@code PATH}s would otherwise run out of them. An index dropped from there is
+ * {@link #close() closed}, and keeps working for shells still using it.
+ *
+ * <p>The {@code hash} built-in exposes the index: it shows lookup statistics and can
+ * force a full rescan.
+ *
+ * @see com.github.lowkkid.jsh.command.Hash
+ */
+public final class PathIndex {
+
+    private static final long MTIME_RECHECK_INTERVAL_MS = 1000;
+    /** Number of indexes kept for {@code PATH} values other than the interactive shell's. */
+    private static final int MAX_SHELL_INDEXES = 16;
+
+    /**
+     * Returns the shared index for the shell's {@code PATH} variable.
+     *
+     * @return the singleton {@code PathIndex}
+     */
+    public static PathIndex getInstance() {
+        return PathIndexHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the index for the {@code PATH} variable of a shell, e.g. of a daemon session.
+     *
+     * @param shell the shell looking up commands
+     * @return the shared index if the shell's {@code PATH} is the interactive shell's, otherwise
+     *         the index for the shell's {@code PATH} value
+     */
+    public static PathIndex forShell(ShellState shell) {
+        String path = Objects.requireNonNullElse(shell.variables().get("PATH"), "");
+        PathIndex shared = getInstance();
+        if (path.equals(shared.currentPath())) {
+            return shared;
+        }
+        synchronized (PathIndexHolder.BY_PATH) {
+            return PathIndexHolder.BY_PATH.computeIfAbsent(path, value -> {
+                var index = new PathIndex(() -> value);
+                index.deferred = shared.deferred;
+                return index;
+            });
+        }
+    }
+
+    private final Supplier<String> pathSupplier;
+
+    /** Guards {@link #listings}, {@link #watchedDirs}, {@link #watched}, {@link #watchService} and rebuilding. */
+    private final Object lock = new Object();
+
+    private volatile Snapshot snapshot;
+
+    private final Map<Path, DirListing> listings = new HashMap<>();
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    /** Values of {@link #watchedDirs}, so checking whether a directory is watched is a hash lookup. */
+    private final Set<Path> watched = ConcurrentHashMap.newKeySet();
+    private final Set<Path> dirtyDirs = ConcurrentHashMap.newKeySet();
+    private final Map<String, Hits> hits = new ConcurrentHashMap<>();
+    /** Numbers the commands in the order they are first used, see {@link #hitCounts()}. */
+    private final AtomicLong firstUses = new AtomicLong();
+
+    private WatchService watchService;
+    private boolean closed;
+    private volatile long nextMtimeCheckNanos;
+    private volatile boolean deferred;
+
+    /**
+     * Creates an index over the directories returned by {@code pathSupplier}.
+     *
+     * @param pathSupplier supplies the current {@code PATH} value, consulted on every lookup
+     */
+    public PathIndex(Supplier<String> pathSupplier) {
+        this.pathSupplier = pathSupplier;
+    }
+
+    /**
+     * Resolves a command name to the executable that would be run for it.
+     *
+     * @param name the command name (e.g. {@code ls})
+     * @return absolute path of the executable, or {@code null} if it is not on {@code PATH}
+     */
+    public String lookup(String name) {
+        Path resolved = find(name);
+        if (resolved == null) {
+            return null;
+        }
+        hits.computeIfAbsent(name, key -> new Hits(firstUses.getAndIncrement(), new LongAdder()))
+                .count().increment();
+        return resolved.toString();
+    }
+
+    /**
+     * Resolves a command name like {@link #lookup(String)}, without counting it as a hit.
+     *
+     * @param name the command name
+     * @return absolute path of the executable, or {@code null} if it is not on {@code PATH}
+     */
+    public String resolve(String name) {
+        Path resolved = find(name);
+        return resolved != null ? resolved.toString() : null;
+    }
+
+    /**
+     * Checks whether a command exists on {@code PATH} without counting it as a hit.
+     *
+     * @param name the command name
+     * @return {@code true} if an executable with that name is on {@code PATH}
+     */
+    public boolean contains(String name) {
+        return find(name) != null;
+    }
+
+    /**
+     * Returns the names of all executables on {@code PATH}.
+     *
+     * @return unmodifiable set of command names
+     */
+    public Set<String> commandNames() {
+        return currentSnapshot().commands().keySet();
+    }
+
+    /**
+     * Returns the names of the executables found by the last scan of {@code PATH}, without
+     * scanning or re-validating anything.
+     *
+     * @return unmodifiable set of command names, or {@code null} if {@code PATH} has not been indexed yet
+     */
+    public Set<String> indexedCommandNames() {
+        Snapshot current = snapshot;
+        return current != null ? current.commands().keySet() : null;
+    }
+
+    /**
+     * Returns how many times each command has been resolved since the last {@link #rehash()},
+     * in the order the commands were first used.
+     *
+     * @return command name to hit count
+     */
+    public Map<String, Long> hitCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        hits.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().firstUse()))
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue().count().sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Forgets the hit statistics of a single command.
+     *
+     * @param name the command name
+     * @return {@code true} if the command had been used before
+     */
+    public boolean forget(String name) {
+        return hits.remove(name) != null;
+    }
+
+    /**
+     * Drops every directory listing and all statistics; the next lookup rescans {@code PATH}.
+     */
+    public void rehash() {
+        synchronized (lock) {
+            watchedDirs.keySet().forEach(WatchKey::cancel);
+            watchedDirs.clear();
+            watched.clear();
+            listings.clear();
+            dirtyDirs.clear();
+            hits.clear();
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Stops watching the {@code PATH} directories and ends the watcher thread. The index keeps
+     * working, re-validating its directories by modification time as for unwatched ones.
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            watchedDirs.keySet().forEach(WatchKey::cancel);
+            watchedDirs.clear();
+            watched.clear();
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    // nothing left to release
+                }
+                watchService = null;
+            }
+        }
+    }
+
+    /**
+     * Makes lookups probe {@code PATH} directly until the index is built for {@link #commandNames()}.
+     */
+    public void deferIndexing() {
+        deferred = true;
+    }
+
+    private Path find(String name) {
+        if (deferred && snapshot == null) {
+            return probe(name);
+        }
+        return currentSnapshot().commands().get(name);
+    }
+
+    /**
+     * Finds an executable the way the index would, without listing any directory.
+     */
+    private Path probe(String name) {
+        if (name.isEmpty() || name.contains("/")) {
+            return null;
+        }
+        for (String dir : currentPath().split(File.pathSeparator)) {
+            if (dir.isEmpty()) {
+                continue;
+            }
+            Path file = Path.of(dir).toAbsolutePath().normalize().resolve(name);
+            if (Files.isExecutable(file) && !Files.isDirectory(file)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private String currentPath() {
+        return Objects.requireNonNullElse(pathSupplier.get(), "");
+    }
+
+    private Snapshot currentSnapshot() {
+        String path = currentPath();
+        Snapshot current = snapshot;
+        if (current != null && current.path().equals(path) && dirtyDirs.isEmpty() && !unwatchedDirsChanged()) {
+            return current;
+        }
+        synchronized (lock) {
+            current = snapshot;
+            if (current == null || !current.path().equals(path) || !dirtyDirs.isEmpty()) {
+                current = rebuild(path);
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Re-validates directories without a watch key by comparing their modification time.
+     * Rate limited, so the hot path only pays for it once per interval.
+     */
+    private boolean unwatchedDirsChanged() {
+        long now = System.nanoTime();
+        if (now - nextMtimeCheckNanos < 0) {
+            return false;
+        }
+        nextMtimeCheckNanos = now + TimeUnit.MILLISECONDS.toNanos(MTIME_RECHECK_INTERVAL_MS);
+        synchronized (lock) {
+            for (var entry : listings.entrySet()) {
+                Path dir = entry.getKey();
+                if (!watched.contains(dir)
+                        && !Objects.equals(entry.getValue().mtime(), lastModified(dir))) {
+                    dirtyDirs.add(dir);
+                }
+            }
+        }
+        return !dirtyDirs.isEmpty();
+    }
+
+    private Snapshot rebuild(String path) {
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (String dir : path.split(File.pathSeparator)) {
+            if (!dir.isEmpty()) {
+                dirs.add(Path.of(dir).toAbsolutePath().normalize());
+            }
+        }
+
+        listings.keySet().removeIf(dir -> !dirs.contains(dir));
+        watchedDirs.entrySet().removeIf(entry -> {
+            if (!dirs.contains(entry.getValue())) {
+                entry.getKey().cancel();
+                watched.remove(entry.getValue());
+                return true;
+            }
+            return false;
+        });
+
+        Map<String, Path> commands = new HashMap<>();
+        for (Path dir : dirs) {
+            DirListing listing = listings.get(dir);
+            if (listing == null || dirtyDirs.remove(dir)) {
+                listing = scan(dir);
+                listings.put(dir, listing);
+            }
+            listing.executables().forEach(commands::putIfAbsent);
+        }
+        return new Snapshot(path, Map.copyOf(commands));
+    }
+
+    private DirListing scan(Path dir) {
+        FileTime mtime = lastModified(dir);
+        if (mtime != null && !watched.contains(dir)) {
+            watch(dir);
+        }
+
+        Map<String, Path> executables = new HashMap<>();
+        try (Stream<Path> content = Files.list(dir)) {
+            content.filter(file -> Files.isExecutable(file) && !Files.isDirectory(file))
+                    .forEach(file -> executables.put(file.getFileName().toString(), file));
+        } catch (IOException e) {
+            // missing or unreadable directory contributes nothing
+        }
+        return new DirListing(mtime, executables);
+    }
+
+    private void watch(Path dir) {
+        if (closed) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                WatchService service = watchService;
+                Thread.ofVirtual().name("jsh-path-watcher").start(() -> processWatchEvents(service));
+            }
+            WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            watchedDirs.put(key, dir);
+            watched.add(dir);
+        } catch (IOException | UnsupportedOperationException e) {
+            // falls back to modification time checks
+        }
+    }
+
+    private void processWatchEvents(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Path dir = watchedDirs.get(key);
+                key.pollEvents();
+                if (dir != null) {
+                    dirtyDirs.add(dir);
+                }
+                if (!key.reset() && watchedDirs.remove(key) != null) {
+                    watched.remove(dir);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watcher stops with the shell
+        }
+    }
+
+    private static FileTime lastModified(Path dir) {
+        try {
+            return Files.getLastModifiedTime(dir);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private record Snapshot(String path, Map<String, Path> commands) {}
+
+    /**
+     * Hit count of a command.
+     *
+     * @param firstUse number of the command in the order of first use
+     * @param count    number of times it was resolved
+     */
+    private record Hits(long firstUse, LongAdder count) {}
+
+    private record DirListing(FileTime mtime, Map<String, Path> executables) {}
+
+    private static class PathIndexHolder {
+        private static final PathIndex INSTANCE = new PathIndex(() -> EnvStorage.get("PATH"));
+        /**
+         * Indexes of {@code PATH} values other than the interactive shell's, by value, guarded by
+         * itself. Access-ordered, closing the least recently used index it drops.
+         */
+        private static final Map<String, PathIndex> BY_PATH = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PathIndex> eldest) {
+                if (size() > MAX_SHELL_INDEXES) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.lowkkid.jsh.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Set of strings organized as a prefix tree, for completing a prefix in time proportional
+ * to the prefix length and the number of matches rather than to the size of the set.
+ *
+ * <p>The same string may be added by several sources (e.g. an alias and an executable with the
+ * same name); it is counted and stays in the trie until it has been removed as often as added.
+ * Children are kept sorted, so matches come out in lexicographic order.
+ *
+ * <p>Not thread-safe.
+ */
+public final class PrefixTrie {
+
+    private final Node root = new Node();
+    private int size = 0;
+
+    /**
+     * Adds a string, or increments its count if it is already present.
+     *
+     * @param word the string to add
+     */
+    public void add(String word) {
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            node = node.children.computeIfAbsent(word.charAt(i), key -> new Node());
+        }
+        if (node.count++ == 0) {
+            size++;
+        }
+    }
+
+    /**
+     * Decrements the count of a string, removing it once the count reaches zero.
+     *
+     * @param word the string to remove
+     * @return {@code true} if the string was present
+     */
+    public boolean remove(String word) {
+        return removeBelow(root, word, 0);
+    }
+
+    /**
+     * Returns whether the string is present.
+     */
+    public boolean contains(String word) {
+        Node node = find(word);
+        return node != null && node.count > 0;
+    }
+
+    /**
+     * Returns the number of distinct strings.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the strings starting with {@code prefix}, in lexicographic order.
+     *
+     * @param prefix the prefix, may be empty
+     * @param limit  maximum number of results
+     * @return at most {@code limit} matching strings
+     */
+    public List<String> startingWith(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        Node node = find(prefix);
+        if (node != null) {
+            collect(node, new StringBuilder(prefix), result, limit);
+        }
+        return result;
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private boolean removeBelow(Node node, String word, int depth) {
+        if (depth == word.length()) {
+            if (node.count == 0) {
+                return false;
+            }
+            if (--node.count == 0) {
+                size--;
+            }
+            return true;
+        }
+        Node child = node.children.get(word.charAt(depth));
+        if (child == null || !removeBelow(child, word, depth + 1)) {
+            return false;
+        }
+        if (child.count == 0 && child.children.isEmpty()) {
+            node.children.remove(word.charAt(depth));
+        }
+        return true;
+    }
+
+    private static void collect(Node node, StringBuilder path, List<String> result, int limit) {
+        if (result.size() >= limit) {
+            return;
+        }
+        if (node.count > 0) {
+            result.add(path.toString());
+        }
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            path.append(child.getKey());
+            collect(child.getValue(), path, result, limit);
+            path.setLength(path.length() - 1);
+        }
+    }
+
+    private static final class Node {
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        private int count;
+    }
+}
@@ -16,7 +16,6 @@ class AliasTest extends CommandTestBase {
     @BeforeEach
     void setUp() {
         alias = new Alias();
-        injectStreams(alias);
     }
 
     @AfterEach
@@ -26,7 +25,7 @@ class AliasTest extends CommandTestBase {
 
     @Test
     void noArgsWithNoAliases() {
-        alias.execute(List.of());
+        alias.execute(context(), List.of());
 
         assertEquals("", getStdOut());
     }
@@ -36,7 +35,7 @@ class AliasTest extends CommandTestBase {
         AliasStorage.put("ll", "ls -la");
         AliasStorage.put("gs", "git status");
 
-        alias.execute(List.of());
+        alias.execute(context(), List.of());
 
         String output = getStdOutTrimmed();
         assertTrue(output.contains("alias gs='git status'"));
@@ -45,7 +44,7 @@ class AliasTest extends CommandTestBase {
 
     @Test
     void setAlias() {
-        alias.execute(List.of("ll=ls -la"));
+        alias.execute(context(), List.of("ll=ls -la"));
 
         assertEquals("ls -la", AliasStorage.get("ll"));
         assertTrue(getStdOut().isEmpty());
@@ -53,7 +52,7 @@ class AliasTest extends CommandTestBase {
 
     @Test
     void setAliasWithPipe() {
-        alias.execute(List.of("greplogs=cat /tmp/test | grep foo"));
+        alias.execute(context(), List.of("greplogs=cat /tmp/test | grep foo"));
 
         assertEquals("cat /tmp/test | grep foo", AliasStorage.get("greplogs"));
     }
@@ -62,14 +61,14 @@ class AliasTest extends CommandTestBase {
     void showSpecificAlias() {
         AliasStorage.put("ll", "ls -la");
 
-        alias.execute(List.of("ll"));
+        alias.execute(context(), List.of("ll"));
 
         assertEquals("alias ll='ls -la'", getStdOutTrimmed());
     }
 
     @Test
     void showNonexistentAlias() {
-        alias.execute(List.of("nonexistent"));
+        alias.execute(context(), List.of("nonexistent"));
 
         assertEquals("alias: nonexistent: not found", getStdErrTrimmed());
     }
@@ -80,7 +79,7 @@ class AliasTest extends CommandTestBase {
         AliasStorage.put("a", "aaa");
         AliasStorage.put("m", "mmm");
 
-        alias.execute(List.of());
+        alias.execute(context(), List.of());
 
         String output = getStdOutTrimmed();
         String[] lines = output.split(System.lineSeparator());
@@ -94,7 +93,7 @@ class AliasTest extends CommandTestBase {
     void overwriteExistingAlias() {
         AliasStorage.put("ll", "ls -la");
 
-        alias.execute(List.of("ll=ls -lah"));
+        alias.execute(context(), List.of("ll=ls -lah"));
 
         assertEquals("ls -lah", AliasStorage.get("ll"));
     }
@@ -22,7 +22,6 @@ class CdTest extends CommandTestBase {
     @BeforeEach
     void setUp() {
         cd = new Cd();
-        injectStreams(cd);
         Main.currentDir = tempDir;
     }
 
@@ -31,7 +30,7 @@ class CdTest extends CommandTestBase {
         Path subDir = tempDir.resolve("subdir");
         Files.createDirectory(subDir);
 
-        cd.execute(List.of(subDir.toString()));
+        cd.execute(context(), List.of(subDir.toString()));
 
         assertEquals(subDir, Main.currentDir);
         assertTrue(getStdErr().isEmpty());
@@ -42,7 +41,7 @@ class CdTest extends CommandTestBase {
         Path subDir = tempDir.resolve("subdir");
         Files.createDirectory(subDir);
 
-        cd.execute(List.of("subdir"));
+        cd.execute(context(), List.of("subdir"));
 
         assertEquals(subDir, Main.currentDir);
     }
@@ -52,7 +51,7 @@ class CdTest extends CommandTestBase {
         Path nested = tempDir.resolve("a/b/c");
         Files.createDirectories(nested);
 
-        cd.execute(List.of("a/b/c"));
+        cd.execute(context(), List.of("a/b/c"));
 
         assertEquals(nested, Main.currentDir);
     }
@@ -63,7 +62,7 @@ class CdTest extends CommandTestBase {
         Files.createDirectory(subDir);
         Main.currentDir = subDir;
 
-        cd.execute(List.of(".."));
+        cd.execute(context(), List.of(".."));
 
         assertEquals(tempDir, Main.currentDir);
     }
@@ -72,7 +71,7 @@ class CdTest extends CommandTestBase {
     void currentDirectory() {
         Path original = Main.currentDir;
 
-        cd.execute(List.of("."));
+        cd.execute(context(), List.of("."));
 
         assertEquals(original, Main.currentDir);
     }
@@ -85,7 +84,7 @@ class CdTest extends CommandTestBase {
         Files.createDirectories(dirB);
         Main.currentDir = dirA;
 
-        cd.execute(List.of("../b"));
+        cd.execute(context(), List.of("../b"));
 
         assertEquals(dirB, Main.currentDir);
     }
@@ -94,7 +93,7 @@ class CdTest extends CommandTestBase {
     void homeDirectory() {
         String home = System.getenv("HOME");
         if (home != null && Files.isDirectory(Path.of(home))) {
-            cd.execute(List.of("~"));
+            cd.execute(context(), List.of("~"));
             assertEquals(Path.of(home), Main.currentDir);
         }
     }
@@ -103,7 +102,7 @@ class CdTest extends CommandTestBase {
     void nonExistentDirectory() {
         Path original = Main.currentDir;
 
-        cd.execute(List.of("nonexistent"));
+        cd.execute(context(), List.of("nonexistent"));
 
         assertEquals(original, Main.currentDir);
         assertTrue(getStdErrTrimmed().contains("No such file or directory"));
@@ -115,7 +114,7 @@ class CdTest extends CommandTestBase {
         Files.createFile(file);
         Path original = Main.currentDir;
 
-        cd.execute(List.of("file.txt"));
+        cd.execute(context(), List.of("file.txt"));
 
         assertEquals(original, Main.currentDir);
         assertTrue(getStdErrTrimmed().contains("No such file or directory"));
@@ -127,7 +126,7 @@ class CdTest extends CommandTestBase {
         Files.createDirectories(deep);
         Main.currentDir = deep;
 
-        cd.execute(List.of("../../.."));
+        cd.execute(context(), List.of("../../.."));
 
         assertEquals(tempDir, Main.currentDir);
     }
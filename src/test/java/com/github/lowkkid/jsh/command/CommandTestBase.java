@@ -1,12 +1,12 @@
 package com.github.lowkkid.jsh.command;
 
 import com.github.lowkkid.jsh.Main;
+import com.github.lowkkid.jsh.config.env.EnvStorage;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
-import java.lang.reflect.Field;
 import java.nio.file.Path;
 
 /**
@@ -38,19 +38,10 @@ public abstract class CommandTestBase {
     }
 
     /**
-     * Injects custom PrintStreams into a Command instance via reflection.
+     * Creates an execution context writing to the captured streams, in the current directory.
      */
-    protected void injectStreams(Command command) {
-        try {
-            Field stdOutField = Command.class.getDeclaredField("stdOut");
-            Field stdErrField = Command.class.getDeclaredField("stdErr");
-            stdOutField.setAccessible(true);
-            stdErrField.setAccessible(true);
-            stdOutField.set(command, testStdOut);
-            stdErrField.set(command, testStdErr);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            throw new RuntimeException("Failed to inject streams", e);
-        }
+    protected ExecutionContext context() {
+        return new ExecutionContext(null, testStdOut, testStdErr, Main.currentDir, EnvStorage::get, 0);
     }
 
     protected String getStdOut() {
@@ -35,7 +35,6 @@ class DcTest extends CommandTestBase {
     @BeforeEach
     void setUp() {
         dc = new Dc(mockDockerClient);
-        injectStreams(dc);
         originalTerminal = Main.terminal;
     }
 
@@ -51,7 +50,7 @@ class DcTest extends CommandTestBase {
         void printsErrorWhenTerminalIsNull() {
             Main.terminal = null;
 
-            dc.execute(Collections.emptyList());
+            dc.execute(context(), Collections.emptyList());
 
             assertEquals("dc: terminal not available", getStdErrTrimmed());
             assertTrue(getStdOut().isEmpty());
@@ -67,7 +66,7 @@ class DcTest extends CommandTestBase {
             Main.terminal = mockTerminal;
             when(mockDockerClient.fetchContainers()).thenReturn(Collections.emptyList());
 
-            dc.execute(Collections.emptyList());
+            dc.execute(context(), Collections.emptyList());
 
             assertEquals("No running containers.", getStdOutTrimmed());
             assertTrue(getStdErr().isEmpty());
@@ -83,7 +82,7 @@ class DcTest extends CommandTestBase {
             when(mockDockerClient.fetchContainers())
                     .thenThrow(new IOException("Cannot connect to the Docker daemon"));
 
-            dc.execute(Collections.emptyList());
+            dc.execute(context(), Collections.emptyList());
 
             assertEquals("dc: Cannot connect to the Docker daemon", getStdErrTrimmed());
             assertTrue(getStdOut().isEmpty());
@@ -95,7 +94,7 @@ class DcTest extends CommandTestBase {
             when(mockDockerClient.fetchContainers())
                     .thenThrow(new IOException("docker command failed"));
 
-            dc.execute(Collections.emptyList());
+            dc.execute(context(), Collections.emptyList());
 
             assertEquals("dc: docker command failed", getStdErrTrimmed());
             assertTrue(getStdOut().isEmpty());
@@ -115,7 +114,7 @@ class DcTest extends CommandTestBase {
 
             // runTui will throw NPE because mockTerminal.enterRawMode() returns null,
             // but execute() catches all exceptions via Command.execute()
-            dc.execute(Collections.emptyList());
+            dc.execute(context(), Collections.emptyList());
 
             // Verify we did NOT get "No running containers." or terminal error
             String stdOut = getStdOut();
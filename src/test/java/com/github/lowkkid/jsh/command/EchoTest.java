@@ -3,7 +3,12 @@ package com.github.lowkkid.jsh.command;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -14,12 +19,11 @@ class EchoTest extends CommandTestBase {
     @BeforeEach
     void setUp() {
         echo = new Echo();
-        injectStreams(echo);
     }
 
     @Test
     void singleArgument() {
-        echo.execute(List.of("hello"));
+        echo.execute(context(), List.of("hello"));
 
         assertEquals("hello", getStdOutTrimmed());
         assertTrue(getStdErr().isEmpty());
@@ -27,21 +31,21 @@ class EchoTest extends CommandTestBase {
 
     @Test
     void multipleArguments() {
-        echo.execute(List.of("hello", "world"));
+        echo.execute(context(), List.of("hello", "world"));
 
         assertEquals("hello world", getStdOutTrimmed());
     }
 
     @Test
     void emptyArguments() {
-        echo.execute(List.of());
+        echo.execute(context(), List.of());
 
         assertEquals("", getStdOutTrimmed());
     }
 
     @Test
     void argumentsWithSpecialCharacters() {
-        echo.execute(List.of("hello!", "@#$%", "test123"));
+        echo.execute(context(), List.of("hello!", "@#$%", "test123"));
 
         assertEquals("hello! @#$% test123", getStdOutTrimmed());
     }
@@ -49,16 +53,35 @@ class EchoTest extends CommandTestBase {
     @Test
     void argumentsWithSpacesPreserved() {
         // arguments are already parsed, so spaces within args are preserved
-        echo.execute(List.of("hello world", "foo bar"));
+        echo.execute(context(), List.of("hello world", "foo bar"));
 
         assertEquals("hello world foo bar", getStdOutTrimmed());
     }
 
     @Test
     void outputEndsWithNewline() {
-        echo.execute(List.of("test"));
+        echo.execute(context(), List.of("test"));
 
         assertTrue(getStdOut().endsWith("\n")
                 || getStdOut().endsWith(System.lineSeparator()));
     }
+
+    @Test
+    void sharedInstanceRunsConcurrently() throws Exception {
+        int invocations = 32;
+        var outputs = new ByteArrayOutputStream[invocations];
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < invocations; i++) {
+                outputs[i] = new ByteArrayOutputStream();
+                var out = new PrintStream(outputs[i], true, StandardCharsets.UTF_8);
+                String word = "word" + i;
+                threads.submit(() -> echo.execute(context().withStdOut(out), List.of(word)));
+            }
+        }
+
+        for (int i = 0; i < invocations; i++) {
+            assertEquals("word" + i, outputs[i].toString(StandardCharsets.UTF_8).trim());
+        }
+        assertEquals("", getStdOut());
+    }
 }
@@ -14,7 +14,6 @@ class ExitTest extends CommandTestBase {
     @BeforeEach
     void setUp() {
         exit = new Exit();
-        injectStreams(exit);
     }
 
     @Test
@@ -24,7 +23,7 @@ class ExitTest extends CommandTestBase {
 
     @Test
     void executeProducesNoOutput() {
-        exit.execute(List.of());
+        exit.execute(context(), List.of());
 
         assertTrue(getStdOut().isEmpty());
         assertTrue(getStdErr().isEmpty());
@@ -32,7 +31,7 @@ class ExitTest extends CommandTestBase {
 
     @Test
     void executeWithArgumentsProducesNoOutput() {
-        exit.execute(List.of("0"));
+        exit.execute(context(), List.of("0"));
 
         assertTrue(getStdOut().isEmpty());
         assertTrue(getStdErr().isEmpty());
@@ -27,7 +27,7 @@ class ExportTest {
 
     @Test
     void exportWithValue() {
-        export.execute(List.of("foo=1"));
+        export.execute(ExecutionContext.ofShell(), List.of("foo=1"));
 
         assertEquals("1", EnvStorage.get("foo"));
         assertTrue(EnvStorage.getExportedVars().containsKey("foo"));
@@ -38,7 +38,7 @@ class ExportTest {
     void exportOverwritesExistingExported() {
         EnvStorage.putExported("foo", "1");
 
-        export.execute(List.of("foo=2"));
+        export.execute(ExecutionContext.ofShell(), List.of("foo=2"));
 
         assertEquals("2", EnvStorage.get("foo"));
         assertTrue(EnvStorage.getExportedVars().containsKey("foo"));
@@ -48,7 +48,7 @@ class ExportTest {
     void exportPromotesShellVariable() {
         EnvStorage.putShell("foo", "1");
 
-        export.execute(List.of("foo"));
+        export.execute(ExecutionContext.ofShell(), List.of("foo"));
 
         assertEquals("1", EnvStorage.get("foo"));
         assertTrue(EnvStorage.getExportedVars().containsKey("foo"));
@@ -59,7 +59,7 @@ class ExportTest {
     void exportPromotesShellVariableWithNewValue() {
         EnvStorage.putShell("foo", "1");
 
-        export.execute(List.of("foo=2"));
+        export.execute(ExecutionContext.ofShell(), List.of("foo=2"));
 
         assertEquals("2", EnvStorage.get("foo"));
         assertTrue(EnvStorage.getExportedVars().containsKey("foo"));
@@ -68,7 +68,7 @@ class ExportTest {
 
     @Test
     void exportNonexistentVariableCreatesEmpty() {
-        export.execute(List.of("foo"));
+        export.execute(ExecutionContext.ofShell(), List.of("foo"));
 
         assertEquals("", EnvStorage.get("foo"));
         assertTrue(EnvStorage.getExportedVars().containsKey("foo"));
@@ -78,7 +78,7 @@ class ExportTest {
     void exportAlreadyExportedWithoutValueIsNoop() {
         EnvStorage.putExported("foo", "1");
 
-        export.execute(List.of("foo"));
+        export.execute(ExecutionContext.ofShell(), List.of("foo"));
 
         assertEquals("1", EnvStorage.get("foo"));
     }
@@ -87,7 +87,7 @@ class ExportTest {
     void exportMultipleArguments() {
         EnvStorage.putShell("bar", "existing");
 
-        export.execute(List.of("foo=1", "bar", "baz=3"));
+        export.execute(ExecutionContext.ofShell(), List.of("foo=1", "bar", "baz=3"));
 
         assertEquals("1", EnvStorage.get("foo"));
         assertEquals("existing", EnvStorage.get("bar"));
@@ -99,7 +99,7 @@ class ExportTest {
 
     @Test
     void exportWithEmptyValue() {
-        export.execute(List.of("foo="));
+        export.execute(ExecutionContext.ofShell(), List.of("foo="));
 
         assertEquals("", EnvStorage.get("foo"));
         assertTrue(EnvStorage.getExportedVars().containsKey("foo"));
@@ -107,7 +107,7 @@ class ExportTest {
 
     @Test
     void exportIgnoresInvalidArgument() {
-        export.execute(List.of("=invalid"));
+        export.execute(ExecutionContext.ofShell(), List.of("=invalid"));
 
         assertNull(EnvStorage.get("=invalid"));
     }
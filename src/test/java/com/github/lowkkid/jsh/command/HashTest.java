@@ -0,0 +1,106 @@
+package com.github.lowkkid.jsh.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.lowkkid.jsh.utils.PathIndex;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HashTest extends CommandTestBase {
+
+    @TempDir
+    Path binDir;
+
+    private PathIndex index;
+    private Hash hash;
+    private Path tool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tool = Files.createFile(binDir.resolve("tool"),
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxr-xr-x")));
+        index = new PathIndex(binDir::toString);
+        hash = new Hash(index);
+    }
+
+    @Test
+    void emptyTable() {
+        hash.execute(context(), List.of());
+
+        assertEquals("hash: hash table empty", getStdOutTrimmed());
+    }
+
+    @Test
+    void listsHitsAndPaths() {
+        index.lookup("tool");
+        index.lookup("tool");
+
+        hash.execute(context(), List.of());
+
+        String output = getStdOut();
+        assertTrue(output.startsWith("hits\tcommand"));
+        assertTrue(output.contains("   2\t" + tool));
+    }
+
+    @Test
+    void rememberAddsCommandToTable() {
+        hash.execute(context(), List.of("tool"));
+
+        assertEquals(1L, index.hitCounts().get("tool"));
+        assertTrue(getStdErr().isEmpty());
+    }
+
+    @Test
+    void rememberReportsUnknownCommand() {
+        hash.execute(context(), List.of("missing_tool"));
+
+        assertEquals("hash: missing_tool: not found", getStdErrTrimmed());
+    }
+
+    @Test
+    void printsPathForSingleName() {
+        hash.execute(context(), List.of("-t", "tool"));
+
+        assertEquals(tool.toString(), getStdOutTrimmed());
+    }
+
+    @Test
+    void printsNameAndPathForMultipleNames() {
+        hash.execute(context(), List.of("-t", "tool", "missing_tool"));
+
+        assertEquals("tool\t" + tool, getStdOutTrimmed());
+        assertEquals("hash: missing_tool: not found", getStdErrTrimmed());
+    }
+
+    @Test
+    void forgetRemovesCommand() {
+        index.lookup("tool");
+
+        hash.execute(context(), List.of("-d", "tool"));
+
+        assertTrue(index.hitCounts().isEmpty());
+    }
+
+    @Test
+    void rehashClearsTable() {
+        index.lookup("tool");
+
+        hash.execute(context(), List.of("-r"));
+
+        assertTrue(index.hitCounts().isEmpty());
+    }
+
+    @Test
+    void invalidOption() {
+        hash.execute(context(), List.of("-x"));
+
+        assertTrue(getStdErr().contains("hash: -x: invalid option"));
+    }
+}
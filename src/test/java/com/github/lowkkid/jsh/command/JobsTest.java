@@ -0,0 +1,174 @@
+package com.github.lowkkid.jsh.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.lowkkid.jsh.Main;
+import com.github.lowkkid.jsh.command.utils.CommandRegistry;
+import com.github.lowkkid.jsh.config.env.EnvStorage;
+import com.github.lowkkid.jsh.config.env.ShellState;
+import com.github.lowkkid.jsh.executor.CommandListExecutor;
+import com.github.lowkkid.jsh.executor.Job;
+import com.github.lowkkid.jsh.executor.JobSupervisor;
+import com.github.lowkkid.jsh.executor.SegmentedExecutor;
+import com.github.lowkkid.jsh.parser.InputParser;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class JobsTest extends CommandTestBase {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private JobSupervisor supervisor;
+
+    @BeforeEach
+    void setUp() {
+        CommandRegistry registry = CommandRegistry.getInstance();
+        supervisor = new JobSupervisor(registry, new CommandListExecutor(new SegmentedExecutor(registry)));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Job job : List.copyOf(supervisor.jobs())) {
+            supervisor.signal(job, "KILL");
+        }
+    }
+
+    @Override
+    protected ExecutionContext context() {
+        return new ExecutionContext(null, testStdOut, testStdErr, Main.currentDir, EnvStorage::get, 0, Map.of(),
+                ShellState.global(), () -> supervisor);
+    }
+
+    private Job launch(String commandLine) throws IOException {
+        return supervisor.launch(commandLine, new InputParser().parse(commandLine));
+    }
+
+    @Nested
+    @DisplayName("jobs")
+    class JobsCommandTests {
+
+        @Test
+        void listsRunningJobs() throws IOException {
+            launch("sleep 10");
+            launch("sleep 20");
+
+            new Jobs().execute(context(), List.of());
+
+            assertEquals("[1]-  Running                 sleep 10 &\n"
+                    + "[2]+  Running                 sleep 20 &", getStdOutTrimmed());
+        }
+
+        @Test
+        void printsPids() throws IOException {
+            Job job = launch("sleep 10");
+
+            new Jobs().execute(context(), List.of("-p"));
+
+            assertEquals(String.valueOf(job.processes().getFirst().pid()), getStdOutTrimmed());
+        }
+
+        @Test
+        void unknownJob() {
+            new Jobs().execute(context(), List.of("%3"));
+
+            assertEquals("jobs: %3: no such job", getStdErrTrimmed());
+        }
+    }
+
+    @Nested
+    @DisplayName("fg / wait")
+    class ForegroundTests {
+
+        @Test
+        void fgWaitsForJob() throws IOException {
+            launch("sleep 0.1");
+
+            assertTimeoutPreemptively(TIMEOUT, () -> new Fg().execute(context(), List.of()));
+
+            assertEquals("sleep 0.1", getStdOutTrimmed());
+            assertTrue(supervisor.jobs().isEmpty());
+        }
+
+        @Test
+        void fgWithoutJobs() {
+            new Fg().execute(context(), List.of());
+
+            assertEquals("fg: current: no such job", getStdErrTrimmed());
+        }
+
+        @Test
+        void waitForAllJobs() throws IOException {
+            launch("sleep 0.1");
+            launch("true");
+
+            assertTimeoutPreemptively(TIMEOUT, () -> new Wait().execute(context(), List.of()));
+
+            assertTrue(supervisor.jobs().isEmpty());
+        }
+
+        @Test
+        void waitForUnknownPid() {
+            new Wait().execute(context(), List.of("999999999"));
+
+            assertEquals("wait: pid 999999999 is not a child of this shell", getStdErrTrimmed());
+        }
+    }
+
+    @Nested
+    @DisplayName("kill / bg")
+    class SignalTests {
+
+        @Test
+        void killTerminatesJob() throws Exception {
+            Job job = launch("sleep 10");
+
+            new Kill().execute(context(), List.of("%1"));
+
+            assertTimeoutPreemptively(TIMEOUT, () -> job.completion().get());
+            assertTrue(getStdErr().isEmpty());
+        }
+
+        @Test
+        void killStopsAndBgContinues() throws IOException {
+            Job job = launch("sleep 10");
+
+            new Kill().execute(context(), List.of("-s", "STOP", "%1"));
+            assertEquals(Job.State.STOPPED, job.state());
+
+            new Bg().execute(context(), List.of("%1"));
+            assertEquals(Job.State.RUNNING, job.state());
+        }
+
+        @Test
+        void bgOnRunningJob() throws IOException {
+            launch("sleep 10");
+
+            new Bg().execute(context(), List.of());
+
+            assertEquals("bg: job 1 already in background", getStdErrTrimmed());
+        }
+
+        @Test
+        void killWithoutTargets() {
+            new Kill().execute(context(), List.of("-9"));
+
+            assertTrue(getStdErr().startsWith("kill: usage:"));
+        }
+
+        @Test
+        void killUnknownJob() {
+            new Kill().execute(context(), List.of("%5"));
+
+            assertEquals("kill: %5: no such job", getStdErrTrimmed());
+        }
+    }
+}
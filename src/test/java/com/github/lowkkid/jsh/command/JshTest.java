@@ -13,12 +13,11 @@ class JshTest extends CommandTestBase {
     @BeforeEach
     void setUp() {
         jsh = new Jsh();
-        injectStreams(jsh);
     }
 
     @Test
     void outputContainsAsciiArt() {
-        jsh.execute(List.of());
+        jsh.execute(context(), List.of());
 
         String output = getStdOut();
         assertTrue(output.contains("██╗"));
@@ -27,7 +26,7 @@ class JshTest extends CommandTestBase {
 
     @Test
     void outputContainsShellInfo() {
-        jsh.execute(List.of());
+        jsh.execute(context(), List.of());
 
         String output = getStdOut();
         assertTrue(output.contains("Shell"));
@@ -36,7 +35,7 @@ class JshTest extends CommandTestBase {
 
     @Test
     void outputContainsJavaVersion() {
-        jsh.execute(List.of());
+        jsh.execute(context(), List.of());
 
         String output = getStdOut();
         assertTrue(output.contains("Java"));
@@ -45,7 +44,7 @@ class JshTest extends CommandTestBase {
 
     @Test
     void outputContainsOsInfo() {
-        jsh.execute(List.of());
+        jsh.execute(context(), List.of());
 
         String output = getStdOut();
         assertTrue(output.contains("OS"));
@@ -54,7 +53,7 @@ class JshTest extends CommandTestBase {
 
     @Test
     void outputContainsBuiltInsCount() {
-        jsh.execute(List.of());
+        jsh.execute(context(), List.of());
 
         String output = getStdOut();
         assertTrue(output.contains("Built-ins"));
@@ -66,4 +65,14 @@ class JshTest extends CommandTestBase {
 
         assertTrue(version != null && !version.isEmpty());
     }
+
+    @Test
+    void outputContainsParseCacheCounters() {
+        jsh.execute(context(), List.of());
+
+        String output = getStdOut();
+        assertTrue(output.contains("Parse cache"));
+        assertTrue(output.contains("hits"));
+        assertTrue(output.contains("misses"));
+    }
 }
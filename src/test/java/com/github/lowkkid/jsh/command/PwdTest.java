@@ -16,24 +16,32 @@ class PwdTest extends CommandTestBase {
     @BeforeEach
     void setUp() {
         pwd = new Pwd();
-        injectStreams(pwd);
     }
 
     @Test
     void printsCurrentDirectory() {
         Main.currentDir = Path.of("/home/user");
 
-        pwd.execute(List.of());
+        pwd.execute(context(), List.of());
 
         assertEquals("/home/user", getStdOutTrimmed());
         assertTrue(getStdErr().isEmpty());
     }
 
+    @Test
+    void printsWorkingDirectoryOfContext() {
+        Main.currentDir = Path.of("/home/user");
+
+        pwd.execute(context().withWorkingDirectory(Path.of("/tmp")), List.of());
+
+        assertEquals("/tmp", getStdOutTrimmed());
+    }
+
     @Test
     void printsRootDirectory() {
         Main.currentDir = Path.of("/");
 
-        pwd.execute(List.of());
+        pwd.execute(context(), List.of());
 
         assertEquals("/", getStdOutTrimmed());
     }
@@ -42,7 +50,7 @@ class PwdTest extends CommandTestBase {
     void printsNestedDirectory() {
         Main.currentDir = Path.of("/home/user/projects/jsh");
 
-        pwd.execute(List.of());
+        pwd.execute(context(), List.of());
 
         assertEquals("/home/user/projects/jsh", getStdOutTrimmed());
     }
@@ -51,7 +59,7 @@ class PwdTest extends CommandTestBase {
     void ignoresArguments() {
         Main.currentDir = Path.of("/tmp");
 
-        pwd.execute(List.of("ignored", "arguments"));
+        pwd.execute(context(), List.of("ignored", "arguments"));
 
         assertEquals("/tmp", getStdOutTrimmed());
     }
@@ -60,7 +68,7 @@ class PwdTest extends CommandTestBase {
     void outputEndsWithNewline() {
         Main.currentDir = Path.of("/tmp");
 
-        pwd.execute(List.of());
+        pwd.execute(context(), List.of());
 
         assertTrue(getStdOut().endsWith("\n") || getStdOut().endsWith(System.lineSeparator()));
     }
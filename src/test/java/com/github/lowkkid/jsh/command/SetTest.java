@@ -27,7 +27,7 @@ class SetTest {
 
     @Test
     void singleAssignment() {
-        set.execute(List.of("foo=1"));
+        set.execute(ExecutionContext.ofShell(), List.of("foo=1"));
 
         assertEquals("1", EnvStorage.get("foo"));
         assertTrue(EnvStorage.getShellVars().containsKey("foo"));
@@ -36,7 +36,7 @@ class SetTest {
 
     @Test
     void multipleAssignments() {
-        set.execute(List.of("foo=1", "bar=2"));
+        set.execute(ExecutionContext.ofShell(), List.of("foo=1", "bar=2"));
 
         assertEquals("1", EnvStorage.get("foo"));
         assertEquals("2", EnvStorage.get("bar"));
@@ -46,7 +46,7 @@ class SetTest {
     void overwritesShellVariable() {
         EnvStorage.putShell("foo", "1");
 
-        set.execute(List.of("foo=2"));
+        set.execute(ExecutionContext.ofShell(), List.of("foo=2"));
 
         assertEquals("2", EnvStorage.get("foo"));
         assertTrue(EnvStorage.getShellVars().containsKey("foo"));
@@ -56,7 +56,7 @@ class SetTest {
     void updatesExportedVariableInPlace() {
         EnvStorage.putExported("foo", "1");
 
-        set.execute(List.of("foo=2"));
+        set.execute(ExecutionContext.ofShell(), List.of("foo=2"));
 
         assertEquals("2", EnvStorage.get("foo"));
         assertTrue(EnvStorage.getExportedVars().containsKey("foo"));
@@ -65,7 +65,7 @@ class SetTest {
 
     @Test
     void invalidArgumentIsSkippedValidStillProcessed() {
-        set.execute(List.of("foo=1", "bar", "baz=3"));
+        set.execute(ExecutionContext.ofShell(), List.of("foo=1", "bar", "baz=3"));
 
         assertEquals("1", EnvStorage.get("foo"));
         assertNull(EnvStorage.get("bar"));
@@ -74,14 +74,14 @@ class SetTest {
 
     @Test
     void assignmentWithEmptyValue() {
-        set.execute(List.of("foo="));
+        set.execute(ExecutionContext.ofShell(), List.of("foo="));
 
         assertEquals("", EnvStorage.get("foo"));
     }
 
     @Test
     void equalsAtPositionZeroIgnored() {
-        set.execute(List.of("=foo"));
+        set.execute(ExecutionContext.ofShell(), List.of("=foo"));
 
         assertNull(EnvStorage.get("=foo"));
         assertNull(EnvStorage.get(""));
@@ -28,7 +28,6 @@ class TypeTest extends CommandTestBase {
     @BeforeEach
     void setUp() {
         type = new Type(mockRegistry, mockPathLookup);
-        injectStreams(type);
     }
 
     @Nested
@@ -38,7 +37,7 @@ class TypeTest extends CommandTestBase {
         void recognizesBuiltInCommand() {
             when(mockRegistry.isBultInCommand("echo")).thenReturn(true);
 
-            type.execute(List.of("echo"));
+            type.execute(context(), List.of("echo"));
 
             assertEquals("echo is a shell builtin", getStdOutTrimmed());
             assertTrue(getStdErr().isEmpty());
@@ -51,7 +50,7 @@ class TypeTest extends CommandTestBase {
             when(mockRegistry.isBultInCommand("cd")).thenReturn(true);
             when(mockRegistry.isBultInCommand("pwd")).thenReturn(true);
 
-            type.execute(List.of("cd", "pwd"));
+            type.execute(context(), List.of("cd", "pwd"));
 
             String output = getStdOut();
             assertTrue(output.contains("cd is a shell builtin"));
@@ -68,7 +67,7 @@ class TypeTest extends CommandTestBase {
             when(mockRegistry.isBultInCommand("ls")).thenReturn(false);
             when(mockPathLookup.apply("ls")).thenReturn("/usr/bin/ls");
 
-            type.execute(List.of("ls"));
+            type.execute(context(), List.of("ls"));
 
             assertEquals("ls is /usr/bin/ls", getStdOutTrimmed());
             verify(mockPathLookup).apply("ls");
@@ -79,7 +78,7 @@ class TypeTest extends CommandTestBase {
             when(mockRegistry.isBultInCommand("git")).thenReturn(false);
             when(mockPathLookup.apply("git")).thenReturn("/opt/git/bin/git");
 
-            type.execute(List.of("git"));
+            type.execute(context(), List.of("git"));
 
             assertEquals("git is /opt/git/bin/git", getStdOutTrimmed());
         }
@@ -93,7 +92,7 @@ class TypeTest extends CommandTestBase {
             when(mockRegistry.isBultInCommand("nonexistent")).thenReturn(false);
             when(mockPathLookup.apply("nonexistent")).thenReturn(null);
 
-            type.execute(List.of("nonexistent"));
+            type.execute(context(), List.of("nonexistent"));
 
             assertEquals("nonexistent: not found", getStdOutTrimmed());
         }
@@ -104,7 +103,7 @@ class TypeTest extends CommandTestBase {
 
         @Test
         void emptyArgumentsProducesNoOutput() {
-            type.execute(List.of());
+            type.execute(context(), List.of());
 
             assertTrue(getStdOut().isEmpty());
             assertTrue(getStdErr().isEmpty());
@@ -17,7 +17,6 @@ class UnaliasTest extends CommandTestBase {
     @BeforeEach
     void setUp() {
         unalias = new Unalias();
-        injectStreams(unalias);
     }
 
     @AfterEach
@@ -29,7 +28,7 @@ class UnaliasTest extends CommandTestBase {
     void removeExistingAlias() {
         AliasStorage.put("ll", "ls -la");
 
-        unalias.execute(List.of("ll"));
+        unalias.execute(context(), List.of("ll"));
 
         assertFalse(AliasStorage.contains("ll"));
         assertTrue(getStdErr().isEmpty());
@@ -37,7 +36,7 @@ class UnaliasTest extends CommandTestBase {
 
     @Test
     void removeNonexistentAlias() {
-        unalias.execute(List.of("nonexistent"));
+        unalias.execute(context(), List.of("nonexistent"));
 
         assertEquals("unalias: nonexistent: not found", getStdErrTrimmed());
     }
@@ -47,7 +46,7 @@ class UnaliasTest extends CommandTestBase {
         AliasStorage.put("ll", "ls -la");
         AliasStorage.put("gs", "git status");
 
-        unalias.execute(List.of("ll", "gs"));
+        unalias.execute(context(), List.of("ll", "gs"));
 
         assertFalse(AliasStorage.contains("ll"));
         assertFalse(AliasStorage.contains("gs"));
@@ -56,7 +55,7 @@ class UnaliasTest extends CommandTestBase {
 
     @Test
     void noArgsShowsUsage() {
-        unalias.execute(List.of());
+        unalias.execute(context(), List.of());
 
         assertEquals("unalias: usage: unalias name [name ...]", getStdErrTrimmed());
     }
@@ -65,7 +64,7 @@ class UnaliasTest extends CommandTestBase {
     void mixedExistingAndNonexistent() {
         AliasStorage.put("ll", "ls -la");
 
-        unalias.execute(List.of("ll", "nonexistent"));
+        unalias.execute(context(), List.of("ll", "nonexistent"));
 
         assertFalse(AliasStorage.contains("ll"));
         assertEquals("unalias: nonexistent: not found", getStdErrTrimmed());
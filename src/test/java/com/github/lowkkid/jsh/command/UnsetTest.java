@@ -27,7 +27,7 @@ class UnsetTest {
     void unsetShellVariable() {
         EnvStorage.putShell("foo", "1");
 
-        unset.execute(List.of("foo"));
+        unset.execute(ExecutionContext.ofShell(), List.of("foo"));
 
         assertNull(EnvStorage.get("foo"));
         assertFalse(EnvStorage.getShellVars().containsKey("foo"));
@@ -37,7 +37,7 @@ class UnsetTest {
     void unsetExportedVariable() {
         EnvStorage.putExported("foo", "1");
 
-        unset.execute(List.of("foo"));
+        unset.execute(ExecutionContext.ofShell(), List.of("foo"));
 
         assertNull(EnvStorage.get("foo"));
         assertFalse(EnvStorage.getExportedVars().containsKey("foo"));
@@ -45,7 +45,7 @@ class UnsetTest {
 
     @Test
     void unsetNonexistentVariableIsNoop() {
-        unset.execute(List.of("nonexistent"));
+        unset.execute(ExecutionContext.ofShell(), List.of("nonexistent"));
 
         assertNull(EnvStorage.get("nonexistent"));
     }
@@ -55,7 +55,7 @@ class UnsetTest {
         EnvStorage.putShell("foo", "1");
         EnvStorage.putExported("bar", "2");
 
-        unset.execute(List.of("foo", "bar"));
+        unset.execute(ExecutionContext.ofShell(), List.of("foo", "bar"));
 
         assertNull(EnvStorage.get("foo"));
         assertNull(EnvStorage.get("bar"));
@@ -65,7 +65,7 @@ class UnsetTest {
     void unsetWithNoArgs() {
         EnvStorage.putShell("foo", "1");
 
-        unset.execute(List.of());
+        unset.execute(ExecutionContext.ofShell(), List.of());
 
         // nothing happens, foo is still there
         assertFalse(EnvStorage.getShellVars().isEmpty());
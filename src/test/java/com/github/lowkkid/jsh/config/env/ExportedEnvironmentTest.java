@@ -0,0 +1,108 @@
+package com.github.lowkkid.jsh.config.env;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ExportedEnvironmentTest {
+
+    @AfterEach
+    void tearDown() {
+        EnvStorage.reset();
+    }
+
+    @Test
+    void snapshotIsReusedUntilExportedVariablesChange() {
+        ExportedEnvironment first = EnvStorage.exportedEnvironment();
+        EnvStorage.putShell("JSH_TEST_LOCAL", "1");
+
+        assertSame(first, EnvStorage.exportedEnvironment());
+
+        EnvStorage.putExported("JSH_TEST_EXPORTED", "1");
+        ExportedEnvironment second = EnvStorage.exportedEnvironment();
+
+        assertNotEquals(first.version(), second.version());
+        assertEquals("1", second.variables().get("JSH_TEST_EXPORTED"));
+    }
+
+    @Test
+    void settingTheSameValueKeepsTheVersion() {
+        EnvStorage.putExported("JSH_TEST_EXPORTED", "1");
+        int version = EnvStorage.version();
+
+        EnvStorage.putExported("JSH_TEST_EXPORTED", "1");
+        EnvStorage.putShell("JSH_TEST_EXPORTED", "1");
+        EnvStorage.delete("JSH_TEST_MISSING");
+
+        assertEquals(version, EnvStorage.version());
+    }
+
+    @Test
+    void snapshotsAreConsistentWhileVariablesChange() throws InterruptedException {
+        Thread writer = Thread.startVirtualThread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                EnvStorage.putExported("JSH_TEST_A" + i, "1");
+                EnvStorage.putShell("JSH_TEST_B" + i, "1");
+                EnvStorage.delete("JSH_TEST_A" + i);
+            }
+        });
+        while (writer.isAlive()) {
+            ExportedEnvironment environment = EnvStorage.exportedEnvironment();
+            EnvStorage.Snapshot snapshot = EnvStorage.snapshot();
+            assertEquals(environment.variables().size(), Map.copyOf(environment.variables()).size());
+            assertFalse(snapshot.shellVars().keySet().stream().anyMatch(snapshot.exportedVars()::containsKey));
+        }
+        writer.join();
+
+        assertFalse(EnvStorage.getExportedVars().containsKey("JSH_TEST_A1999"));
+        assertEquals("1", EnvStorage.get("JSH_TEST_B1999"));
+    }
+
+    @Test
+    void inheritedEnvironmentLeavesProcessBuilderUntouched() {
+        assertTrue(EnvStorage.exportedEnvironment().isInherited());
+    }
+
+    @Test
+    void appliesOnlyTheDifferenceToTheInheritedEnvironment() {
+        var inherited = Map.of("KEEP", "1", "CHANGE", "old", "DROP", "x");
+        var exported = Map.of("KEEP", "1", "CHANGE", "new", "ADD", "y");
+        var environment = new ExportedEnvironment(1, exported, inherited);
+        var pb = new ProcessBuilder("true");
+        pb.environment().clear();
+        pb.environment().putAll(inherited);
+
+        environment.applyTo(pb);
+
+        assertFalse(environment.isInherited());
+        assertEquals(exported, pb.environment());
+    }
+
+    @Test
+    void leavesOutVariablesTheJdkWouldReject() {
+        var environment = new ExportedEnvironment(1, Map.of("OK", "1", "A=B", "2", "NUL", "a\0b"), Map.of());
+
+        assertEquals(Map.of("OK", "1"), environment.variables());
+    }
+
+    @Test
+    void overlayIsLayeredOverSnapshot() {
+        var environment = new ExportedEnvironment(1, Map.of("KEEP", "1", "CHANGE", "old"), Map.of("KEEP", "1"));
+
+        var layered = environment.withOverlay(Map.of("CHANGE", "new", "ADD", "2"));
+        var pb = new ProcessBuilder("true");
+        pb.environment().clear();
+        pb.environment().put("KEEP", "1");
+        layered.applyTo(pb);
+
+        assertEquals(Map.of("KEEP", "1", "CHANGE", "new", "ADD", "2"), layered.variables());
+        assertEquals(layered.variables(), pb.environment());
+        assertEquals("old", environment.variables().get("CHANGE"));
+    }
+}
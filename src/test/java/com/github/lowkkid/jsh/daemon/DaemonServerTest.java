@@ -0,0 +1,218 @@
+package com.github.lowkkid.jsh.daemon;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.lowkkid.jsh.Main;
+import com.github.lowkkid.jsh.command.utils.CommandRegistry;
+import com.github.lowkkid.jsh.config.env.AliasStorage;
+import com.github.lowkkid.jsh.config.env.EnvStorage;
+import com.github.lowkkid.jsh.executor.JobSupervisor;
+import com.github.lowkkid.jsh.executor.SegmentedExecutor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+@Timeout(30)
+class DaemonServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path socket;
+    private DaemonServer server;
+    private Thread serverThread;
+    private Path originalCurrentDir;
+
+    private final ByteArrayOutputStream stdOut = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream stdErr = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        originalCurrentDir = Main.currentDir;
+        socket = tempDir.resolve("jsh.sock");
+        server = new DaemonServer(socket, new SegmentedExecutor(CommandRegistry.getInstance()));
+        server.bind();
+        serverThread = Thread.startVirtualThread(server::serve);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+        serverThread.join();
+        Main.currentDir = originalCurrentDir;
+        EnvStorage.reset();
+        AliasStorage.reset();
+    }
+
+    private int run(String commandLine) throws IOException {
+        return run(commandLine, Map.of(), InputStream.nullInputStream());
+    }
+
+    private int run(String commandLine, Map<String, String> variables, InputStream stdIn) throws IOException {
+        Map<String, String> environment = new HashMap<>(System.getenv());
+        environment.putAll(variables);
+        return DaemonClient.forward(DaemonClient.connect(socket), List.of("-c", commandLine), tempDir,
+                environment, stdIn, stdOut, stdErr);
+    }
+
+    private String out() {
+        return stdOut.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void relaysOutputErrorsAndExitStatus() throws IOException {
+        int exitStatus = run("sh -c 'echo out; echo err >&2; exit 3'");
+
+        assertEquals(3, exitStatus);
+        assertEquals("out\n", out());
+        assertEquals("err\n", stdErr.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void runsInClientDirectoryAndEnvironment() throws IOException {
+        run("pwd; echo $GREETING; sh -c 'echo $GREETING'", Map.of("GREETING", "hi"), InputStream.nullInputStream());
+
+        assertEquals(tempDir + "\nhi\nhi\n", out());
+    }
+
+    @Test
+    void forwardsStdin() throws IOException {
+        var stdIn = new ByteArrayInputStream("some input\n".getBytes(StandardCharsets.UTF_8));
+
+        run("cat | tr a-z A-Z", Map.of(), stdIn);
+
+        assertEquals("SOME INPUT\n", out());
+    }
+
+    @Test
+    void leavesInputACommandDoesNotReadToTheNextOne() throws IOException {
+        var stdIn = new ByteArrayInputStream("hello\n".getBytes(StandardCharsets.UTF_8));
+
+        run("sleep 0.3; cat", Map.of(), stdIn);
+
+        assertEquals("hello\n", out());
+    }
+
+    @Test
+    void findsCommandsInTheSessionPath() throws IOException {
+        Path bin = Files.createDirectory(tempDir.resolve("bin"));
+        Files.writeString(Files.createFile(bin.resolve("session-tool"),
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxr-xr-x"))),
+                "#!/bin/sh\necho tool $1\n");
+        String path = bin + ":" + System.getenv("PATH");
+
+        run("session-tool single; session-tool piped | cat", Map.of("PATH", path), InputStream.nullInputStream());
+        run("session-tool; export PATH=" + path + "; session-tool exported");
+
+        assertEquals("tool single\ntool piped\nsession-tool: not found\ntool exported\n", out());
+    }
+
+    @Test
+    void redirectsRelativeToClientDirectory() throws IOException {
+        run("echo saved > out.txt; ls > listing.txt");
+
+        assertEquals("saved\n", Files.readString(tempDir.resolve("out.txt")));
+        assertEquals("", out());
+    }
+
+    @Test
+    void sessionsAreIsolated() throws IOException {
+        run("set COUNTER=1; alias greet='echo hi'; cd /");
+        Path daemonDirectory = Main.currentDir;
+
+        run("echo \"[$COUNTER]\"; pwd; greet");
+
+        assertEquals("[]\n" + tempDir + "\ngreet: not found\n", out());
+        assertEquals(daemonDirectory, Main.currentDir);
+        assertFalse(AliasStorage.contains("greet"));
+    }
+
+    @Test
+    void sessionsRunInParallelWithTheirOwnState() throws Exception {
+        var blockedInput = new PipedOutputStream();
+        var blockedStdIn = new PipedInputStream(blockedInput);
+        Path ready = tempDir.resolve("ready");
+        var blockedStatus = new CompletableFuture<Integer>();
+        Thread.startVirtualThread(() -> {
+            try {
+                blockedStatus.complete(DaemonClient.forward(DaemonClient.connect(socket),
+                        List.of("-c", "cd /; export GREETING=hi; alias greet='echo hi'; echo > " + ready + "; cat"),
+                        tempDir, System.getenv(), blockedStdIn, OutputStream.nullOutputStream(),
+                        OutputStream.nullOutputStream()));
+            } catch (IOException e) {
+                blockedStatus.completeExceptionally(e);
+            }
+        });
+        while (!Files.exists(ready)) {
+            Thread.sleep(10);
+        }
+
+        run("pwd; echo \"[$GREETING]\"; greet");
+        blockedInput.close();
+
+        assertEquals(tempDir + "\n[]\ngreet: not found\n", out());
+        assertEquals(0, blockedStatus.get());
+    }
+
+    @Test
+    void backgroundJobsBelongToTheirSession() throws IOException {
+        int exitStatus = run("sh -c 'sleep 0.2; echo from job' & wait");
+
+        assertEquals(0, exitStatus);
+        assertTrue(out().contains("from job\n"));
+        assertTrue(JobSupervisor.getInstance().jobs().isEmpty());
+    }
+
+    @Test
+    void syntaxErrorIsReported() throws IOException {
+        assertEquals(2, run("echo a ;; echo b"));
+        assertEquals("", out());
+    }
+
+    @Test
+    void socketIsOnlyAccessibleToItsOwner() throws IOException {
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socket)));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(List.of(socket), files.toList());
+        }
+    }
+
+    @Test
+    void refusesSocketOfRunningDaemon() {
+        var second = new DaemonServer(socket, new SegmentedExecutor(CommandRegistry.getInstance()));
+
+        assertThrows(IOException.class, second::bind);
+    }
+
+    @Test
+    void connectWithoutDaemonReturnsNull() throws IOException {
+        try (var connection = DaemonClient.connect(socket)) {
+            assertNotNull(connection);
+        }
+        server.close();
+
+        assertNull(DaemonClient.connect(socket));
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.lowkkid.jsh.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.github.lowkkid.jsh.parser.InputParser;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ArgumentBatcherTest {
+
+    /** Every argument of these tests is 2 bytes plus its terminating zero and pointer. */
+    private static final long ARGUMENT_SIZE = 2 + 1 + 8;
+
+    @Test
+    void modeIsReadFromVariableValue() {
+        assertEquals(ArgumentBatcher.Mode.OFF, ArgumentBatcher.Mode.of(null));
+        assertEquals(ArgumentBatcher.Mode.OFF, ArgumentBatcher.Mode.of("off"));
+        assertEquals(ArgumentBatcher.Mode.SEQUENTIAL, ArgumentBatcher.Mode.of("on"));
+        assertEquals(ArgumentBatcher.Mode.PARALLEL, ArgumentBatcher.Mode.of("Parallel"));
+    }
+
+    @Test
+    void budgetExcludesEnvironment() {
+        long budget = ArgumentBatcher.budget(Map.of("AB", "ü"));
+
+        assertEquals(ArgumentBatcher.ARG_MAX - ArgumentBatcher.HEADROOM - (2 + 1 + 2 + 1 + 8), budget);
+    }
+
+    @Test
+    void limitCanBeSetThroughVariable() {
+        assertEquals(4096 - ArgumentBatcher.HEADROOM, ArgumentBatcher.budget(Map.of(), "4096"));
+        assertEquals(ArgumentBatcher.ARG_MAX - ArgumentBatcher.HEADROOM, ArgumentBatcher.budget(Map.of(), "lots"));
+        assertEquals(ArgumentBatcher.ARG_MAX - ArgumentBatcher.HEADROOM, ArgumentBatcher.budget(Map.of(), null));
+    }
+
+    @Test
+    void platformLimitIsAtLeastTheSmallestLinuxOne() {
+        assumeTrue(System.getProperty("os.name").startsWith("Linux"));
+
+        assertTrue(ArgumentBatcher.ARG_MAX >= 128 * 1024);
+        assertTrue(ArgumentBatcher.ARG_MAX <= 6 * 1024 * 1024);
+    }
+
+    @Test
+    void singleArgumentLongerThanTheStringLimitDoesNotFit() {
+        assumeTrue(ArgumentBatcher.MAX_ARG_STRLEN < Long.MAX_VALUE);
+        List<String> arguments = List.of("x".repeat((int) ArgumentBatcher.MAX_ARG_STRLEN));
+
+        assertFalse(ArgumentBatcher.fits("ab", arguments, Long.MAX_VALUE / 2));
+        assertThrows(IllegalArgumentException.class, () -> ArgumentBatcher.split("ab", arguments, Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    void fitsCountsCommandAndArguments() {
+        List<String> arguments = List.of("aa", "bb");
+
+        assertTrue(ArgumentBatcher.fits("ab", arguments, 3 * ARGUMENT_SIZE));
+        assertFalse(ArgumentBatcher.fits("ab", arguments, 3 * ARGUMENT_SIZE - 1));
+    }
+
+    @Test
+    void splitsIntoBatchesWithinBudget() {
+        List<String> arguments = new ArrayList<>();
+        for (int i = 10; i < 20; i++) {
+            arguments.add(String.valueOf(i));
+        }
+
+        List<List<String>> batches = ArgumentBatcher.split("ab", arguments, 4 * ARGUMENT_SIZE);
+
+        assertEquals(List.of(List.of("10", "11", "12"), List.of("13", "14", "15"), List.of("16", "17", "18"),
+                List.of("19")), batches);
+    }
+
+    @Test
+    void argumentsAroundExpansionsAreRepeatedInEveryBatch() {
+        List<String> arguments = InputParser.getInstance()
+                .getCommandAndArgs("cp -f {10..14} to").getFirst().arguments();
+
+        List<List<String>> batches = ArgumentBatcher.split("cp", arguments, 5 * ARGUMENT_SIZE);
+
+        assertEquals(List.of(List.of("-f", "10", "11", "to"), List.of("-f", "12", "13", "to"),
+                List.of("-f", "14", "to")), batches);
+    }
+
+    @Test
+    void literalWordsBetweenExpansionsAreRepeatedInEveryBatch() {
+        List<String> arguments = InputParser.getInstance()
+                .getCommandAndArgs("cmd {10..13} -o out {20,21}").getFirst().arguments();
+        long literals = ARGUMENT_SIZE + (3 + 1 + 8);
+
+        List<List<String>> batches = ArgumentBatcher.split("cmd", arguments,
+                (3 + 1 + 8) + literals + 2 * ARGUMENT_SIZE);
+
+        assertEquals(List.of(List.of("10", "11", "-o", "out"), List.of("12", "13", "-o", "out"),
+                List.of("-o", "out", "20", "21")), batches);
+    }
+
+    @Test
+    void argumentTooLongOnItsOwnIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ArgumentBatcher.split("ab", List.of("aa", "x".repeat(100), "bb"), 3 * ARGUMENT_SIZE));
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.lowkkid.jsh.executor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class BoundedPipeTest {
+
+    @Test
+    void transfersBytesInOrder() throws IOException {
+        var pipe = new BoundedPipe(16);
+
+        pipe.sink().write("hello".getBytes());
+        pipe.sink().close();
+
+        assertEquals("hello", new String(pipe.source().readAllBytes()));
+    }
+
+    @Test
+    void wrapsAroundRingBuffer() throws Exception {
+        var pipe = new BoundedPipe(7);
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        Thread writer = Thread.startVirtualThread(() -> {
+            try (OutputStream out = pipe.sink()) {
+                out.write(data);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        byte[] received = pipe.source().readAllBytes();
+        writer.join();
+
+        assertArrayEquals(data, received);
+    }
+
+    @Test
+    void endsAreByteChannels() throws Exception {
+        var pipe = new BoundedPipe(7);
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        Thread writer = Thread.startVirtualThread(() -> {
+            try (var channel = (WritableByteChannel) pipe.sink()) {
+                channel.write(ByteBuffer.wrap(data));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var channel = (ReadableByteChannel) pipe.source();
+        ByteBuffer received = ByteBuffer.allocateDirect(data.length + 1);
+        while (channel.read(received) != -1) {
+            // keep reading until EOF
+        }
+        writer.join();
+
+        received.flip();
+        byte[] bytes = new byte[received.remaining()];
+        received.get(bytes);
+        assertArrayEquals(data, bytes);
+    }
+
+    @Test
+    void writerBlocksWhileBufferIsFull() throws Exception {
+        var pipe = new BoundedPipe(8);
+        var written = new AtomicLong();
+
+        Thread writer = Thread.startVirtualThread(() -> {
+            try {
+                for (int i = 0; i < 4; i++) {
+                    pipe.sink().write(new byte[4]);
+                    written.addAndGet(4);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        writer.join(200);
+        assertTrue(writer.isAlive());
+        assertEquals(8, written.get());
+
+        pipe.source().readNBytes(8);
+        writer.join(1000);
+        assertEquals(16, written.get());
+    }
+
+    @Test
+    void closingSourceBreaksPipeForWriter() throws IOException {
+        var pipe = new BoundedPipe(8);
+        pipe.source().close();
+
+        assertThrows(BrokenPipeException.class, () -> pipe.sink().write(1));
+    }
+
+    @Test
+    void closingSourceUnblocksWaitingWriter() {
+        var pipe = new BoundedPipe(4);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            Thread closer = Thread.startVirtualThread(() -> {
+                try {
+                    Thread.sleep(50);
+                    pipe.source().close();
+                } catch (InterruptedException | IOException ignored) {
+                    // test ends anyway
+                }
+            });
+            byte[] big = new byte[1024];
+            Arrays.fill(big, (byte) 'x');
+
+            assertThrows(BrokenPipeException.class, () -> pipe.sink().write(big));
+            closer.join();
+        });
+    }
+
+    @Test
+    void readReturnsEofAfterSinkClosed() throws IOException {
+        var pipe = new BoundedPipe(8);
+        pipe.sink().write('a');
+        pipe.sink().close();
+
+        InputStream in = pipe.source();
+        assertEquals('a', in.read());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedPipe(0));
+    }
+}
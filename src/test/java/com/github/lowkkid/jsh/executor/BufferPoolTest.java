@@ -0,0 +1,52 @@
+package com.github.lowkkid.jsh.executor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class BufferPoolTest {
+
+    @Test
+    void acquiredBufferIsDirectAndCleared() {
+        ByteBuffer buffer = BufferPool.acquire();
+        buffer.put((byte) 1);
+        BufferPool.release(buffer);
+
+        ByteBuffer again = BufferPool.acquire();
+
+        assertTrue(again.isDirect());
+        assertEquals(0, again.position());
+        assertEquals(BoundedPipe.DEFAULT_CAPACITY, again.remaining());
+        BufferPool.release(again);
+    }
+
+    @Test
+    void transferIsBinarySafe() throws IOException {
+        // every byte value, including sequences that are not valid UTF-8
+        byte[] data = new byte[3 * BoundedPipe.DEFAULT_CAPACITY + 17];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        var out = new ByteArrayOutputStream();
+
+        long copied = BufferPool.transfer(new ByteArrayInputStream(data), out);
+
+        assertEquals(data.length, copied);
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test
+    void pipeEndsAreUsedAsChannels() {
+        var pipe = new BoundedPipe();
+
+        assertSame(pipe.source(), BufferPool.channel(pipe.source()));
+        assertSame(pipe.sink(), BufferPool.channel(pipe.sink()));
+    }
+}
@@ -0,0 +1,415 @@
+package com.github.lowkkid.jsh.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.lowkkid.jsh.Main;
+import com.github.lowkkid.jsh.command.utils.CommandRegistry;
+import com.github.lowkkid.jsh.config.env.EnvStorage;
+import com.github.lowkkid.jsh.executor.CommandExecutor.ExecutionResult;
+import com.github.lowkkid.jsh.parser.InputParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CommandListExecutorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CommandListExecutor executor;
+    private JobSupervisor supervisor;
+    private InputParser parser;
+    private ByteArrayOutputStream capturedOut;
+    private ByteArrayOutputStream capturedErr;
+    private PrintStream originalOut;
+    private PrintStream originalErr;
+    private Path originalCurrentDir;
+
+    @BeforeEach
+    void setUp() {
+        originalCurrentDir = Main.currentDir;
+        Main.currentDir = tempDir;
+
+        CommandRegistry registry = CommandRegistry.getInstance();
+        parser = new InputParser();
+        supervisor = new JobSupervisor(registry, new CommandListExecutor(new SegmentedExecutor(registry)));
+        executor = new CommandListExecutor(new SegmentedExecutor(registry), () -> supervisor);
+
+        capturedOut = new ByteArrayOutputStream();
+        capturedErr = new ByteArrayOutputStream();
+        originalOut = System.out;
+        originalErr = System.err;
+        System.setOut(new PrintStream(capturedOut));
+        System.setErr(new PrintStream(capturedErr));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Job job : List.copyOf(supervisor.jobs())) {
+            supervisor.signal(job, "KILL");
+        }
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+        Main.currentDir = originalCurrentDir;
+        EnvStorage.reset();
+    }
+
+    private ExecutionResult run(String input) {
+        return executor.execute(parser.parse(input));
+    }
+
+    private String output() throws IOException {
+        return Files.readString(tempDir.resolve("out.txt"));
+    }
+
+    @Nested
+    @DisplayName("Sequences")
+    class SequenceTests {
+
+        @Test
+        void runsCommandsInOrder() throws IOException {
+            run("echo a >> out.txt; echo b >> out.txt; echo c >> out.txt");
+
+            assertEquals("a\nb\nc\n", output());
+        }
+
+        @Test
+        void resultIsLastCommand() {
+            var result = run("false; true");
+
+            assertEquals(0, result.exitStatus());
+        }
+
+        @Test
+        void exitStopsSequence() throws IOException {
+            var result = run("echo a >> out.txt; exit; echo b >> out.txt");
+
+            assertTrue(result.shouldBreak());
+            assertEquals("a\n", output());
+        }
+
+        @Test
+        void blankInputKeepsLastStatus() {
+            run("false");
+
+            assertEquals(1, run("   ").exitStatus());
+        }
+
+        @Test
+        void variablesAreExpandedWhenCommandRuns() throws IOException {
+            run("set GREETING=hi; echo $GREETING >> out.txt");
+
+            assertEquals("hi\n", output());
+        }
+
+        @Test
+        void statusVariable() throws IOException {
+            run("false; echo $? >> out.txt; echo $? >> out.txt");
+
+            assertEquals("1\n0\n", output());
+        }
+    }
+
+    @Nested
+    @DisplayName("&& and ||")
+    class ConditionalTests {
+
+        @Test
+        void andRunsOnSuccess() throws IOException {
+            run("true && echo yes > out.txt");
+
+            assertEquals("yes\n", output());
+        }
+
+        @Test
+        void andSkipsOnFailure() {
+            var result = run("false && echo yes > out.txt");
+
+            assertFalse(Files.exists(tempDir.resolve("out.txt")));
+            assertEquals(1, result.exitStatus());
+        }
+
+        @Test
+        void orRunsOnFailure() throws IOException {
+            run("false || echo fallback > out.txt");
+
+            assertEquals("fallback\n", output());
+        }
+
+        @Test
+        void orSkipsOnSuccess() {
+            run("true || echo fallback > out.txt");
+
+            assertFalse(Files.exists(tempDir.resolve("out.txt")));
+        }
+
+        @Test
+        void chainContinuesAfterSkippedCommand() throws IOException {
+            run("false && echo a >> out.txt || echo b >> out.txt");
+
+            assertEquals("b\n", output());
+        }
+
+        @Test
+        void notFoundIsFailure() throws IOException {
+            var result = run("nonexistent_cmd_xyz_98765 || echo $? > out.txt");
+
+            assertEquals("127\n", output());
+            assertEquals(0, result.exitStatus());
+        }
+
+        @Test
+        void failingBuiltInIsFailure() throws IOException {
+            run("cd does_not_exist || echo failed > out.txt");
+
+            assertEquals("failed\n", output());
+        }
+
+        @Test
+        void pipelineStatusIsLastCommand() throws IOException {
+            run("false | true && echo ok > out.txt");
+
+            assertEquals("ok\n", output());
+        }
+
+        @Test
+        void sameBuiltInRunsInSeveralSegments() throws IOException {
+            run("echo a | echo b | cat > out.txt");
+
+            assertEquals("b\n", output());
+        }
+    }
+
+    @Nested
+    @DisplayName("Groups")
+    class GroupTests {
+
+        @Test
+        void braceGroupRunsInCurrentShell() {
+            tempDir.resolve("sub").toFile().mkdir();
+
+            run("{ cd sub; set X=1; }");
+
+            assertEquals(tempDir.resolve("sub"), Main.currentDir);
+            assertEquals("1", EnvStorage.get("X"));
+        }
+
+        @Test
+        void subshellRestoresDirectoryAndVariables() throws IOException {
+            tempDir.resolve("sub").toFile().mkdir();
+
+            run("(cd sub; set X=1; pwd > inner.txt)");
+
+            assertEquals(tempDir, Main.currentDir);
+            assertNull(EnvStorage.get("X"));
+            assertEquals(tempDir.resolve("sub").toString(), Files.readString(tempDir.resolve("sub/inner.txt")).trim());
+        }
+
+        @Test
+        void exitOnlyLeavesSubshell() throws IOException {
+            var result = run("(exit); echo after > out.txt");
+
+            assertFalse(result.shouldBreak());
+            assertEquals("after\n", output());
+        }
+
+        @Test
+        void groupAsCondition() throws IOException {
+            run("{ false; } || echo fallback > out.txt");
+
+            assertEquals("fallback\n", output());
+        }
+
+        @Test
+        void groupFeedsPipeline() throws IOException {
+            var result = run("{ echo a; echo b; } | cat > out.txt");
+
+            assertEquals(0, result.exitStatus());
+            assertEquals("a\nb\n", output());
+        }
+
+        @Test
+        void subshellInPipelineKeepsItsDirectory() throws IOException {
+            tempDir.resolve("sub").toFile().mkdir();
+
+            run("(cd sub && pwd) | cat > out.txt");
+
+            assertEquals(tempDir.resolve("sub") + "\n", output());
+            assertEquals(tempDir, Main.currentDir);
+        }
+
+        @Test
+        void groupInPipelineReadsItsInputAndRunsInASubshell() throws IOException {
+            run("echo hi | { cat; set X=1; echo done; } | cat > out.txt");
+
+            assertEquals("hi\ndone\n", output());
+            assertNull(EnvStorage.get("X"));
+        }
+
+        @Test
+        void lastGroupGivesThePipelineItsExitStatus() {
+            assertEquals(3, run("echo a | (exit 3)").exitStatus());
+        }
+    }
+
+    @Nested
+    @DisplayName("Background")
+    class BackgroundTests {
+
+        @Test
+        void launchesJobAndContinues() throws IOException {
+            var result = run("sleep 10 & echo next > out.txt");
+
+            assertEquals(1, supervisor.jobs().size());
+            assertEquals("sleep 10", supervisor.jobs().iterator().next().commandLine());
+            assertEquals("next\n", output());
+            assertEquals(0, result.exitStatus());
+        }
+
+        @Test
+        void commandListRunsAsOneJob() throws Exception {
+            run("true && echo done > out.txt &");
+
+            Job job = supervisor.find("%1").orElseThrow();
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> job.completion().get());
+            assertEquals("done\n", output());
+            assertTrue(capturedOut.toString().startsWith("[1]"));
+        }
+
+        @Test
+        void jobChangesOnlyItsOwnDirectoryAndVariables() {
+            tempDir.resolve("sub").toFile().mkdir();
+
+            run("cd sub & export X=1 &");
+
+            for (Job job : List.copyOf(supervisor.jobs())) {
+                assertTimeoutPreemptively(Duration.ofSeconds(10), () -> job.completion().get());
+            }
+            assertEquals(tempDir, Main.currentDir);
+            assertNull(EnvStorage.get("X"));
+        }
+
+        @Test
+        void subshellJobKeepsChangesOfTheForeground() throws IOException {
+            tempDir.resolve("sub").toFile().mkdir();
+            tempDir.resolve("other").toFile().mkdir();
+
+            run("(cd sub; sleep 0.3; pwd > inner.txt) &");
+            run("export FOO=1; cd other");
+            Job job = supervisor.find("%1").orElseThrow();
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> job.completion().get());
+
+            assertEquals("1", EnvStorage.get("FOO"));
+            assertEquals(tempDir.resolve("other"), Main.currentDir);
+            assertEquals(tempDir.resolve("sub").toString(), Files.readString(tempDir.resolve("sub/inner.txt")).trim());
+        }
+    }
+
+    @Nested
+    @DisplayName("Assignments")
+    class AssignmentTests {
+
+        @Test
+        void prefixAssignmentOnlyReachesThatCommand() throws IOException {
+            run("FOO=bar sh -c 'echo $FOO' > out.txt; echo \"[$FOO]\" >> out.txt");
+
+            assertEquals("bar\n[]\n", output());
+            assertNull(EnvStorage.get("FOO"));
+        }
+
+        @Test
+        void prefixAssignmentOverridesExportedVariable() throws IOException {
+            run("export FOO=outer; FOO=inner printenv FOO > out.txt; printenv FOO >> out.txt");
+
+            assertEquals("inner\nouter\n", output());
+        }
+
+        @Test
+        void eachPipelineStageHasItsOwnAssignments() throws IOException {
+            run("A=1 sh -c 'echo $A$B' | B=2 sh -c 'cat; echo $A$B' > out.txt");
+
+            assertEquals("1\n2\n", output());
+        }
+
+        @Test
+        void assignmentsAloneSetShellVariables() {
+            run("FOO=bar BAZ=\"a b\"");
+
+            assertEquals("bar", EnvStorage.get("FOO"));
+            assertEquals("a b", EnvStorage.get("BAZ"));
+            assertFalse(EnvStorage.getExportedVars().containsKey("FOO"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Command substitution")
+    class CommandSubstitutionTests {
+
+        @Test
+        void builtInOutputBecomesArguments() {
+            run("set A='x  y'; echo -$(pwd)- -$(echo $A)- -\"$(echo \"$A\")\"-");
+
+            assertEquals("-" + tempDir + "- -x y- -x  y-\n", capturedOut.toString());
+        }
+
+        @Test
+        void externalOutputWithoutTrailingNewlines() throws IOException {
+            run("env echo $(printf 'a\\nb\\n\\n')! > out.txt");
+
+            assertEquals("a b!\n", output());
+        }
+
+        @Test
+        void runsInASubshell() throws IOException {
+            Files.createDirectory(tempDir.resolve("sub"));
+
+            run("echo $(cd sub; set X=1; pwd) -$X-; pwd");
+
+            assertEquals(tempDir.resolve("sub") + " --\n" + tempDir + "\n", capturedOut.toString());
+        }
+
+        @Test
+        void assignmentFailsWithTheCommand() {
+            run("A=$(sh -c 'echo out; exit 3') || echo $? $A");
+
+            assertEquals("3 out\n", capturedOut.toString());
+        }
+
+        @Test
+        void setWrittenOutSucceedsOnItsOwn() {
+            run("set A=$(sh -c 'echo out; exit 3') && echo $? $A");
+
+            assertEquals("0 out\n", capturedOut.toString());
+        }
+
+        @Test
+        void outputBeyondLimitIsTruncated() {
+            run("set JSH_SUBSTITUTION_LIMIT=4; echo -$(echo 123456789)-");
+
+            assertEquals("-1234-\n", capturedOut.toString());
+            assertTrue(capturedErr.toString().contains("truncated to 4 bytes"));
+        }
+
+        @Test
+        void endlessOutputStopsAtLimit() {
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                    run("set JSH_SUBSTITUTION_LIMIT=100; echo $(yes) > out.txt"));
+
+            assertTrue(capturedErr.toString().contains("truncated to 100 bytes"));
+        }
+    }
+}
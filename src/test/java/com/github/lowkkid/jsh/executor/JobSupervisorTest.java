@@ -0,0 +1,232 @@
+package com.github.lowkkid.jsh.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.lowkkid.jsh.Main;
+import com.github.lowkkid.jsh.command.utils.CommandRegistry;
+import com.github.lowkkid.jsh.parser.InputParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JobSupervisorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path tempDir;
+
+    private JobSupervisor supervisor;
+    private InputParser parser;
+    private Path originalCurrentDir;
+
+    @BeforeEach
+    void setUp() {
+        originalCurrentDir = Main.currentDir;
+        Main.currentDir = tempDir;
+        parser = new InputParser();
+        CommandRegistry registry = CommandRegistry.getInstance();
+        supervisor = new JobSupervisor(registry, new CommandListExecutor(new SegmentedExecutor(registry)));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Job job : List.copyOf(supervisor.jobs())) {
+            supervisor.signal(job, "KILL");
+        }
+        Main.currentDir = originalCurrentDir;
+    }
+
+    private Job launch(String commandLine) throws IOException {
+        return supervisor.launch(commandLine, parser.parse(commandLine));
+    }
+
+    @Nested
+    @DisplayName("launch()")
+    class LaunchTests {
+
+        @Test
+        void externalJobIsBackedByProcesses() throws IOException {
+            Job job = launch("sleep 10");
+
+            assertEquals(1, job.id());
+            assertEquals(1, job.processes().size());
+            assertTrue(job.processes().getFirst().isAlive());
+            assertEquals(Job.State.RUNNING, job.state());
+        }
+
+        @Test
+        void pipelineStartsOneProcessPerCommand() throws IOException {
+            Job job = launch("sleep 10 | cat");
+
+            assertEquals(2, job.processes().size());
+        }
+
+        @Test
+        void jobNumbersIncrease() throws IOException {
+            Job first = launch("sleep 10");
+            Job second = launch("sleep 10");
+
+            assertEquals(first.id() + 1, second.id());
+        }
+
+        @Test
+        void unknownCommandFailsToLaunch() {
+            IOException e = assertThrows(IOException.class, () -> launch("nonexistent_cmd_xyz_98765"));
+
+            assertEquals("nonexistent_cmd_xyz_98765: not found", e.getMessage());
+            assertTrue(supervisor.jobs().isEmpty());
+        }
+
+        @Test
+        void builtInJobRunsOnThread() throws Exception {
+            Job job = launch("echo hello > out.txt");
+
+            assertTrue(job.processes().isEmpty());
+            assertEquals(0, job.completion().get());
+            assertEquals("hello", Files.readString(tempDir.resolve("out.txt")).trim());
+        }
+
+        @Test
+        void externalJobRedirectsOutput() throws Exception {
+            Job job = launch("printf abc > out.txt");
+
+            assertEquals(0, job.completion().get());
+            assertEquals("abc", Files.readString(tempDir.resolve("out.txt")));
+        }
+
+        @Test
+        void reportsExitStatusOfLastCommand() throws Exception {
+            Job job = launch("true | false");
+
+            assertEquals(1, job.completion().get());
+        }
+    }
+
+    @Nested
+    @DisplayName("find()")
+    class FindTests {
+
+        @Test
+        void findsByNumberPrefixAndMarker() throws IOException {
+            Job sleep = launch("sleep 10");
+            Job tail = launch("tail -f /dev/null");
+
+            assertSame(sleep, supervisor.find("%1").orElseThrow());
+            assertSame(sleep, supervisor.find("%sle").orElseThrow());
+            assertSame(tail, supervisor.find("%%").orElseThrow());
+            assertSame(tail, supervisor.find("%+").orElseThrow());
+            assertSame(sleep, supervisor.find("%-").orElseThrow());
+        }
+
+        @Test
+        void unknownSpecIsEmpty() throws IOException {
+            launch("sleep 10");
+
+            assertTrue(supervisor.find("%7").isEmpty());
+            assertTrue(supervisor.find("%xyz").isEmpty());
+            assertTrue(supervisor.find("1").isEmpty());
+        }
+
+        @Test
+        void markers() throws IOException {
+            Job first = launch("sleep 10");
+            Job second = launch("sleep 10");
+            Job third = launch("sleep 10");
+
+            assertEquals(' ', supervisor.marker(first));
+            assertEquals('-', supervisor.marker(second));
+            assertEquals('+', supervisor.marker(third));
+        }
+    }
+
+    @Nested
+    @DisplayName("Completion")
+    class CompletionTests {
+
+        @Test
+        void describesRunningJob() throws IOException {
+            Job job = launch("sleep 10");
+
+            assertEquals("[1]+  Running                 sleep 10 &", supervisor.describe(job));
+        }
+
+        @Test
+        void finishedJobIsReportedOnce() throws Exception {
+            Job job = launch("true");
+            job.completion().get();
+
+            assertTimeoutPreemptively(TIMEOUT, () -> {
+                while (job.state() != Job.State.DONE) {
+                    Thread.onSpinWait();
+                }
+            });
+            assertEquals(List.of("[1]+  Done                    true"), supervisor.drainFinished());
+            assertTrue(supervisor.drainFinished().isEmpty());
+            assertTrue(supervisor.jobs().isEmpty());
+        }
+
+        @Test
+        void failedJobShowsExitStatus() throws Exception {
+            Job job = launch("false");
+            supervisor.waitFor(job);
+
+            assertEquals("Exit 1", job.statusLabel());
+        }
+
+        @Test
+        void waitForReturnsStatusAndForgetsJob() throws Exception {
+            Job job = launch("sh -c 'exit 3'");
+
+            assertEquals(3, supervisor.waitFor(job));
+            assertTrue(supervisor.jobs().isEmpty());
+            assertTrue(supervisor.drainFinished().isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("signal()")
+    class SignalTests {
+
+        @Test
+        void terminatesJob() throws Exception {
+            Job job = launch("sleep 10");
+
+            assertTrue(supervisor.signal(job, "TERM"));
+
+            assertTimeoutPreemptively(TIMEOUT, () -> job.completion().get());
+            assertFalse(job.processes().getFirst().isAlive());
+        }
+
+        @Test
+        void stopAndContinueUpdateState() throws Exception {
+            Job job = launch("sleep 10");
+
+            supervisor.signal(job, "SIGSTOP");
+            assertEquals(Job.State.STOPPED, job.state());
+
+            supervisor.signal(job, "CONT");
+            assertEquals(Job.State.RUNNING, job.state());
+        }
+
+        @Test
+        void builtInJobCannotBeSignalled() throws Exception {
+            Job job = launch("echo hello > out.txt");
+
+            assertFalse(supervisor.signal(job, "TERM"));
+        }
+    }
+}
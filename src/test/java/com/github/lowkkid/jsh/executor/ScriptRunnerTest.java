@@ -0,0 +1,146 @@
+package com.github.lowkkid.jsh.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.lowkkid.jsh.Main;
+import com.github.lowkkid.jsh.command.utils.CommandRegistry;
+import com.github.lowkkid.jsh.config.env.AliasStorage;
+import com.github.lowkkid.jsh.config.env.EnvStorage;
+import com.github.lowkkid.jsh.parser.InputParser;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScriptRunnerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ByteArrayOutputStream stdOut = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream stdErr = new ByteArrayOutputStream();
+    private ScriptRunner runner;
+    private Path originalCurrentDir;
+
+    @BeforeEach
+    void setUp() {
+        originalCurrentDir = Main.currentDir;
+        Main.currentDir = tempDir;
+        runner = runnerWithInput(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Main.currentDir = originalCurrentDir;
+        EnvStorage.reset();
+        AliasStorage.reset();
+    }
+
+    private ScriptRunner runnerWithInput(InputStream stdIn) {
+        var err = new PrintStream(stdErr, true, StandardCharsets.UTF_8);
+        var executor = new CommandListExecutor(new SegmentedExecutor(CommandRegistry.getInstance()),
+                JobSupervisor::getInstance, stdIn, new PrintStream(stdOut, true, StandardCharsets.UTF_8), err);
+        return new ScriptRunner(new InputParser(), executor, err);
+    }
+
+    private int script(String text) throws IOException {
+        return runner.runScript(new BufferedReader(new StringReader(text)));
+    }
+
+    private String out() {
+        return stdOut.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void runsCommandOption() throws IOException {
+        int exitStatus = runner.run(List.of("-c", "echo hello; false"), InputStream.nullInputStream(), tempDir);
+
+        assertEquals(1, exitStatus);
+        assertEquals("hello\n", out());
+    }
+
+    @Test
+    void commandOptionRequiresArgument() throws IOException {
+        assertEquals(CommandListExecutor.MISUSE, runner.run(List.of("-c"), InputStream.nullInputStream(), tempDir));
+        assertTrue(stdErr.toString(StandardCharsets.UTF_8).contains("requires an argument"));
+    }
+
+    @Test
+    void runsScriptFileRelativeToWorkingDirectory() throws IOException {
+        Files.writeString(tempDir.resolve("script.jsh"), "# greeting\necho one\necho two\n");
+
+        assertEquals(0, runner.run(List.of("script.jsh"), InputStream.nullInputStream(), tempDir));
+        assertEquals("one\ntwo\n", out());
+    }
+
+    @Test
+    void missingScriptIsNotFound() throws IOException {
+        int exitStatus = runner.run(List.of("missing.jsh"), InputStream.nullInputStream(), tempDir);
+
+        assertEquals(SegmentedExecutor.COMMAND_NOT_FOUND, exitStatus);
+        assertTrue(stdErr.toString(StandardCharsets.UTF_8).contains("missing.jsh: No such file or directory"));
+    }
+
+    @Test
+    void runsStdinWithoutArguments() throws IOException {
+        var stdIn = new ByteArrayInputStream("echo from stdin\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(0, runner.run(List.of(), stdIn, tempDir));
+        assertEquals("from stdin\n", out());
+    }
+
+    @Test
+    void aliasDefinedByLineAppliesToNextLines() throws IOException {
+        script("alias greet='echo hi'\ngreet\n");
+
+        assertEquals("hi\n", out());
+    }
+
+    @Test
+    void unfinishedCommandContinuesOnNextLine() throws IOException {
+        script("echo a |\ncat\n( echo b\necho c )\n");
+
+        assertEquals("a\nb\nc\n", out());
+    }
+
+    @Test
+    void syntaxErrorStopsScript() throws IOException {
+        int exitStatus = script("echo a\necho b ;; echo c\necho d\n");
+
+        assertEquals(CommandListExecutor.MISUSE, exitStatus);
+        assertEquals("a\n", out());
+    }
+
+    @Test
+    void unfinishedCommandAtEndIsSyntaxError() throws IOException {
+        assertEquals(CommandListExecutor.MISUSE, script("echo a |\n"));
+    }
+
+    @Test
+    void exitStopsScript() throws IOException {
+        script("echo a\nexit\necho b\n");
+
+        assertEquals("a\n", out());
+    }
+
+    @Test
+    void firstCommandReadsInputOfExecutor() throws IOException {
+        runner = runnerWithInput(new ByteArrayInputStream("piped\n".getBytes(StandardCharsets.UTF_8)));
+
+        runner.runCommand("cat | tr a-z A-Z");
+
+        assertEquals("PIPED\n", out());
+    }
+}
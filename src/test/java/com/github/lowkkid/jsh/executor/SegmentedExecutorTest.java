@@ -4,10 +4,14 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.github.lowkkid.jsh.Main;
+import com.github.lowkkid.jsh.command.Command;
+import com.github.lowkkid.jsh.command.ExecutionContext;
 import com.github.lowkkid.jsh.command.utils.CommandRegistry;
+import com.github.lowkkid.jsh.config.env.EnvStorage;
 import com.github.lowkkid.jsh.executor.PipelineSegment.BuiltInSegment;
 import com.github.lowkkid.jsh.executor.PipelineSegment.ExternalSegment;
 import com.github.lowkkid.jsh.parser.CommandAndArgs;
@@ -15,9 +19,13 @@ import com.github.lowkkid.jsh.parser.InputParser;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -134,6 +142,95 @@ class SegmentedExecutorTest {
         }
     }
 
+    @Nested
+    @DisplayName("external command redirects")
+    class ExternalRedirectTests {
+
+        @Test
+        void stdoutRewritesFile() throws IOException {
+            Path outFile = tempDir.resolve("out.txt");
+            Files.writeString(outFile, "old content\n");
+
+            executor.executeSingle(parse("printf hello > out.txt").getFirst());
+
+            assertEquals("hello", Files.readString(outFile));
+        }
+
+        @Test
+        void stdoutAppendsToFile() throws IOException {
+            Path outFile = tempDir.resolve("out.txt");
+            Files.writeString(outFile, "first ");
+
+            executor.executeSingle(parse("printf second >> out.txt").getFirst());
+
+            assertEquals("first second", Files.readString(outFile));
+        }
+
+        @Test
+        void stderrGoesToFile() throws IOException {
+            executor.executeSingle(parse("ls nonexistent_xyz_file 2> err.txt").getFirst());
+
+            assertTrue(Files.readString(tempDir.resolve("err.txt")).contains("nonexistent_xyz_file"));
+        }
+
+        @Test
+        void createsMissingParentDirectories() throws IOException {
+            executor.executeSingle(parse("printf hello > nested/dir/out.txt").getFirst());
+
+            assertEquals("hello", Files.readString(tempDir.resolve("nested/dir/out.txt")));
+        }
+
+        @Test
+        void devNullDiscardsOutput() {
+            executor.executeSingle(parse("printf hello > /dev/null").getFirst());
+
+            assertTrue(stdout().isEmpty());
+            assertFalse(Files.exists(tempDir.resolve("dev/null")));
+        }
+
+        @Test
+        void largeOutputIsWrittenCompletely() throws IOException {
+            executor.executeSingle(parse("head -c 5000000 /dev/zero > big.bin").getFirst());
+
+            assertEquals(5_000_000L, Files.size(tempDir.resolve("big.bin")));
+        }
+
+        @Test
+        void lastCommandOfPipelineRedirectsToFile() throws IOException {
+            executor.executePipeline(parse("printf hello | cat > out.txt"));
+
+            assertEquals("hello", Files.readString(tempDir.resolve("out.txt")));
+        }
+
+        @Test
+        void builtInToRedirectedExternal() throws IOException {
+            executor.executePipeline(parse("echo hello | cat >> out.txt"));
+
+            assertEquals("hello\n", Files.readString(tempDir.resolve("out.txt")));
+        }
+
+        @Test
+        void redirectedExternalReadsAllInputOfBuiltIn() throws Exception {
+            // the built-in starts writing only after the process is running, as a slow producer does
+            var pipe = new BoundedPipe();
+            Thread producer = Thread.startVirtualThread(() -> {
+                try (var out = new PrintStream(pipe.sink(), true, StandardCharsets.UTF_8)) {
+                    Thread.sleep(200);
+                    var echo = CommandRegistry.getInstance().getExecutableCommand("echo").orElseThrow();
+                    echo.execute(ExecutionContext.ofShell().withStdOut(out), List.of("c\nb\na"));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            executor.executeSingle(ExecutionContext.ofShell().withStdIn(pipe.source()),
+                    parse("sort > sorted.txt").getFirst());
+            producer.join();
+
+            assertEquals("a\nb\nc\n", Files.readString(tempDir.resolve("sorted.txt")));
+        }
+    }
+
     @Nested
     @DisplayName("executePipeline")
     class ExecutePipelineTests {
@@ -160,6 +257,34 @@ class SegmentedExecutorTest {
             assertFalse(result.shouldBreak());
         }
 
+        @Test
+        void failingSegmentBecomesExitStatus() {
+            Command failing = new Command() {
+                @Override
+                public int execute(ExecutionContext context, List<String> args) {
+                    throw new UncheckedIOException(new IOException("Broken pipe"));
+                }
+
+                @Override
+                protected int executeWithException(ExecutionContext context, List<String> args) {
+                    return 0;
+                }
+            };
+            var failingExecutor = new SegmentedExecutor(CommandRegistry.getInstance()) {
+                @Override
+                protected List<PipelineSegment> splitIntoSegments(ExecutionContext context,
+                                                                  List<CommandAndArgs> commandsAndArgs) {
+                    return List.of(new BuiltInSegment(failing, List.of(), Map.of()),
+                            new BuiltInSegment(failing, List.of(), Map.of()));
+                }
+            };
+
+            var result = failingExecutor.executePipeline(parse("echo a | echo b"));
+
+            assertEquals(1, result.exitStatus());
+            assertTrue(stderr().contains("Pipeline error: java.io.IOException: Broken pipe"));
+        }
+
         @Test
         void multipleExternalsInOneSegment() {
             // printf | grep | pwd → ExternalSegment([printf, grep]), BuiltInSegment(pwd)
@@ -257,6 +382,70 @@ class SegmentedExecutorTest {
                     || stderr().contains("No such file"));
         }
 
+        @Test
+        void largeStderrDoesNotBlockStage() throws IOException {
+            // far more than an OS pipe buffer of stderr, written before any stdout
+            Files.writeString(tempDir.resolve("big.txt"), "x".repeat(1_000_000));
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> executor.executePipeline(parse("sh -c 'cat big.txt >&2; echo done' | cat > out.txt")));
+
+            assertEquals("done\n", Files.readString(tempDir.resolve("out.txt")));
+            assertEquals(1_000_000, stderr().length());
+        }
+
+        @Test
+        void argumentsBeyondArgMaxRunInBatches() throws IOException {
+            EnvStorage.putShell(ArgumentBatcher.BATCH_VARIABLE, "on");
+            try {
+                executor.executePipeline(parse("env echo {1..400000} | wc -w > words.txt"));
+            } finally {
+                EnvStorage.delete(ArgumentBatcher.BATCH_VARIABLE);
+            }
+
+            assertEquals("400000", Files.readString(tempDir.resolve("words.txt")).strip());
+        }
+
+        @Test
+        void stderrLinesArePrefixedWithStage() {
+            EnvStorage.putShell(SegmentedExecutor.STDERR_PREFIX_VARIABLE, "true");
+            try {
+                executor.executePipeline(parse("cat missing_a_xyz | echo x | cat missing_b_xyz"));
+            } finally {
+                EnvStorage.delete(SegmentedExecutor.STDERR_PREFIX_VARIABLE);
+            }
+
+            List<String> lines = stderr().lines().toList();
+            assertTrue(lines.stream().anyMatch(line -> line.startsWith("[stage 1] ") && line.contains("missing_a_xyz")));
+            assertTrue(lines.stream().anyMatch(line -> line.startsWith("[stage 3] ") && line.contains("missing_b_xyz")));
+        }
+
+        @Test
+        void sameBuiltInTwiceInPipeline() {
+            var result = executor.executePipeline(parse("echo first | echo second"));
+
+            assertFalse(result.shouldBreak());
+            assertEquals("second", stdout().trim());
+        }
+
+        @Test
+        void infiniteProducerStopsWhenConsumerFinishes() {
+            // yes never ends on its own; it must be stopped once echo closes its input
+            assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> executor.executePipeline(parse("yes | echo done")));
+
+            assertEquals("done", stdout().trim());
+        }
+
+        @Test
+        void producerStopsWhenLastExternalConsumerExits() {
+            // head inherits the real stdout, so only termination can be asserted here
+            var result = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> executor.executePipeline(parse("yes | echo done | head -n 1")));
+
+            assertFalse(result.shouldBreak());
+        }
+
         @Test
         void pipelineWithFileInput() throws IOException {
             Path inputFile = tempDir.resolve("input.txt");
@@ -0,0 +1,68 @@
+package com.github.lowkkid.jsh.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(10)
+class SharedInputTest {
+
+    private BoundedPipe pipe;
+    private SharedInput input;
+
+    @BeforeEach
+    void setUp() {
+        pipe = new BoundedPipe();
+        input = new SharedInput(pipe.source());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        input.release();
+    }
+
+    private String run(String... command) throws Exception {
+        var builder = new ProcessBuilder(command);
+        try (var connection = input.connect(builder)) {
+            Process process = builder.start();
+            connection.start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            process.waitFor();
+            return output;
+        }
+    }
+
+    @Test
+    void processThatReadsNothingLeavesTheInput() throws Exception {
+        pipe.sink().write("hello\n".getBytes(StandardCharsets.UTF_8));
+        pipe.sink().close();
+
+        run("true");
+
+        assertEquals("hello\n", new String(input.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void processReadsUntilTheEndOfTheInput() throws Exception {
+        pipe.sink().write("hello\n".getBytes(StandardCharsets.UTF_8));
+        pipe.sink().close();
+
+        assertEquals("hello\n", run("cat"));
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    void nextProcessGetsWhatTheFirstLeft() throws Exception {
+        pipe.sink().write("hello\n".getBytes(StandardCharsets.UTF_8));
+        pipe.sink().close();
+
+        run("sleep", "0.1");
+
+        assertEquals("hello\n", run("cat"));
+    }
+}
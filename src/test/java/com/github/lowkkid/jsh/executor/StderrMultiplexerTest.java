@@ -0,0 +1,77 @@
+package com.github.lowkkid.jsh.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class StderrMultiplexerTest {
+
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private final PrintStream target = new PrintStream(captured, false, StandardCharsets.UTF_8);
+
+    private static ByteArrayInputStream lines(String prefix, int count) {
+        var sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(prefix).append(i).append('\n');
+        }
+        return new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> output() {
+        return captured.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    @Test
+    void forwardsEveryLineIntact() throws InterruptedException {
+        var multiplexer = new StderrMultiplexer(target, false);
+
+        multiplexer.drain(1, lines("first-", 5000));
+        multiplexer.drain(2, lines("second-", 5000));
+        multiplexer.awaitAll();
+
+        List<String> output = output();
+        assertEquals(10_000, output.size());
+        assertTrue(output.stream().allMatch(line -> line.matches("(first|second)-\\d+")));
+    }
+
+    @Test
+    void keepsOrderWithinStage() throws InterruptedException {
+        var multiplexer = new StderrMultiplexer(target, false);
+
+        multiplexer.drain(1, lines("a", 1000));
+        multiplexer.drain(2, lines("b", 1000));
+        multiplexer.awaitAll();
+
+        List<String> fromFirst = output().stream().filter(line -> line.startsWith("a")).toList();
+        for (int i = 0; i < fromFirst.size(); i++) {
+            assertEquals("a" + i, fromFirst.get(i));
+        }
+    }
+
+    @Test
+    void prefixesLinesWithStage() throws InterruptedException {
+        var multiplexer = new StderrMultiplexer(target, true);
+
+        multiplexer.drain(3, new ByteArrayInputStream("oops\nno newline".getBytes(StandardCharsets.UTF_8)));
+        multiplexer.awaitAll();
+
+        assertEquals(List.of("[stage 3] oops", "[stage 3] no newline"), output());
+    }
+
+    @Test
+    void splitsOverlongLinesWithoutRepeatingPrefix() throws InterruptedException {
+        var multiplexer = new StderrMultiplexer(target, true);
+        String longLine = "x".repeat(50_000);
+
+        multiplexer.drain(1, new ByteArrayInputStream((longLine + "\n").getBytes(StandardCharsets.UTF_8)));
+        multiplexer.awaitAll();
+
+        assertEquals(List.of("[stage 1] " + longLine), output());
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.lowkkid.jsh.history;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExecutionLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private Path project;
+    private ExecutionLog executions;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = tempDir.resolve("history");
+        project = Files.createDirectories(tempDir.resolve("project"));
+        executions = ExecutionLog.open(file);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        executions.close();
+    }
+
+    private void record(int index, long millis, int status, Path dir) throws IOException {
+        executions.record(index, Instant.ofEpochMilli(1000L * index), Duration.ofMillis(millis), status, dir);
+    }
+
+    @Test
+    void recordIsReadBack() throws IOException {
+        record(0, 1500, 2, project);
+
+        var execution = executions.execution(0);
+        assertEquals(Instant.ofEpochMilli(0), execution.started());
+        assertEquals(Duration.ofMillis(1500), execution.duration());
+        assertEquals(2, execution.status());
+        assertEquals(project.toAbsolutePath(), execution.directory());
+    }
+
+    @Test
+    void statusIsStoredAsAnUnsignedByte() throws IOException {
+        record(0, 10, 255, project);
+
+        assertEquals(255, executions.execution(0).status());
+    }
+
+    @Test
+    void entriesWithoutRecordAreSkipped() throws IOException {
+        record(3, 10, 0, project);
+
+        assertEquals(4, executions.size());
+        assertNull(executions.execution(1));
+        assertEquals(1, executions.slowest(10, 0).size());
+    }
+
+    @Test
+    void recordsSurviveReopening() throws IOException {
+        record(0, 10, 0, project);
+        record(1, 20, 1, tempDir);
+        executions.close();
+
+        executions = ExecutionLog.open(file);
+
+        assertEquals(2, executions.size());
+        assertEquals(tempDir.toAbsolutePath(), executions.execution(1).directory());
+        assertEquals(1000L, executions.lastStarted());
+    }
+
+    @Test
+    void slowestScansAllSlices() throws IOException {
+        int count = 2 * ExecutionLog.SLICE_SIZE + 100;
+        for (int i = 0; i < count; i++) {
+            record(i, i % 1000, 0, project);
+        }
+        record(7, 50_000, 0, project);
+        record(count - 1, 40_000, 0, project);
+
+        List<Integer> slowest = executions.slowest(3, 0).stream().map(ExecutionLog.Execution::index).toList();
+
+        // ties are broken in favor of the most recent entry
+        int lastWith999 = (count - 1) / 1000 * 1000 - 1;
+        assertEquals(List.of(7, count - 1, lastWith999), slowest);
+    }
+
+    @Test
+    void runInMatchesDirectoryAndSubdirectories() throws IOException {
+        Path sub = Files.createDirectories(project.resolve("src"));
+        record(0, 1, 0, project);
+        record(1, 1, 0, tempDir);
+        record(2, 1, 0, sub);
+
+        assertArrayEquals(new int[] {0, 2}, executions.runIn(project, 0));
+        assertArrayEquals(new int[] {2}, executions.runIn(project, 1));
+        assertArrayEquals(new int[0], executions.runIn(tempDir.resolve("elsewhere"), 0));
+    }
+
+    @Test
+    void summarizeGroupsByCommandName() throws IOException {
+        List<String> commands = List.of("make test", "ls", "make build", " make");
+        record(0, 3000, 1, project);
+        record(1, 5, 0, project);
+        record(2, 1000, 0, project);
+        record(3, 2000, 0, project);
+
+        List<ExecutionLog.Summary> summaries = executions.summarize(0, commands::get);
+
+        assertEquals(new ExecutionLog.Summary("", 4, 1, Duration.ofMillis(6005), Duration.ofMillis(3000)),
+                summaries.get(0));
+        assertEquals(new ExecutionLog.Summary("make", 3, 1, Duration.ofMillis(6000), Duration.ofMillis(3000)),
+                summaries.get(1));
+        assertEquals(Duration.ofMillis(2000), summaries.get(1).mean());
+        assertEquals("ls", summaries.get(2).name());
+    }
+
+    @Test
+    void dropFirstShiftsRecords() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            record(i, 100 * i, i, project);
+        }
+
+        executions.dropFirst(3);
+
+        assertEquals(2, executions.size());
+        assertEquals(Duration.ofMillis(300), executions.execution(0).duration());
+        assertEquals(4, executions.execution(1).status());
+    }
+
+    @Test
+    void retainKeepsRecordsOfKeptEntries() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            record(i, 100 * i, i, project);
+        }
+
+        executions.retain(new int[] {1, 3, 4, 7});
+
+        assertEquals(3, executions.size());
+        assertEquals(1, executions.execution(0).status());
+        assertEquals(3, executions.execution(1).status());
+        assertEquals(Duration.ofMillis(400), executions.execution(2).duration());
+    }
+}
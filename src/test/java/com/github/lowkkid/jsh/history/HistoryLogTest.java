@@ -0,0 +1,212 @@
+package com.github.lowkkid.jsh.history;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistoryLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private HistoryLog log;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = tempDir.resolve("history");
+        log = HistoryLog.open(file);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        log.close();
+    }
+
+    private void reopen() throws IOException {
+        log.close();
+        log = HistoryLog.open(file);
+    }
+
+    @Test
+    void appendedEntriesAreReadBack() throws IOException {
+        assertEquals(0, log.append(Instant.ofEpochMilli(1000), "ls -la"));
+        assertEquals(1, log.append(Instant.ofEpochMilli(2000), "pwd"));
+
+        assertEquals(2, log.size());
+        assertEquals("ls -la", log.line(0));
+        assertEquals("pwd", log.line(1));
+        assertEquals(Instant.ofEpochMilli(2000), log.time(1));
+    }
+
+    @Test
+    void fileUsesJLineFormat() throws IOException {
+        log.append(Instant.ofEpochMilli(42), "echo a\\b\nsecond line");
+
+        assertEquals(List.of("42:echo a\\\\b\\nsecond line"), Files.readAllLines(file));
+        assertEquals("echo a\\b\nsecond line", log.line(0));
+    }
+
+    @Test
+    void entriesSurviveReopening() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            log.append(Instant.now(), "command " + i);
+        }
+        reopen();
+
+        assertEquals(1000, log.size());
+        assertEquals("command 0", log.line(0));
+        assertEquals("command 999", log.line(999));
+    }
+
+    @Test
+    void linesAppendedByOthersAreIndexedOnOpen() throws IOException {
+        log.append(Instant.ofEpochMilli(1), "first");
+        log.close();
+        Files.writeString(file, "2:second\nthird without timestamp\n", StandardOpenOption.APPEND);
+
+        log = HistoryLog.open(file);
+
+        assertEquals(3, log.size());
+        assertEquals("second", log.line(1));
+        assertEquals("third without timestamp", log.line(2));
+        assertEquals(Instant.EPOCH, log.time(2));
+    }
+
+    @Test
+    void rewrittenFileIsIndexedAgain() throws IOException {
+        log.append(Instant.now(), "a rather long first command");
+        log.append(Instant.now(), "another command");
+        log.close();
+        Files.writeString(file, "x\ny\nz\n");
+
+        log = HistoryLog.open(file);
+
+        assertEquals(3, log.size());
+        assertEquals("z", log.line(2));
+    }
+
+    @Test
+    void unterminatedLastLineIsTerminatedBeforeAppending() throws IOException {
+        log.close();
+        Files.writeString(file, "1:one\n2:two");
+        log = HistoryLog.open(file);
+
+        log.append(Instant.ofEpochMilli(3), "three");
+
+        assertEquals(List.of("one", "two", "three"), List.of(log.line(0), log.line(1), log.line(2)));
+    }
+
+    @Test
+    void retainLastKeepsMostRecentEntries() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            log.append(Instant.ofEpochMilli(i), "command " + i);
+        }
+
+        log.retainLast(3);
+
+        assertEquals(3, log.size());
+        assertEquals("command 7", log.line(0));
+        assertEquals("command 9", log.line(2));
+        assertEquals(3, Files.readAllLines(file).size());
+
+        log.append(Instant.now(), "command 10");
+        reopen();
+        assertEquals(4, log.size());
+        assertEquals("command 10", log.line(3));
+    }
+
+    @Test
+    void clearRemovesAllEntries() throws IOException {
+        log.append(Instant.now(), "ls");
+        log.clear();
+
+        assertEquals(0, log.size());
+        assertEquals(0, Files.size(file));
+        assertThrows(IndexOutOfBoundsException.class, () -> log.line(0));
+    }
+
+    @Test
+    void multibyteCharactersArePreserved() throws IOException {
+        log.append(Instant.now(), "echo grüße 🙂");
+        reopen();
+
+        assertEquals("echo grüße 🙂", log.line(0));
+        assertEquals(1, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    void indexGrowsBeyondOneChunk() throws IOException {
+        int count = Column.CHUNK_SIZE / Long.BYTES + 10;
+        for (int i = 0; i < count; i++) {
+            log.append(Instant.EPOCH, Integer.toString(i));
+        }
+        reopen();
+
+        assertEquals(count, log.size());
+        assertEquals(Integer.toString(count - 1), log.line(count - 1));
+    }
+
+    @Test
+    void logsSharingAFileSeeEachOthersAppendsAndDrops() throws IOException {
+        try (HistoryLog other = HistoryLog.open(file)) {
+            for (int i = 0; i < 5; i++) {
+                log.append(Instant.ofEpochMilli(i), "command " + i);
+            }
+            other.append(Instant.ofEpochMilli(5), "command 5");
+
+            assertEquals(6, log.size());
+            assertEquals("command 5", log.line(5));
+
+            other.retainLast(2);
+
+            assertEquals(2, log.size());
+            assertEquals(List.of("command 4", "command 5"), List.of(log.line(0), log.line(1)));
+            assertEquals(4, log.dropped());
+        }
+    }
+
+    @Test
+    void replacedFileIsIndexedAgain() throws IOException {
+        log.append(Instant.ofEpochMilli(1), "old");
+        Path replacement = tempDir.resolve("replacement");
+        Files.writeString(replacement, "2:new\n3:newer\n");
+        Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(true, log.synchronize());
+        assertEquals(List.of("new", "newer"), List.of(log.line(0), log.line(1)));
+    }
+
+    @Test
+    void compactDropsErasedEntries() throws IOException {
+        for (int i = 0; i < 6; i++) {
+            log.append(Instant.ofEpochMilli(i), "command " + i);
+        }
+        log.erase(1);
+        log.erase(3);
+        log.erase(5);
+
+        int[] kept = log.compact(0, 2);
+
+        assertArrayEquals(new int[] {2, 4}, kept);
+        assertEquals(List.of("command 2", "command 4"), List.of(log.line(0), log.line(1)));
+        assertEquals(List.of("2:command 2", "4:command 4"), Files.readAllLines(file));
+        assertFalse(log.erased(0));
+        assertFalse(log.erased(1));
+        assertEquals(4, log.dropped());
+    }
+}
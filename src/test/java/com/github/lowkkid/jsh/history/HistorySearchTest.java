@@ -0,0 +1,172 @@
+package com.github.lowkkid.jsh.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.lowkkid.jsh.history.HistorySearch.Match;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistorySearchTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ShellHistory history;
+    private HistorySearch search;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        history = new ShellHistory();
+        history.open(tempDir.resolve("history"));
+        search = new HistorySearch(history);
+    }
+
+    private List<String> lines(String query, int limit) throws Exception {
+        List<Match> matches = search.searchAsync(query, limit).get(10, TimeUnit.SECONDS);
+        return matches.stream().map(Match::line).toList();
+    }
+
+    @Test
+    void substringMatchesRankAboveSubsequenceMatches() throws Exception {
+        history.add("git checkout main");
+        history.add("gcc -o out main.c");
+        history.add("ls");
+
+        assertEquals(List.of("gcc -o out main.c", "git checkout main"), lines("gco", 5));
+        assertEquals(List.of("git checkout main"), lines("checkout", 5));
+    }
+
+    @Test
+    void charactersInOrderMatchWhenNoSubstringDoes() throws Exception {
+        history.add("git checkout main");
+        history.add("ls -la");
+
+        assertEquals(List.of("git checkout main"), lines("gtchk", 5));
+    }
+
+    @Test
+    void wordsMatchInAnyOrder() throws Exception {
+        history.add("docker run --rm alpine");
+        history.add("docker ps");
+
+        assertEquals(List.of("docker run --rm alpine"), lines("alpine docker", 5));
+    }
+
+    @Test
+    void equalMatchesAreSortedNewestFirstAndListedOnce() throws Exception {
+        history.add("make test");
+        history.add("make build");
+        history.add("make test");
+        history.add("make clean");
+
+        assertEquals(List.of("make clean", "make test", "make build"), lines("make", 5));
+    }
+
+    @Test
+    void betterMatchWinsOverMoreRecentOne() throws Exception {
+        history.add("cargo build");
+        for (int i = 0; i < 2; i++) {
+            history.add("echo rebuilding " + i);
+        }
+
+        assertEquals("cargo build", lines("build", 1).get(0));
+    }
+
+    @Test
+    void entriesAddedAfterAQueryAreFound() throws Exception {
+        history.add("first command");
+        assertEquals(List.of(), lines("second", 5));
+
+        history.add("second command");
+        assertEquals(List.of("second command"), lines("second", 5));
+    }
+
+    @Test
+    void trimmedHistoryIsIndexedAgain() throws Exception {
+        history.add("old entry");
+        history.add("new entry");
+        assertEquals(List.of("new entry", "old entry"), lines("entry", 5));
+
+        history.trim(1);
+        assertEquals(List.of("new entry"), lines("entry", 5));
+    }
+
+    @Test
+    void searchSpansManyBatches() throws Exception {
+        int count = HistorySearch.BATCH_SIZE * 3;
+        try (Terminal terminal = new DumbTerminal(InputStream.nullInputStream(), OutputStream.nullOutputStream())) {
+            history.attach(LineReaderBuilder.builder()
+                    .terminal(terminal)
+                    .variable(LineReader.HISTORY_SIZE, count)
+                    .build());
+            for (int i = 0; i < count; i++) {
+                history.add(i == 5 ? "needle in the haystack" : "hay " + i);
+            }
+
+            assertEquals(List.of("needle in the haystack"), lines("needle", 5));
+            assertEquals(List.of("needle in the haystack"), lines("ndl hstk", 5));
+        }
+    }
+
+    @Test
+    void warmUpWhileEntriesAreAddedAndTrimmed() throws Exception {
+        int count = HistorySearch.BATCH_SIZE * 3;
+        try (Terminal terminal = new DumbTerminal(InputStream.nullInputStream(), OutputStream.nullOutputStream())) {
+            history.attach(LineReaderBuilder.builder()
+                    .terminal(terminal)
+                    .variable(LineReader.HISTORY_SIZE, count)
+                    .build());
+            for (int i = 0; i < count; i++) {
+                history.add("hay " + i);
+            }
+            history.save();
+
+            search.warmUp();
+            for (int i = 0; i < 100; i++) {
+                history.add("straw " + i);
+                history.load();
+                if (i % 10 == 0) {
+                    history.trim(count);
+                }
+            }
+            history.add("needle in the haystack");
+
+            assertEquals(List.of("needle in the haystack"), lines("needle", 5));
+        }
+    }
+
+    @Test
+    void cancelledQueryReturnsNull() {
+        history.add("ls");
+
+        assertNull(search.search("ls", 5, () -> true));
+    }
+
+    @Test
+    void emptyQueryMatchesNothing() throws Exception {
+        history.add("ls");
+
+        assertTrue(lines("  ", 5).isEmpty());
+    }
+
+    @Test
+    void scoresFavourWordStartsAndWholeWords() {
+        assertTrue(HistorySearch.matchWord("git log", "log") > HistorySearch.matchWord("git blog", "log"));
+        assertTrue(HistorySearch.matchWord("git log", "git") > HistorySearch.matchWord("git log", "log"));
+        assertTrue(HistorySearch.matchWord("git log", "gl") > 0);
+        assertEquals(-1, HistorySearch.matchWord("git log", "lg g"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.lowkkid.jsh.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistorySuggestionsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ShellHistory history;
+    private HistorySuggestions suggestions;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        history = new ShellHistory();
+        history.open(tempDir.resolve("history"));
+        suggestions = new HistorySuggestions(history);
+    }
+
+    @Test
+    void mostRecentEntryWithThePrefixIsSuggested() {
+        history.add("git status");
+        history.add("git commit -m wip");
+        history.add("ls");
+
+        assertEquals("git commit -m wip", suggestions.suggest("git", null));
+        assertEquals("git status", suggestions.suggest("git s", null));
+        assertEquals("ls", suggestions.suggest("l", null));
+    }
+
+    @Test
+    void entryRunInTheCurrentDirectoryIsPreferred() throws IOException {
+        Path project = Files.createDirectory(tempDir.resolve("project"));
+        history.add("make test");
+        history.record(Duration.ofSeconds(1), 0, project);
+        history.add("make clean");
+        history.record(Duration.ofSeconds(1), 0, tempDir);
+
+        assertEquals("make test", suggestions.suggest("make", project));
+        assertEquals("make clean", suggestions.suggest("make", tempDir));
+        assertEquals("make clean", suggestions.suggest("make", tempDir.resolve("elsewhere")));
+    }
+
+    @Test
+    void nothingIsSuggestedWithoutALongerMatch() {
+        history.add("pwd");
+
+        assertNull(suggestions.suggest("", null));
+        assertNull(suggestions.suggest("pwd", null));
+        assertNull(suggestions.suggest("cd", null));
+    }
+
+    @Test
+    void entriesAddedAfterASuggestionAreSuggested() {
+        history.add("echo one");
+        assertEquals("echo one", suggestions.suggest("ec", null));
+
+        history.add("echo two");
+        assertEquals("echo two", suggestions.suggest("ec", null));
+    }
+
+    @Test
+    void erasedAndPurgedEntriesAreNotSuggested() throws IOException {
+        try (Terminal terminal = new DumbTerminal(InputStream.nullInputStream(), OutputStream.nullOutputStream())) {
+            history.attach(LineReaderBuilder.builder()
+                    .terminal(terminal)
+                    .variable(ShellHistory.ERASE_DUPS, true)
+                    .build());
+            history.add("cat a.txt");
+            history.add("cat b.txt");
+            history.add("cat a.txt");
+            assertEquals("cat a.txt", suggestions.suggest("cat", null));
+            assertEquals("cat b.txt", suggestions.suggest("cat b", null));
+
+            history.purge();
+            assertNull(suggestions.suggest("cat", null));
+        }
+    }
+
+    @Test
+    void prefixesLongerThanTheIndexedDepthAreChecked() {
+        String common = "x".repeat(SuggestionTrie.MAX_DEPTH);
+        history.add(common + " first");
+        history.add(common + " second");
+
+        assertEquals(common + " first", suggestions.suggest(common + " f", null));
+        assertEquals(common + " second", suggestions.suggest(common + " ", null));
+    }
+}
@@ -0,0 +1,352 @@
+package com.github.lowkkid.jsh.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.jline.reader.History;
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShellHistoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private ShellHistory history;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = tempDir.resolve("history");
+        history = new ShellHistory();
+        history.open(file);
+    }
+
+    private static List<String> lines(ShellHistory history) {
+        List<String> lines = new ArrayList<>();
+        for (History.Entry entry : history) {
+            lines.add(entry.line());
+        }
+        return lines;
+    }
+
+    @Test
+    void addedLinesAreAppendedToTheFile() throws IOException {
+        history.add("ls");
+        history.add("pwd");
+
+        assertEquals(List.of("ls", "pwd"), lines(history));
+        assertEquals(2, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void onlyTheLastEntriesAreShown() throws IOException {
+        for (int i = 0; i < ShellHistory.DEFAULT_SIZE + 100; i++) {
+            history.add("command " + i);
+        }
+
+        assertEquals(ShellHistory.DEFAULT_SIZE, history.size());
+        assertEquals(100, history.first());
+        assertEquals("command 100", history.iterator().next().line());
+        assertEquals("command 100", history.get(100));
+    }
+
+    @Test
+    void entriesAreNumberedFromTheStartOfTheFile() throws IOException {
+        Files.writeString(file, "1:one\n2:two\n");
+        var reopened = new ShellHistory();
+        reopened.open(file);
+        reopened.add("three");
+
+        History.Entry last = reopened.iterator(reopened.last()).next();
+        assertEquals(2, last.index());
+        assertEquals("three", last.line());
+    }
+
+    @Test
+    void navigationMovesThroughShownEntries() {
+        history.add("a");
+        history.add("b");
+
+        assertEquals("", history.current());
+        assertTrue(history.previous());
+        assertEquals("b", history.current());
+        assertTrue(history.previous());
+        assertEquals("a", history.current());
+        assertFalse(history.previous());
+        assertTrue(history.next());
+        assertTrue(history.next());
+        assertEquals("", history.current());
+        assertFalse(history.next());
+    }
+
+    @Test
+    void purgeHidesEntriesButKeepsTheFile() throws IOException {
+        history.add("ls");
+        history.purge();
+        history.add("pwd");
+
+        assertEquals(List.of("pwd"), lines(history));
+        assertEquals(2, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void trimDropsOldAndPurgedEntries() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            history.add("command " + i);
+        }
+        history.trim(4);
+
+        assertEquals(List.of("command 6", "command 7", "command 8", "command 9"), lines(history));
+        assertEquals(4, Files.readAllLines(file).size());
+
+        history.purge();
+        history.add("new");
+        history.trim(4);
+        assertEquals(List.of("new"), lines(history));
+        assertEquals(1, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void linesAreKeptInMemoryUntilAFileIsOpened() throws IOException {
+        var inMemory = new ShellHistory();
+        inMemory.add(Instant.ofEpochMilli(5), "echo hi");
+        assertEquals(List.of("echo hi"), lines(inMemory));
+        assertEquals(null, inMemory.file());
+
+        inMemory.open(file);
+
+        assertEquals(List.of("5:echo hi"), Files.readAllLines(file));
+    }
+
+    @Test
+    void loadPicksUpLinesOfOtherSessions() throws IOException {
+        history.add("mine");
+        Files.writeString(file, "7:theirs\n", StandardOpenOption.APPEND);
+
+        history.load();
+
+        assertEquals(List.of("mine", "theirs"), lines(history));
+    }
+
+    @Test
+    void readStreamsAPlainFile() throws IOException {
+        Path other = tempDir.resolve("other");
+        Files.write(other, List.of("x", "y", "y"));
+
+        history.read(other, true);
+
+        assertEquals(List.of("x", "y"), lines(history));
+    }
+
+    @Test
+    void writeLinesWritesShownEntriesFromAnIndex() throws IOException {
+        history.add("a");
+        history.add("b");
+        history.add("c");
+        Path out = tempDir.resolve("out");
+
+        history.writeLines(out, 1, StandardOpenOption.TRUNCATE_EXISTING);
+        history.writeLines(out, 2, StandardOpenOption.APPEND);
+
+        assertEquals(List.of("b", "c", "c"), Files.readAllLines(out));
+    }
+
+    @Test
+    void recordDescribesTheLastAddedLine() {
+        history.add("ls");
+        history.add("make");
+        history.record(Duration.ofSeconds(3), 2, tempDir);
+
+        var execution = history.executions().execution(1);
+        assertEquals(Duration.ofSeconds(3), execution.duration());
+        assertEquals(2, execution.status());
+        assertNull(history.executions().execution(0));
+    }
+
+    @Test
+    void recordIsSkippedForLinesNotAdded() {
+        history.add("ls");
+        history.record(Duration.ofSeconds(1), 0, tempDir);
+        history.record(Duration.ofSeconds(2), 0, tempDir);
+
+        assertEquals(Duration.ofSeconds(1), history.executions().execution(0).duration());
+    }
+
+    @Test
+    void recordsOfUnsavedLinesAreWrittenWithThem() throws IOException {
+        var inMemory = new ShellHistory();
+        inMemory.add("sleep 1");
+        inMemory.record(Duration.ofSeconds(1), 0, tempDir);
+
+        inMemory.open(file);
+
+        assertEquals(Duration.ofSeconds(1), inMemory.executions().execution(0).duration());
+    }
+
+    @Test
+    void trimKeepsRecordsAligned() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            history.add("command " + i);
+            history.record(Duration.ofMillis(i), 0, tempDir);
+        }
+
+        history.trim(2);
+
+        assertEquals(Duration.ofMillis(3), history.executions().execution(0).duration());
+    }
+
+    @Test
+    void recordsOfARewrittenFileAreDropped() throws IOException {
+        history.add("ls");
+        history.record(Duration.ofSeconds(1), 0, tempDir);
+        Files.writeString(file, "1:other\n");
+
+        var reopened = new ShellHistory();
+        reopened.open(file);
+
+        assertEquals(0, reopened.executions().size());
+    }
+
+    @Test
+    void sessionsSeeEachOthersCommandsAfterLoading() throws IOException {
+        var other = new ShellHistory();
+        other.open(file);
+
+        history.add("ls");
+        other.add("pwd");
+        assertEquals(List.of("ls"), lines(history));
+        assertEquals(List.of("ls", "pwd"), lines(other));
+
+        history.load();
+        history.add("date");
+
+        assertEquals(List.of("ls", "pwd", "date"), lines(history));
+        assertEquals(3, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void concurrentSessionsDoNotOverwriteEachOther() throws Exception {
+        var other = new ShellHistory();
+        other.open(file);
+        int count = 500;
+
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < count; i++) {
+                other.add("other " + i);
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            history.add("this " + i);
+        }
+        writer.join();
+
+        List<String> written = Files.readAllLines(file);
+        assertEquals(2 * count, written.size());
+        assertTrue(written.stream().allMatch(line -> line.matches("\\d+:(this|other) \\d+")));
+    }
+
+    @Test
+    void entriesDroppedByAnotherSessionAreRenumbered() throws IOException {
+        var other = new ShellHistory();
+        other.open(file);
+        for (int i = 0; i < 10; i++) {
+            history.add("command " + i);
+        }
+        other.load();
+        int generation = other.generation();
+
+        history.trim(4);
+        other.load();
+
+        assertEquals(List.of("command 6", "command 7", "command 8", "command 9"), lines(other));
+        assertEquals(0, other.first());
+        assertTrue(other.generation() != generation);
+    }
+
+    private static LineReader reader(Terminal terminal, String variable, Object value) {
+        return LineReaderBuilder.builder().terminal(terminal).variable(variable, value).build();
+    }
+
+    private static Terminal terminal() throws IOException {
+        return new DumbTerminal(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+    }
+
+    @Test
+    void eraseDupsHidesEarlierOccurrences() throws IOException {
+        try (Terminal terminal = terminal()) {
+            history.attach(reader(terminal, ShellHistory.ERASE_DUPS, true));
+            for (String line : List.of("ls", "pwd", "ls", "date", "pwd")) {
+                history.add(line);
+            }
+
+            assertEquals(List.of("ls", "date", "pwd"), lines(history));
+            assertTrue(history.erased(0));
+            assertTrue(history.erased(1));
+            assertEquals(5, Files.readAllLines(file).size());
+
+            List<String> recalled = new ArrayList<>();
+            while (history.previous()) {
+                recalled.add(history.current());
+            }
+            assertEquals(List.of("pwd", "date", "ls"), recalled);
+        }
+    }
+
+    @Test
+    void trimCompactsErasedEntriesAndKeepsRecordsAligned() throws IOException {
+        try (Terminal terminal = terminal()) {
+            history.attach(reader(terminal, ShellHistory.ERASE_DUPS, true));
+            List<String> lines = List.of("ls", "pwd", "ls", "date", "pwd", "make");
+            for (int i = 0; i < lines.size(); i++) {
+                history.add(lines.get(i));
+                history.record(Duration.ofMillis(i), 0, tempDir);
+            }
+
+            history.trim(3);
+
+            assertEquals(List.of("date", "pwd", "make"), Files.readAllLines(file).stream()
+                    .map(line -> line.substring(line.indexOf(':') + 1))
+                    .toList());
+            assertEquals(List.of("date", "pwd", "make"), lines(history));
+            assertEquals(Duration.ofMillis(3), history.executions().execution(0).duration());
+            assertEquals(Duration.ofMillis(5), history.executions().execution(2).duration());
+        }
+    }
+
+    @Test
+    void duplicatesKeptInMemoryAreErasedWhenSaved() throws IOException {
+        try (Terminal terminal = terminal()) {
+            LineReader reader = reader(terminal, ShellHistory.ERASE_DUPS, true);
+            reader.option(LineReader.Option.HISTORY_INCREMENTAL, false);
+            history.attach(reader);
+            history.add("ls");
+            history.add("pwd");
+            history.add("ls");
+
+            assertEquals(List.of("pwd", "ls"), lines(history));
+
+            history.save();
+            history.trim(10);
+
+            assertEquals(2, Files.readAllLines(file).size());
+        }
+    }
+}
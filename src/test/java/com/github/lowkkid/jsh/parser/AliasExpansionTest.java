@@ -81,4 +81,47 @@ class AliasExpansionTest {
         assertEquals(1, result.size());
         assertEquals("ls", result.getFirst().command());
     }
+
+    @Test
+    void backgroundJobShowsAliasAsTyped() {
+        AliasStorage.put("nap", "sleep 10 | cat");
+
+        var node = (CommandNode.Sequence) parser.parse("nap 5 & echo done");
+
+        assertEquals("nap 5", node.entries().getFirst().source());
+    }
+
+    @Test
+    void quotedWordIsNotAnAlias() {
+        AliasStorage.put("ll", "ls -la");
+
+        var result = parser.getCommandAndArgs("'ll'");
+
+        assertEquals("ll", result.getFirst().command());
+    }
+
+    @Test
+    void aliasInsideItsOwnPipelineIsExpandedOneStep() {
+        AliasStorage.put("logs", "cat log | g");
+        AliasStorage.put("g", "logs -v");
+
+        var result = parser.getCommandAndArgs("logs");
+
+        assertEquals(2, result.size());
+        assertEquals("cat", result.get(0).command());
+        assertEquals("logs", result.get(1).command());
+        assertEquals("-v", result.get(1).arguments().getFirst());
+    }
+
+    @Test
+    void redefinedAliasIsUsedByChain() {
+        AliasStorage.put("ll", "myls -la");
+        AliasStorage.put("myls", "ls");
+        parser.parse("ll");
+        AliasStorage.put("myls", "exa");
+
+        var result = parser.getCommandAndArgs("ll");
+
+        assertEquals("exa", result.getFirst().command());
+    }
 }
@@ -0,0 +1,110 @@
+package com.github.lowkkid.jsh.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class AliasTableTest {
+
+    private final AliasTable table = new AliasTable();
+
+    @Test
+    void valueIsKeptAsDefined() {
+        table.put("ll", "ls  -la");
+
+        assertEquals("ls  -la", table.get("ll"));
+        assertEquals(List.of("ls", "-la"), words("ll"));
+    }
+
+    @Test
+    void chainIsResolvedOnPut() {
+        table.put("myls", "ls --color");
+        table.put("ll", "myls -la");
+
+        assertEquals(List.of("ls", "--color", "-la"), words("ll"));
+        var expansion = table.expansion("ll");
+        assertEquals(2, expansion.aliasCount());
+        assertEquals("ll", expansion.name(0));
+        assertEquals(3, expansion.end(0));
+        assertEquals("myls", expansion.name(1));
+        assertEquals(2, expansion.end(1));
+    }
+
+    @Test
+    void chainIsResolvedWhenDefinedOutOfOrder() {
+        table.put("ll", "myls -la");
+        table.put("myls", "ls --color");
+
+        assertEquals(List.of("ls", "--color", "-la"), words("ll"));
+    }
+
+    @Test
+    void redefiningAnAliasUpdatesChainsUsingIt() {
+        table.put("myls", "ls --color");
+        table.put("ll", "myls -la");
+        table.put("myls", "exa");
+
+        assertEquals(List.of("exa", "-la"), words("ll"));
+    }
+
+    @Test
+    void removingAnAliasUpdatesChainsUsingIt() {
+        table.put("myls", "ls --color");
+        table.put("ll", "myls -la");
+
+        assertTrue(table.remove("myls"));
+
+        assertEquals(List.of("myls", "-la"), words("ll"));
+        assertFalse(table.remove("myls"));
+    }
+
+    @Test
+    void selfReferenceStops() {
+        table.put("ls", "ls --color");
+
+        assertEquals(List.of("ls", "--color"), words("ls"));
+    }
+
+    @Test
+    void mutualReferenceStops() {
+        table.put("a", "b x");
+        table.put("b", "a y");
+
+        assertEquals(List.of("a", "y", "x"), words("a"));
+        assertEquals(List.of("b", "x", "y"), words("b"));
+    }
+
+    @Test
+    void emptyAliasIsSplicedAway() {
+        table.put("nothing", "");
+        table.put("run", "nothing echo");
+
+        assertEquals(List.of("echo"), words("run"));
+    }
+
+    @Test
+    void replaceAllResolvesEveryChain() {
+        table.put("old", "echo");
+
+        table.replaceAll(Map.of("ll", "myls -la", "myls", "ls"));
+
+        assertNull(table.get("old"));
+        assertEquals(2, table.size());
+        assertEquals(List.of("ls", "-la"), words("ll"));
+    }
+
+    private List<String> words(String name) {
+        TokenList tokens = table.expansion(name).tokens();
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            words.add(tokens.text(i));
+        }
+        return words;
+    }
+}
@@ -1,11 +1,21 @@
 package com.github.lowkkid.jsh.parser;
 
+import com.github.lowkkid.jsh.config.env.AliasStorage;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -481,13 +491,12 @@ class InputParserTest {
 
         @Test
         void pipelineWithQuotedPipe() {
-            // Current parser behavior: pipe is not checked for quotes context
             List<CommandAndArgs> result = parser.getCommandAndArgs("echo 'a|b' | cat");
 
-            assertEquals(3, result.size());
+            assertEquals(2, result.size());
             assertEquals("echo", result.getFirst().command());
-            assertEquals("b'", result.get(1).command());
-            assertEquals("cat", result.get(2).command());
+            assertEquals(List.of("a|b"), result.getFirst().arguments());
+            assertEquals("cat", result.get(1).command());
         }
 
         @Test
@@ -506,4 +515,590 @@ class InputParserTest {
             assertEquals("file.txt", result.getFirst().redirectOptions().redirectTo());
         }
     }
+
+    @Nested
+    @DisplayName("Command lists")
+    class CommandListTests {
+
+        @Test
+        void singleCommandIsNotWrapped() {
+            assertInstanceOf(CommandNode.Simple.class, parser.parse("echo hello"));
+        }
+
+        @Test
+        void blankInputIsEmptySequence() {
+            var node = assertInstanceOf(CommandNode.Sequence.class, parser.parse("   "));
+
+            assertTrue(node.entries().isEmpty());
+        }
+
+        @Test
+        void semicolonSeparatesCommands() {
+            var node = assertInstanceOf(CommandNode.Sequence.class, parser.parse("echo a; echo b;"));
+
+            assertEquals(2, node.entries().size());
+            assertEquals("echo a", node.entries().getFirst().source());
+            assertEquals("echo b", node.entries().get(1).source());
+            assertFalse(node.entries().getFirst().background());
+        }
+
+        @Test
+        void newlineSeparatesCommands() {
+            var node = assertInstanceOf(CommandNode.Sequence.class, parser.parse("echo a\necho b"));
+
+            assertEquals(2, node.entries().size());
+        }
+
+        @Test
+        void ampersandMarksBackground() {
+            var node = assertInstanceOf(CommandNode.Sequence.class, parser.parse("sleep 10 & echo hi"));
+
+            assertEquals(2, node.entries().size());
+            assertTrue(node.entries().getFirst().background());
+            assertEquals("sleep 10", node.entries().getFirst().source());
+            assertFalse(node.entries().get(1).background());
+        }
+
+        @Test
+        void trailingAmpersandWithoutSpace() {
+            var node = assertInstanceOf(CommandNode.Sequence.class, parser.parse("sleep 10&"));
+
+            assertEquals(1, node.entries().size());
+            assertTrue(node.entries().getFirst().background());
+        }
+
+        @Test
+        void escapedAmpersandIsLiteral() {
+            assertEquals(List.of("&"), parser.getCommandAndArgs("echo \\&").getFirst().arguments());
+        }
+
+        @Test
+        void andOrChainsAreLeftAssociative() {
+            var node = assertInstanceOf(CommandNode.Conditional.class, parser.parse("a && b || c"));
+
+            assertEquals(CommandNode.Conditional.Operator.OR, node.operator());
+            var left = assertInstanceOf(CommandNode.Conditional.class, node.left());
+            assertEquals(CommandNode.Conditional.Operator.AND, left.operator());
+        }
+
+        @Test
+        void pipeBindsTighterThanAnd() {
+            var node = assertInstanceOf(CommandNode.Conditional.class, parser.parse("a | b && c"));
+
+            assertInstanceOf(CommandNode.Pipeline.class, node.left());
+            assertInstanceOf(CommandNode.Simple.class, node.right());
+        }
+
+        @Test
+        void operatorsWithoutSpaces() {
+            var node = assertInstanceOf(CommandNode.Sequence.class, parser.parse("a&&b;c||d"));
+
+            assertEquals(2, node.entries().size());
+            assertInstanceOf(CommandNode.Conditional.class, node.entries().getFirst().command());
+        }
+
+        @Test
+        void quotedOperatorsAreLiteral() {
+            var result = parser.getCommandAndArgs("echo 'a;b' \"c && d\"");
+
+            assertEquals(List.of("a;b", "c && d"), result.getFirst().arguments());
+        }
+
+        @Test
+        void commentIsIgnored() {
+            var result = parser.getCommandAndArgs("echo a # b; c");
+
+            assertEquals(List.of("a"), result.getFirst().arguments());
+        }
+
+        @Test
+        void hashInsideWordIsLiteral() {
+            assertEquals(List.of("a#b"), parser.getCommandAndArgs("echo a#b").getFirst().arguments());
+        }
+
+        @Test
+        void getCommandAndArgsRejectsCommandLists() {
+            assertThrows(IllegalArgumentException.class, () -> parser.getCommandAndArgs("a; b"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Groups")
+    class GroupTests {
+
+        @Test
+        void braceGroup() {
+            var node = assertInstanceOf(CommandNode.Group.class, parser.parse("{ echo a; echo b; }"));
+
+            assertFalse(node.subshell());
+            assertEquals(2, assertInstanceOf(CommandNode.Sequence.class, node.body()).entries().size());
+        }
+
+        @Test
+        void subshell() {
+            var node = assertInstanceOf(CommandNode.Group.class, parser.parse("(cd /tmp; pwd)"));
+
+            assertTrue(node.subshell());
+        }
+
+        @Test
+        void groupInsideAndOr() {
+            var node = assertInstanceOf(CommandNode.Conditional.class, parser.parse("false || { echo a; }"));
+
+            assertInstanceOf(CommandNode.Group.class, node.right());
+        }
+
+        @Test
+        void groupsAsPipelineStages() {
+            var node = assertInstanceOf(CommandNode.Pipeline.class, parser.parse("{ a; b; } | c | (cd x && make)"));
+
+            assertInstanceOf(CommandNode.Group.class, node.stages().get(0));
+            assertInstanceOf(CommandNode.Simple.class, node.stages().get(1));
+            assertTrue(assertInstanceOf(CommandNode.Group.class, node.stages().get(2)).subshell());
+        }
+
+        @Test
+        void braceInsideWordIsLiteral() {
+            assertEquals(List.of("{a}", "}"), parser.getCommandAndArgs("echo {a} }").getFirst().arguments());
+        }
+    }
+
+    @Nested
+    @DisplayName("Deferred variable expansion")
+    class VariableTests {
+
+        @Test
+        void variablesAreKeptInTree() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("echo pre$HOME"));
+
+            assertEquals(List.of(new Word.Literal("pre"), new Word.Variable("HOME")),
+                    node.arguments().getFirst().parts());
+        }
+
+        @Test
+        void literalWordsHaveNoVariables() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("echo '$HOME'"));
+
+            assertTrue(node.arguments().getFirst().isLiteral());
+        }
+
+        @Test
+        void bracedAndStatusVariables() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("echo ${HOME}x $?"));
+
+            assertEquals(new Word.Variable("HOME"), node.arguments().getFirst().parts().getFirst());
+            assertEquals(List.of(new Word.Variable("?")), node.arguments().get(1).parts());
+        }
+
+        @Test
+        void expandsWithGivenLookup() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("echo $A-$B > $A.txt"));
+
+            var expanded = node.expand(name -> name.equals("A") ? "x" : null);
+
+            assertEquals(List.of("x-"), expanded.arguments());
+            assertEquals("x.txt", expanded.redirectOptions().redirectTo());
+        }
+    }
+
+    @Nested
+    @DisplayName("Syntax errors")
+    class SyntaxErrorTests {
+
+        @Test
+        void doubleSemicolon() {
+            var e = assertThrows(SyntaxException.class, () -> parser.parse("echo a;; echo b"));
+
+            assertEquals("jsh: syntax error near unexpected token `;'", e.getMessage());
+        }
+
+        @Test
+        void leadingOperator() {
+            assertThrows(SyntaxException.class, () -> parser.parse("&& echo a"));
+        }
+
+        @Test
+        void danglingPipe() {
+            assertThrows(SyntaxException.class, () -> parser.parse("echo a |"));
+        }
+
+        @Test
+        void unclosedSubshell() {
+            assertThrows(SyntaxException.class, () -> parser.parse("(echo a"));
+        }
+
+        @Test
+        void unclosedBraceGroup() {
+            assertThrows(SyntaxException.class, () -> parser.parse("{ echo a }"));
+        }
+
+        @Test
+        void emptyGroup() {
+            assertThrows(SyntaxException.class, () -> parser.parse("( )"));
+        }
+
+        @Test
+        void strayClosingParenthesis() {
+            assertThrows(SyntaxException.class, () -> parser.parse("echo a )"));
+        }
+
+        @Test
+        void redirectWithoutTarget() {
+            assertThrows(SyntaxException.class, () -> parser.parse("echo a >"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Pathname expansion")
+    class GlobTests {
+
+        @TempDir
+        Path dir;
+
+        @Test
+        void unquotedWildcardsAreKeptAsGlobParts() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("ls src/*.java [ab]?"));
+
+            assertEquals(List.of(new Word.Literal("src/"), new Word.Glob("*"), new Word.Literal(".java")),
+                    node.arguments().getFirst().parts());
+            assertEquals(List.of(new Word.Glob("[ab]"), new Word.Glob("?")), node.arguments().get(1).parts());
+        }
+
+        @Test
+        void quotedWildcardsAreLiteral() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("ls '*' \\? \"[a]\" [x"));
+
+            assertTrue(node.arguments().stream().noneMatch(Word::isPattern));
+            assertEquals("[x", node.arguments().get(3).expand(name -> null));
+        }
+
+        @Test
+        void expandsAgainstWorkingDirectory() throws Exception {
+            Files.createFile(dir.resolve("b.log"));
+            Files.createFile(dir.resolve("a.log"));
+            Files.createFile(dir.resolve("*.log"));
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("ls *.log '*'.log $V"));
+
+            var expanded = node.expand(name -> "*.log", dir);
+
+            assertEquals(List.of("*.log", "a.log", "b.log", "*.log", "*.log"), expanded.arguments());
+        }
+
+        @Test
+        void unmatchedPatternIsPassedAsWritten() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("echo *.nothing"));
+
+            assertEquals(List.of("*.nothing"), node.expand(name -> null, dir).arguments());
+        }
+    }
+
+    @Nested
+    @DisplayName("Command substitution")
+    class CommandSubstitutionTests {
+
+        private Word.Substitution substitution(Word word, int part) {
+            return assertInstanceOf(Word.Substitution.class, word.parts().get(part));
+        }
+
+        @Test
+        void commandIsParsedWithTheLine() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("echo x$(ls | wc -l) \"$(pwd)\""));
+
+            var unquoted = substitution(node.arguments().get(0), 1);
+            assertEquals("ls | wc -l", unquoted.source());
+            assertInstanceOf(CommandNode.Pipeline.class, unquoted.command());
+            assertFalse(unquoted.quoted());
+            assertTrue(substitution(node.arguments().get(1), 0).quoted());
+            assertFalse(node.arguments().get(0).isLiteral());
+        }
+
+        @Test
+        void backquotesUnescapeTheirCommand() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("echo `echo \\`pwd\\` \\$HOME`"));
+
+            assertEquals("echo `pwd` $HOME", substitution(node.arguments().getFirst(), 0).source());
+        }
+
+        @Test
+        void singleQuotedAndEscapedAreLiteral() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("echo '$(pwd)' \"\\$(pwd)\" '`pwd`'"));
+
+            assertEquals(List.of("$(pwd)", "$(pwd)", "`pwd`"), node.expand(name -> null).arguments());
+        }
+
+        @Test
+        void unclosedSubstitutionIsSyntaxError() {
+            assertThrows(SyntaxException.class, () -> parser.parse("echo $(pwd"));
+        }
+
+        @Test
+        void aliasesInTheCommandAreExpanded() {
+            AliasStorage.put("where", "pwd -P");
+            try {
+                var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("echo $(where)"));
+
+                var command = assertInstanceOf(CommandNode.Simple.class,
+                        substitution(node.arguments().getFirst(), 0).command());
+                assertEquals("pwd", command.name().expand(name -> null));
+            } finally {
+                AliasStorage.remove("where");
+            }
+        }
+
+        @Test
+        void unquotedOutputIsSplitIntoWords() {
+            var node = assertInstanceOf(CommandNode.Simple.class,
+                    parser.parse("$(cmd) a$(cmd)b \"$(cmd)\" V=$(cmd)"));
+
+            var substituted = node.substitute(command -> " one  two\nthree ");
+
+            assertEquals("one", substituted.name().expand(name -> null));
+            assertEquals(List.of("two", "three", "a", "one", "two", "three", "b", " one  two\nthree ",
+                            "V=", "one", "two", "three"),
+                    substituted.expand(name -> null).arguments());
+        }
+
+        @Test
+        void assignmentValuesAndRedirectTargetsAreNotSplit() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("A=$(cmd) env > $(cmd).txt"));
+
+            var cmdArgs = node.substitute(command -> "x y").expand(name -> null);
+
+            assertEquals(Map.of("A", "x y"), cmdArgs.assignments());
+            assertEquals("x y.txt", cmdArgs.redirectOptions().redirectTo());
+        }
+
+        @Test
+        void nothingLeftRunsNoCommand() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("A=1 $(cmd)"));
+
+            var cmdArgs = node.substitute(command -> "").expand(name -> null);
+
+            assertEquals("set", cmdArgs.command());
+            assertEquals(List.of("A=1"), cmdArgs.arguments());
+        }
+
+        @Test
+        void assignmentsAloneStayMarkedAndUnsplit() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("A=$(cmd)"));
+
+            var substituted = node.substitute(command -> "x y");
+
+            assertTrue(substituted.assignmentOnly());
+            assertEquals(List.of("A=x y"), substituted.expand(name -> null).arguments());
+        }
+    }
+
+    @Nested
+    @DisplayName("Assignments")
+    class AssignmentTests {
+
+        @Test
+        void leadingAssignmentsAreNotTheCommandName() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("A=1 B=\"x y\" env C=3"));
+
+            assertEquals("env", node.name().expand(name -> null));
+            assertEquals(List.of("A", "B"), node.assignments().stream().map(CommandNode.Assignment::name).toList());
+            assertEquals("C=3", node.arguments().getFirst().expand(name -> null));
+            var cmdArgs = node.expand(name -> null);
+            assertEquals(Map.of("A", "1", "B", "x y"), cmdArgs.assignments());
+        }
+
+        @Test
+        void valuesAreNotGlobbedOrBraceExpanded() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("A=*.txt B={1,2} C=$HOME env"));
+
+            assertTrue(node.assignments().stream().noneMatch(assignment -> assignment.value().isPattern()
+                    || assignment.value().hasBraces()));
+            assertEquals(Map.of("A", "*.txt", "B", "{1,2}", "C", "/home"),
+                    node.expand(name -> "/home").assignments());
+        }
+
+        @Test
+        void assignmentsAloneBecomeSet() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("A=1 B='x y'"));
+
+            var cmdArgs = node.expand(name -> null);
+            assertEquals("set", cmdArgs.command());
+            assertEquals(List.of("A=1", "B=x y"), cmdArgs.arguments());
+        }
+
+        @Test
+        void onlyAssignmentsAloneAreMarked() {
+            assertTrue(assertInstanceOf(CommandNode.Simple.class, parser.parse("A=1")).assignmentOnly());
+            assertFalse(assertInstanceOf(CommandNode.Simple.class, parser.parse("set A=1")).assignmentOnly());
+            assertFalse(assertInstanceOf(CommandNode.Simple.class, parser.parse("A=1 echo")).assignmentOnly());
+        }
+
+        @Test
+        void aliasAfterAssignmentIsExpanded() {
+            AliasStorage.put("ll", "ls -la");
+            try {
+                var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("A=1 ll"));
+
+                assertEquals("ls", node.name().expand(name -> null));
+                assertEquals(1, node.assignments().size());
+            } finally {
+                AliasStorage.remove("ll");
+            }
+        }
+
+        @Test
+        void quotedOrInvalidNameIsACommand() {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse("'A=1' 1A=2"));
+
+            assertEquals("A=1", node.name().expand(name -> null));
+            assertTrue(node.assignments().isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("Brace expansion")
+    class BraceTests {
+
+        private List<String> expand(String input) {
+            var node = assertInstanceOf(CommandNode.Simple.class, parser.parse(input));
+            return node.expand(name -> name.equals("V") ? "v" : null).arguments();
+        }
+
+        @Test
+        void listsExpandInOrderWithRightmostVaryingFastest() {
+            assertEquals(List.of("a1", "a2", "b1", "b2"), expand("echo {a,b}{1,2}"));
+            assertEquals(List.of("x", "xy", "pre-{v}-post"), expand("echo x{,y} pre-{$V}-post"));
+        }
+
+        @Test
+        void numericAndLetterRanges() {
+            assertEquals(List.of("1", "2", "3"), expand("echo {1..3}"));
+            assertEquals(List.of("3", "1", "-1"), expand("echo {3..-1..2}"));
+            assertEquals(List.of("08", "09", "10"), expand("echo {08..10}"));
+            assertEquals(List.of("a", "c", "e"), expand("echo {a..e..2}"));
+        }
+
+        @Test
+        void quotedOrInvalidBracesAreLiteral() {
+            assertEquals(List.of("{1..3}", "{a}", "{", "{1..a}", "{1,2}"), expand("echo '{1..3}' {a} { {1..a} \\{1,2}"));
+        }
+
+        @Test
+        void largeRangeIsComputedOnDemand() {
+            var arguments = expand("echo -n f{1..1000000}.txt end");
+
+            assertInstanceOf(ArgumentList.class, arguments);
+            assertEquals(1_000_002, arguments.size());
+            assertEquals(List.of("-n", "f1.txt", "f2.txt"), arguments.subList(0, 3));
+            assertEquals(List.of("f1000000.txt", "end"), arguments.subList(1_000_000, 1_000_002));
+            assertEquals(1, ((ArgumentList) arguments).expansionCount());
+            assertEquals(1, ((ArgumentList) arguments).expansionStart(0));
+            assertEquals(1_000_001, ((ArgumentList) arguments).expansionEnd(0));
+        }
+
+        @Test
+        void expansionsApartAreSeparateRuns() {
+            var arguments = (ArgumentList) expand("cmd {1..3} -o out {4,5} {6,7}");
+
+            assertEquals(2, arguments.expansionCount());
+            assertEquals(0, arguments.expansionStart(0));
+            assertEquals(3, arguments.expansionEnd(0));
+            assertEquals(5, arguments.expansionStart(1));
+            assertEquals(9, arguments.expansionEnd(1));
+        }
+
+        @Test
+        void rangeTooLargeForAnArgumentListIsLiteral() {
+            assertEquals(List.of("{1..3000000000}"), expand("echo {1..3000000000}"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Concurrent use")
+    class ConcurrencyTests {
+
+        @Test
+        void sharedParserParsesConcurrently() throws Exception {
+            List<String> lines = List.of(
+                    "echo \"a b\" 'c' > out",
+                    "cat file | grep -v x 2>> err && echo $HOME",
+                    "{ echo a; echo b; } || (cd /tmp; ls) &");
+            List<String> expected = lines.stream().map(line -> parser.parse(line).toString()).toList();
+
+            try (ExecutorService threads = Executors.newFixedThreadPool(8)) {
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    results.add(threads.submit(() -> {
+                        for (int i = 0; i < 2_000; i++) {
+                            int line = i % lines.size();
+                            if (!parser.parse(lines.get(line)).toString().equals(expected.get(line))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }));
+                }
+                for (Future<Boolean> result : results) {
+                    assertTrue(result.get());
+                }
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Parse cache")
+    class ParseCacheTests {
+
+        @AfterEach
+        void tearDown() {
+            AliasStorage.reset();
+        }
+
+        @Test
+        void repeatedLineIsServedFromCache() {
+            CommandNode first = parser.parse("echo $HOME | wc -c");
+            CommandNode second = parser.parse("echo $HOME | wc -c");
+
+            assertSame(first, second);
+            assertEquals(1, parser.cache().hits());
+            assertEquals(1, parser.cache().misses());
+        }
+
+        @Test
+        void variablesAreExpandedOnEveryUse() {
+            parser.parse("echo $PARSE_CACHE_TEST");
+            var simple = assertInstanceOf(CommandNode.Simple.class, parser.parse("echo $PARSE_CACHE_TEST"));
+
+            assertEquals("one", simple.expand(name -> "one").arguments().getFirst());
+            assertEquals("two", simple.expand(name -> "two").arguments().getFirst());
+        }
+
+        @Test
+        void changedAliasInvalidatesCachedLine() {
+            AliasStorage.put("ll", "ls -l");
+            parser.parse("ll");
+            AliasStorage.put("ll", "ls -la");
+
+            var result = parser.getCommandAndArgs("ll");
+
+            assertEquals(List.of("-la"), result.getFirst().arguments());
+            assertEquals(0, parser.cache().hits());
+        }
+
+        @Test
+        void invalidLineIsNotCached() {
+            assertThrows(SyntaxException.class, () -> parser.parse("echo a ;;"));
+            assertThrows(SyntaxException.class, () -> parser.parse("echo a ;;"));
+
+            assertEquals(0, parser.cache().size());
+        }
+
+        @Test
+        void cacheIsBounded() {
+            for (int i = 0; i <= ParseCache.MAX_ENTRIES; i++) {
+                parser.parse("echo " + i);
+            }
+
+            assertEquals(ParseCache.MAX_ENTRIES, parser.cache().size());
+            parser.parse("echo 0");
+            assertEquals(0, parser.cache().hits());
+        }
+    }
 }
@@ -0,0 +1,130 @@
+package com.github.lowkkid.jsh.parser;
+
+import static com.github.lowkkid.jsh.parser.Tokenizer.AMPERSAND;
+import static com.github.lowkkid.jsh.parser.Tokenizer.AND_IF;
+import static com.github.lowkkid.jsh.parser.Tokenizer.APPEND;
+import static com.github.lowkkid.jsh.parser.Tokenizer.CLOSE_PAREN;
+import static com.github.lowkkid.jsh.parser.Tokenizer.NEWLINE;
+import static com.github.lowkkid.jsh.parser.Tokenizer.OPEN_PAREN;
+import static com.github.lowkkid.jsh.parser.Tokenizer.OR_IF;
+import static com.github.lowkkid.jsh.parser.Tokenizer.PIPE;
+import static com.github.lowkkid.jsh.parser.Tokenizer.QUOTED;
+import static com.github.lowkkid.jsh.parser.Tokenizer.REDIRECT;
+import static com.github.lowkkid.jsh.parser.Tokenizer.SEMICOLON;
+import static com.github.lowkkid.jsh.parser.Tokenizer.STDERR;
+import static com.github.lowkkid.jsh.parser.Tokenizer.WORD;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TokenizerTest {
+
+    @Test
+    void splitsWordsAndOperators() {
+        var tokens = Tokenizer.tokenize("a && b || c | d; e & (f)\n");
+
+        assertEquals(List.of(WORD, AND_IF, WORD, OR_IF, WORD, PIPE, WORD, SEMICOLON, WORD, AMPERSAND,
+                OPEN_PAREN, WORD, CLOSE_PAREN, NEWLINE), kinds(tokens));
+        assertEquals("d", tokens.text(6));
+    }
+
+    @Test
+    void wordsAreOffsetsIntoTheLine() {
+        var tokens = Tokenizer.tokenize("  echo   hello");
+
+        assertEquals(2, tokens.size());
+        assertEquals(2, tokens.start(0));
+        assertEquals(6, tokens.end(0));
+        assertEquals(9, tokens.start(1));
+        assertEquals(14, tokens.end(1));
+    }
+
+    @Test
+    void quotedBlanksAndOperatorsStayInTheWord() {
+        var tokens = Tokenizer.tokenize("echo 'a b;c' \"d|e\" f\\ g");
+
+        assertEquals(List.of(WORD, WORD, WORD, WORD), kinds(tokens));
+        assertEquals("'a b;c'", tokens.text(1));
+        assertEquals("f\\ g", tokens.text(3));
+        assertFalse(tokens.has(0, QUOTED));
+        assertTrue(tokens.has(1, QUOTED));
+    }
+
+    @Test
+    void commandSubstitutionIsOneWord() {
+        var tokens = Tokenizer.tokenize("echo a$(b | c \")\"; (d))e `f; g` \"$(h)\"");
+
+        assertEquals(List.of(WORD, WORD, WORD, WORD), kinds(tokens));
+        assertEquals("a$(b | c \")\"; (d))e", tokens.text(1));
+        assertEquals("`f; g`", tokens.text(2));
+        assertTrue(tokens.has(2, QUOTED));
+    }
+
+    @Test
+    void bracedVariableIsOneWord() {
+        var tokens = Tokenizer.tokenize("echo ${a b}");
+
+        assertEquals(2, tokens.size());
+        assertEquals("${a b}", tokens.text(1));
+    }
+
+    @Test
+    void redirects() {
+        var tokens = Tokenizer.tokenize("cmd >out 2>>err a2>f");
+
+        assertEquals(List.of(WORD, REDIRECT, WORD, REDIRECT, WORD, WORD, REDIRECT, WORD), kinds(tokens));
+        assertFalse(tokens.has(1, STDERR));
+        assertFalse(tokens.has(1, APPEND));
+        assertTrue(tokens.has(3, STDERR));
+        assertTrue(tokens.has(3, APPEND));
+        assertEquals("a2", tokens.text(5));
+    }
+
+    @Test
+    void commentsAreDropped() {
+        var tokens = Tokenizer.tokenize("echo a#b # comment\necho");
+
+        assertEquals(List.of(WORD, WORD, NEWLINE, WORD), kinds(tokens));
+        assertEquals("a#b", tokens.text(1));
+    }
+
+    @Test
+    void splicedTokensSpanTheReplacedWord() {
+        var tokens = Tokenizer.tokenize("ll /tmp; echo");
+        tokens.splice(0, Tokenizer.tokenize("ls -la"));
+
+        assertEquals("ls", tokens.text(0));
+        assertEquals("-la", tokens.text(1));
+        assertEquals("/tmp", tokens.text(2));
+        assertEquals("ll /tmp", tokens.span(0, 2));
+        assertEquals("echo", tokens.text(4));
+    }
+
+    @Test
+    void tokenizingDoesNotAllocatePerWord() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String line = "command " + "argument-long-enough-to-notice-a-copy ".repeat(14);
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < 2_000; i++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            Tokenizer.tokenize(line);
+            least = Math.min(least, threads.getCurrentThreadAllocatedBytes() - before);
+        }
+
+        // a substring per word alone would take more than 15 * 80 bytes
+        assertTrue(least < 1024, "allocated " + least + " bytes");
+    }
+
+    private static List<Integer> kinds(TokenList tokens) {
+        List<Integer> kinds = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            kinds.add(tokens.kind(i));
+        }
+        return kinds;
+    }
+}
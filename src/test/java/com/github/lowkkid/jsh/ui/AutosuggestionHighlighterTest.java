@@ -0,0 +1,104 @@
+package com.github.lowkkid.jsh.ui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.lowkkid.jsh.history.HistorySuggestions;
+import com.github.lowkkid.jsh.history.ShellHistory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStyle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AutosuggestionHighlighterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Terminal terminal;
+    private LineReader reader;
+    private AutosuggestionHighlighter highlighter;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        var history = new ShellHistory();
+        history.open(tempDir.resolve("history"));
+        history.add("git push origin main");
+        terminal = new DumbTerminal(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+        highlighter = new AutosuggestionHighlighter((reader, buffer) -> new AttributedString(buffer),
+                new HistorySuggestions(history), () -> tempDir);
+        reader = LineReaderBuilder.builder().terminal(terminal).highlighter(highlighter).build();
+        highlighter.install(reader);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    private AttributedString type(String text) {
+        reader.getBuffer().write(text);
+        return highlighter.highlight(reader, reader.getBuffer().toString());
+    }
+
+    private boolean apply(String widget) {
+        return reader.getWidgets().get(widget).apply();
+    }
+
+    @Test
+    void restOfTheSuggestionIsShownFaint() {
+        AttributedString shown = type("git p");
+
+        assertEquals("git push origin main", shown.toString());
+        assertEquals(AttributedStyle.DEFAULT, shown.styleAt(4));
+        assertEquals(AttributedStyle.DEFAULT.faint(), shown.styleAt(5));
+    }
+
+    @Test
+    void suggestionIsShownOnlyWithTheCursorAtTheEnd() {
+        type("git p");
+        reader.getBuffer().move(-1);
+
+        assertEquals("git p", highlighter.highlight(reader, "git p").toString());
+    }
+
+    @Test
+    void forwardCharTakesTheSuggestionOnlyAtTheEndOfTheLine() {
+        type("git p");
+        reader.getBuffer().cursor(0);
+        apply(LineReader.FORWARD_CHAR);
+        assertEquals("git p", reader.getBuffer().toString());
+
+        reader.getBuffer().cursor(5);
+        apply(LineReader.FORWARD_CHAR);
+        assertEquals("git push origin main", reader.getBuffer().toString());
+    }
+
+    @Test
+    void forwardWordTakesOneWord() {
+        type("git p");
+
+        apply(LineReader.FORWARD_WORD);
+        assertEquals("git push", reader.getBuffer().toString());
+        apply(LineReader.FORWARD_WORD);
+        assertEquals("git push origin", reader.getBuffer().toString());
+    }
+
+    @Test
+    void suggestionIsHiddenOnceTheLineIsAccepted() {
+        apply(LineReader.CALLBACK_FINISH);
+        assertEquals("git p", type("git p").toString());
+
+        apply(LineReader.CALLBACK_INIT);
+        assertEquals("git push origin main", highlighter.highlight(reader, "git p").toString());
+    }
+}
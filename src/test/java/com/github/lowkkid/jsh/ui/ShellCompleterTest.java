@@ -0,0 +1,66 @@
+package com.github.lowkkid.jsh.ui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShellCompleterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AtomicReference<Set<String>> aliases;
+    private AtomicReference<Set<String>> executables;
+    private ShellCompleter completer;
+
+    @BeforeEach
+    void setUp() {
+        aliases = new AtomicReference<>(Set.of("ll"));
+        executables = new AtomicReference<>(Set.of("ls", "less"));
+        completer = new ShellCompleter(() -> Set.of("echo", "exit"), aliases::get, executables::get,
+                () -> tempDir);
+    }
+
+    @Test
+    void completesFromAllSources() {
+        assertEquals(List.of("echo", "exit"), completer.commandsStartingWith("e"));
+        assertEquals(List.of("less", "ll", "ls"), completer.commandsStartingWith("l"));
+    }
+
+    @Test
+    void picksUpNewAndRemovedExecutables() {
+        completer.commandsStartingWith("l");
+
+        executables.set(Set.of("ls", "lsof"));
+
+        assertEquals(List.of("ll", "ls", "lsof"), completer.commandsStartingWith("l"));
+    }
+
+    @Test
+    void nameFromTwoSourcesSurvivesRemovalFromOne() {
+        aliases.set(Set.of("ll", "ls"));
+        completer.commandsStartingWith("l");
+
+        aliases.set(Set.of("ll"));
+
+        assertEquals(List.of("less", "ll", "ls"), completer.commandsStartingWith("l"));
+    }
+
+    @Test
+    void completesFileNamesUntilExecutablesAreIndexed() {
+        executables.set(null);
+
+        assertNull(completer.commandsStartingWith("l"));
+
+        executables.set(Set.of("ls"));
+
+        assertEquals(List.of("ll", "ls"), completer.commandsStartingWith("l"));
+    }
+}
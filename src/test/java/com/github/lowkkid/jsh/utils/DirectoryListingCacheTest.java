@@ -0,0 +1,71 @@
+package com.github.lowkkid.jsh.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.lowkkid.jsh.utils.DirectoryListingCache.Entry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DirectoryListingCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DirectoryListingCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cache = new DirectoryListingCache();
+        Files.createFile(tempDir.resolve("alpha.txt"));
+        Files.createFile(tempDir.resolve("beta.txt"));
+        Files.createDirectory(tempDir.resolve("alpine"));
+    }
+
+    private List<Entry> entries(String prefix) {
+        return cache.entries(tempDir, prefix, 5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void listsEntriesWithPrefixSortedByName() {
+        assertEquals(List.of(new Entry("alpha.txt", false), new Entry("alpine", true)), entries("al"));
+    }
+
+    @Test
+    void emptyPrefixListsEverything() {
+        assertEquals(3, entries("").size());
+    }
+
+    @Test
+    void missingDirectoryHasNoEntries() {
+        assertTrue(cache.entries(tempDir.resolve("missing"), "", 5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    void changedDirectoryIsListedAgain() throws IOException {
+        assertEquals(1, entries("b").size());
+
+        Files.createFile(tempDir.resolve("bravo.txt"));
+        // make the change visible even on file systems with coarse timestamps
+        Files.setLastModifiedTime(tempDir, FileTime.from(Instant.now().plusSeconds(5)));
+
+        assertEquals(List.of(new Entry("beta.txt", false), new Entry("bravo.txt", false)), entries("b"));
+    }
+
+    @Test
+    void prefetchedListingIsServedWithoutWaiting() throws Exception {
+        cache.prefetch(tempDir);
+        // the scan runs in the background; a generous wait just lets it finish
+        cache.entries(tempDir, "", 5, TimeUnit.SECONDS);
+
+        assertEquals(3, cache.entries(tempDir, "", 0, TimeUnit.MILLISECONDS).size());
+    }
+}
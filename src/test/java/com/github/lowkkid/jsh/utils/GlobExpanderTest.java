@@ -0,0 +1,101 @@
+package com.github.lowkkid.jsh.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GlobExpanderTest {
+
+    @TempDir
+    Path dir;
+
+    private GlobExpander globs;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for (String file : List.of("a.log", "b.log", "c.txt", ".hidden.log", "file1.c", "file2.h", "file3.o",
+                "src/Main.java", "src/util/Strings.java", "src/util/notes.txt", "src/.cache/Skip.java",
+                "docs/readme.md")) {
+            Path path = dir.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.createFile(path);
+        }
+        globs = new GlobExpander(dir);
+    }
+
+    @Test
+    void starMatchesInSortedOrder() {
+        assertEquals(List.of("a.log", "b.log"), globs.expand("*.log"));
+    }
+
+    @Test
+    void questionMarkAndBracketExpression() {
+        assertEquals(List.of("file1.c", "file2.h"), globs.expand("file?.[ch]"));
+        assertEquals(List.of("file3.o"), globs.expand("file[!12].*"));
+        assertEquals(List.of("file1.c", "file2.h"), globs.expand("file[1-2]*"));
+    }
+
+    @Test
+    void leadingDotMustBeMatchedLiterally() {
+        assertEquals(List.of(".hidden.log"), globs.expand(".*.log"));
+        assertFalse(globs.expand("*").contains(".hidden.log"));
+    }
+
+    @Test
+    void segmentsInSubdirectories() {
+        assertEquals(List.of("src/util/Strings.java"), globs.expand("src/*/*.java"));
+        assertEquals(List.of("docs/", "src/"), globs.expand("*/"));
+    }
+
+    @Test
+    void doubleStarMatchesAnyNumberOfDirectories() {
+        assertEquals(List.of("src/Main.java", "src/util/Strings.java"), globs.expand("**/*.java"));
+        assertEquals(List.of("src/Main.java", "src/util/Strings.java"), globs.expand("src/**/*.java"));
+    }
+
+    @Test
+    void trailingDoubleStarMatchesEverythingBelow() {
+        assertEquals(List.of("src/Main.java", "src/util", "src/util/Strings.java", "src/util/notes.txt"),
+                globs.expand("src/**"));
+    }
+
+    @Test
+    void escapedWildcardIsLiteral() throws IOException {
+        Files.createFile(dir.resolve("star*.txt"));
+
+        assertEquals(List.of("star*.txt"), globs.expand("star\\*.*"));
+        assertEquals(List.of(), globs.expand("c\\*"));
+    }
+
+    @Test
+    void absolutePatternGivesAbsolutePaths() {
+        assertEquals(List.of(dir.resolve("c.txt").toString()), globs.expand(dir + "/*.txt"));
+    }
+
+    @Test
+    void noMatchIsEmpty() {
+        assertEquals(List.of(), globs.expand("*.nothing"));
+        assertEquals(List.of(), globs.expand("missing/*.log"));
+    }
+
+    @Test
+    void pathologicalPatternIsLinear() {
+        assertTrue(globs.expand("*a*a*a*a*a*a*a*a*a*a*a*a*b").isEmpty());
+    }
+
+    @Test
+    void detectsPatterns() {
+        assertTrue(GlobExpander.isPattern("*.log"));
+        assertTrue(GlobExpander.isPattern("file[12]"));
+        assertFalse(GlobExpander.isPattern("plain.txt"));
+        assertFalse(GlobExpander.isPattern("escaped\\*"));
+    }
+}
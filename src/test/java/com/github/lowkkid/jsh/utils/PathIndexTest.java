@@ -0,0 +1,321 @@
+package com.github.lowkkid.jsh.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.lowkkid.jsh.config.env.Aliases;
+import com.github.lowkkid.jsh.config.env.ShellState;
+import com.github.lowkkid.jsh.config.env.Variables;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PathIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path firstDir;
+    private Path secondDir;
+    private AtomicReference<String> path;
+    private PathIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        firstDir = Files.createDirectory(tempDir.resolve("first"));
+        secondDir = Files.createDirectory(tempDir.resolve("second"));
+        path = new AtomicReference<>(firstDir + File.pathSeparator + secondDir);
+        index = new PathIndex(path::get);
+    }
+
+    private Path executable(Path dir, String name) throws IOException {
+        Path file = dir.resolve(name);
+        Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxr-xr-x")));
+        return file;
+    }
+
+    @Nested
+    class Lookup {
+
+        @Test
+        void findsExecutable() throws IOException {
+            Path tool = executable(firstDir, "tool");
+
+            assertEquals(tool.toString(), index.lookup("tool"));
+        }
+
+        @Test
+        void returnsNullForMissingCommand() {
+            assertNull(index.lookup("missing_tool"));
+        }
+
+        @Test
+        void ignoresNonExecutableFiles() throws IOException {
+            Files.createFile(firstDir.resolve("data.txt"));
+
+            assertNull(index.lookup("data.txt"));
+        }
+
+        @Test
+        void ignoresDirectories() throws IOException {
+            Files.createDirectory(firstDir.resolve("subdir"));
+
+            assertNull(index.lookup("subdir"));
+        }
+
+        @Test
+        void earlierPathDirectoryWins() throws IOException {
+            Path first = executable(firstDir, "tool");
+            executable(secondDir, "tool");
+
+            assertEquals(first.toString(), index.lookup("tool"));
+        }
+
+        @Test
+        void missingPathDirectoryIsSkipped() throws IOException {
+            path.set(tempDir.resolve("nope") + File.pathSeparator + secondDir);
+            Path tool = executable(secondDir, "tool");
+
+            assertEquals(tool.toString(), index.lookup("tool"));
+        }
+
+        @Test
+        void commandNamesContainsAllExecutables() throws IOException {
+            executable(firstDir, "a");
+            executable(secondDir, "b");
+
+            assertEquals(Set.of("a", "b"), index.commandNames());
+        }
+    }
+
+    @Nested
+    class Invalidation {
+
+        @Test
+        void pathChangeRebuildsIndex() throws IOException {
+            executable(secondDir, "tool");
+            assertTrue(index.contains("tool"));
+
+            path.set(firstDir.toString());
+
+            assertFalse(index.contains("tool"));
+        }
+
+        @Test
+        void rehashPicksUpNewExecutable() throws IOException {
+            assertNull(index.lookup("late"));
+            Path late = executable(firstDir, "late");
+
+            index.rehash();
+
+            assertEquals(late.toString(), index.lookup("late"));
+        }
+
+        @Test
+        void watcherPicksUpNewExecutable() throws Exception {
+            assertNull(index.lookup("late"));
+            Path late = executable(firstDir, "late");
+
+            // directory watching is asynchronous, poll for up to 15 seconds
+            String found = null;
+            for (int i = 0; i < 300 && found == null; i++) {
+                Thread.sleep(50);
+                found = index.lookup("late");
+            }
+
+            assertEquals(late.toString(), found);
+        }
+
+        @Test
+        void watcherPicksUpDeletedExecutable() throws Exception {
+            Path tool = executable(firstDir, "tool");
+            assertTrue(index.contains("tool"));
+
+            Files.delete(tool);
+
+            boolean stillThere = true;
+            for (int i = 0; i < 300 && stillThere; i++) {
+                Thread.sleep(50);
+                stillThere = index.contains("tool");
+            }
+
+            assertFalse(stillThere);
+        }
+    }
+
+    @Nested
+    class Statistics {
+
+        @Test
+        void lookupCountsHits() throws IOException {
+            executable(firstDir, "tool");
+
+            index.lookup("tool");
+            index.lookup("tool");
+
+            assertEquals(2L, index.hitCounts().get("tool"));
+        }
+
+        @Test
+        void hitCountsAreListedInOrderOfFirstUse() throws IOException {
+            List<String> names = List.of("zeta", "alpha", "mid", "beta", "omega", "gamma");
+            for (String name : names) {
+                executable(firstDir, name);
+            }
+
+            for (String name : names) {
+                index.lookup(name);
+            }
+            index.lookup("alpha");
+            index.forget("mid");
+            index.lookup("mid");
+
+            assertEquals(List.of("zeta", "alpha", "beta", "omega", "gamma", "mid"),
+                    List.copyOf(index.hitCounts().keySet()));
+            assertEquals(2L, index.hitCounts().get("alpha"));
+        }
+
+        @Test
+        void resolveAndContainsDoNotCountHits() throws IOException {
+            executable(firstDir, "tool");
+
+            index.resolve("tool");
+            index.contains("tool");
+
+            assertTrue(index.hitCounts().isEmpty());
+        }
+
+        @Test
+        void missesAreNotCounted() {
+            index.lookup("missing_tool");
+
+            assertTrue(index.hitCounts().isEmpty());
+        }
+
+        @Test
+        void forgetRemovesStatistics() throws IOException {
+            executable(firstDir, "tool");
+            index.lookup("tool");
+
+            assertTrue(index.forget("tool"));
+            assertFalse(index.forget("tool"));
+            assertTrue(index.hitCounts().isEmpty());
+        }
+
+        @Test
+        void rehashClearsStatistics() throws IOException {
+            executable(firstDir, "tool");
+            index.lookup("tool");
+
+            index.rehash();
+
+            assertTrue(index.hitCounts().isEmpty());
+        }
+    }
+
+    @Nested
+    class DeferredIndexing {
+
+        @BeforeEach
+        void defer() {
+            index.deferIndexing();
+        }
+
+        @Test
+        void probesInPathOrder() throws IOException {
+            executable(secondDir, "tool");
+            Path first = executable(firstDir, "tool");
+
+            assertEquals(first.toString(), index.lookup("tool"));
+            assertEquals(Map.of("tool", 1L), index.hitCounts());
+        }
+
+        @Test
+        void seesNewExecutablesImmediately() throws IOException {
+            assertFalse(index.contains("tool"));
+
+            Path tool = executable(secondDir, "tool");
+
+            assertEquals(tool.toString(), index.resolve("tool"));
+        }
+
+        @Test
+        void ignoresDirectoriesAndPaths() throws IOException {
+            Files.createDirectory(firstDir.resolve("subdir"));
+            executable(Files.createDirectory(firstDir.resolve("nested")), "tool");
+
+            assertNull(index.lookup("subdir"));
+            assertNull(index.lookup("nested/tool"));
+        }
+
+        @Test
+        void commandNamesBuildIndex() throws IOException {
+            executable(firstDir, "tool");
+
+            assertEquals(Set.of("tool"), index.commandNames());
+            assertTrue(index.contains("tool"));
+        }
+    }
+
+    @Nested
+    class ShellPath {
+
+        private ShellState shellWithPath(String value) {
+            return new ShellState(tempDir, new Variables(Map.of("PATH", value), Map.of()), new Aliases());
+        }
+
+        @Test
+        void shellWithTheInteractivePathSharesTheIndex() {
+            assertSame(PathIndex.getInstance(), PathIndex.forShell(ShellState.global().subshell()));
+        }
+
+        @Test
+        void shellWithItsOwnPathFindsItsExecutables() throws IOException {
+            Path tool = executable(firstDir, "session_tool");
+            String value = firstDir + File.pathSeparator + secondDir;
+
+            PathIndex shellIndex = PathIndex.forShell(shellWithPath(value));
+
+            assertNotSame(PathIndex.getInstance(), shellIndex);
+            assertSame(shellIndex, PathIndex.forShell(shellWithPath(value)));
+            assertEquals(tool.toString(), shellIndex.lookup("session_tool"));
+        }
+
+        @Test
+        void leastRecentlyUsedShellIndexIsDropped() {
+            PathIndex first = PathIndex.forShell(shellWithPath(firstDir.toString()));
+            for (int i = 0; i < 16; i++) {
+                PathIndex.forShell(shellWithPath(secondDir + File.pathSeparator + i));
+            }
+
+            assertNotSame(first, PathIndex.forShell(shellWithPath(firstDir.toString())));
+        }
+    }
+
+    @Test
+    void closedIndexKeepsResolving() throws IOException {
+        Path tool = executable(firstDir, "tool");
+        index.commandNames();
+
+        index.close();
+
+        assertEquals(tool.toString(), index.lookup("tool"));
+        path.set(secondDir.toString());
+        Path other = executable(secondDir, "other");
+        assertEquals(other.toString(), index.lookup("other"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.lowkkid.jsh.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PrefixTrieTest {
+
+    private PrefixTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        trie = new PrefixTrie();
+        List.of("git", "gitk", "grep", "gzip", "ls").forEach(trie::add);
+    }
+
+    @Test
+    void findsWordsWithPrefixInOrder() {
+        assertEquals(List.of("git", "gitk", "grep", "gzip"), trie.startingWith("g", 10));
+        assertEquals(List.of("git", "gitk"), trie.startingWith("git", 10));
+    }
+
+    @Test
+    void emptyPrefixMatchesEverything() {
+        assertEquals(5, trie.startingWith("", 10).size());
+    }
+
+    @Test
+    void unknownPrefixMatchesNothing() {
+        assertEquals(List.of(), trie.startingWith("x", 10));
+    }
+
+    @Test
+    void respectsLimit() {
+        assertEquals(List.of("git", "gitk"), trie.startingWith("g", 2));
+    }
+
+    @Test
+    void removeKeepsLongerWords() {
+        assertTrue(trie.remove("git"));
+
+        assertFalse(trie.contains("git"));
+        assertEquals(List.of("gitk"), trie.startingWith("git", 10));
+        assertEquals(4, trie.size());
+    }
+
+    @Test
+    void removeUnknownWord() {
+        assertFalse(trie.remove("gi"));
+        assertFalse(trie.remove("missing"));
+        assertEquals(5, trie.size());
+    }
+
+    @Test
+    void wordAddedTwiceNeedsTwoRemovals() {
+        trie.add("ls");
+
+        assertEquals(5, trie.size());
+        trie.remove("ls");
+        assertTrue(trie.contains("ls"));
+        trie.remove("ls");
+        assertFalse(trie.contains("ls"));
+    }
+}